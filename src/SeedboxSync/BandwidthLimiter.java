@@ -0,0 +1,220 @@
+/****************************************************************************
+ *
+ * BandwidthLimiter.java
+ *
+ * Limits the rate at which data is transferred.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Limits the rate at which data is transferred using a token bucket which holds up to one second's worth of tokens.
+ * A limiter may have a parent, such as a global limit shared by every transfer, in which case data must be admitted
+ * by both.  A paused limiter admits no data until it is resumed.
+ */
+public class BandwidthLimiter {
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final Long nanosecondsPerSecond = 1000000000L;
+
+    /**
+     * The largest number of bytes admitted, or written by a rate limited stream, in a single operation.
+     */
+    private static final Integer chunkSize = 65536;
+
+    /**
+     * The limiter which must also admit data admitted by this limiter, or null if there is none.
+     */
+    private BandwidthLimiter parent;
+
+    /**
+     * The maximum rate, in bytes per second, or 0 if the rate is unlimited.
+     */
+    private long rate;
+
+    /**
+     * The number of bytes which may be transferred without waiting.  Negative when data has been admitted in advance
+     * of the rate, in which case the next caller waits until the balance is repaid.
+     */
+    private double tokens;
+
+    /**
+     * The time at which tokens were last added.
+     */
+    private long lastRefill;
+
+    /**
+     * A value indicating whether the limiter is paused.
+     */
+    private boolean paused;
+
+    /**
+     * Initializes a new instance of the BandwidthLimiter class.
+     * @param rate The maximum rate, in bytes per second, or 0 for no limit.
+     */
+    public BandwidthLimiter(Long rate) {
+        this(rate, null);
+    }
+
+    /**
+     * Initializes a new instance of the BandwidthLimiter class with the specified parent.
+     * @param rate The maximum rate, in bytes per second, or 0 for no limit.
+     * @param parent The limiter which must also admit data admitted by this limiter.
+     */
+    public BandwidthLimiter(Long rate, BandwidthLimiter parent) {
+        this.parent = parent;
+        this.lastRefill = System.nanoTime();
+
+        setRate(rate);
+    }
+
+    /**
+     * Gets the maximum rate, in bytes per second.
+     * @return The maximum rate, in bytes per second, or 0 if the rate is unlimited.
+     */
+    public synchronized Long getRate() {
+        return rate;
+    }
+
+    /**
+     * Sets the maximum rate, in bytes per second.  The new rate applies to transfers already in progress.
+     * @param rate The maximum rate, in bytes per second, or 0 for no limit.
+     */
+    public synchronized void setRate(Long rate) {
+        this.rate = Math.max(rate, 0L);
+        this.tokens = Math.min(tokens, this.rate);
+    }
+
+    /**
+     * Gets a value indicating whether the limiter is paused.
+     * @return A value indicating whether the limiter is paused.
+     */
+    public synchronized Boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Pauses or resumes the limiter.  Transfers acquiring from a paused limiter, or from any of its children, block
+     * until it is resumed.
+     * @param paused A value indicating whether the limiter is paused.
+     */
+    public synchronized void setPaused(Boolean paused) {
+        this.paused = paused;
+        notifyAll();
+    }
+
+    /**
+     * Blocks until the specified number of bytes may be transferred without exceeding the rate of this limiter and its
+     * parent, and neither is paused.
+     * @param bytes The number of bytes to transfer.
+     * @throws InterruptedException Thrown if the calling thread is interrupted while waiting.
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        // large transfers are admitted in chunks so that all but the last chunk are paid for before this returns
+        for (long admitted = 0; admitted < bytes; admitted += chunkSize) {
+            admit(Math.min(chunkSize, bytes - admitted));
+        }
+    }
+
+    /**
+     * Admits the specified number of bytes, waiting for any debt incurred by previous callers to be repaid.
+     * @param bytes The number of bytes to transfer.
+     * @throws InterruptedException Thrown if the calling thread is interrupted while waiting.
+     */
+    private void admit(long bytes) throws InterruptedException {
+        long wait;
+
+        synchronized (this) {
+            while (paused) {
+                wait();
+            }
+
+            refill();
+
+            // data is admitted immediately and the balance taken into debt, so that writes larger than the bucket are
+            // admitted and the following caller waits for the debt to be repaid
+            wait = tokens < 0 ? (long)(-tokens * nanosecondsPerSecond / rate) : 0;
+
+            if (rate > 0) {
+                tokens -= bytes;
+            }
+        }
+
+        if (wait > 0) {
+            Thread.sleep(wait / 1000000, (int)(wait % 1000000));
+        }
+
+        if (parent != null) {
+            parent.acquire(bytes);
+        }
+    }
+
+    /**
+     * Returns an OutputStream which writes to the specified stream at no more than the rate of this limiter.
+     * @param out The stream to which data is written.
+     * @return The rate limited stream.
+     */
+    public OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte)b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                // large writes are split so that a single write can't burst far beyond the rate
+                for (int written = 0; written < len; written += chunkSize) {
+                    int count = Math.min(chunkSize, len - written);
+
+                    try {
+                        acquire(count);
+                    }
+                    catch (InterruptedException ex) {
+                        throw new InterruptedIOException("Interrupted while waiting for bandwidth.");
+                    }
+
+                    out.write(b, off + written, count);
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds the tokens accumulated since the last refill, up to one second's worth.
+     */
+    private void refill() {
+        long now = System.nanoTime();
+
+        if (rate > 0) {
+            tokens = Math.min(rate, tokens + (double)(now - lastRefill) * rate / nanosecondsPerSecond);
+        }
+        else {
+            tokens = 0;
+        }
+
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,142 @@
+/****************************************************************************
+ *
+ * BloomFilter.java
+ *
+ * A compact probabilistic set of strings.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A compact probabilistic set of strings.  A value which was added is always reported as possibly present; a value
+ * which was not added is reported as absent, except for a small proportion of false positives which grows as more
+ * values than the expected number are added.  Values may be added and tested concurrently.
+ */
+public class BloomFilter {
+    /**
+     * The bits of the filter.
+     */
+    private AtomicLongArray bits;
+
+    /**
+     * The number of bits in the filter.
+     */
+    private long bitCount;
+
+    /**
+     * The number of bits set for each value.
+     */
+    private int hashCount;
+
+    /**
+     * The number of values the filter was sized for.
+     */
+    private Integer capacity;
+
+    /**
+     * Initializes a new instance of the BloomFilter class.
+     * @param capacity The number of values the filter is sized for.
+     * @param falsePositiveRate The proportion of absent values reported as present once the filter holds its capacity.
+     */
+    public BloomFilter(Integer capacity, Double falsePositiveRate) {
+        this.capacity = Math.max(capacity, 1);
+
+        bitCount = Math.max((long)Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))),
+                64L);
+        hashCount = Math.max((int)Math.round((double)bitCount / this.capacity * Math.log(2)), 1);
+
+        bits = new AtomicLongArray((int)((bitCount + 63) / 64));
+    }
+
+    /**
+     * Gets the number of values the filter was sized for.
+     * @return The number of values the filter was sized for.
+     */
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds the specified value to the filter.
+     * @param value The value to add.
+     */
+    public void add(String value) {
+        long hash = hash(value);
+        int first = (int)hash;
+        int second = (int)(hash >>> 32);
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((first + i * second) & Integer.MAX_VALUE) % bitCount;
+            int word = (int)(bit >>> 6);
+            long mask = 1L << bit;
+
+            long current = bits.get(word);
+
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * Returns a value indicating whether the specified value may have been added to the filter.
+     * @param value The value to test.
+     * @return False if the value was certainly not added; true if it may have been.
+     */
+    public Boolean mightContain(String value) {
+        long hash = hash(value);
+        int first = (int)hash;
+        int second = (int)(hash >>> 32);
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((first + i * second) & Integer.MAX_VALUE) % bitCount;
+
+            if ((bits.get((int)(bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Computes a well mixed 64 bit hash of the specified value, from which the bit positions are derived.
+     * @param value The value to hash.
+     * @return The hash of the value.
+     */
+    public static long hash(String value) {
+        // 64 bit FNV-1a over the characters, followed by the MurmurHash3 finalizer to spread the bits
+        long retVal = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < value.length(); i++) {
+            retVal ^= value.charAt(i);
+            retVal *= 0x100000001b3L;
+        }
+
+        retVal ^= retVal >>> 33;
+        retVal *= 0xff51afd7ed558ccdL;
+        retVal ^= retVal >>> 33;
+        retVal *= 0xc4ceb9fe1a85ec53L;
+        retVal ^= retVal >>> 33;
+
+        return retVal;
+    }
+}
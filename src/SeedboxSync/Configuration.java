@@ -23,6 +23,9 @@
  *
  ****************************************************************************/
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents the application Configuration model.
  */
@@ -72,6 +75,136 @@ public class Configuration {
      */
     private String localUploadDirectory;
 
+    /**
+     * The number of server sessions to establish when connecting.
+     */
+    private Integer minimumConnections = 1;
+
+    /**
+     * The maximum number of concurrent server sessions.
+     */
+    private Integer maximumConnections = 4;
+
+    /**
+     * The number of segments into which large files are split when downloading.
+     */
+    private Integer segmentCount = 1;
+
+    /**
+     * The minimum size of a file, in bytes, for it to be downloaded in segments.
+     */
+    private Long segmentThreshold = 104857600L;
+
+    /**
+     * The maximum number of remote directories listed at once while scanning.
+     */
+    private Integer scanConcurrency = 4;
+
+    /**
+     * The combined download rate limit for all transfers, in bytes per second.
+     */
+    private Long downloadLimit = 0L;
+
+    /**
+     * The download rate limit for each transfer, in bytes per second.
+     */
+    private Long downloadTransferLimit = 0L;
+
+    /**
+     * The combined upload rate limit for all transfers, in bytes per second.
+     */
+    private Long uploadLimit = 0L;
+
+    /**
+     * The upload rate limit for each transfer, in bytes per second.
+     */
+    private Long uploadTransferLimit = 0L;
+
+    /**
+     * The entries which override the limits and interval for ranges of hours.
+     */
+    private List<ScheduleEntry> schedule = new ArrayList<ScheduleEntry>();
+
+    /**
+     * The size of the buffers used to move data between the network and disk, in bytes.
+     */
+    private Integer transferBufferSize = 1048576;
+
+    /**
+     * The local port on which metrics are served, or 0 to disable the metrics endpoint.
+     */
+    private Integer metricsPort = 0;
+
+    /**
+     * The maximum number of files held in each of the upload and download queues.
+     */
+    private Integer queueCapacity = 100000;
+
+    /**
+     * The length of time for which a new upload must go unmodified before it is uploaded, in milliseconds.
+     */
+    private Long uploadSettleTime = 500L;
+
+    /**
+     * The policy which orders the download queue.
+     */
+    private String downloadPriority = "discovery";
+
+    /**
+     * The regular expressions which rank downloads under the pattern priority policy.
+     */
+    private List<String> priorityPatterns = new ArrayList<String>();
+
+    /**
+     * The number of files each of the uploader and downloader transfers at once.
+     */
+    private Integer transferWorkers = 1;
+
+    /**
+     * The time for which a failed file is held back before it is retried, in milliseconds.
+     */
+    private Long retryDelay = 60000L;
+
+    /**
+     * The index used to look up known files.
+     */
+    private String fileIndex = "memory";
+
+    /**
+     * A value indicating whether lookups in the memory index are filtered through a Bloom filter.
+     */
+    private Boolean fileIndexBloomFilter = false;
+
+    /**
+     * The number of completed downloads written to the database in one transaction.
+     */
+    private Integer databaseBatchSize = 100;
+
+    /**
+     * The longest time, in milliseconds, for which a completed download may wait to be written to the database.
+     */
+    private Long databaseBatchInterval = 1000L;
+
+    /**
+     * The SQLite synchronous setting of the database connections.
+     */
+    private String databaseSynchronous = "normal";
+
+    /**
+     * The number of bytes of the database file read through memory mapping.
+     */
+    private Long databaseMmapSize = 268435456L;
+
+    /**
+     * The size, in kibibytes, of the page cache of each database connection.
+     */
+    private Long databaseCacheSize = 16384L;
+
+    /**
+     * The number of read-only database connections used for lookups.
+     */
+    private Integer databaseReaders = 4;
+
     /**
      * The message generated by the validation routine.
      */
@@ -183,6 +316,356 @@ public class Configuration {
      */
     public void setLocalUploadDirectory(String directory) { localUploadDirectory = directory; }
 
+    /**
+     * Gets the number of server sessions to establish when connecting.
+     * @return The number of server sessions to establish when connecting.
+     */
+    public Integer getMinimumConnections() { return minimumConnections; }
+
+    /**
+     * Sets the number of server sessions to establish when connecting.
+     * @param minimumConnections The number of sessions.
+     */
+    public void setMinimumConnections(Integer minimumConnections) { this.minimumConnections = minimumConnections; }
+
+    /**
+     * Gets the maximum number of concurrent server sessions.
+     * @return The maximum number of concurrent server sessions.
+     */
+    public Integer getMaximumConnections() { return maximumConnections; }
+
+    /**
+     * Sets the maximum number of concurrent server sessions.
+     * @param maximumConnections The number of sessions.
+     */
+    public void setMaximumConnections(Integer maximumConnections) { this.maximumConnections = maximumConnections; }
+
+    /**
+     * Gets the number of segments into which large files are split when downloading.
+     * @return The number of segments into which large files are split when downloading.
+     */
+    public Integer getSegmentCount() { return segmentCount; }
+
+    /**
+     * Sets the number of segments into which large files are split when downloading.
+     * @param segmentCount The number of segments, or 1 to disable segmented downloads.
+     */
+    public void setSegmentCount(Integer segmentCount) { this.segmentCount = segmentCount; }
+
+    /**
+     * Gets the minimum size of a file, in bytes, for it to be downloaded in segments.
+     * @return The minimum size of a file for it to be downloaded in segments.
+     */
+    public Long getSegmentThreshold() { return segmentThreshold; }
+
+    /**
+     * Sets the minimum size of a file, in bytes, for it to be downloaded in segments.
+     * @param segmentThreshold The minimum size of a file for it to be downloaded in segments.
+     */
+    public void setSegmentThreshold(Long segmentThreshold) { this.segmentThreshold = segmentThreshold; }
+
+    /**
+     * Gets the maximum number of remote directories listed at once while scanning.
+     * @return The maximum number of remote directories listed at once while scanning.
+     */
+    public Integer getScanConcurrency() { return scanConcurrency; }
+
+    /**
+     * Sets the maximum number of remote directories listed at once while scanning.
+     * @param scanConcurrency The maximum number of remote directories listed at once while scanning.
+     */
+    public void setScanConcurrency(Integer scanConcurrency) { this.scanConcurrency = scanConcurrency; }
+
+    /**
+     * Gets the combined download rate limit for all transfers, in bytes per second.
+     * @return The combined download rate limit for all transfers, in bytes per second.
+     */
+    public Long getDownloadLimit() { return downloadLimit; }
+
+    /**
+     * Sets the combined download rate limit for all transfers, in bytes per second.
+     * @param downloadLimit The combined download rate limit for all transfers, in bytes per second.
+     */
+    public void setDownloadLimit(Long downloadLimit) { this.downloadLimit = downloadLimit; }
+
+    /**
+     * Gets the download rate limit for each transfer, in bytes per second.
+     * @return The download rate limit for each transfer, in bytes per second.
+     */
+    public Long getDownloadTransferLimit() { return downloadTransferLimit; }
+
+    /**
+     * Sets the download rate limit for each transfer, in bytes per second.
+     * @param downloadTransferLimit The download rate limit for each transfer, in bytes per second.
+     */
+    public void setDownloadTransferLimit(Long downloadTransferLimit) { this.downloadTransferLimit = downloadTransferLimit; }
+
+    /**
+     * Gets the combined upload rate limit for all transfers, in bytes per second.
+     * @return The combined upload rate limit for all transfers, in bytes per second.
+     */
+    public Long getUploadLimit() { return uploadLimit; }
+
+    /**
+     * Sets the combined upload rate limit for all transfers, in bytes per second.
+     * @param uploadLimit The combined upload rate limit for all transfers, in bytes per second.
+     */
+    public void setUploadLimit(Long uploadLimit) { this.uploadLimit = uploadLimit; }
+
+    /**
+     * Gets the upload rate limit for each transfer, in bytes per second.
+     * @return The upload rate limit for each transfer, in bytes per second.
+     */
+    public Long getUploadTransferLimit() { return uploadTransferLimit; }
+
+    /**
+     * Sets the upload rate limit for each transfer, in bytes per second.
+     * @param uploadTransferLimit The upload rate limit for each transfer, in bytes per second.
+     */
+    public void setUploadTransferLimit(Long uploadTransferLimit) { this.uploadTransferLimit = uploadTransferLimit; }
+
+    /**
+     * Gets the entries which override the limits and interval for ranges of hours.
+     * @return The entries which override the limits and interval for ranges of hours.
+     */
+    public List<ScheduleEntry> getSchedule() { return schedule; }
+
+    /**
+     * Sets the entries which override the limits and interval for ranges of hours.
+     * @param schedule The entries which override the limits and interval for ranges of hours.
+     */
+    public void setSchedule(List<ScheduleEntry> schedule) { this.schedule = schedule; }
+
+    /**
+     * Gets the limits and interval in effect at the specified hour.  The first schedule entry containing the hour
+     * overrides the configured settings; settings it does not override, or all settings if no entry contains the hour,
+     * are taken from the configuration.
+     * @param hour The hour of the day, from 0 to 23.
+     * @return A ScheduleEntry containing every setting in effect at the specified hour.
+     */
+    public ScheduleEntry getScheduleEntry(Integer hour) {
+        ScheduleEntry retVal = new ScheduleEntry(hour, (hour + 1) % 24);
+        ScheduleEntry entry = null;
+
+        for (ScheduleEntry candidate : schedule) {
+            if (candidate.contains(hour)) {
+                entry = candidate;
+                break;
+            }
+        }
+
+        if (entry == null) {
+            entry = new ScheduleEntry(hour, (hour + 1) % 24);
+        }
+
+        retVal.setInterval(entry.getInterval() != null ? entry.getInterval() : interval);
+        retVal.setDownloadLimit(entry.getDownloadLimit() != null ? entry.getDownloadLimit() : downloadLimit);
+        retVal.setDownloadTransferLimit(entry.getDownloadTransferLimit() != null ? entry.getDownloadTransferLimit() : downloadTransferLimit);
+        retVal.setUploadLimit(entry.getUploadLimit() != null ? entry.getUploadLimit() : uploadLimit);
+        retVal.setUploadTransferLimit(entry.getUploadTransferLimit() != null ? entry.getUploadTransferLimit() : uploadTransferLimit);
+
+        return retVal;
+    }
+
+    /**
+     * Gets the size of the buffers used to move data between the network and disk, in bytes.
+     * @return The size of the buffers used to move data between the network and disk, in bytes.
+     */
+    public Integer getTransferBufferSize() { return transferBufferSize; }
+
+    /**
+     * Sets the size of the buffers used to move data between the network and disk, in bytes.
+     * @param transferBufferSize The size of the buffers used to move data between the network and disk, in bytes.
+     */
+    public void setTransferBufferSize(Integer transferBufferSize) { this.transferBufferSize = transferBufferSize; }
+
+    /**
+     * Gets the local port on which metrics are served, or 0 to disable the metrics endpoint.
+     * @return The local port on which metrics are served, or 0 to disable the metrics endpoint.
+     */
+    public Integer getMetricsPort() { return metricsPort; }
+
+    /**
+     * Sets the local port on which metrics are served, or 0 to disable the metrics endpoint.
+     * @param metricsPort The local port on which metrics are served, or 0 to disable the metrics endpoint.
+     */
+    public void setMetricsPort(Integer metricsPort) { this.metricsPort = metricsPort; }
+
+    /**
+     * Gets the maximum number of files held in each of the upload and download queues.
+     * @return The maximum number of files held in each of the upload and download queues.
+     */
+    public Integer getQueueCapacity() { return queueCapacity; }
+
+    /**
+     * Sets the maximum number of files held in each of the upload and download queues.
+     * @param queueCapacity The maximum number of files held in each of the upload and download queues.
+     */
+    public void setQueueCapacity(Integer queueCapacity) { this.queueCapacity = queueCapacity; }
+
+    /**
+     * Gets the length of time for which a new upload must go unmodified before it is uploaded.
+     * @return The length of time for which a new upload must go unmodified, in milliseconds.
+     */
+    public Long getUploadSettleTime() { return uploadSettleTime; }
+
+    /**
+     * Sets the length of time for which a new upload must go unmodified before it is uploaded.
+     * @param uploadSettleTime The length of time for which a new upload must go unmodified, in milliseconds.
+     */
+    public void setUploadSettleTime(Long uploadSettleTime) { this.uploadSettleTime = uploadSettleTime; }
+
+    /**
+     * Gets the policy which orders the download queue.
+     * @return The policy which orders the download queue.
+     */
+    public String getDownloadPriority() { return downloadPriority; }
+
+    /**
+     * Sets the policy which orders the download queue.
+     * @param downloadPriority The policy which orders the download queue.
+     */
+    public void setDownloadPriority(String downloadPriority) { this.downloadPriority = downloadPriority; }
+
+    /**
+     * Gets the regular expressions which rank downloads under the pattern priority policy.
+     * @return The regular expressions which rank downloads under the pattern priority policy.
+     */
+    public List<String> getPriorityPatterns() { return priorityPatterns; }
+
+    /**
+     * Sets the regular expressions which rank downloads under the pattern priority policy.
+     * @param priorityPatterns The regular expressions which rank downloads under the pattern priority policy.
+     */
+    public void setPriorityPatterns(List<String> priorityPatterns) { this.priorityPatterns = priorityPatterns; }
+
+    /**
+     * Gets the number of files each of the uploader and downloader transfers at once.
+     * @return The number of files each of the uploader and downloader transfers at once.
+     */
+    public Integer getTransferWorkers() { return transferWorkers; }
+
+    /**
+     * Sets the number of files each of the uploader and downloader transfers at once.
+     * @param transferWorkers The number of files each of the uploader and downloader transfers at once.
+     */
+    public void setTransferWorkers(Integer transferWorkers) { this.transferWorkers = transferWorkers; }
+
+    /**
+     * Gets the time for which a failed file is held back before it is retried, in milliseconds.
+     * @return The time for which a failed file is held back before it is retried, in milliseconds.
+     */
+    public Long getRetryDelay() { return retryDelay; }
+
+    /**
+     * Sets the time for which a failed file is held back before it is retried, in milliseconds.
+     * @param retryDelay The time for which a failed file is held back before it is retried, in milliseconds.
+     */
+    public void setRetryDelay(Long retryDelay) { this.retryDelay = retryDelay; }
+
+    /**
+     * Gets the index used to look up known files.
+     * @return The index used to look up known files.
+     */
+    public String getFileIndex() { return fileIndex; }
+
+    /**
+     * Sets the index used to look up known files.
+     * @param fileIndex The index used to look up known files.
+     */
+    public void setFileIndex(String fileIndex) { this.fileIndex = fileIndex; }
+
+    /**
+     * Gets a value indicating whether lookups in the memory index are filtered through a Bloom filter.
+     * @return A value indicating whether lookups in the memory index are filtered through a Bloom filter.
+     */
+    public Boolean getFileIndexBloomFilter() { return fileIndexBloomFilter; }
+
+    /**
+     * Sets a value indicating whether lookups in the memory index are filtered through a Bloom filter.
+     * @param fileIndexBloomFilter A value indicating whether lookups in the memory index are filtered through a Bloom
+     * filter.
+     */
+    public void setFileIndexBloomFilter(Boolean fileIndexBloomFilter) {
+        this.fileIndexBloomFilter = fileIndexBloomFilter;
+    }
+
+    /**
+     * Gets the number of completed downloads written to the database in one transaction.
+     * @return The number of completed downloads written to the database in one transaction.
+     */
+    public Integer getDatabaseBatchSize() { return databaseBatchSize; }
+
+    /**
+     * Sets the number of completed downloads written to the database in one transaction.
+     * @param databaseBatchSize The number of completed downloads written to the database in one transaction.
+     */
+    public void setDatabaseBatchSize(Integer databaseBatchSize) { this.databaseBatchSize = databaseBatchSize; }
+
+    /**
+     * Gets the longest time, in milliseconds, for which a completed download may wait to be written to the database.
+     * @return The longest time, in milliseconds, for which a completed download may wait to be written to the
+     * database.
+     */
+    public Long getDatabaseBatchInterval() { return databaseBatchInterval; }
+
+    /**
+     * Sets the longest time, in milliseconds, for which a completed download may wait to be written to the database.
+     * @param databaseBatchInterval The longest time, in milliseconds, for which a completed download may wait to be
+     * written to the database.
+     */
+    public void setDatabaseBatchInterval(Long databaseBatchInterval) {
+        this.databaseBatchInterval = databaseBatchInterval;
+    }
+
+    /**
+     * Gets the SQLite synchronous setting of the database connections.
+     * @return The SQLite synchronous setting of the database connections.
+     */
+    public String getDatabaseSynchronous() { return databaseSynchronous; }
+
+    /**
+     * Sets the SQLite synchronous setting of the database connections.
+     * @param databaseSynchronous The SQLite synchronous setting of the database connections.
+     */
+    public void setDatabaseSynchronous(String databaseSynchronous) { this.databaseSynchronous = databaseSynchronous; }
+
+    /**
+     * Gets the number of bytes of the database file read through memory mapping.
+     * @return The number of bytes of the database file read through memory mapping.
+     */
+    public Long getDatabaseMmapSize() { return databaseMmapSize; }
+
+    /**
+     * Sets the number of bytes of the database file read through memory mapping.
+     * @param databaseMmapSize The number of bytes of the database file read through memory mapping.
+     */
+    public void setDatabaseMmapSize(Long databaseMmapSize) { this.databaseMmapSize = databaseMmapSize; }
+
+    /**
+     * Gets the size, in kibibytes, of the page cache of each database connection.
+     * @return The size, in kibibytes, of the page cache of each database connection.
+     */
+    public Long getDatabaseCacheSize() { return databaseCacheSize; }
+
+    /**
+     * Sets the size, in kibibytes, of the page cache of each database connection.
+     * @param databaseCacheSize The size, in kibibytes, of the page cache of each database connection.
+     */
+    public void setDatabaseCacheSize(Long databaseCacheSize) { this.databaseCacheSize = databaseCacheSize; }
+
+    /**
+     * Gets the number of read-only database connections used for lookups.
+     * @return The number of read-only database connections used for lookups.
+     */
+    public Integer getDatabaseReaders() { return databaseReaders; }
+
+    /**
+     * Sets the number of read-only database connections used for lookups.
+     * @param databaseReaders The number of read-only database connections used for lookups.
+     */
+    public void setDatabaseReaders(Integer databaseReaders) { this.databaseReaders = databaseReaders; }
+
     /**
      * Gets the message generated by the validation routine.
      * @return The message generated by the validation routine.
@@ -229,6 +712,97 @@ public class Configuration {
         else if (!(new java.io.File(localUploadDirectory).exists())) {
             err = "Local upload directory '" + localUploadDirectory + "' could not be found.";
         }
+        else if (minimumConnections == null || minimumConnections <= 0) {
+            err = "Minimum connections is missing or too low.";
+        }
+        else if (maximumConnections == null || maximumConnections < minimumConnections) {
+            err = "Maximum connections is missing or lower than minimum connections.";
+        }
+        else if (segmentCount == null || segmentCount <= 0) {
+            err = "Segment count is missing or too low.";
+        }
+        else if (segmentThreshold == null || segmentThreshold < 0) {
+            err = "Segment threshold is missing or negative.";
+        }
+        else if (scanConcurrency == null || scanConcurrency <= 0) {
+            err = "Scan concurrency is missing or too low.";
+        }
+        else if (downloadLimit == null || downloadLimit < 0) {
+            err = "Download limit is missing or negative.";
+        }
+        else if (downloadTransferLimit == null || downloadTransferLimit < 0) {
+            err = "Download transfer limit is missing or negative.";
+        }
+        else if (uploadLimit == null || uploadLimit < 0) {
+            err = "Upload limit is missing or negative.";
+        }
+        else if (uploadTransferLimit == null || uploadTransferLimit < 0) {
+            err = "Upload transfer limit is missing or negative.";
+        }
+        else if (transferBufferSize == null || transferBufferSize <= 0) {
+            err = "Transfer buffer size is missing or too low.";
+        }
+        else if (metricsPort == null || metricsPort < 0 || metricsPort > 65535) {
+            err = "Metrics port is missing or out of range.";
+        }
+        else if (queueCapacity == null || queueCapacity <= 0) {
+            err = "Queue capacity must be greater than zero.";
+        }
+        else if (uploadSettleTime == null || uploadSettleTime < 0) {
+            err = "Upload settle time must not be negative.";
+        }
+        else if (downloadPriority == null) {
+            err = "Download priority is missing.";
+        }
+        else if (priorityPatterns == null) {
+            err = "Priority patterns are missing.";
+        }
+        else if (getPriorityPolicyError() != null) {
+            err = getPriorityPolicyError();
+        }
+        else if (transferWorkers == null || transferWorkers <= 0) {
+            err = "Transfer workers must be greater than zero.";
+        }
+        else if (retryDelay == null || retryDelay < 0) {
+            err = "Retry delay must not be negative.";
+        }
+        else if (fileIndex == null ||
+                !(fileIndex.equals("none") || fileIndex.equals("memory") || fileIndex.equals("mapped"))) {
+            err = "File index must be 'none', 'memory' or 'mapped'.";
+        }
+        else if (fileIndexBloomFilter == null) {
+            err = "File index Bloom filter is missing.";
+        }
+        else if (databaseBatchSize == null || databaseBatchSize < 1) {
+            err = "Database batch size must be at least 1.";
+        }
+        else if (databaseBatchInterval == null || databaseBatchInterval < 1) {
+            err = "Database batch interval must be at least 1.";
+        }
+        else if (databaseSynchronous == null || !(databaseSynchronous.equals("off") ||
+                databaseSynchronous.equals("normal") || databaseSynchronous.equals("full"))) {
+            err = "Database synchronous mode must be one of 'off', 'normal' or 'full'.";
+        }
+        else if (databaseMmapSize == null || databaseMmapSize < 0) {
+            err = "Database mmap size must not be negative.";
+        }
+        else if (databaseCacheSize == null || databaseCacheSize < 1) {
+            err = "Database cache size must be at least 1.";
+        }
+        else if (databaseReaders == null || databaseReaders < 1) {
+            err = "Database readers must be at least 1.";
+        }
+        else if (schedule == null) {
+            err = "Schedule is missing.";
+        }
+        else {
+            for (ScheduleEntry entry : schedule) {
+                if (!entry.isValid()) {
+                    err = "Schedule entry for hours " + entry.getStart() + " to " + entry.getEnd() + " is invalid.";
+                    break;
+                }
+            }
+        }
 
         if (!err.equals("")) {
             validationMessage = err;
@@ -237,4 +811,18 @@ public class Configuration {
 
         return true;
     }
+
+    /**
+     * Checks that the download priority names a known policy and that its patterns are usable.
+     * @return The reason the download priority is invalid, or null if it is valid.
+     */
+    private String getPriorityPolicyError() {
+        try {
+            PriorityPolicies.create(downloadPriority, priorityPatterns);
+            return null;
+        }
+        catch (IllegalArgumentException ex) {
+            return ex.getMessage();
+        }
+    }
 }
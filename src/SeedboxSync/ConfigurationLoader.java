@@ -28,9 +28,13 @@ import java.io.FileReader;
 import java.io.File;
 import java.io.IOException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -84,11 +88,178 @@ public class ConfigurationLoader {
         retVal = new Configuration(server, port, username, password, interval, remoteDownloadDirectory,
                 localDownloadDirectory, remoteUploadDirectory, localUploadDirectory);
 
+        Long minimumConnections = fetchOptional("minimumConnections", parsedConfiguration);
+        if (minimumConnections != null) {
+            retVal.setMinimumConnections(minimumConnections.intValue());
+        }
+
+        Long maximumConnections = fetchOptional("maximumConnections", parsedConfiguration);
+        if (maximumConnections != null) {
+            retVal.setMaximumConnections(maximumConnections.intValue());
+        }
+
+        Long segmentCount = fetchOptional("segmentCount", parsedConfiguration);
+        if (segmentCount != null) {
+            retVal.setSegmentCount(segmentCount.intValue());
+        }
+
+        Long segmentThreshold = fetchOptional("segmentThreshold", parsedConfiguration);
+        if (segmentThreshold != null) {
+            retVal.setSegmentThreshold(segmentThreshold);
+        }
+
+        Long scanConcurrency = fetchOptional("scanConcurrency", parsedConfiguration);
+        if (scanConcurrency != null) {
+            retVal.setScanConcurrency(scanConcurrency.intValue());
+        }
+
+        Long downloadLimit = fetchOptional("downloadLimit", parsedConfiguration);
+        if (downloadLimit != null) {
+            retVal.setDownloadLimit(downloadLimit);
+        }
+
+        Long downloadTransferLimit = fetchOptional("downloadTransferLimit", parsedConfiguration);
+        if (downloadTransferLimit != null) {
+            retVal.setDownloadTransferLimit(downloadTransferLimit);
+        }
+
+        Long uploadLimit = fetchOptional("uploadLimit", parsedConfiguration);
+        if (uploadLimit != null) {
+            retVal.setUploadLimit(uploadLimit);
+        }
+
+        Long uploadTransferLimit = fetchOptional("uploadTransferLimit", parsedConfiguration);
+        if (uploadTransferLimit != null) {
+            retVal.setUploadTransferLimit(uploadTransferLimit);
+        }
+
+        JSONArray schedule = fetchOptional("schedule", parsedConfiguration);
+        if (schedule != null) {
+            retVal.setSchedule(loadSchedule(schedule));
+        }
+
+        Long transferBufferSize = fetchOptional("transferBufferSize", parsedConfiguration);
+        if (transferBufferSize != null) {
+            retVal.setTransferBufferSize(transferBufferSize.intValue());
+        }
+
+        Long metricsPort = fetchOptional("metricsPort", parsedConfiguration);
+        if (metricsPort != null) {
+            retVal.setMetricsPort(metricsPort.intValue());
+        }
+
+        Long queueCapacity = fetchOptional("queueCapacity", parsedConfiguration);
+        if (queueCapacity != null) {
+            retVal.setQueueCapacity(queueCapacity.intValue());
+        }
+
+        Long uploadSettleTime = fetchOptional("uploadSettleTime", parsedConfiguration);
+        if (uploadSettleTime != null) {
+            retVal.setUploadSettleTime(uploadSettleTime);
+        }
+
+        String downloadPriority = fetchOptional("downloadPriority", parsedConfiguration);
+        if (downloadPriority != null) {
+            retVal.setDownloadPriority(downloadPriority);
+        }
+
+        JSONArray priorityPatterns = fetchOptional("priorityPatterns", parsedConfiguration);
+        if (priorityPatterns != null) {
+            List<String> patterns = new ArrayList<String>();
+
+            for (Object pattern : priorityPatterns) {
+                patterns.add((String)pattern);
+            }
+
+            retVal.setPriorityPatterns(patterns);
+        }
+
+        Long transferWorkers = fetchOptional("transferWorkers", parsedConfiguration);
+        if (transferWorkers != null) {
+            retVal.setTransferWorkers(transferWorkers.intValue());
+        }
+
+        Long retryDelay = fetchOptional("retryDelay", parsedConfiguration);
+        if (retryDelay != null) {
+            retVal.setRetryDelay(retryDelay);
+        }
+
+        String fileIndex = fetchOptional("fileIndex", parsedConfiguration);
+        if (fileIndex != null) {
+            retVal.setFileIndex(fileIndex);
+        }
+
+        Boolean fileIndexBloomFilter = fetchOptional("fileIndexBloomFilter", parsedConfiguration);
+        if (fileIndexBloomFilter != null) {
+            retVal.setFileIndexBloomFilter(fileIndexBloomFilter);
+        }
+
+        Long databaseBatchSize = fetchOptional("databaseBatchSize", parsedConfiguration);
+        if (databaseBatchSize != null) {
+            retVal.setDatabaseBatchSize(databaseBatchSize.intValue());
+        }
+
+        Long databaseBatchInterval = fetchOptional("databaseBatchInterval", parsedConfiguration);
+        if (databaseBatchInterval != null) {
+            retVal.setDatabaseBatchInterval(databaseBatchInterval);
+        }
+
+        String databaseSynchronous = fetchOptional("databaseSynchronous", parsedConfiguration);
+        if (databaseSynchronous != null) {
+            retVal.setDatabaseSynchronous(databaseSynchronous);
+        }
+
+        Long databaseMmapSize = fetchOptional("databaseMmapSize", parsedConfiguration);
+        if (databaseMmapSize != null) {
+            retVal.setDatabaseMmapSize(databaseMmapSize);
+        }
+
+        Long databaseCacheSize = fetchOptional("databaseCacheSize", parsedConfiguration);
+        if (databaseCacheSize != null) {
+            retVal.setDatabaseCacheSize(databaseCacheSize);
+        }
+
+        Long databaseReaders = fetchOptional("databaseReaders", parsedConfiguration);
+        if (databaseReaders != null) {
+            retVal.setDatabaseReaders(databaseReaders.intValue());
+        }
+
         logger.debug("Instantiated successfully.");
 
         return retVal;
     }
 
+    /**
+     * Loads the schedule entries contained within the specified JSONArray.
+     * @param schedule The array containing the schedule entries.
+     * @return The list of loaded schedule entries.
+     * @throws RuntimeException Thrown if an entry is missing its start or end hour.
+     */
+    private static List<ScheduleEntry> loadSchedule(JSONArray schedule) throws RuntimeException {
+        List<ScheduleEntry> retVal = new ArrayList<ScheduleEntry>();
+
+        for (Object item : schedule) {
+            JSONObject object = (JSONObject)item;
+
+            ScheduleEntry entry = new ScheduleEntry(((Long)fetch("start", object)).intValue(),
+                    ((Long)fetch("end", object)).intValue());
+
+            Long interval = fetchOptional("interval", object);
+            if (interval != null) {
+                entry.setInterval(interval.intValue());
+            }
+
+            entry.setDownloadLimit((Long)fetchOptional("downloadLimit", object));
+            entry.setDownloadTransferLimit((Long)fetchOptional("downloadTransferLimit", object));
+            entry.setUploadLimit((Long)fetchOptional("uploadLimit", object));
+            entry.setUploadTransferLimit((Long)fetchOptional("uploadTransferLimit", object));
+
+            retVal.add(entry);
+        }
+
+        return retVal;
+    }
+
     /**
      * Fetches the specified field from the specified JSONObject, or throws a RuntimeException if the fetch fails.
      * @param fieldName The name of the field to fetch.
@@ -107,4 +278,16 @@ public class ConfigurationLoader {
 
         return retVal;
     }
+
+    /**
+     * Fetches the specified optional field from the specified JSONObject.
+     * @param fieldName The name of the field to fetch.
+     * @param object The object from which the field is to be fetched.
+     * @param <T> The expected type of the field's value.
+     * @return The fetched value, or null if the field is not present.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T fetchOptional(String fieldName, JSONObject object) {
+        return (T)object.get(fieldName);
+    }
 }
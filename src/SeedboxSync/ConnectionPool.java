@@ -0,0 +1,506 @@
+/****************************************************************************
+ *
+ * ConnectionPool.java
+ *
+ * Maintains a bounded pool of authenticated FTP sessions.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPReply;
+
+/**
+ * Maintains a bounded pool of authenticated FTP sessions.
+ */
+public class ConnectionPool {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The length of time a session may sit idle before it is checked for liveness when leased, in nanoseconds.
+     */
+    private static final Long healthCheckInterval = 30000000000L;
+
+    /**
+     * The Server address.
+     */
+    private String address;
+
+    /**
+     * The Server port.
+     */
+    private Integer port;
+
+    /**
+     * The username to use when connecting to the Server.
+     */
+    private String username;
+
+    /**
+     * The password to use when connecting to the Server.
+     */
+    private String password;
+
+    /**
+     * The number of sessions to establish when the pool is opened.
+     */
+    private Integer minimumSize;
+
+    /**
+     * The maximum number of sessions which may be open at any one time.
+     */
+    private volatile Integer maximumSize;
+
+    /**
+     * The sessions which are connected and not currently leased.
+     */
+    private BlockingDeque<FTPSession> idle;
+
+    /**
+     * The permits limiting the number of concurrently leased sessions.
+     */
+    private ResizableSemaphore permits;
+
+    /**
+     * The permits limiting the number of sessions concurrently leased for bulk transfers, which is one less than the
+     * maximum size so that a session is always available for short operations.
+     */
+    private ResizableSemaphore bulkPermits;
+
+    /**
+     * The sessions currently leased for bulk transfers.
+     */
+    private Set<FTPSession> bulkLeases;
+
+    /**
+     * The number of sessions currently open, both idle and leased.
+     */
+    private AtomicInteger size;
+
+    /**
+     * The time at which each idle session was last returned to the pool.
+     */
+    private ConcurrentHashMap<FTPSession, Long> lastUsed;
+
+    /**
+     * The number of logins performed by the pool.
+     */
+    private AtomicLong loginCount;
+
+    /**
+     * The number of sessions which were discarded after failing a liveness check or an operation.
+     */
+    private AtomicLong discardCount;
+
+    /**
+     * Initializes a new instance of the ConnectionPool class.
+     * @param address The Server address.
+     * @param port The Server port.
+     * @param username The username to use when connecting to the Server.
+     * @param password The password to use when connecting to the Server.
+     * @param minimumSize The number of sessions to establish when the pool is opened.
+     * @param maximumSize The maximum number of sessions which may be open at any one time.
+     */
+    public ConnectionPool(String address, Integer port, String username, String password, Integer minimumSize,
+                          Integer maximumSize) {
+        this.address = address;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.minimumSize = Math.max(minimumSize, 1);
+        this.maximumSize = Math.max(maximumSize, this.minimumSize);
+
+        idle = new LinkedBlockingDeque<FTPSession>();
+        permits = new ResizableSemaphore(this.maximumSize);
+        bulkPermits = new ResizableSemaphore(getBulkSize(this.maximumSize));
+        bulkLeases = Collections.newSetFromMap(new ConcurrentHashMap<FTPSession, Boolean>());
+        size = new AtomicInteger(0);
+        lastUsed = new ConcurrentHashMap<FTPSession, Long>();
+        loginCount = new AtomicLong(0);
+        discardCount = new AtomicLong(0);
+    }
+
+    /**
+     * Gets the number of sessions to establish when the pool is opened.
+     * @return The number of sessions to establish when the pool is opened.
+     */
+    public Integer getMinimumSize() {
+        return minimumSize;
+    }
+
+    /**
+     * Gets the maximum number of sessions which may be open at any one time.
+     * @return The maximum number of sessions which may be open at any one time.
+     */
+    public Integer getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Sets the maximum number of sessions which may be open at any one time.  When the maximum is lowered, sessions
+     * already leased beyond the new maximum are closed as they are returned.
+     * @param maximumSize The maximum number of sessions, which is raised to the minimum size if lower.
+     */
+    public synchronized void setMaximumSize(Integer maximumSize) {
+        Integer size = Math.max(maximumSize, minimumSize);
+        Integer change = size - this.maximumSize;
+        Integer bulkChange = getBulkSize(size) - getBulkSize(this.maximumSize);
+
+        if (bulkChange > 0) {
+            bulkPermits.release(bulkChange);
+        }
+        else if (bulkChange < 0) {
+            bulkPermits.reduce(-bulkChange);
+        }
+
+        if (change > 0) {
+            permits.release(change);
+        }
+        else if (change < 0) {
+            permits.reduce(-change);
+
+            // close idle sessions in excess of the new maximum
+            while (this.size.get() > size) {
+                FTPSession client = idle.pollLast();
+
+                if (client == null) {
+                    break;
+                }
+
+                destroy(client);
+            }
+        }
+
+        this.maximumSize = size;
+    }
+
+    /**
+     * Gets the maximum number of sessions which may be leased for bulk transfers at any one time.
+     * @return The maximum number of sessions which may be leased for bulk transfers.
+     */
+    public Integer getMaximumBulkSize() {
+        return getBulkSize(maximumSize);
+    }
+
+    /**
+     * Gets the number of sessions currently open, both idle and leased.
+     * @return The number of sessions currently open.
+     */
+    public Integer getSize() {
+        return size.get();
+    }
+
+    /**
+     * Gets the number of open sessions which are not currently leased.
+     * @return The number of open sessions which are not currently leased.
+     */
+    public Integer getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the number of logins performed by the pool since it was created.
+     * @return The number of logins performed by the pool.
+     */
+    public Long getLoginCount() {
+        return loginCount.get();
+    }
+
+    /**
+     * Gets the number of sessions which were discarded after failing a liveness check or an operation.
+     * @return The number of discarded sessions.
+     */
+    public Long getDiscardCount() {
+        return discardCount.get();
+    }
+
+    /**
+     * Establishes sessions until the pool contains at least the minimum number of open sessions.
+     * @throws Exception Thrown if an exception is encountered while establishing a session.
+     */
+    public void open() throws Exception {
+        logger.debug("Warming connection pool with " + minimumSize + " session(s)...");
+
+        while (size.get() < minimumSize && permits.tryAcquire()) {
+            try {
+                idle.offerLast(createConnection());
+            }
+            finally {
+                permits.release();
+            }
+        }
+
+        logger.debug("Connection pool contains " + size.get() + " session(s).");
+    }
+
+    /**
+     * Leases a connected session from the pool, blocking until one is available if the pool is exhausted.
+     * Sessions which have been idle for longer than the health check interval are checked for liveness before they
+     * are handed out, and replaced if the check fails.
+     * @return The leased session.
+     * @throws Exception Thrown if a new session is needed and can't be established.
+     */
+    public FTPSession lease() throws Exception {
+        permits.acquire();
+
+        try {
+            FTPSession client;
+
+            while ((client = idle.pollFirst()) != null) {
+                if (isHealthy(client)) {
+                    return client;
+                }
+
+                logger.debug("Discarding stale session.");
+                discardCount.incrementAndGet();
+                destroy(client);
+            }
+
+            return createConnection();
+        }
+        catch (Exception ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Leases a connected session for a bulk transfer, blocking until one is available.  Bulk transfers may not lease
+     * the last session in the pool, so that listings and uploads are not held up behind long downloads.
+     * @return The leased session.
+     * @throws Exception Thrown if a new session is needed and can't be established.
+     */
+    public FTPSession leaseBulk() throws Exception {
+        bulkPermits.acquire();
+
+        try {
+            FTPSession retVal = lease();
+            bulkLeases.add(retVal);
+
+            return retVal;
+        }
+        catch (Exception ex) {
+            bulkPermits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the specified session to the pool.
+     * @param client The session to return.
+     */
+    public void release(FTPSession client) {
+        if (client.isConnected() && size.get() <= maximumSize) {
+            lastUsed.put(client, System.nanoTime());
+            idle.offerFirst(client);
+        }
+        else {
+            destroy(client);
+        }
+
+        releasePermits(client);
+    }
+
+    /**
+     * Closes and discards the specified session, which must not be returned to the pool.  Used when an
+     * operation has left the session in an unknown state.
+     * @param client The session to discard.
+     */
+    public void invalidate(FTPSession client) {
+        discardCount.incrementAndGet();
+        destroy(client);
+        releasePermits(client);
+    }
+
+    /**
+     * Closes all idle sessions.  Sessions which are currently leased are returned to the pool as usual.
+     */
+    public void close() {
+        FTPSession client;
+
+        while ((client = idle.pollFirst()) != null) {
+            destroy(client);
+        }
+    }
+
+    /**
+     * Releases the permits held by the lease of the specified session.
+     * @param client The leased session.
+     */
+    private void releasePermits(FTPSession client) {
+        if (bulkLeases.remove(client)) {
+            bulkPermits.release();
+        }
+
+        permits.release();
+    }
+
+    /**
+     * Returns the number of sessions which may be leased for bulk transfers from a pool of the specified size.  One
+     * session is reserved unless the pool has only one.
+     * @param maximumSize The maximum size of the pool.
+     * @return The number of sessions which may be leased for bulk transfers.
+     */
+    private static Integer getBulkSize(Integer maximumSize) {
+        return Math.max(maximumSize - 1, 1);
+    }
+
+    /**
+     * Returns a value indicating whether the specified session is connected and responsive.  Sessions which were
+     * used within the health check interval are assumed to be responsive, saving a round trip.
+     * @param client The session to check.
+     * @return A value indicating whether the specified session is connected and responsive.
+     */
+    private Boolean isHealthy(FTPSession client) {
+        if (!client.isConnected()) {
+            return false;
+        }
+
+        Long used = lastUsed.get(client);
+
+        if (used != null && System.nanoTime() - used < healthCheckInterval) {
+            return true;
+        }
+
+        try {
+            return client.sendNoOp();
+        }
+        catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Disconnects the specified session and removes it from the pool's accounting.
+     * @param client The session to disconnect.
+     */
+    private void destroy(FTPSession client) {
+        size.decrementAndGet();
+        lastUsed.remove(client);
+
+        try {
+            if (client.isConnected()) {
+                client.disconnect();
+            }
+        }
+        catch (IOException ex) {
+            logger.debug("Exception thrown while disconnecting session: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Establishes, authenticates and configures a new session.
+     * @return The new session.
+     * @throws Exception Thrown if an exception is encountered during the connect or login operations.
+     */
+    private FTPSession createConnection() throws Exception {
+        FTPSession client = createSession();
+        client.setAutodetectUTF8(true);
+
+        logger.info("Connecting to '" + address + "'...");
+        client.connect(address, port);
+
+        // once connected, the session is disconnected if any later step fails, so that the socket isn't leaked
+        try {
+            if (!FTPReply.isPositiveCompletion(client.getReplyCode())) {
+                throw new Exception("Server '" + address + "' refused the connection.");
+            }
+
+            logger.info("Logging in with credentials '" + username + "', '<hidden>'");
+
+            loginCount.incrementAndGet();
+
+            if (!client.login(username, password)) {
+                throw new Exception("Login failed for user '" + username + "'.");
+            }
+
+            logger.debug("Configuring connection...");
+            client.setFileType(FTP.BINARY_FILE_TYPE, FTP.BINARY_FILE_TYPE);
+            client.setBufferSize(1024 * 1024);
+            client.setControlKeepAliveTimeout(300);
+        }
+        catch (Exception ex) {
+            try {
+                client.disconnect();
+            }
+            catch (IOException disconnectEx) {
+                logger.debug("Exception thrown while disconnecting session: " + disconnectEx.getMessage());
+            }
+
+            throw ex;
+        }
+
+        size.incrementAndGet();
+
+        logger.info("Connection established.");
+
+        return client;
+    }
+
+    /**
+     * Creates an unconnected session.
+     * @return The new session.
+     */
+    FTPSession createSession() {
+        return new FTPSession();
+    }
+
+    /**
+     * A fair semaphore whose number of permits can be reduced.
+     */
+    private static class ResizableSemaphore extends Semaphore {
+        /**
+         * The version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Initializes a new instance of the ResizableSemaphore class.
+         * @param permits The initial number of permits.
+         */
+        public ResizableSemaphore(Integer permits) {
+            super(permits, true);
+        }
+
+        /**
+         * Removes the specified number of permits without blocking.  Permits in use are removed as they are released.
+         * @param reduction The number of permits to remove.
+         */
+        public void reduce(Integer reduction) {
+            reducePermits(reduction);
+        }
+    }
+}
@@ -26,6 +26,14 @@
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,7 +47,9 @@ import java.sql.Statement;
 import java.sql.PreparedStatement;
 
 /**
- * Represents the application Database and handles all database I/O.
+ * Represents the application Database and handles all database I/O.  Writes are made through a single connection;
+ * when configured, lookups are made through a pool of read-only connections to a database in write-ahead log mode, so
+ * that they see the last committed state without waiting for a write in progress to be synced.
  */
 public class Database implements IDatabase {
     /**
@@ -53,21 +63,69 @@ public class Database implements IDatabase {
     private java.io.File file;
 
     /**
-     * The SQLite database connection.
+     * The connection through which every write is made.
      */
-    private Connection connection;
+    private Session writer;
 
     /**
-     * Initializes a new instance of the Database class with the specified file.
+     * The idle read-only connections through which lookups are made, or null if lookups share the writer.
+     */
+    private ArrayBlockingQueue<Session> readers;
+
+    /**
+     * The read-only connections through which lookups are made.
+     */
+    private List<Session> readerSessions = new ArrayList<Session>();
+
+    /**
+     * The completed Files waiting to be written by the next flush, keyed by name.
+     */
+    private LinkedHashMap<String, File> pending = new LinkedHashMap<String, File>();
+
+    /**
+     * The number of pending completed Files which triggers a flush.
+     */
+    private volatile Integer batchSize = 100;
+
+    /**
+     * The longest time, in milliseconds, for which a completed File may wait to be written.
+     */
+    private volatile Long batchInterval = 1000L;
+
+    /**
+     * The executor which flushes pending completed Files when the batch interval elapses, created when first needed.
+     */
+    private ScheduledExecutorService flusher;
+
+    /**
+     * The scheduled flush of the pending completed Files, or null if none is scheduled.
+     */
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Initializes a new instance of the Database class with the specified file, using a single connection with the
+     * default SQLite settings.
      * @param file The file from which the database is to be initialized.
      * @throws SQLException Thrown if the database can't be initialized.
      */
     public Database(java.io.File file) throws SQLException {
+        this(file, null);
+    }
+
+    /**
+     * Initializes a new instance of the Database class with the specified file.  If a Configuration is specified the
+     * database is opened in write-ahead log mode with the configured settings, and lookups are made through the
+     * configured number of read-only connections.
+     * @param file The file from which the database is to be initialized.
+     * @param configuration The Configuration supplying the database settings, or null to use the SQLite defaults.
+     * @throws SQLException Thrown if the database can't be initialized.
+     */
+    public Database(java.io.File file, Configuration configuration) throws SQLException {
         this.file = file;
 
         logger.info("Establishing database connection to '" + file.getName() + "'...");
 
-        createConnection();
+        writer = new Session(createConnection(configuration, false));
 
         logger.info("Connection established successfully.");
         logger.info("Verifying schema...");
@@ -80,7 +138,26 @@ public class Database implements IDatabase {
             logger.info("Schema created successfully.");
         }
 
+        initializeGeneration();
+
         logger.info("Schema verified.");
+
+        if (configuration != null) {
+            batchSize = configuration.getDatabaseBatchSize();
+            batchInterval = configuration.getDatabaseBatchInterval();
+
+            readers = new ArrayBlockingQueue<Session>(configuration.getDatabaseReaders());
+
+            for (int i = 0; i < configuration.getDatabaseReaders(); i++) {
+                Session reader = new Session(createConnection(configuration, true));
+
+                readerSessions.add(reader);
+                readers.add(reader);
+            }
+
+            logger.info("Opened " + readerSessions.size() + " read-only connection(s).");
+        }
+
         logger.info("Database connection is ready.");
     }
 
@@ -101,30 +178,68 @@ public class Database implements IDatabase {
      * @throws SQLException Thrown if an exception is encountered while retrieving the record.
      */
     public File getFile(String fileName) throws SQLException {
+        synchronized (pending) {
+            File file = pending.get(fileName);
+
+            if (file != null) {
+                return file;
+            }
+        }
+
         logger.debug("Fetching list of files from the database...");
 
-        String query = "SELECT Name, Size, Timestamp, AddedTimestamp, DownloadedTimestamp FROM Downloads " +
-                "WHERE Name = ?";
+        DatabaseEvent event = new DatabaseEvent();
+        event.begin();
 
-        PreparedStatement statement = connection.prepareStatement(query);
+        long start = System.nanoTime();
 
-        statement.setString(1, fileName);
+        try {
+            String query = "SELECT Name, Size, Timestamp, AddedTimestamp, DownloadedTimestamp FROM Downloads " +
+                    "WHERE Name = ?";
 
-        ResultSet result = statement.executeQuery();
+            Session reader = acquireReader();
 
-        logger.debug("Processing result set...");
+            try {
+                PreparedStatement statement = reader.prepare(query);
 
-        while (result.next()) {
-            String name = result.getString("Name");
-            Long size = result.getLong("Size");
-            Timestamp timestamp = result.getTimestamp("Timestamp");
-            Timestamp addedTimestamp = result.getTimestamp("AddedTimestamp");
-            Timestamp downloadedTimestamp = result.getTimestamp("DownloadedTimestamp");
+                synchronized (statement) {
+                    statement.setString(1, fileName);
 
-            return new File(name, size, timestamp, addedTimestamp, downloadedTimestamp);
+                    ResultSet result = statement.executeQuery();
+
+                    try {
+                        logger.debug("Processing result set...");
+
+                        while (result.next()) {
+                            String name = result.getString("Name");
+                            Long size = result.getLong("Size");
+                            Timestamp timestamp = result.getTimestamp("Timestamp");
+                            Timestamp addedTimestamp = result.getTimestamp("AddedTimestamp");
+                            Timestamp downloadedTimestamp = result.getTimestamp("DownloadedTimestamp");
+
+                            event.rows = 1;
+
+                            return new File(name, size, timestamp, addedTimestamp, downloadedTimestamp);
+                        }
+
+                        return null;
+                    }
+                    finally {
+                        result.close();
+                    }
+                }
+            }
+            finally {
+                releaseReader(reader);
+            }
         }
+        finally {
+            Metrics.getFileLatency.observeSince(start);
 
-        return null;
+            event.operation = "getFile";
+            event.file = fileName;
+            event.commit();
+        }
     }
 
     /**
@@ -135,66 +250,257 @@ public class Database implements IDatabase {
     public List<File> getFiles() throws SQLException {
         logger.debug("Fetching list of files from the database...");
 
-        List<File> retVal = new ArrayList<File>();
+        DatabaseEvent event = new DatabaseEvent();
+        event.begin();
 
-        String query = "SELECT Name, Size, Timestamp, AddedTimestamp, DownloadedTimestamp FROM Downloads";
+        long start = System.nanoTime();
 
-        Statement statement = connection.createStatement();
-        ResultSet result = statement.executeQuery(query);
+        try {
+            List<File> retVal = new ArrayList<File>();
+
+            String query = "SELECT Name, Size, Timestamp, AddedTimestamp, DownloadedTimestamp FROM Downloads";
+
+            Session reader = acquireReader();
+            Statement statement = null;
+
+            try {
+                statement = reader.getConnection().createStatement();
+
+                ResultSet result = statement.executeQuery(query);
+
+                logger.debug("Processing result set...");
+
+                while (result.next()) {
+                    String name = result.getString("Name");
+                    Long size = result.getLong("Size");
+                    Timestamp timestamp = result.getTimestamp("Timestamp");
+                    Timestamp addedTimestamp = result.getTimestamp("AddedTimestamp");
+                    Timestamp downloadedTimestamp = result.getTimestamp("DownloadedTimestamp");
+
+                    retVal.add(new File(name, size, timestamp, addedTimestamp, downloadedTimestamp));
+                }
 
-        logger.debug("Processing result set...");
+                result.close();
+            }
+            finally {
+                if (statement != null) {
+                    statement.close();
+                }
+
+                releaseReader(reader);
+            }
 
-        while (result.next()) {
-            String name = result.getString("Name");
-            Long size = result.getLong("Size");
-            Timestamp timestamp = result.getTimestamp("Timestamp");
-            Timestamp addedTimestamp = result.getTimestamp("AddedTimestamp");
-            Timestamp downloadedTimestamp = result.getTimestamp("DownloadedTimestamp");
+            event.rows = retVal.size();
 
-            retVal.add(new File(name, size, timestamp, addedTimestamp, downloadedTimestamp));
+            return retVal;
         }
+        finally {
+            Metrics.getFilesLatency.observeSince(start);
 
-        return retVal;
+            event.operation = "getFiles";
+            event.commit();
+        }
     }
 
     /**
-     * Adds the specified File to the database.
-     * @param file The File to add.
-     * @throws SQLException Thrown if an exception is encountered while adding the record.
+     * Passes each File stored in the database to the specified visitor, one at a time, so that the whole table need
+     * not be held in memory.
+     * @param visitor The visitor to which each File is passed.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the Files.
      */
-    public void addFile(File file) throws SQLException {
-        logger.debug("Adding file '" + file.getName() + "' to database...");
+    public void visitFiles(Visitor visitor) throws SQLException {
+        logger.debug("Visiting the files in the database...");
 
-        String query = "INSERT INTO Downloads (Name, Size, Timestamp, AddedTimestamp) VALUES(?, ?, ?, ?)";
+        DatabaseEvent event = new DatabaseEvent();
+        event.begin();
 
-        PreparedStatement statement = null;
+        long start = System.nanoTime();
 
         try {
-            logger.debug("Preparing query...");
+            String query = "SELECT Name, Size, Timestamp, AddedTimestamp, DownloadedTimestamp FROM Downloads";
+
+            Session reader = acquireReader();
+            Statement statement = null;
+
+            try {
+                statement = reader.getConnection().createStatement();
 
-            statement = connection.prepareStatement(query);
+                ResultSet result = statement.executeQuery(query);
 
-            statement.setString(1, file.getName());
-            statement.setLong(2, file.getSize());
-            statement.setTimestamp(3, file.getTimestamp());
-            statement.setTimestamp(4, new Timestamp((new Date()).getTime()));
+                while (result.next()) {
+                    String name = result.getString("Name");
+                    Long size = result.getLong("Size");
+                    Timestamp timestamp = result.getTimestamp("Timestamp");
+                    Timestamp addedTimestamp = result.getTimestamp("AddedTimestamp");
+                    Timestamp downloadedTimestamp = result.getTimestamp("DownloadedTimestamp");
 
-            logger.debug("Executing update...");
+                    visitor.visit(new File(name, size, timestamp, addedTimestamp, downloadedTimestamp));
 
-            statement.executeUpdate();
+                    event.rows++;
+                }
+
+                result.close();
+            }
+            finally {
+                if (statement != null) {
+                    statement.close();
+                }
 
-            logger.debug("Query executed.");
+                releaseReader(reader);
+            }
+        }
+        finally {
+            Metrics.getFilesLatency.observeSince(start);
+
+            event.operation = "visitFiles";
+            event.commit();
         }
-        catch (SQLException ex) {
-            if (ex.getErrorCode() == 19) {
-                // constraint violated, reasonably certain it is the unique constraint on name.  ignore it.
+    }
+
+    /**
+     * Gets the number of Files stored in the database.
+     * @return The number of Files stored in the database.
+     * @throws SQLException Thrown if an exception is encountered while counting the Files.
+     */
+    public Integer getFileCount() throws SQLException {
+        DatabaseEvent event = new DatabaseEvent();
+        event.begin();
+
+        try {
+            Session reader = acquireReader();
+            Statement statement = null;
+
+            try {
+                statement = reader.getConnection().createStatement();
+
+                ResultSet result = statement.executeQuery("SELECT count(*) FROM Downloads");
+
+                result.next();
+
+                event.rows = 1;
+
+                Integer retVal = result.getInt(1);
+
+                result.close();
+
+                return retVal;
             }
-            else {
-                throw ex;
+            finally {
+                if (statement != null) {
+                    statement.close();
+                }
+
+                releaseReader(reader);
             }
         }
+        finally {
+            event.operation = "getFileCount";
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets the generation of the stored Files, a number which changes whenever a File is added, updated or removed.
+     * The generation is counted by triggers, so it changes even when the Files are modified outside the application.
+     * @return The generation of the stored Files.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the generation.
+     */
+    public Long getGeneration() throws SQLException {
+        DatabaseEvent event = new DatabaseEvent();
+        event.begin();
+
+        try {
+            Session reader = acquireReader();
+            Statement statement = null;
+
+            try {
+                statement = reader.getConnection().createStatement();
+
+                ResultSet result = statement.executeQuery("SELECT CAST(Value AS INTEGER) FROM Metadata " +
+                        "WHERE Key = 'Generation'");
 
-        statement.close();
+                result.next();
+
+                event.rows = 1;
+
+                Long retVal = result.getLong(1);
+
+                result.close();
+
+                return retVal;
+            }
+            finally {
+                if (statement != null) {
+                    statement.close();
+                }
+
+                releaseReader(reader);
+            }
+        }
+        finally {
+            event.operation = "getGeneration";
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns a value indicating whether a record matching the specified name exists.
+     * @param fileName The name of the File to find.
+     * @return A value indicating whether a record matching the specified name exists.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the record.
+     */
+    public Boolean contains(String fileName) throws SQLException {
+        return getFile(fileName) != null;
+    }
+
+    /**
+     * Adds the specified File to the database.
+     * @param file The File to add.
+     * @throws SQLException Thrown if an exception is encountered while adding the record.
+     */
+    public synchronized void addFile(File file) throws SQLException {
+        logger.debug("Adding file '" + file.getName() + "' to database...");
+
+        DatabaseEvent event = new DatabaseEvent();
+        event.begin();
+
+        long start = System.nanoTime();
+
+        try {
+            String query = "INSERT INTO Downloads (Name, Size, Timestamp, AddedTimestamp) VALUES(?, ?, ?, ?)";
+
+            PreparedStatement statement = writer.prepare(query);
+
+            synchronized (statement) {
+                try {
+                    statement.setString(1, file.getName());
+                    statement.setLong(2, file.getSize());
+                    statement.setTimestamp(3, file.getTimestamp());
+                    statement.setTimestamp(4, new Timestamp((new Date()).getTime()));
+
+                    logger.debug("Executing update...");
+
+                    event.rows = statement.executeUpdate();
+
+                    logger.debug("Query executed.");
+                }
+                catch (SQLException ex) {
+                    if (ex.getErrorCode() == 19) {
+                        // constraint violated, reasonably certain it is the unique constraint on name.  ignore it.
+                    }
+                    else {
+                        throw ex;
+                    }
+                }
+            }
+        }
+        finally {
+            Metrics.addFileLatency.observeSince(start);
+
+            event.operation = "addFile";
+            event.file = file.getName();
+            event.commit();
+        }
     }
 
     /**
@@ -213,28 +519,275 @@ public class Database implements IDatabase {
      * @param name The name of the File to update.
      * @throws SQLException Thrown if an exception is encountered while updating the record.
      */
-    public void setDownloadedTimestamp(String name) throws SQLException {
+    public synchronized void setDownloadedTimestamp(String name) throws SQLException {
         logger.debug("Updating download timestamp for file '" + name + "'...");
 
-        String query = "UPDATE Downloads SET DownloadedTimestamp = ? WHERE Name = ?";
+        DatabaseEvent event = new DatabaseEvent();
+        event.begin();
+
+        long start = System.nanoTime();
+
+        try {
+            String query = "UPDATE Downloads SET DownloadedTimestamp = ? WHERE Name = ?";
+
+            PreparedStatement statement = writer.prepare(query);
+
+            synchronized (statement) {
+                statement.setTimestamp(1, new Timestamp((new Date()).getTime()));
+                statement.setString(2, name);
+
+                logger.debug("Executing update...");
+
+                event.rows = statement.executeUpdate();
+            }
+        }
+        finally {
+            Metrics.setDownloadedTimestampLatency.observeSince(start);
+
+            event.operation = "setDownloadedTimestamp";
+            event.file = name;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records the specified File as downloaded, adding it to the database if it is not already present.  The record is
+     * written with those of other completed Files, in a single transaction, once the batch size is reached or the batch
+     * interval elapses, whichever comes first; until then it is returned by lookups as though it had been written.
+     * @param file The downloaded File.
+     * @throws SQLException Thrown if an exception is encountered while writing a full batch.
+     */
+    public void addDownloadedFile(File file) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Timestamp addedTimestamp = file.getAddedTimestamp() != null ? file.getAddedTimestamp() : now;
+
+        Boolean full;
+
+        synchronized (pending) {
+            pending.put(file.getName(), new File(file.getName(), file.getSize(), file.getTimestamp(), addedTimestamp,
+                    now));
+
+            full = pending.size() >= batchSize;
+
+            if (!full) {
+                scheduleFlush();
+            }
+        }
+
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the pending completed Files to the database in a single transaction.  Each File is written with one
+     * statement which inserts the record, or replaces it while keeping the time at which it was first added.  If the
+     * transaction fails the Files remain pending and the flush is retried after the batch interval.
+     * @throws SQLException Thrown if an exception is encountered while writing the Files.
+     */
+    public synchronized void flush() throws SQLException {
+        List<File> batch;
+
+        synchronized (pending) {
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+
+            batch = new ArrayList<File>(pending.values());
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        logger.debug("Writing " + batch.size() + " completed file(s) to the database...");
+
+        DatabaseEvent event = new DatabaseEvent();
+        event.begin();
 
-        PreparedStatement statement = connection.prepareStatement(query);
+        long start = System.nanoTime();
 
-        statement.setTimestamp(1, new Timestamp((new Date()).getTime()));
-        statement.setString(2, name);
+        try {
+            String query = "INSERT OR REPLACE INTO Downloads (Name, Size, Timestamp, AddedTimestamp, " +
+                    "DownloadedTimestamp) VALUES(?, ?, ?, " +
+                    "COALESCE((SELECT AddedTimestamp FROM Downloads WHERE Name = ?), ?), ?)";
+
+            PreparedStatement statement = writer.prepare(query);
+
+            writer.getConnection().setAutoCommit(false);
+
+            try {
+                synchronized (statement) {
+                    try {
+                        for (File file : batch) {
+                            statement.setString(1, file.getName());
+                            statement.setLong(2, file.getSize());
+                            statement.setTimestamp(3, file.getTimestamp());
+                            statement.setString(4, file.getName());
+                            statement.setTimestamp(5, file.getAddedTimestamp());
+                            statement.setTimestamp(6, file.getDownloadedTimestamp());
+                            statement.addBatch();
+                        }
+
+                        statement.executeBatch();
+                    }
+                    finally {
+                        statement.clearBatch();
+                    }
+                }
+
+                writer.getConnection().commit();
+
+                event.rows = batch.size();
+            }
+            catch (SQLException ex) {
+                writer.getConnection().rollback();
 
-        logger.debug("Executing update...");
+                synchronized (pending) {
+                    scheduleFlush();
+                }
 
-        statement.executeUpdate();
-        statement.close();
+                throw ex;
+            }
+            finally {
+                writer.getConnection().setAutoCommit(true);
+            }
+
+            // files completed again while the batch was written stay pending with their newer record
+            synchronized (pending) {
+                for (File file : batch) {
+                    if (pending.get(file.getName()) == file) {
+                        pending.remove(file.getName());
+                    }
+                }
+            }
+
+            logger.debug("Completed files written.");
+        }
+        finally {
+            Metrics.flushLatency.observeSince(start);
+
+            event.operation = "flush";
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets the number of pending completed Files which triggers a flush.
+     * @return The number of pending completed Files which triggers a flush.
+     */
+    public Integer getBatchSize() {
+        return batchSize;
     }
 
     /**
-     * Closes the database connection.
+     * Sets the number of pending completed Files which triggers a flush.
+     * @param batchSize The number of pending completed Files which triggers a flush.
+     */
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets the longest time, in milliseconds, for which a completed File may wait to be written.
+     * @return The longest time, in milliseconds, for which a completed File may wait to be written.
+     */
+    public Long getBatchInterval() {
+        return batchInterval;
+    }
+
+    /**
+     * Sets the longest time, in milliseconds, for which a completed File may wait to be written.
+     * @param batchInterval The longest time, in milliseconds, for which a completed File may wait to be written.
+     */
+    public void setBatchInterval(Long batchInterval) {
+        this.batchInterval = batchInterval;
+    }
+
+    /**
+     * Writes the pending completed Files and closes the database connection.
      * @throws SQLException Thrown if an exception is encountered while closing the connection.
      */
     public void close() throws SQLException {
-        connection.close();
+        try {
+            flush();
+        }
+        finally {
+            synchronized (pending) {
+                if (flusher != null) {
+                    flusher.shutdownNow();
+                    flusher = null;
+                }
+            }
+
+            for (Session reader : readerSessions) {
+                reader.close();
+            }
+
+            writer.close();
+        }
+    }
+
+    /**
+     * Schedules a flush of the pending completed Files after the batch interval, if one is not already scheduled.
+     * The caller must hold the lock on the pending Files.
+     */
+    private void scheduleFlush() {
+        if (scheduledFlush != null) {
+            return;
+        }
+
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "database-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        scheduledFlush = flusher.schedule(new Runnable() {
+            public void run() {
+                try {
+                    flush();
+                }
+                catch (SQLException ex) {
+                    logger.warn("Error writing completed files to the database: " + ex.getMessage());
+                }
+            }
+        }, batchInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes an idle read-only connection from the pool, waiting for one if all are in use, or returns the writer if
+     * there is no pool.
+     * @return The connection through which to make a lookup.
+     * @throws SQLException Thrown if the thread is interrupted while waiting for a connection.
+     */
+    private Session acquireReader() throws SQLException {
+        if (readers == null) {
+            return writer;
+        }
+
+        try {
+            return readers.take();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection.", ex);
+        }
+    }
+
+    /**
+     * Returns the specified connection to the pool of idle read-only connections.
+     * @param reader The connection returned by acquireReader().
+     */
+    private void releaseReader(Session reader) {
+        if (reader != writer) {
+            readers.add(reader);
+        }
     }
 
     /**
@@ -247,16 +800,24 @@ public class Database implements IDatabase {
 
         String query = "SELECT count(*) FROM sqlite_master WHERE type='table' AND name='Metadata'";
 
-        Statement statement = connection.createStatement();
-        ResultSet result = statement.executeQuery(query);
+        Statement statement = writer.getConnection().createStatement();
+
+        try {
+            ResultSet result = statement.executeQuery(query);
+
+            result.next();
 
-        result.next();
+            if (result.getInt(1) == 1) {
+                retVal = true;
+            }
+            else {
+                retVal = false;
+            }
 
-        if (result.getInt(1) == 1) {
-            retVal = true;
+            result.close();
         }
-        else {
-            retVal = false;
+        finally {
+            statement.close();
         }
 
         return retVal;
@@ -276,7 +837,7 @@ public class Database implements IDatabase {
                 "AddedTimestamp DATETIME NOT NULL, " +
                 "DownloadedTimestamp DATETIME)";
 
-        Statement downloadsStatement = connection.createStatement();
+        Statement downloadsStatement = writer.getConnection().createStatement();
         downloadsStatement.executeUpdate(downloadsQuery);
         downloadsStatement.close();
 
@@ -284,7 +845,7 @@ public class Database implements IDatabase {
         logger.debug("Creating Metadata table...");
         String metadataQuery = "CREATE TABLE Metadata (Key TEXT PRIMARY KEY NOT NULL, Value TEXT NOT NULL)";
 
-        Statement metadataStatement = connection.createStatement();
+        Statement metadataStatement = writer.getConnection().createStatement();
         metadataStatement.executeUpdate(metadataQuery);
         metadataStatement.close();
 
@@ -292,7 +853,7 @@ public class Database implements IDatabase {
         logger.debug("Inserting SchemaVersion...");
         String insertVersionQuery = "INSERT INTO Metadata (Key, Value) VALUES(?, ?)";
 
-        PreparedStatement insertVersionStatement = connection.prepareStatement(insertVersionQuery);
+        PreparedStatement insertVersionStatement = writer.getConnection().prepareStatement(insertVersionQuery);
 
         insertVersionStatement.setString(1, "SchemaVersion");
         insertVersionStatement.setString(2, "1.0");
@@ -302,14 +863,138 @@ public class Database implements IDatabase {
     }
 
     /**
-     * Establishes the database connection.
+     * Creates the Generation row in the Metadata table and the triggers which advance it whenever a row of the
+     * Downloads table is inserted, updated or deleted, if they don't already exist.  Databases created before the
+     * generation was introduced are upgraded when they are opened.
+     * @throws SQLException Thrown if an exception is encountered while creating the row or the triggers.
+     */
+    private void initializeGeneration() throws SQLException {
+        Statement statement = writer.getConnection().createStatement();
+
+        try {
+            // the generation starts at 1 so that it never matches an index which is not in step with any generation
+            statement.executeUpdate("INSERT OR IGNORE INTO Metadata (Key, Value) VALUES('Generation', '1')");
+
+            String[][] triggers = new String[][] {
+                    { "DownloadsInserted", "INSERT" },
+                    { "DownloadsUpdated", "UPDATE" },
+                    { "DownloadsDeleted", "DELETE" }
+            };
+
+            for (String[] trigger : triggers) {
+                statement.executeUpdate("CREATE TRIGGER IF NOT EXISTS " + trigger[0] + " AFTER " + trigger[1] +
+                        " ON Downloads BEGIN UPDATE Metadata SET Value = Value + 1 WHERE Key = 'Generation'; END");
+            }
+        }
+        finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Establishes a database connection, applying the settings from the specified Configuration, if any.
+     * @param configuration The Configuration supplying the database settings, or null to use the SQLite defaults.
+     * @param readOnly A value indicating whether the connection is to be used only for lookups.
+     * @return The established connection.
      * @throws SQLException Thrown if an exception is encountered while establishing the connection.
      */
-    private void createConnection() throws SQLException {
+    private Connection createConnection(Configuration configuration, Boolean readOnly) throws SQLException {
         logger.debug("Attempting to connect to database in '" + file + "'...");
 
-        connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+        Connection retVal = DriverManager.getConnection("jdbc:sqlite:" + file);
+
+        if (configuration != null) {
+            Statement statement = retVal.createStatement();
+
+            try {
+                // the journal mode is stored in the file, so it is set only by the writer
+                if (!readOnly) {
+                    statement.execute("PRAGMA journal_mode = WAL");
+                }
+
+                statement.execute("PRAGMA synchronous = " + configuration.getDatabaseSynchronous().toUpperCase());
+                statement.execute("PRAGMA mmap_size = " + configuration.getDatabaseMmapSize());
+
+                // a negative cache size is a number of kibibytes rather than pages
+                statement.execute("PRAGMA cache_size = -" + configuration.getDatabaseCacheSize());
+
+                if (readOnly) {
+                    statement.execute("PRAGMA query_only = 1");
+                }
+            }
+            finally {
+                statement.close();
+            }
+        }
 
         logger.debug("Database connection established.");
+
+        return retVal;
+    }
+
+    /**
+     * A connection to the database and the statements prepared on it, which are reused until the connection is closed.
+     */
+    private static class Session {
+        /**
+         * The connection.
+         */
+        private Connection connection;
+
+        /**
+         * The statements prepared on the connection, keyed by query.
+         */
+        private HashMap<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+
+        /**
+         * Initializes a new instance of the Session class.
+         * @param connection The connection.
+         */
+        public Session(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Gets the connection.
+         * @return The connection.
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Retrieves the statement prepared on the connection for the specified query, preparing it if this is the
+         * first use of the query.  The statement may be shared by several threads, so callers must hold the lock on it
+         * while setting its parameters and executing it, and must not close it.
+         * @param query The query to prepare.
+         * @return The prepared statement.
+         * @throws SQLException Thrown if an exception is encountered while preparing the statement.
+         */
+        public synchronized PreparedStatement prepare(String query) throws SQLException {
+            PreparedStatement retVal = statements.get(query);
+
+            if (retVal == null) {
+                logger.debug("Preparing query...");
+
+                retVal = connection.prepareStatement(query);
+                statements.put(query, retVal);
+            }
+
+            return retVal;
+        }
+
+        /**
+         * Closes the prepared statements and the connection.
+         * @throws SQLException Thrown if an exception is encountered while closing the connection.
+         */
+        public synchronized void close() throws SQLException {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+
+            statements.clear();
+
+            connection.close();
+        }
     }
 }
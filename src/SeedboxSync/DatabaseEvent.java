@@ -0,0 +1,56 @@
+/****************************************************************************
+ *
+ * DatabaseEvent.java
+ *
+ * A flight recorder event describing a database operation.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event describing a database operation.
+ */
+@Name("SeedboxSync.Database")
+@Label("Database Operation")
+@Category({ "SeedboxSync", "Database" })
+@Description("A query or update against the download database.")
+public class DatabaseEvent extends jdk.jfr.Event {
+    /**
+     * The name of the operation.
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * The name of the file to which the operation applies, if any.
+     */
+    @Label("File")
+    String file;
+
+    /**
+     * The number of rows read or written.
+     */
+    @Label("Rows")
+    int rows;
+}
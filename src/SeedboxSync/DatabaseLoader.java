@@ -57,4 +57,32 @@ public class DatabaseLoader {
 
         return retVal;
     }
+
+    /**
+     * Instantiates and loads a Database from the specified file with the connection settings, batching of completed
+     * downloads and known file index selected in the specified Configuration.
+     * @param file The File from which to load the database.
+     * @param configuration The Configuration which selects the known file index.
+     * @return The loaded database.
+     * @throws Exception Thrown if an exception is encountered while instantiating the database or loading the index.
+     */
+    public static IDatabase load(java.io.File file, Configuration configuration) throws Exception {
+        if (file == null) {
+            throw new Exception("Unable to create Database; provided filename is null.");
+        }
+
+        logger.debug("Loading database from '" + file.getName() + "'...");
+
+        Database database = new Database(file, configuration);
+        logger.debug("Database loaded successfully.");
+
+        if (configuration.getFileIndex().equals("memory")) {
+            return new IndexedDatabase(database, new MemoryFileIndex(configuration.getFileIndexBloomFilter()));
+        }
+        else if (configuration.getFileIndex().equals("mapped")) {
+            return new IndexedDatabase(database, new MappedFileIndex(new java.io.File(file.getPath() + ".index")));
+        }
+
+        return database;
+    }
 }
@@ -23,7 +23,15 @@
  *
  ****************************************************************************/
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +54,11 @@ public class Downloader extends Processor {
      */
     private IDatabase database;
 
+    /**
+     * The maximum number of directories listed at once when walking the remote tree.
+     */
+    private Integer scanConcurrency = 4;
+
     /**
      * Initializes a new instance of the Downloader class with the specified server and directories.
      * @param server The IServer instance enabling file transfers.
@@ -56,43 +69,169 @@ public class Downloader extends Processor {
         super(server, localDirectory, remoteDirectory);
 
         this.database = database;
+
+        Metrics.downloadQueueDepth.setSource(new MetricsRegistry.Gauge.Source() {
+            public double getValue() {
+                return queue.size();
+            }
+        });
+    }
+
+    /**
+     * Gets the maximum number of directories listed at once when walking the remote tree.
+     * @return The maximum number of directories listed at once.
+     */
+    public Integer getScanConcurrency() {
+        return scanConcurrency;
     }
 
     /**
-     * Scans the remote download directory and enqueues new files, then uploads the next file in the queue, if applicable.
+     * Sets the maximum number of directories listed at once when walking the remote tree.
+     * @param scanConcurrency The maximum number of directories listed at once.
+     */
+    public void setScanConcurrency(Integer scanConcurrency) {
+        this.scanConcurrency = Math.max(scanConcurrency, 1);
+    }
+
+    /**
+     * Scans the remote download directory and enqueues new files, then downloads the files in the queue.
      * @throws Exception Thrown if an exception is encountered during the synchronization.
      */
     public void process() throws Exception {
         logger.info("Processing downloads...");
 
+        scan();
+        transfer();
+
+        logger.info("Downloads processed.");
+    }
+
+    /**
+     * Scans the remote download directory and enqueues new files.
+     * @throws Exception Thrown if an exception is encountered while retrieving the directory listing.
+     */
+    public void scan() throws Exception {
         int files = queue.size();
 
         logger.info("Scanning files for directory '" + remoteDirectory + "'...");
-        scanDirectory(remoteDirectory);
+
+        long start = System.nanoTime();
+
+        beginScan();
+        scanTree();
+        endScan();
+
+        Metrics.scanDuration.observeSince(start);
 
         logger.info("Scan complete. " + (queue.size() - files) + " new files found.");
+    }
 
-        if (queue.size() > 0) {
-            logger.info("Processing download queue of " + queue.size() + "...");
+    /**
+     * Scans the remote download directory for files and adds those that have not yet been downloaded or enqueued to
+     * the download queue.  The whole tree is fetched with a single recursive listing if the server supports it;
+     * otherwise each directory is listed in turn.
+     * @throws Exception Thrown if an exception is encountered while retrieving the directory listing.
+     */
+    private void scanTree() throws Exception {
+        ScanEvent event = new ScanEvent();
+        event.begin();
 
-            download();
+        List<FTPFile> files;
 
-            logger.info("Download queue processed.");
+        try {
+            files = server.listRecursive(remoteDirectory);
+        }
+        catch (Exception ex) {
+            logger.debug("Recursive listing of '" + remoteDirectory + "' failed (" + ex.getMessage() + "); " +
+                    "listing directories individually.");
+            files = null;
         }
 
-        logger.info("Downloads processed.");
+        // an empty tree is walked as well, which costs a single listing and guards against servers which return
+        // nothing for unsupported options
+        if (files == null || files.isEmpty()) {
+            walkTree();
+            return;
+        }
+
+        for (FTPFile file : files) {
+            if (!file.isDirectory()) {
+                event.files++;
+
+                if (scanFile(remoteDirectory + "/" + file.getName(), file)) {
+                    event.enqueued++;
+                }
+            }
+            else {
+                event.directories++;
+            }
+        }
+
+        event.directory = remoteDirectory;
+        event.recursive = true;
+        event.commit();
+    }
+
+    /**
+     * Walks the remote download directory one listing at a time, listing sibling directories in parallel so that the
+     * duration of the walk depends upon the depth of the tree rather than the number of directories.  Each directory
+     * is listed by one of a fixed number of threads, so no more than the scan concurrency are listed at once, and its
+     * subdirectories are submitted as soon as it has been listed.
+     * @throws Exception Thrown if an exception is encountered while retrieving a directory listing.
+     */
+    private void walkTree() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(scanConcurrency);
+        CompletionService<List<String>> scans = new ExecutorCompletionService<List<String>>(executor);
+
+        try {
+            scans.submit(new DirectoryScan(remoteDirectory));
+            Integer pending = 1;
+
+            while (pending > 0) {
+                Future<List<String>> scan = scans.take();
+                pending--;
+
+                List<String> subdirectories;
+
+                try {
+                    subdirectories = scan.get();
+                }
+                catch (ExecutionException ex) {
+                    // the listing's own exception is rethrown, rather than the wrapper which carried it off its thread
+                    if (ex.getCause() instanceof Error) {
+                        throw (Error)ex.getCause();
+                    }
+
+                    throw (Exception)ex.getCause();
+                }
+
+                for (String subdirectory : subdirectories) {
+                    scans.submit(new DirectoryScan(subdirectory));
+                    pending++;
+                }
+            }
+        }
+        finally {
+            // listings still in progress when one fails are abandoned
+            executor.shutdownNow();
+        }
     }
 
     /**
      * Scans the specified directory for files and adds those that have not yet been downloaded or enqueued
      * to the download queue.
      * @param directory The remote directory to scan.
+     * @return The subdirectories of the directory.
      * @throws Exception Thrown if an exception is encountered while retrieving the directory listing.
      */
-    private void scanDirectory(String directory) throws Exception {
+    private List<String> scanDirectory(String directory) throws Exception {
         logger.debug("Scanning files for directory '" + directory + "'...");
 
+        ScanEvent event = new ScanEvent();
+        event.begin();
+
         List<FTPFile> files;
+        List<String> retVal = new ArrayList<String>();
 
         try {
             files = server.list(directory);
@@ -105,81 +244,123 @@ public class Downloader extends Processor {
 
         for (FTPFile file : files) {
             if (!file.isDirectory()) {
-                String fullFileName = directory + "/" + file.getName();
-                String relativeFileName = fullFileName.replace(remoteDirectory, "");
-                String relativeFileNameWithSize = relativeFileName + ":" + file.getSize();
-
-                logger.debug("Found file: " + relativeFileNameWithSize);
+                event.files++;
 
-                // enqueue the file for downloading only if it doesn't exist in the database
-                if (database.getFile(relativeFileName) == null) {
-                    if (!queue.contains(relativeFileNameWithSize)) {
-                        enqueue(relativeFileNameWithSize);
-                        logger.info("Added file '" + relativeFileNameWithSize + "' to the download queue.");
-                    }
+                if (scanFile(directory + "/" + file.getName(), file)) {
+                    event.enqueued++;
                 }
             }
-            // if the file is a directory, recursively list the files within it
+            // if the file is a directory, return it so that the files within it are listed
             else {
-                scanDirectory(directory + "/" + file.getName());
+                retVal.add(directory + "/" + file.getName());
             }
         }
+
+        event.directory = directory;
+        event.directories = retVal.size();
+        event.commit();
+
+        return retVal;
     }
 
     /**
-     * Downloads the next file in the queue, if a download is not already in progress.
-     * @throws Exception Thrown if an exception is encountered during the download.
+     * Adds the specified file to the download queue if it has not yet been downloaded or enqueued.
+     * @param fullFileName The full remote path of the file.
+     * @param file The file.
+     * @return A value indicating whether the file was added to the download queue.
+     * @throws Exception Thrown if an exception is encountered while checking the database.
      */
-    private void download() throws Exception {
-        if (!queue.isEmpty()) {
-            transferInProgress = true;
+    private Boolean scanFile(String fullFileName, FTPFile file) throws Exception {
+        String relativeFileName = fullFileName.replace(remoteDirectory, "");
+        String relativeFileNameWithSize = relativeFileName + ":" + file.getSize();
+
+        logger.debug("Found file: " + relativeFileNameWithSize);
 
-            logger.debug("Preparing to download " + queue.peek());
+        // enqueue the file for downloading only if it doesn't exist in the database
+        if (!database.contains(relativeFileName)) {
+            Long timestamp = file.getTimestamp() != null ? file.getTimestamp().getTimeInMillis() : null;
 
-            // fetch the next file from the queue
-            String file = queue.peek();
+            if (enqueue(relativeFileNameWithSize, file.getSize(), timestamp)) {
+                logger.info("Added file '" + relativeFileNameWithSize + "' to the download queue.");
 
-            // split the queue entry and retrieve the filename and size
-            String[] fileParts = file.split(":");
-            String fileName = fileParts[0];
-            Long fileSize = Long.parseLong(fileParts[1]);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Lists a remote directory, returning its subdirectories so that they can be scanned in turn.
+     */
+    private class DirectoryScan implements Callable<List<String>> {
+        /**
+         * The remote directory to scan.
+         */
+        private String directory;
+
+        /**
+         * Initializes a new instance of the DirectoryScan class.
+         * @param directory The remote directory to scan.
+         */
+        public DirectoryScan(String directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Scans the directory.
+         * @return The subdirectories of the directory.
+         * @throws Exception Thrown if an exception is encountered while retrieving the directory listing.
+         */
+        public List<String> call() throws Exception {
+            return scanDirectory(directory);
+        }
+    }
 
-            String remoteFileName = remoteDirectory + fileName;
-            String localFileName = localDirectory + fileName;
+    /**
+     * Gets the path of the specified queued file relative to the remote download directory, without its size.
+     * @param file The queued file, as the file name relative to the remote download directory and the size.
+     * @return The path of the file relative to the remote download directory.
+     */
+    protected String getPath(String file) {
+        Integer separator = file.lastIndexOf(':');
 
-            logger.debug("Remote filename: " + remoteFileName);
-            logger.debug("Local filename: " + localFileName);
+        return separator >= 0 ? file.substring(0, separator) : file;
+    }
 
-            try {
-                // create the target directory structure
-                (new java.io.File(localFileName)).getParentFile().mkdirs();
+    /**
+     * Downloads the specified queued file and records it in the database.
+     * @param file The queued file, as the file name relative to the remote download directory and the size.
+     * @throws Exception Thrown if an exception is encountered during the download.
+     */
+    protected void transfer(String file) throws Exception {
+        logger.debug("Preparing to download " + file);
 
-                logger.info("Downloading file '" + fileName + "' from remote directory '" + remoteDirectory + "'...");
+        // split the queue entry and retrieve the filename and size
+        String[] fileParts = file.split(":");
+        String fileName = fileParts[0];
+        Long fileSize = Long.parseLong(fileParts[1]);
 
-                server.download(remoteFileName, localFileName, fileSize);
+        String remoteFileName = remoteDirectory + fileName;
+        String localFileName = localDirectory + fileName;
 
-                logger.debug("Transfer complete.");
+        logger.debug("Remote filename: " + remoteFileName);
+        logger.debug("Local filename: " + localFileName);
 
-                File newFile = new File(fileName, fileSize, new Timestamp(System.currentTimeMillis()));
-                database.addFile(newFile);
-                database.setDownloadedTimestamp(newFile);
+        // create the target directory structure
+        (new java.io.File(localFileName)).getParentFile().mkdirs();
 
-                logger.debug("File '" + fileName + "' added to the completed file database.");
+        logger.info("Downloading file '" + fileName + "' from remote directory '" + remoteDirectory + "'...");
 
-                dequeue(file);
+        server.download(remoteFileName, localFileName, fileSize);
 
-                logger.debug("File '" + fileName + "' removed from the download queue.");
+        logger.debug("Transfer complete.");
 
-                logger.info("Download complete.");
+        File newFile = new File(fileName, fileSize, new Timestamp(System.currentTimeMillis()));
+        database.addDownloadedFile(newFile);
 
-                download();
-            }
-            catch (Exception ex) {
-                logger.error("Error downloading '" + fileName + "': " + ex.getMessage());
-            }
-            finally {
-                transferInProgress = false;
-            }
-        }
+        logger.debug("File '" + fileName + "' added to the completed file database.");
+
+        logger.info("Download complete.");
     }
 }
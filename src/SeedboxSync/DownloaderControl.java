@@ -0,0 +1,58 @@
+/****************************************************************************
+ *
+ * DownloaderControl.java
+ *
+ * Exposes the Downloader for management over JMX.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+/**
+ * Exposes the Downloader for management over JMX.
+ */
+public class DownloaderControl extends ProcessorControl implements DownloaderControlMBean {
+    /**
+     * Initializes a new instance of the DownloaderControl class.
+     * @param downloader The managed Downloader.
+     */
+    public DownloaderControl(Downloader downloader) {
+        super(downloader);
+    }
+
+    /**
+     * Gets the maximum number of directories listed at once when walking the remote tree.
+     * @return The maximum number of directories listed at once.
+     */
+    public Integer getScanConcurrency() {
+        return ((Downloader)processor).getScanConcurrency();
+    }
+
+    /**
+     * Sets the maximum number of directories listed at once when walking the remote tree.  Takes effect at the next
+     * scan.
+     * @param scanConcurrency The maximum number of directories listed at once.
+     */
+    public void setScanConcurrency(Integer scanConcurrency) {
+        if (scanConcurrency == null || scanConcurrency <= 0) {
+            throw new IllegalArgumentException("Scan concurrency must be greater than zero.");
+        }
+
+        ((Downloader)processor).setScanConcurrency(scanConcurrency);
+    }
+}
@@ -0,0 +1,42 @@
+/****************************************************************************
+ *
+ * DownloaderControlMBean.java
+ *
+ * Defines the management interface of the Downloader.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+/**
+ * Defines the management interface of the Downloader.
+ */
+public interface DownloaderControlMBean extends ProcessorControlMBean {
+    /**
+     * Gets the maximum number of directories listed at once when walking the remote tree.
+     * @return The maximum number of directories listed at once.
+     */
+    Integer getScanConcurrency();
+
+    /**
+     * Sets the maximum number of directories listed at once when walking the remote tree.  Takes effect at the next
+     * scan.
+     * @param scanConcurrency The maximum number of directories listed at once.
+     */
+    void setScanConcurrency(Integer scanConcurrency);
+}
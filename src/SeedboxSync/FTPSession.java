@@ -0,0 +1,254 @@
+/****************************************************************************
+ *
+ * FTPSession.java
+ *
+ * An FTP client session with access to raw data connections.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.net.ServerSocketFactory;
+import javax.net.SocketFactory;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+
+/**
+ * An FTP client session with access to raw data connections, for commands whose output FTPClient does not expose and
+ * for transfers performed with channels.  Data connections are backed by socket channels; the control connection
+ * is not.
+ */
+public class FTPSession extends FTPClient {
+    /**
+     * Opens a data connection for the specified command, sending REST first if a restart offset has been set.  The
+     * caller must close the connection and then call completePendingCommand().
+     * @param command The command for which to open the data connection.
+     * @param argument The argument to the command.
+     * @return The data connection, or null if the server refused the command.
+     * @throws IOException Thrown if an exception is encountered while opening the data connection.
+     */
+    public Socket openDataConnection(FTPCmd command, String argument) throws IOException {
+        return _openDataConnection_(command, argument);
+    }
+    /**
+     * Issues LIST with the specified arguments and returns the raw lines of the listing, without parsing them.
+     * @param arguments The arguments to pass to LIST.
+     * @return The lines of the listing, or null if the server refused the command.
+     * @throws IOException Thrown if an exception is encountered while reading the listing.
+     */
+    public List<String> listLines(String arguments) throws IOException {
+        Socket socket = _openDataConnection_(FTPCmd.LIST, arguments);
+
+        if (socket == null) {
+            return null;
+        }
+
+        List<String> retVal = new ArrayList<String>();
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), getControlEncoding()));
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                retVal.add(line);
+            }
+        }
+        finally {
+            socket.close();
+        }
+
+        if (!completePendingCommand()) {
+            return null;
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Configures the session once the control connection has been established, so that data connections opened from
+     * then on are backed by socket channels.
+     * @throws IOException Thrown if an exception is encountered while initializing the control connection.
+     */
+    @Override
+    protected void _connectAction_() throws IOException {
+        super._connectAction_();
+
+        setSocketFactory(new ChannelSocketFactory());
+        setServerSocketFactory(new ChannelServerSocketFactory());
+    }
+
+    /**
+     * Closes the control connection and restores the default socket factories, so that a subsequent control
+     * connection is not backed by a channel.
+     * @throws IOException Thrown if an exception is encountered while closing the connection.
+     */
+    @Override
+    public void disconnect() throws IOException {
+        try {
+            super.disconnect();
+        }
+        finally {
+            setSocketFactory(null);
+            setServerSocketFactory(null);
+        }
+    }
+
+    /**
+     * Creates sockets which are backed by socket channels, for passive mode data connections.
+     */
+    private static class ChannelSocketFactory extends SocketFactory {
+        /**
+         * Creates an unconnected socket.
+         * @return The socket.
+         * @throws IOException Thrown if the channel can't be opened.
+         */
+        @Override
+        public Socket createSocket() throws IOException {
+            return SocketChannel.open().socket();
+        }
+
+        /**
+         * Creates a socket connected to the specified host and port.
+         * @param host The host to which to connect.
+         * @param port The port to which to connect.
+         * @return The socket.
+         * @throws IOException Thrown if the connection fails.
+         */
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return createSocket(InetAddress.getByName(host), port);
+        }
+
+        /**
+         * Creates a socket connected to the specified host and port from the specified local address and port.
+         * @param host The host to which to connect.
+         * @param port The port to which to connect.
+         * @param localHost The local address to which to bind.
+         * @param localPort The local port to which to bind.
+         * @return The socket.
+         * @throws IOException Thrown if the connection fails.
+         */
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return createSocket(InetAddress.getByName(host), port, localHost, localPort);
+        }
+
+        /**
+         * Creates a socket connected to the specified address and port.
+         * @param host The address to which to connect.
+         * @param port The port to which to connect.
+         * @return The socket.
+         * @throws IOException Thrown if the connection fails.
+         */
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            Socket retVal = createSocket();
+            retVal.connect(new InetSocketAddress(host, port));
+
+            return retVal;
+        }
+
+        /**
+         * Creates a socket connected to the specified address and port from the specified local address and port.
+         * @param address The address to which to connect.
+         * @param port The port to which to connect.
+         * @param localAddress The local address to which to bind.
+         * @param localPort The local port to which to bind.
+         * @return The socket.
+         * @throws IOException Thrown if the connection fails.
+         */
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            Socket retVal = createSocket();
+            retVal.bind(new InetSocketAddress(localAddress, localPort));
+            retVal.connect(new InetSocketAddress(address, port));
+
+            return retVal;
+        }
+    }
+
+    /**
+     * Creates server sockets which are backed by server socket channels, for active mode data connections.  Sockets
+     * accepted by these server sockets are backed by socket channels.
+     */
+    private static class ChannelServerSocketFactory extends ServerSocketFactory {
+        /**
+         * Creates an unbound server socket.
+         * @return The server socket.
+         * @throws IOException Thrown if the channel can't be opened.
+         */
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return ServerSocketChannel.open().socket();
+        }
+
+        /**
+         * Creates a server socket bound to the specified port.
+         * @param port The port to which to bind, or 0 for any free port.
+         * @return The server socket.
+         * @throws IOException Thrown if the socket can't be bound.
+         */
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            return createServerSocket(port, 50, null);
+        }
+
+        /**
+         * Creates a server socket bound to the specified port with the specified backlog.
+         * @param port The port to which to bind, or 0 for any free port.
+         * @param backlog The maximum number of pending connections.
+         * @return The server socket.
+         * @throws IOException Thrown if the socket can't be bound.
+         */
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            return createServerSocket(port, backlog, null);
+        }
+
+        /**
+         * Creates a server socket bound to the specified address and port with the specified backlog.
+         * @param port The port to which to bind, or 0 for any free port.
+         * @param backlog The maximum number of pending connections.
+         * @param address The local address to which to bind, or null for any address.
+         * @return The server socket.
+         * @throws IOException Thrown if the socket can't be bound.
+         */
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            ServerSocket retVal = createServerSocket();
+            retVal.bind(new InetSocketAddress(address, port), backlog);
+
+            return retVal;
+        }
+    }
+}
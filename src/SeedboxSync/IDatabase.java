@@ -54,6 +54,36 @@ public interface IDatabase {
      */
     List<File> getFiles() throws SQLException;
 
+    /**
+     * Passes each File stored in the database to the specified visitor, one at a time, so that the whole table need
+     * not be held in memory.
+     * @param visitor The visitor to which each File is passed.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the Files.
+     */
+    void visitFiles(Visitor visitor) throws SQLException;
+
+    /**
+     * Gets the number of Files stored in the database.
+     * @return The number of Files stored in the database.
+     * @throws SQLException Thrown if an exception is encountered while counting the Files.
+     */
+    Integer getFileCount() throws SQLException;
+
+    /**
+     * Gets the generation of the stored Files, a number which changes whenever a File is added, updated or removed.
+     * @return The generation of the stored Files.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the generation.
+     */
+    Long getGeneration() throws SQLException;
+
+    /**
+     * Returns a value indicating whether a record matching the specified name exists.
+     * @param fileName The name of the File to find.
+     * @return A value indicating whether a record matching the specified name exists.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the record.
+     */
+    Boolean contains(String fileName) throws SQLException;
+
     /**
      * Adds the specified File to the database.
      * @param file The File to add.
@@ -77,10 +107,34 @@ public interface IDatabase {
      */
     void setDownloadedTimestamp(String name) throws SQLException;
 
+    /**
+     * Records the specified File as downloaded, adding it to the database if it is not already present.  The write may
+     * be deferred and batched with those of other completed Files until the next flush.
+     * @param file The downloaded File.
+     * @throws SQLException Thrown if an exception is encountered while writing the record.
+     */
+    void addDownloadedFile(File file) throws SQLException;
+
+    /**
+     * Writes any deferred records of completed Files to the database.
+     * @throws SQLException Thrown if an exception is encountered while writing the records.
+     */
+    void flush() throws SQLException;
+
     /**
      * Closes the database connection.
      * @throws SQLException Thrown if an exception is encountered while closing the connection.
      */
     void close() throws SQLException;
 
+    /**
+     * Receives the Files visited by visitFiles().
+     */
+    interface Visitor {
+        /**
+         * Receives the next File.
+         * @param file The File.
+         */
+        void visit(File file);
+    }
 }
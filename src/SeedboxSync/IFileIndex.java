@@ -0,0 +1,85 @@
+/****************************************************************************
+ *
+ * IFileIndex.java
+ *
+ * Defines the interface for indexes of known files.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+/**
+ * Defines the interface for indexes of known files, which answer lookups by name without querying the database.
+ */
+public interface IFileIndex {
+    /**
+     * Retrieves the indexed File with the specified name.
+     * @param name The name of the File to retrieve.
+     * @return The indexed File, or null if no File with the name is indexed.
+     */
+    File get(String name);
+
+    /**
+     * Returns a value indicating whether a File with the specified name is indexed.
+     * @param name The name of the File to find.
+     * @return A value indicating whether a File with the name is indexed.
+     */
+    Boolean contains(String name);
+
+    /**
+     * Adds the specified File to the index, if no File with the same name is indexed.
+     * @param file The File to add.
+     * @throws IllegalStateException Thrown if the File can't be indexed, such as when the index is full.
+     */
+    void put(File file);
+
+    /**
+     * Replaces the indexed File with the same name as the specified File.
+     * @param file The File to index.
+     * @throws IllegalStateException Thrown if the File can't be indexed, such as when the index is full.
+     */
+    void replace(File file);
+
+    /**
+     * Gets the number of indexed Files.
+     * @return The number of indexed Files.
+     */
+    Integer size();
+
+    /**
+     * Gets the generation of the database with which the index was last recorded to be in step.
+     * @return The generation, or 0 if the index is not known to be in step with any generation.
+     */
+    Long getGeneration();
+
+    /**
+     * Records the generation of the database with which the index is in step.
+     * @param generation The generation, or 0 if the index is not known to be in step with any generation.
+     */
+    void setGeneration(Long generation);
+
+    /**
+     * Removes every File from the index.
+     */
+    void clear();
+
+    /**
+     * Releases the resources held by the index.
+     */
+    void close();
+}
@@ -0,0 +1,39 @@
+/****************************************************************************
+ *
+ * IPriorityPolicy.java
+ *
+ * Defines the interface for queue priority policies.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+/**
+ * Defines the interface for queue priority policies, which rank each file as it is queued.
+ */
+interface IPriorityPolicy {
+    /**
+     * Returns the priority of the specified file; files with lower values are transferred first, and files with equal
+     * values in the order in which they were queued.
+     * @param file The path of the file, relative to the directory being synchronized.
+     * @param size The size of the file in bytes, or null if unknown.
+     * @param timestamp The modification time of the file in milliseconds since the epoch, or null if unknown.
+     * @return The priority of the file.
+     */
+    long getPriority(String file, Long size, Long timestamp);
+}
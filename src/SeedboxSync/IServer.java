@@ -80,6 +80,36 @@ public interface IServer {
      */
     Boolean isConnected();
 
+    /**
+     * Gets the number of logins performed since the Server was created.
+     * @return The number of logins performed since the Server was created.
+     */
+    Long getLoginCount();
+
+    /**
+     * Sets the combined download rate limit for all transfers, in bytes per second.
+     * @param downloadLimit The combined download rate limit, or 0 for no limit.
+     */
+    void setDownloadLimit(Long downloadLimit);
+
+    /**
+     * Sets the download rate limit for each transfer, in bytes per second.
+     * @param downloadTransferLimit The download rate limit for each transfer, or 0 for no limit.
+     */
+    void setDownloadTransferLimit(Long downloadTransferLimit);
+
+    /**
+     * Sets the combined upload rate limit for all transfers, in bytes per second.
+     * @param uploadLimit The combined upload rate limit, or 0 for no limit.
+     */
+    void setUploadLimit(Long uploadLimit);
+
+    /**
+     * Sets the upload rate limit for each transfer, in bytes per second.
+     * @param uploadTransferLimit The upload rate limit for each transfer, or 0 for no limit.
+     */
+    void setUploadTransferLimit(Long uploadTransferLimit);
+
     /**
      * Returns a list of files contained within the specified directory.
      * @param directory The directory for which to return the file list.
@@ -88,6 +118,23 @@ public interface IServer {
      */
     List<FTPFile> list(String directory) throws Exception;
 
+    /**
+     * Returns every file and directory beneath the specified directory using a single recursive listing.
+     * @param directory The directory for which to return the file tree.
+     * @return The files and directories beneath the directory, named by their path relative to it, or null if the
+     * Server does not support recursive listings.
+     * @throws Exception Thrown if an exception is encountered while retrieving the listing.
+     */
+    List<FTPFile> listRecursive(String directory) throws Exception;
+
+    /**
+     * Gets the size of the specified remote file.
+     * @param file The remote file for which to return the size.
+     * @return The size of the file in bytes, or null if the file does not exist or the server does not report sizes.
+     * @throws Exception Thrown if an exception is encountered while querying the size.
+     */
+    Long getSize(String file) throws Exception;
+
     /**
      * Downloads the specified file.
      * @param sourceFile The filename of the file to download.
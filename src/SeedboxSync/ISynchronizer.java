@@ -27,9 +27,19 @@
  * Defines the interface for Synchronizer objects.
  */
 interface ISynchronizer {
+    /**
+     * Starts the transfer workers, after which synchronizations hand the files they find to the workers.
+     */
+    void start();
+
     /**
      * Synchronizes the local and remote directories.
      * @throws Exception Thrown if an exception is encountered during the synchronization.
      */
     void synchronize() throws Exception;
+
+    /**
+     * Applies the bandwidth limits scheduled for the current hour.
+     */
+    void applySchedule();
 }
@@ -0,0 +1,301 @@
+/****************************************************************************
+ *
+ * IndexedDatabase.java
+ *
+ * Answers file lookups from an index of known files kept in step with a Database.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.List;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers file lookups from an index of known files kept in step with a Database.  The index is loaded from the
+ * database at startup, unless it is persisted and in step with the database, and updated as files are added and
+ * downloaded, so that the check a scan makes for each remote file is a memory lookup rather than a query.  All other
+ * operations are passed to the database.  If the index can't be updated, such as when it is full, lookups are passed
+ * to the database from then on.
+ */
+public class IndexedDatabase implements IDatabase {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The database holding the records.
+     */
+    private IDatabase database;
+
+    /**
+     * The index of the records.
+     */
+    private IFileIndex index;
+
+    /**
+     * A value indicating whether lookups are answered from the index; false once the index can't be updated.
+     */
+    private volatile Boolean indexed = true;
+
+    /**
+     * Initializes a new instance of the IndexedDatabase class, reloading every record into the index unless it holds as
+     * many records as the database and was last recorded to be in step with the current generation of the database,
+     * as a persisted index is when it was closed cleanly and the database has not been modified since.
+     * @param database The database holding the records.
+     * @param index The index of the records.
+     * @throws SQLException Thrown if an exception is encountered while loading the records.
+     */
+    public IndexedDatabase(IDatabase database, final IFileIndex index) throws SQLException {
+        this.database = database;
+        this.index = index;
+
+        Integer count = database.getFileCount();
+        Long generation = database.getGeneration();
+
+        if (count == 0 || !index.size().equals(count) || index.getGeneration() == 0 ||
+                !index.getGeneration().equals(generation)) {
+            logger.info("Loading the index of known files...");
+
+            long start = System.nanoTime();
+
+            try {
+                index.clear();
+
+                database.visitFiles(new Visitor() {
+                    public void visit(File file) {
+                        index.put(file);
+                    }
+                });
+
+                logger.info("Indexed " + index.size() + " known file(s) in " + (System.nanoTime() - start) / 1000000 +
+                        " ms.");
+            }
+            catch (IllegalStateException ex) {
+                disableIndex(ex);
+            }
+        }
+        else {
+            logger.info("Using the existing index of " + count + " known file(s).");
+        }
+
+        // the index may run ahead of the database until both are closed, so if the application stops before then the
+        // index is rebuilt when it is next opened
+        if (indexed) {
+            index.setGeneration(0L);
+        }
+    }
+
+    /**
+     * Retrieves the record matching the specified File.
+     * @param file The File to retrieve.
+     * @return The retrieved record.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the record from the database.
+     */
+    public File getFile(File file) throws SQLException {
+        return getFile(file.getName());
+    }
+
+    /**
+     * Retrieves the record matching the specified name from the index, or from the database if the index is not in use.
+     * @param fileName The name of the File to retrieve.
+     * @return The record matching the specified name, or null if there is none.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the record from the database.
+     */
+    public File getFile(String fileName) throws SQLException {
+        if (!indexed) {
+            return database.getFile(fileName);
+        }
+
+        return index.get(fileName);
+    }
+
+    /**
+     * Returns a value indicating whether a record matching the specified name exists, from the index, or from the
+     * database if the index is not in use.
+     * @param fileName The name of the File to find.
+     * @return A value indicating whether a record matching the specified name exists.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the record from the database.
+     */
+    public Boolean contains(String fileName) throws SQLException {
+        if (!indexed) {
+            return database.contains(fileName);
+        }
+
+        return index.contains(fileName);
+    }
+
+    /**
+     * Passes each File stored in the database to the specified visitor.
+     * @param visitor The visitor to which each File is passed.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the Files.
+     */
+    public void visitFiles(Visitor visitor) throws SQLException {
+        database.visitFiles(visitor);
+    }
+
+    /**
+     * Gets the number of Files stored in the database.
+     * @return The number of Files stored in the database.
+     * @throws SQLException Thrown if an exception is encountered while counting the Files.
+     */
+    public Integer getFileCount() throws SQLException {
+        return database.getFileCount();
+    }
+
+    /**
+     * Gets the generation of the Files stored in the database.
+     * @return The generation of the stored Files.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the generation.
+     */
+    public Long getGeneration() throws SQLException {
+        return database.getGeneration();
+    }
+
+    /**
+     * Gets the list of Files stored in the database.
+     * @return The list of Files.
+     * @throws SQLException Thrown if an exception is encountered while retrieving the list.
+     */
+    public List<File> getFiles() throws SQLException {
+        return database.getFiles();
+    }
+
+    /**
+     * Adds the specified File to the database and the index.
+     * @param file The File to add.
+     * @throws SQLException Thrown if an exception is encountered while adding the record.
+     */
+    public void addFile(File file) throws SQLException {
+        database.addFile(file);
+
+        if (indexed) {
+            try {
+                index.put(new File(file.getName(), file.getSize(), file.getTimestamp(),
+                        new Timestamp(System.currentTimeMillis()), file.getDownloadedTimestamp()));
+            }
+            catch (IllegalStateException ex) {
+                disableIndex(ex);
+            }
+        }
+    }
+
+    /**
+     * Sets the downloaded column of the specified File to the current timestamp, indicating that the file
+     * was successfully downloaded.
+     * @param file The File to update.
+     * @throws SQLException Thrown if an exception is encountered while updating the record.
+     */
+    public void setDownloadedTimestamp(File file) throws SQLException {
+        setDownloadedTimestamp(file.getName());
+    }
+
+    /**
+     * Sets the downloaded column of the record matching the specified name to the current timestamp,
+     * indicating that the file was successfully downloaded.
+     * @param name The name of the File to update.
+     * @throws SQLException Thrown if an exception is encountered while updating the record.
+     */
+    public void setDownloadedTimestamp(String name) throws SQLException {
+        database.setDownloadedTimestamp(name);
+
+        if (indexed) {
+            try {
+                File file = index.get(name);
+
+                if (file != null) {
+                    index.replace(new File(file.getName(), file.getSize(), file.getTimestamp(),
+                            file.getAddedTimestamp(), new Timestamp(System.currentTimeMillis())));
+                }
+            }
+            catch (IllegalStateException ex) {
+                disableIndex(ex);
+            }
+        }
+    }
+
+    /**
+     * Records the specified File as downloaded in the database and the index.
+     * @param file The downloaded File.
+     * @throws SQLException Thrown if an exception is encountered while writing the record.
+     */
+    public void addDownloadedFile(File file) throws SQLException {
+        database.addDownloadedFile(file);
+
+        if (indexed) {
+            try {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                File existing = index.get(file.getName());
+
+                index.replace(new File(file.getName(), file.getSize(), file.getTimestamp(),
+                        existing != null ? existing.getAddedTimestamp() : now, now));
+            }
+            catch (IllegalStateException ex) {
+                disableIndex(ex);
+            }
+        }
+    }
+
+    /**
+     * Writes any deferred records of completed Files to the database.
+     * @throws SQLException Thrown if an exception is encountered while writing the records.
+     */
+    public void flush() throws SQLException {
+        database.flush();
+    }
+
+    /**
+     * Writes any deferred records to the database, records the generation of the database with which the index is in
+     * step if it is still in use, and closes the index and the database connection.
+     * @throws SQLException Thrown if an exception is encountered while writing the records or closing the connection.
+     */
+    public void close() throws SQLException {
+        try {
+            database.flush();
+
+            if (indexed) {
+                index.setGeneration(database.getGeneration());
+            }
+        }
+        finally {
+            index.close();
+            database.close();
+        }
+    }
+
+    /**
+     * Stops answering lookups from the index after it failed to be updated, so that the failure doesn't fail the
+     * operation which updated the database.  The index is left out of step with the database, so it is rebuilt when
+     * it is next opened.
+     * @param ex The exception thrown by the index.
+     */
+    private void disableIndex(IllegalStateException ex) {
+        if (indexed) {
+            indexed = false;
+
+            logger.warn("The index of known files can't be updated (" + ex.getMessage() + "); known files will be " +
+                    "looked up in the database.");
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/****************************************************************************
+ *
+ * IndexedQueue.java
+ *
+ * A thread-safe queue of unique elements with constant time membership.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A thread-safe queue of unique elements with constant time membership.  Elements are either kept in insertion order,
+ * with constant time removal, or ranked by a priority assigned when each is queued, with logarithmic time insertion
+ * and removal.  Offering an element which is already queued leaves the queue unchanged.  Compound operations may be
+ * made atomic by synchronizing on the queue.
+ * @param <E> The type of the queued elements.
+ */
+public class IndexedQueue<E> extends AbstractQueue<E> {
+    /**
+     * The rank of each queued element; in insertion order if the queue is not ranked.
+     */
+    private Map<E, Rank<E>> elements;
+
+    /**
+     * The ranks of the queued elements in queue order, or null if the queue is not ranked.
+     */
+    private TreeSet<Rank<E>> order;
+
+    /**
+     * The sequence number of the next element to be queued, which orders elements of equal priority.
+     */
+    private long sequence;
+
+    /**
+     * An unmodifiable copy of the queued elements, or null if the queue has changed since the copy was made.
+     */
+    private List<E> snapshot;
+
+    /**
+     * Initializes a new instance of the IndexedQueue class which keeps elements in insertion order.
+     */
+    public IndexedQueue() {
+        this(false);
+    }
+
+    /**
+     * Initializes a new instance of the IndexedQueue class.
+     * @param ranked A value indicating whether elements are ordered by priority, then insertion order; otherwise
+     * elements are kept in insertion order and priorities are ignored.
+     */
+    public IndexedQueue(Boolean ranked) {
+        if (ranked) {
+            elements = new HashMap<E, Rank<E>>();
+            order = new TreeSet<Rank<E>>();
+        }
+        else {
+            elements = new LinkedHashMap<E, Rank<E>>();
+        }
+    }
+
+    /**
+     * Gets a value indicating whether elements are ordered by priority.
+     * @return A value indicating whether elements are ordered by priority.
+     */
+    public Boolean isRanked() {
+        return order != null;
+    }
+
+    /**
+     * Adds the specified element to the tail of the queue, if it is not already queued.  In a ranked queue the element
+     * is given the lowest priority.
+     * @param element The element to add.
+     * @return A value indicating whether the element was added.
+     */
+    @Override
+    public boolean offer(E element) {
+        return offer(element, Long.MAX_VALUE);
+    }
+
+    /**
+     * Adds the specified element to the queue, if it is not already queued.  In a ranked queue the element is placed
+     * after any queued elements with a lower or equal priority value.
+     * @param element The element to add.
+     * @param priority The priority of the element; lower values are dequeued first.
+     * @return A value indicating whether the element was added.
+     */
+    public synchronized boolean offer(E element, long priority) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+
+        if (elements.containsKey(element)) {
+            return false;
+        }
+
+        Rank<E> rank = new Rank<E>(element, priority, sequence++);
+        elements.put(element, rank);
+
+        if (order != null) {
+            order.add(rank);
+        }
+
+        snapshot = null;
+
+        return true;
+    }
+
+    /**
+     * Removes and returns the element at the head of the queue.
+     * @return The element at the head of the queue, or null if the queue is empty.
+     */
+    @Override
+    public synchronized E poll() {
+        E retVal = peek();
+
+        if (retVal != null) {
+            remove(retVal);
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Returns the element at the head of the queue without removing it.
+     * @return The element at the head of the queue, or null if the queue is empty.
+     */
+    @Override
+    public synchronized E peek() {
+        if (elements.isEmpty()) {
+            return null;
+        }
+
+        return order != null ? order.first().element : elements.keySet().iterator().next();
+    }
+
+    /**
+     * Returns the element nearest the head of the queue which is not in the specified collection, without removing it.
+     * Only the excluded elements ahead of the result are visited, so a small exclusion is cheap however long the
+     * queue.
+     * @param excluded The elements to skip.
+     * @return The element nearest the head of the queue which is not excluded, or null if there is none.
+     */
+    public synchronized E peekExcluding(Collection<?> excluded) {
+        if (order != null) {
+            for (Rank<E> rank : order) {
+                if (!excluded.contains(rank.element)) {
+                    return rank.element;
+                }
+            }
+        }
+        else {
+            for (E element : elements.keySet()) {
+                if (!excluded.contains(element)) {
+                    return element;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a value indicating whether the specified element is queued.
+     * @param element The element to find.
+     * @return A value indicating whether the element is queued.
+     */
+    @Override
+    public synchronized boolean contains(Object element) {
+        return elements.containsKey(element);
+    }
+
+    /**
+     * Removes the specified element from the queue.
+     * @param element The element to remove.
+     * @return A value indicating whether the element was queued.
+     */
+    @Override
+    public synchronized boolean remove(Object element) {
+        Rank<E> rank = elements.remove(element);
+
+        if (rank == null) {
+            return false;
+        }
+
+        if (order != null) {
+            order.remove(rank);
+        }
+
+        snapshot = null;
+
+        return true;
+    }
+
+    /**
+     * Removes all elements from the queue.
+     */
+    @Override
+    public synchronized void clear() {
+        elements.clear();
+
+        if (order != null) {
+            order.clear();
+        }
+
+        snapshot = null;
+    }
+
+    /**
+     * Gets the number of queued elements.
+     * @return The number of queued elements.
+     */
+    @Override
+    public synchronized int size() {
+        return elements.size();
+    }
+
+    /**
+     * Returns an unmodifiable copy of the queued elements in queue order.  The copy is shared by callers until the
+     * queue next changes, so that repeated reads of an unchanged queue don't copy it again.
+     * @return An unmodifiable copy of the queued elements.
+     */
+    public synchronized List<E> snapshot() {
+        if (snapshot == null) {
+            List<E> copy = new ArrayList<E>(elements.size());
+
+            if (order != null) {
+                for (Rank<E> rank : order) {
+                    copy.add(rank.element);
+                }
+            }
+            else {
+                copy.addAll(elements.keySet());
+            }
+
+            snapshot = Collections.unmodifiableList(copy);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queue, so that the queue may be modified during iteration.  Elements
+     * removed through the iterator are removed from the queue.
+     * @return An iterator over a snapshot of the queue.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final Iterator<E> iterator = snapshot().iterator();
+
+        return new Iterator<E>() {
+            /**
+             * The element most recently returned, or null if it has been removed or none has been returned.
+             */
+            private E last;
+
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            public E next() {
+                last = iterator.next();
+                return last;
+            }
+
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+
+                IndexedQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * The position of an element in the queue.
+     * @param <E> The type of the element.
+     */
+    private static class Rank<E> implements Comparable<Rank<E>> {
+        /**
+         * The element.
+         */
+        private E element;
+
+        /**
+         * The priority of the element; lower values are dequeued first.
+         */
+        private long priority;
+
+        /**
+         * The order in which the element was queued relative to elements of equal priority.
+         */
+        private long sequence;
+
+        /**
+         * Initializes a new instance of the Rank class.
+         * @param element The element.
+         * @param priority The priority of the element.
+         * @param sequence The order in which the element was queued.
+         */
+        public Rank(E element, long priority, long sequence) {
+            this.element = element;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Compares this rank to the specified rank by priority, then by the order in which the elements were queued.
+         * @param other The rank to compare.
+         * @return A negative value, zero or a positive value as this rank is before, equal to or after the other.
+         */
+        public int compareTo(Rank<E> other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/****************************************************************************
+ *
+ * ListEvent.java
+ *
+ * A flight recorder event describing a directory listing.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event describing a directory listing, including the time spent waiting for a session.
+ */
+@Name("SeedboxSync.List")
+@Label("Directory Listing")
+@Category({ "SeedboxSync", "Server" })
+@Description("The retrieval of a directory listing from the server.")
+public class ListEvent extends jdk.jfr.Event {
+    /**
+     * The directory which was listed.
+     */
+    @Label("Directory")
+    String directory;
+
+    /**
+     * A value indicating whether the directory was listed recursively.
+     */
+    @Label("Recursive")
+    boolean recursive;
+
+    /**
+     * The number of entries returned.
+     */
+    @Label("Entries")
+    int entries;
+}
@@ -0,0 +1,559 @@
+/****************************************************************************
+ *
+ * MappedFileIndex.java
+ *
+ * An index of known files held in a memory-mapped file.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.sql.Timestamp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An index of known files held in a memory-mapped file, so that a history of millions of files is kept off the heap
+ * and survives restarts without being reloaded from the database.  The file is an open-addressing hash table with
+ * linear probing.  Each slot holds two independent 64 bit hashes of a file name, which together identify the name,
+ * followed by the size of the file and the time at which it was downloaded.  Names themselves are not stored, so
+ * lookups hash the name and compare numbers without allocating.  The table doubles in size when it is half full.
+ */
+public class MappedFileIndex implements IFileIndex {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The value identifying an index file, in its first eight bytes.
+     */
+    private static final long magic = 0x5342534649445831L;
+
+    /**
+     * The length of the header preceding the slots, in bytes.
+     */
+    private static final int headerSize = 64;
+
+    /**
+     * The length of each slot, in bytes.
+     */
+    private static final int slotSize = 32;
+
+    /**
+     * The number of slots in a new index.
+     */
+    private static final int initialCapacity = 65536;
+
+    /**
+     * The largest number of slots an index may have.  A single buffer maps at most Integer.MAX_VALUE bytes, so the
+     * table is limited to 1 GiB, which also keeps every slot offset within an int.
+     */
+    static final int maximumCapacity = 1 << 25;
+
+    /**
+     * The offset of the slot count in the header.
+     */
+    private static final int capacityOffset = 8;
+
+    /**
+     * The offset of the entry count in the header.
+     */
+    private static final int countOffset = 16;
+
+    /**
+     * The offset in the header of the generation of the database with which the index is in step.
+     */
+    private static final int generationOffset = 24;
+
+    /**
+     * The file holding the index.
+     */
+    private java.io.File file;
+
+    /**
+     * The channel through which the file is mapped.
+     */
+    private FileChannel channel;
+
+    /**
+     * The mapped contents of the file.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The number of slots, which is a power of two.
+     */
+    private int capacity;
+
+    /**
+     * The number of occupied slots.
+     */
+    private int count;
+
+    /**
+     * A value indicating whether the table failed to grow, in which case it keeps its current slots until reopened.
+     */
+    private boolean growthFailed;
+
+    /**
+     * Initializes a new instance of the MappedFileIndex class, opening the index held in the specified file or creating
+     * an empty one if the file is missing or is not a valid index.
+     * @param file The file holding the index.
+     * @throws IOException Thrown if the file can't be opened or mapped.
+     */
+    public MappedFileIndex(java.io.File file) throws IOException {
+        this.file = file;
+
+        if (!open(file)) {
+            logger.info("Creating a new file index in '" + file + "'...");
+
+            create(file, initialCapacity);
+
+            if (!open(file)) {
+                throw new IOException("The new file index in '" + file + "' could not be opened.");
+            }
+        }
+    }
+
+    /**
+     * Retrieves the indexed File with the specified name.  The File holds the size and downloaded time; the remote and
+     * added timestamps are not indexed.
+     * @param name The name of the File to retrieve.
+     * @return The indexed File, or null if no File with the name is indexed.
+     */
+    public synchronized File get(String name) {
+        int slot = find(name);
+
+        if (slot < 0) {
+            return null;
+        }
+
+        long downloaded = buffer.getLong(offset(slot) + 24);
+
+        return new File(name, buffer.getLong(offset(slot) + 16), null, null,
+                downloaded != 0 ? new Timestamp(downloaded) : null);
+    }
+
+    /**
+     * Returns a value indicating whether a File with the specified name is indexed.
+     * @param name The name of the File to find.
+     * @return A value indicating whether a File with the name is indexed.
+     */
+    public synchronized Boolean contains(String name) {
+        return find(name) >= 0;
+    }
+
+    /**
+     * Adds the specified File to the index, if no File with the same name is indexed.
+     * @param file The File to add.
+     * @throws IllegalStateException Thrown if the File is not indexed and the index is full.
+     */
+    public synchronized void put(File file) {
+        if (find(file.getName()) < 0) {
+            replace(file);
+        }
+    }
+
+    /**
+     * Replaces the indexed File with the same name as the specified File.  A new name is not indexed once three
+     * quarters of the slots are occupied and the table can't grow, which keeps the probe sequences short.
+     * @param file The File to index.
+     * @throws IllegalStateException Thrown if the File is not indexed and the index is full.
+     */
+    public synchronized void replace(File file) {
+        long key = key(file.getName());
+        long check = check(file.getName());
+        Long size = file.getSize() != null ? file.getSize() : 0L;
+        Long downloaded = file.getDownloadedTimestamp() != null ? file.getDownloadedTimestamp().getTime() : 0L;
+
+        if ((count + 1) * 4L > capacity * 3L && find(file.getName()) < 0) {
+            throw new IllegalStateException("The file index in '" + this.file + "' is full.");
+        }
+
+        if (insert(buffer, capacity, key, check, size, downloaded)) {
+            count++;
+            buffer.putLong(countOffset, count);
+
+            if (count * 2L > capacity && capacity < maximumCapacity && !growthFailed) {
+                grow();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of indexed Files.
+     * @return The number of indexed Files.
+     */
+    public synchronized Integer size() {
+        return count;
+    }
+
+    /**
+     * Gets the generation of the database with which the index was last recorded to be in step.
+     * @return The generation, or 0 if the index is not known to be in step with any generation.
+     */
+    public synchronized Long getGeneration() {
+        return buffer.getLong(generationOffset);
+    }
+
+    /**
+     * Records the generation of the database with which the index is in step.
+     * @param generation The generation, or 0 if the index is not known to be in step with any generation.
+     */
+    public synchronized void setGeneration(Long generation) {
+        buffer.putLong(generationOffset, generation);
+    }
+
+    /**
+     * Removes every File from the index.
+     */
+    public synchronized void clear() {
+        java.io.File cleared = new java.io.File(file.getPath() + ".tmp");
+
+        try {
+            create(cleared, initialCapacity);
+            swap(cleared);
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Failed to clear the file index in '" + file + "': " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Writes the index to disk and unmaps it.
+     */
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+
+        MappedByteBuffer mapped = buffer;
+
+        // every reference is dropped before the mapping is released, so the released memory is never read
+        buffer = null;
+
+        try {
+            mapped.force();
+            channel.close();
+        }
+        catch (IOException ex) {
+            logger.warn("Failed to close the file index in '" + file + "': " + ex.getMessage());
+        }
+
+        channel = null;
+
+        unmap(mapped);
+    }
+
+    /**
+     * Finds the slot holding the specified name.
+     * @param name The name to find.
+     * @return The index of the slot holding the name, or -1 if the name is not indexed.
+     */
+    private int find(String name) {
+        long key = key(name);
+        long check = check(name);
+        int mask = capacity - 1;
+
+        for (int slot = (int)key & mask; ; slot = (slot + 1) & mask) {
+            long current = buffer.getLong(offset(slot));
+
+            if (current == 0) {
+                return -1;
+            }
+
+            if (current == key && buffer.getLong(offset(slot) + 8) == check) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Stores the specified entry in the specified table, replacing the entry with the same hashes if there is one.
+     * @param table The table in which to store the entry.
+     * @param slots The number of slots in the table.
+     * @param key The primary hash of the name.
+     * @param check The secondary hash of the name.
+     * @param size The size of the file.
+     * @param downloaded The time at which the file was downloaded, or 0 if it has not been.
+     * @return A value indicating whether a new slot was occupied.
+     */
+    private static Boolean insert(MappedByteBuffer table, int slots, long key, long check, long size, long downloaded) {
+        int mask = slots - 1;
+        int slot = (int)key & mask;
+
+        while (true) {
+            long current = table.getLong(offset(slot));
+
+            if (current == 0 || (current == key && table.getLong(offset(slot) + 8) == check)) {
+                table.putLong(offset(slot) + 8, check);
+                table.putLong(offset(slot) + 16, size);
+                table.putLong(offset(slot) + 24, downloaded);
+
+                // the key is written last, so that a slot is never occupied without its values
+                table.putLong(offset(slot), key);
+
+                return current == 0;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Doubles the number of slots, rehashing the entries into a new file which then replaces the current file.  If the
+     * new file can't be written or can't replace the current file, the index continues with its current slots.
+     */
+    private void grow() {
+        java.io.File grown = new java.io.File(file.getPath() + ".tmp");
+        int grownCapacity = capacity * 2;
+
+        logger.debug("Growing the file index in '" + file + "' to " + grownCapacity + " slots...");
+
+        try {
+            RandomAccessFile output = new RandomAccessFile(grown, "rw");
+            MappedByteBuffer table = null;
+
+            try {
+                output.setLength(0);
+                output.setLength(headerSize + (long)grownCapacity * slotSize);
+
+                table = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                        headerSize + (long)grownCapacity * slotSize);
+
+                for (int slot = 0; slot < capacity; slot++) {
+                    long key = buffer.getLong(offset(slot));
+
+                    if (key != 0) {
+                        insert(table, grownCapacity, key, buffer.getLong(offset(slot) + 8),
+                                buffer.getLong(offset(slot) + 16), buffer.getLong(offset(slot) + 24));
+                    }
+                }
+
+                writeHeader(table, grownCapacity, count, buffer.getLong(generationOffset));
+                table.force();
+            }
+            finally {
+                output.close();
+
+                if (table != null) {
+                    unmap(table);
+                }
+            }
+
+            swap(grown);
+        }
+        catch (IOException ex) {
+            grown.delete();
+            growthFailed = true;
+
+            logger.warn("Failed to grow the file index in '" + file + "' (" + ex.getMessage() + "); it will " +
+                    "continue with " + capacity + " slots.");
+        }
+    }
+
+    /**
+     * Replaces the file holding the index with the specified file, which holds a complete table, and maps it.  The
+     * current table is unmapped first, as a mapped file can't be replaced on every platform and must not be changed
+     * beneath a mapping.  If the file can't be replaced, the current file, which is unchanged, is mapped again.
+     * @param replacement The file holding the replacement table.
+     * @throws IOException Thrown if the file can't be replaced.
+     */
+    private void swap(java.io.File replacement) throws IOException {
+        close();
+
+        try {
+            Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException ex) {
+            replacement.delete();
+
+            if (!open(file)) {
+                throw new IllegalStateException("The file index in '" + file + "' could not be reopened after it " +
+                        "could not be replaced: " + ex.getMessage(), ex);
+            }
+
+            throw ex;
+        }
+
+        if (!open(file)) {
+            throw new IllegalStateException("The replaced file index in '" + file + "' could not be opened.");
+        }
+    }
+
+    /**
+     * Releases the memory mapped by the specified buffer, rather than waiting for the buffer to be collected, so that
+     * the mapped file may be replaced.  The buffer must not be used afterwards.  If the mapping can't be released
+     * explicitly it is released when the buffer is collected.
+     * @param mapped The buffer to release.
+     */
+    private static void unmap(MappedByteBuffer mapped) {
+        try {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), mapped);
+            }
+            catch (NoSuchMethodException ex) {
+                // Java 8
+                Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+
+                Object cleaner = cleanerMethod.invoke(mapped);
+
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        }
+        catch (Exception ex) {
+            logger.debug("Failed to unmap a file index buffer: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Opens and maps the index held in the specified file.
+     * @param file The file holding the index.
+     * @return A value indicating whether the file held a valid index.
+     * @throws IOException Thrown if the file can't be opened or mapped.
+     */
+    private Boolean open(java.io.File file) throws IOException {
+        if (!file.exists() || file.length() < headerSize) {
+            return false;
+        }
+
+        RandomAccessFile input = new RandomAccessFile(file, "rw");
+        MappedByteBuffer header = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, headerSize);
+
+        long identifier = header.getLong(0);
+        long slots = header.getLong(capacityOffset);
+
+        unmap(header);
+
+        if (identifier != magic || slots < initialCapacity || slots > maximumCapacity ||
+                Long.bitCount(slots) != 1 || file.length() != headerSize + slots * slotSize) {
+            logger.warn("File '" + file + "' is not a valid file index; it will be rebuilt.");
+
+            input.close();
+            return false;
+        }
+
+        channel = input.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize + slots * slotSize);
+        capacity = (int)slots;
+        count = (int)buffer.getLong(countOffset);
+
+        return true;
+    }
+
+    /**
+     * Creates an empty index with the specified number of slots in the specified file, which must not be mapped.
+     * @param file The file to hold the index.
+     * @param slots The number of slots.
+     * @throws IOException Thrown if the file can't be created.
+     */
+    private static void create(java.io.File file, int slots) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+
+        try {
+            // truncating first zeroes every slot
+            output.setLength(0);
+            output.setLength(headerSize + (long)slots * slotSize);
+
+            MappedByteBuffer header = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+
+            writeHeader(header, slots, 0, 0L);
+            header.force();
+
+            unmap(header);
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Writes the header of an index to the specified table.
+     * @param table The table.
+     * @param slots The number of slots in the table.
+     * @param entries The number of occupied slots.
+     * @param generation The generation of the database with which the table is in step.
+     */
+    private static void writeHeader(MappedByteBuffer table, int slots, int entries, long generation) {
+        table.putLong(0, magic);
+        table.putLong(capacityOffset, slots);
+        table.putLong(countOffset, entries);
+        table.putLong(generationOffset, generation);
+    }
+
+    /**
+     * Gets the position of the specified slot in the file.
+     * @param slot The index of the slot.
+     * @return The position of the slot.
+     */
+    private static int offset(int slot) {
+        return headerSize + slot * slotSize;
+    }
+
+    /**
+     * Computes the primary hash of the specified name, which locates its slot.  Zero marks an empty slot, so it is
+     * never returned.
+     * @param name The name.
+     * @return The primary hash of the name.
+     */
+    private static long key(String name) {
+        long retVal = BloomFilter.hash(name);
+        return retVal != 0 ? retVal : 1;
+    }
+
+    /**
+     * Computes the secondary hash of the specified name, which distinguishes names with the same primary hash.
+     * @param name The name.
+     * @return The secondary hash of the name.
+     */
+    private static long check(String name) {
+        // 64 bit FNV-1a from a different basis, in reverse order, followed by the SplitMix64 finalizer
+        long retVal = 0x84222325cbf29ce4L;
+
+        for (int i = name.length() - 1; i >= 0; i--) {
+            retVal ^= name.charAt(i);
+            retVal *= 0x100000001b3L;
+        }
+
+        retVal = (retVal ^ (retVal >>> 30)) * 0xbf58476d1ce4e5b9L;
+        retVal = (retVal ^ (retVal >>> 27)) * 0x94d049bb133111ebL;
+
+        return retVal ^ (retVal >>> 31);
+    }
+}
@@ -0,0 +1,175 @@
+/****************************************************************************
+ *
+ * MemoryFileIndex.java
+ *
+ * An index of known files held on the heap.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of known files held in a hash map on the heap, optionally fronted by a Bloom filter so that names which
+ * were never indexed, such as those of new files found by a scan, are rejected without probing the map.
+ */
+public class MemoryFileIndex implements IFileIndex {
+    /**
+     * The number of names for which the Bloom filter is first sized.
+     */
+    private static final Integer initialBloomCapacity = 65536;
+
+    /**
+     * The proportion of unindexed names which pass the Bloom filter when it is full.
+     */
+    private static final Double bloomFalsePositiveRate = 0.01;
+
+    /**
+     * The indexed Files, keyed by name.
+     */
+    private ConcurrentHashMap<String, File> files;
+
+    /**
+     * The Bloom filter of indexed names, or null if lookups go straight to the map.
+     */
+    private volatile BloomFilter bloomFilter;
+
+    /**
+     * The generation of the database with which the index is in step, or 0 if it is not known to be.
+     */
+    private volatile Long generation = 0L;
+
+    /**
+     * Initializes a new instance of the MemoryFileIndex class.
+     * @param bloomFilter A value indicating whether lookups are filtered through a Bloom filter.
+     */
+    public MemoryFileIndex(Boolean bloomFilter) {
+        files = new ConcurrentHashMap<String, File>();
+
+        if (bloomFilter) {
+            this.bloomFilter = new BloomFilter(initialBloomCapacity, bloomFalsePositiveRate);
+        }
+    }
+
+    /**
+     * Retrieves the indexed File with the specified name.
+     * @param name The name of the File to retrieve.
+     * @return The indexed File, or null if no File with the name is indexed.
+     */
+    public File get(String name) {
+        BloomFilter filter = bloomFilter;
+
+        if (filter != null && !filter.mightContain(name)) {
+            return null;
+        }
+
+        return files.get(name);
+    }
+
+    /**
+     * Returns a value indicating whether a File with the specified name is indexed.
+     * @param name The name of the File to find.
+     * @return A value indicating whether a File with the name is indexed.
+     */
+    public Boolean contains(String name) {
+        return get(name) != null;
+    }
+
+    /**
+     * Adds the specified File to the index, if no File with the same name is indexed.
+     * @param file The File to add.
+     */
+    public void put(File file) {
+        if (files.putIfAbsent(file.getName(), file) == null && bloomFilter != null) {
+            addToBloomFilter(file.getName());
+        }
+    }
+
+    /**
+     * Replaces the indexed File with the same name as the specified File.
+     * @param file The File to index.
+     */
+    public void replace(File file) {
+        if (files.put(file.getName(), file) == null && bloomFilter != null) {
+            addToBloomFilter(file.getName());
+        }
+    }
+
+    /**
+     * Gets the number of indexed Files.
+     * @return The number of indexed Files.
+     */
+    public Integer size() {
+        return files.size();
+    }
+
+    /**
+     * Gets the generation of the database with which the index was last recorded to be in step.
+     * @return The generation, or 0 if the index is not known to be in step with any generation.
+     */
+    public Long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Records the generation of the database with which the index is in step.
+     * @param generation The generation, or 0 if the index is not known to be in step with any generation.
+     */
+    public void setGeneration(Long generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Removes every File from the index.
+     */
+    public synchronized void clear() {
+        files.clear();
+
+        if (bloomFilter != null) {
+            bloomFilter = new BloomFilter(initialBloomCapacity, bloomFalsePositiveRate);
+        }
+    }
+
+    /**
+     * Releases the resources held by the index.  The index is held on the heap, so there are none.
+     */
+    public void close() {
+    }
+
+    /**
+     * Adds the specified name to the Bloom filter, first rebuilding the filter at twice its capacity if it is full so
+     * that the false positive rate stays low as the index grows.
+     * @param name The name to add.
+     */
+    private synchronized void addToBloomFilter(String name) {
+        if (files.size() > bloomFilter.getCapacity()) {
+            BloomFilter rebuilt = new BloomFilter(Math.max(bloomFilter.getCapacity() * 2, files.size() * 2),
+                    bloomFalsePositiveRate);
+
+            for (String key : files.keySet()) {
+                rebuilt.add(key);
+            }
+
+            bloomFilter = rebuilt;
+        }
+        else {
+            bloomFilter.add(name);
+        }
+    }
+}
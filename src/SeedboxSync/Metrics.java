@@ -0,0 +1,151 @@
+/****************************************************************************
+ *
+ * Metrics.java
+ *
+ * Defines the metrics collected by the application.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+/**
+ * Defines the metrics collected by the application.  Latencies and durations are recorded in seconds and sizes in
+ * bytes, following Prometheus conventions.
+ */
+public class Metrics {
+    /**
+     * The bucket bounds used for operation latencies, in seconds.
+     */
+    private static final double[] latencyBuckets = { 0.001, 0.005, 0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30 };
+
+    /**
+     * The bucket bounds used for scan durations, in seconds.
+     */
+    private static final double[] durationBuckets = { 0.1, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600 };
+
+    /**
+     * The bucket bounds used for per-transfer throughput, in bytes per second.
+     */
+    private static final double[] throughputBuckets = { 65536, 262144, 1048576, 4194304, 10485760, 26214400,
+            52428800, 104857600, 262144000, 1048576000 };
+
+    /**
+     * The registry containing all application metrics.
+     */
+    private static final MetricsRegistry registry = new MetricsRegistry();
+
+    /**
+     * The number of bytes downloaded.
+     */
+    public static final MetricsRegistry.Counter downloadedBytes = registry.counter("seedboxsync_transferred_bytes_total",
+            "The number of bytes transferred.", "direction=\"download\"");
+
+    /**
+     * The number of bytes uploaded.
+     */
+    public static final MetricsRegistry.Counter uploadedBytes = registry.counter("seedboxsync_transferred_bytes_total",
+            "The number of bytes transferred.", "direction=\"upload\"");
+
+    /**
+     * The average throughput of each completed download.
+     */
+    public static final MetricsRegistry.Histogram downloadThroughput = registry.histogram(
+            "seedboxsync_transfer_throughput_bytes_per_second", "The average throughput of each completed transfer.",
+            "direction=\"download\"", throughputBuckets);
+
+    /**
+     * The average throughput of each completed upload.
+     */
+    public static final MetricsRegistry.Histogram uploadThroughput = registry.histogram(
+            "seedboxsync_transfer_throughput_bytes_per_second", "The average throughput of each completed transfer.",
+            "direction=\"upload\"", throughputBuckets);
+
+    /**
+     * The latency of single directory listings.
+     */
+    public static final MetricsRegistry.Histogram listLatency = registry.histogram("seedboxsync_list_duration_seconds",
+            "The latency of remote listing calls.", "mode=\"directory\"", latencyBuckets);
+
+    /**
+     * The latency of recursive listings.
+     */
+    public static final MetricsRegistry.Histogram recursiveListLatency = registry.histogram(
+            "seedboxsync_list_duration_seconds", "The latency of remote listing calls.", "mode=\"recursive\"",
+            latencyBuckets);
+
+    /**
+     * The duration of each scan of the remote download directory.
+     */
+    public static final MetricsRegistry.Histogram scanDuration = registry.histogram("seedboxsync_scan_duration_seconds",
+            "The duration of each scan of the remote download directory.", null, durationBuckets);
+
+    /**
+     * The number of files waiting to be downloaded.
+     */
+    public static final MetricsRegistry.Gauge downloadQueueDepth = registry.gauge("seedboxsync_queue_depth",
+            "The number of files waiting to be transferred.", "direction=\"download\"");
+
+    /**
+     * The number of files waiting to be uploaded.
+     */
+    public static final MetricsRegistry.Gauge uploadQueueDepth = registry.gauge("seedboxsync_queue_depth",
+            "The number of files waiting to be transferred.", "direction=\"upload\"");
+
+    /**
+     * The latency of record lookups.
+     */
+    public static final MetricsRegistry.Histogram getFileLatency = databaseLatency("getFile");
+
+    /**
+     * The latency of full table reads.
+     */
+    public static final MetricsRegistry.Histogram getFilesLatency = databaseLatency("getFiles");
+
+    /**
+     * The latency of record inserts.
+     */
+    public static final MetricsRegistry.Histogram addFileLatency = databaseLatency("addFile");
+
+    /**
+     * The latency of download timestamp updates.
+     */
+    public static final MetricsRegistry.Histogram setDownloadedTimestampLatency = databaseLatency("setDownloadedTimestamp");
+
+    /**
+     * The latency of batched writes of completed files.
+     */
+    public static final MetricsRegistry.Histogram flushLatency = databaseLatency("flush");
+
+    /**
+     * Gets the registry containing all application metrics.
+     * @return The registry containing all application metrics.
+     */
+    public static MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Registers the latency histogram of the specified database query.
+     * @param query The name of the query.
+     * @return The registered histogram.
+     */
+    private static MetricsRegistry.Histogram databaseLatency(String query) {
+        return registry.histogram("seedboxsync_database_query_duration_seconds", "The latency of database queries.",
+                "query=\"" + query + "\"", latencyBuckets);
+    }
+}
@@ -0,0 +1,412 @@
+/****************************************************************************
+ *
+ * MetricsRegistry.java
+ *
+ * Collects metrics and renders them in the Prometheus text format.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects metrics and renders them in the Prometheus text format.  Metrics sharing a name form a family, each member
+ * of which is distinguished by its labels.  Updating a metric is lock free and does not allocate.
+ */
+public class MetricsRegistry {
+    /**
+     * The registered metrics, grouped into families by name.
+     */
+    private Map<String, Family> families = new TreeMap<String, Family>();
+
+    /**
+     * Registers a counter.
+     * @param name The name of the counter.
+     * @param help The description of the counter.
+     * @param labels The labels identifying the counter within its family, such as 'direction="upload"', or null.
+     * @return The registered counter.
+     */
+    public synchronized Counter counter(String name, String help, String labels) {
+        Counter retVal = new Counter(labels);
+        register(name, help, "counter", retVal);
+
+        return retVal;
+    }
+
+    /**
+     * Registers a gauge.
+     * @param name The name of the gauge.
+     * @param help The description of the gauge.
+     * @param labels The labels identifying the gauge within its family, or null.
+     * @return The registered gauge.
+     */
+    public synchronized Gauge gauge(String name, String help, String labels) {
+        Gauge retVal = new Gauge(labels);
+        register(name, help, "gauge", retVal);
+
+        return retVal;
+    }
+
+    /**
+     * Registers a histogram.
+     * @param name The name of the histogram.
+     * @param help The description of the histogram.
+     * @param labels The labels identifying the histogram within its family, or null.
+     * @param buckets The upper bounds of the histogram's buckets, in ascending order.
+     * @return The registered histogram.
+     */
+    public synchronized Histogram histogram(String name, String help, String labels, double... buckets) {
+        Histogram retVal = new Histogram(labels, buckets);
+        register(name, help, "histogram", retVal);
+
+        return retVal;
+    }
+
+    /**
+     * Renders all registered metrics in the Prometheus text format.
+     * @return The rendered metrics.
+     */
+    public synchronized String render() {
+        StringBuilder retVal = new StringBuilder();
+
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+
+            retVal.append("# HELP ").append(entry.getKey()).append(" ").append(family.help).append("\n");
+            retVal.append("# TYPE ").append(entry.getKey()).append(" ").append(family.type).append("\n");
+
+            for (Metric metric : family.metrics) {
+                metric.render(entry.getKey(), retVal);
+            }
+        }
+
+        return retVal.toString();
+    }
+
+    /**
+     * Adds the specified metric to the family of the specified name, creating the family if necessary.
+     * @param name The name of the family.
+     * @param help The description of the family.
+     * @param type The Prometheus type of the family.
+     * @param metric The metric to add.
+     */
+    private void register(String name, String help, String type, Metric metric) {
+        Family family = families.get(name);
+
+        if (family == null) {
+            family = new Family(help, type);
+            families.put(name, family);
+        }
+        else if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric '" + name + "' is already registered as a " + family.type + ".");
+        }
+
+        family.metrics.add(metric);
+    }
+
+    /**
+     * Formats the specified value as a Prometheus sample value.
+     * @param value The value to format.
+     * @return The formatted value.
+     */
+    private static String format(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long)value);
+        }
+
+        return String.format(Locale.ROOT, "%s", value);
+    }
+
+    /**
+     * Appends a single sample line.
+     * @param builder The builder to which the line is appended.
+     * @param name The name of the sample.
+     * @param labels The labels of the sample, or null.
+     * @param value The value of the sample.
+     */
+    private static void sample(StringBuilder builder, String name, String labels, double value) {
+        builder.append(name);
+
+        if (labels != null && !labels.equals("")) {
+            builder.append("{").append(labels).append("}");
+        }
+
+        builder.append(" ").append(format(value)).append("\n");
+    }
+
+    /**
+     * A group of metrics sharing a name, description and type.
+     */
+    private static class Family {
+        /**
+         * The description of the family.
+         */
+        private String help;
+
+        /**
+         * The Prometheus type of the family.
+         */
+        private String type;
+
+        /**
+         * The members of the family.
+         */
+        private List<Metric> metrics = new ArrayList<Metric>();
+
+        /**
+         * Initializes a new instance of the Family class.
+         * @param help The description of the family.
+         * @param type The Prometheus type of the family.
+         */
+        public Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    /**
+     * A single metric within a family.
+     */
+    private abstract static class Metric {
+        /**
+         * The labels identifying the metric within its family, or null.
+         */
+        protected String labels;
+
+        /**
+         * Initializes a new instance of the Metric class.
+         * @param labels The labels identifying the metric within its family, or null.
+         */
+        protected Metric(String labels) {
+            this.labels = labels;
+        }
+
+        /**
+         * Appends the samples of the metric.
+         * @param name The name of the metric's family.
+         * @param builder The builder to which the samples are appended.
+         */
+        protected abstract void render(String name, StringBuilder builder);
+    }
+
+    /**
+     * A value which only increases.
+     */
+    public static class Counter extends Metric {
+        /**
+         * The value of the counter.
+         */
+        private LongAdder value = new LongAdder();
+
+        /**
+         * Initializes a new instance of the Counter class.
+         * @param labels The labels identifying the counter within its family, or null.
+         */
+        private Counter(String labels) {
+            super(labels);
+        }
+
+        /**
+         * Adds the specified amount to the counter.
+         * @param amount The amount to add.
+         */
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        /**
+         * Gets the value of the counter.
+         * @return The value of the counter.
+         */
+        public long get() {
+            return value.sum();
+        }
+
+        /**
+         * Appends the sample of the counter.
+         * @param name The name of the counter's family.
+         * @param builder The builder to which the sample is appended.
+         */
+        protected void render(String name, StringBuilder builder) {
+            sample(builder, name, labels, value.sum());
+        }
+    }
+
+    /**
+     * A value which is read from a source each time the metrics are rendered.
+     */
+    public static class Gauge extends Metric {
+        /**
+         * The source of the gauge's value, or null if the gauge has no value.
+         */
+        private volatile Source source;
+
+        /**
+         * Initializes a new instance of the Gauge class.
+         * @param labels The labels identifying the gauge within its family, or null.
+         */
+        private Gauge(String labels) {
+            super(labels);
+        }
+
+        /**
+         * Sets the source of the gauge's value, replacing any previous source.
+         * @param source The source of the gauge's value.
+         */
+        public void setSource(Source source) {
+            this.source = source;
+        }
+
+        /**
+         * Gets the value of the gauge.
+         * @return The value of the gauge, or 0 if it has no source.
+         */
+        public double get() {
+            Source current = source;
+            return current != null ? current.getValue() : 0;
+        }
+
+        /**
+         * Appends the sample of the gauge.
+         * @param name The name of the gauge's family.
+         * @param builder The builder to which the sample is appended.
+         */
+        protected void render(String name, StringBuilder builder) {
+            sample(builder, name, labels, get());
+        }
+
+        /**
+         * Supplies the value of a gauge.
+         */
+        public interface Source {
+            /**
+             * Gets the current value.
+             * @return The current value.
+             */
+            double getValue();
+        }
+    }
+
+    /**
+     * Counts observations into buckets by value.
+     */
+    public static class Histogram extends Metric {
+        /**
+         * The upper bounds of the buckets, excluding the implicit +Inf bucket.
+         */
+        private double[] bounds;
+
+        /**
+         * The number of observations falling into each bucket, with the +Inf bucket last.
+         */
+        private AtomicLongArray counts;
+
+        /**
+         * The sum of all observations.
+         */
+        private DoubleAdder sum = new DoubleAdder();
+
+        /**
+         * Initializes a new instance of the Histogram class.
+         * @param labels The labels identifying the histogram within its family, or null.
+         * @param bounds The upper bounds of the buckets, in ascending order.
+         */
+        private Histogram(String labels, double[] bounds) {
+            super(labels);
+
+            this.bounds = bounds.clone();
+            this.counts = new AtomicLongArray(bounds.length + 1);
+        }
+
+        /**
+         * Records an observation.
+         * @param value The observed value.
+         */
+        public void observe(double value) {
+            int bucket = 0;
+
+            while (bucket < bounds.length && value > bounds[bucket]) {
+                bucket++;
+            }
+
+            counts.incrementAndGet(bucket);
+            sum.add(value);
+        }
+
+        /**
+         * Records the time elapsed since the specified time, in seconds.
+         * @param start The start time, as returned by System.nanoTime().
+         */
+        public void observeSince(long start) {
+            observe((System.nanoTime() - start) / 1e9);
+        }
+
+        /**
+         * Gets the number of observations.
+         * @return The number of observations.
+         */
+        public long getCount() {
+            long retVal = 0;
+
+            for (int i = 0; i < counts.length(); i++) {
+                retVal += counts.get(i);
+            }
+
+            return retVal;
+        }
+
+        /**
+         * Gets the sum of all observations.
+         * @return The sum of all observations.
+         */
+        public double getSum() {
+            return sum.sum();
+        }
+
+        /**
+         * Appends the cumulative bucket counts, sum and count of the histogram.
+         * @param name The name of the histogram's family.
+         * @param builder The builder to which the samples are appended.
+         */
+        protected void render(String name, StringBuilder builder) {
+            String prefix = labels != null && !labels.equals("") ? labels + "," : "";
+            long cumulative = 0;
+
+            for (int i = 0; i <= bounds.length; i++) {
+                cumulative += counts.get(i);
+
+                double bound = i < bounds.length ? bounds[i] : Double.POSITIVE_INFINITY;
+                sample(builder, name + "_bucket", prefix + "le=\"" + format(bound) + "\"", cumulative);
+            }
+
+            sample(builder, name + "_sum", labels, sum.sum());
+            sample(builder, name + "_count", labels, cumulative);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/****************************************************************************
+ *
+ * MetricsServer.java
+ *
+ * Serves the application metrics over HTTP.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the application metrics over HTTP in the Prometheus text format.  The listener is bound to the loopback
+ * address only, and answers GET requests to /metrics.
+ */
+public class MetricsServer {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The registry whose metrics are served.
+     */
+    private MetricsRegistry registry;
+
+    /**
+     * The port on which to listen, or 0 to choose a free port.
+     */
+    private Integer port;
+
+    /**
+     * The HTTP listener, or null if the server is not running.
+     */
+    private HttpServer server;
+
+    /**
+     * Initializes a new instance of the MetricsServer class.
+     * @param registry The registry whose metrics are served.
+     * @param port The port on which to listen, or 0 to choose a free port.
+     */
+    public MetricsServer(MetricsRegistry registry, Integer port) {
+        this.registry = registry;
+        this.port = port;
+    }
+
+    /**
+     * Gets the port on which the server is listening.
+     * @return The port on which the server is listening, or the configured port if the server is not running.
+     */
+    public Integer getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    /**
+     * Starts listening for requests.
+     * @throws IOException Thrown if the listener can't be bound.
+     */
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        server.createContext("/metrics", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    if (!exchange.getRequestMethod().equals("GET")) {
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+
+                    byte[] body = registry.render().getBytes(StandardCharsets.UTF_8);
+
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+
+                    OutputStream out = exchange.getResponseBody();
+
+                    try {
+                        out.write(body);
+                    }
+                    finally {
+                        out.close();
+                    }
+                }
+                finally {
+                    exchange.close();
+                }
+            }
+        });
+
+        server.start();
+
+        logger.info("Serving metrics at http://" + server.getAddress().getHostString() + ":" + getPort() + "/metrics");
+    }
+
+    /**
+     * Stops listening for requests.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
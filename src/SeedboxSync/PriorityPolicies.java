@@ -0,0 +1,248 @@
+/****************************************************************************
+ *
+ * PriorityPolicies.java
+ *
+ * Creates the queue priority policies selectable in the Configuration.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Creates the queue priority policies selectable in the Configuration.
+ */
+public class PriorityPolicies {
+    /**
+     * The name of the default policy, which transfers files in the order in which they were found.
+     */
+    public static final String discovery = "discovery";
+
+    /**
+     * The name of the policy which transfers the smallest files first.
+     */
+    public static final String smallest = "smallest";
+
+    /**
+     * The name of the policy which transfers the least recently modified files first.
+     */
+    public static final String oldest = "oldest";
+
+    /**
+     * The name of the policy which transfers the most recently modified files first.
+     */
+    public static final String newest = "newest";
+
+    /**
+     * The name of the policy which transfers files matching earlier patterns first.
+     */
+    public static final String pattern = "pattern";
+
+    /**
+     * The name of the policy which transfers every file in a top level directory before starting the next.
+     */
+    public static final String directory = "directory";
+
+    /**
+     * Creates the policy with the specified name.
+     * @param name The name of the policy.
+     * @param patterns The regular expressions used by the pattern policy, in priority order, or null.
+     * @return The policy, or null for the discovery policy, which needs no ranking.
+     * @throws IllegalArgumentException Thrown if the name is unknown, or if the pattern policy is selected without
+     * valid patterns.
+     */
+    public static IPriorityPolicy create(String name, List<String> patterns) throws IllegalArgumentException {
+        if (name == null || name.equals(discovery)) {
+            return null;
+        }
+        else if (name.equals(smallest)) {
+            return new SmallestFirst();
+        }
+        else if (name.equals(oldest)) {
+            return new OldestFirst();
+        }
+        else if (name.equals(newest)) {
+            return new NewestFirst();
+        }
+        else if (name.equals(pattern)) {
+            if (patterns == null || patterns.isEmpty()) {
+                throw new IllegalArgumentException("The pattern priority policy requires a priority pattern.");
+            }
+
+            return new PatternFirst(patterns);
+        }
+        else if (name.equals(directory)) {
+            return new DirectoryFirst();
+        }
+
+        throw new IllegalArgumentException("Unknown priority policy '" + name + "'.");
+    }
+
+    /**
+     * Transfers the smallest files first.  Files of unknown size are transferred last.
+     */
+    public static class SmallestFirst implements IPriorityPolicy {
+        /**
+         * Returns the size of the specified file.
+         * @param file The path of the file, relative to the directory being synchronized.
+         * @param size The size of the file in bytes, or null if unknown.
+         * @param timestamp The modification time of the file, or null if unknown.
+         * @return The size of the file.
+         */
+        public long getPriority(String file, Long size, Long timestamp) {
+            return size != null ? size : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Transfers the least recently modified files first.  Files with unknown timestamps are transferred last.
+     */
+    public static class OldestFirst implements IPriorityPolicy {
+        /**
+         * Returns the modification time of the specified file.
+         * @param file The path of the file, relative to the directory being synchronized.
+         * @param size The size of the file in bytes, or null if unknown.
+         * @param timestamp The modification time of the file, or null if unknown.
+         * @return The modification time of the file.
+         */
+        public long getPriority(String file, Long size, Long timestamp) {
+            return timestamp != null ? timestamp : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Transfers the most recently modified files first.  Files with unknown timestamps are transferred last.
+     */
+    public static class NewestFirst implements IPriorityPolicy {
+        /**
+         * Returns the negated modification time of the specified file.
+         * @param file The path of the file, relative to the directory being synchronized.
+         * @param size The size of the file in bytes, or null if unknown.
+         * @param timestamp The modification time of the file, or null if unknown.
+         * @return The negated modification time of the file.
+         */
+        public long getPriority(String file, Long size, Long timestamp) {
+            return timestamp != null ? -timestamp : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Transfers files matching earlier patterns first.  Files matching no pattern are transferred last.
+     */
+    public static class PatternFirst implements IPriorityPolicy {
+        /**
+         * The patterns, in priority order.
+         */
+        private List<Pattern> patterns;
+
+        /**
+         * Initializes a new instance of the PatternFirst class.
+         * @param patterns The regular expressions, in priority order, which are searched for in each file name.
+         * @throws IllegalArgumentException Thrown if a pattern is not a valid regular expression.
+         */
+        public PatternFirst(List<String> patterns) throws IllegalArgumentException {
+            this.patterns = new ArrayList<Pattern>();
+
+            for (String pattern : patterns) {
+                this.patterns.add(Pattern.compile(pattern));
+            }
+        }
+
+        /**
+         * Returns the index of the first pattern found in the specified file name.
+         * @param file The path of the file, relative to the directory being synchronized.
+         * @param size The size of the file in bytes, or null if unknown.
+         * @param timestamp The modification time of the file, or null if unknown.
+         * @return The index of the first pattern found in the file name, or the number of patterns if none is found.
+         */
+        public long getPriority(String file, Long size, Long timestamp) {
+            for (int i = 0; i < patterns.size(); i++) {
+                if (patterns.get(i).matcher(file).find()) {
+                    return i;
+                }
+            }
+
+            return patterns.size();
+        }
+    }
+
+    /**
+     * Transfers every file in a top level directory, such as the files of a single torrent, before starting the files
+     * of the next.  Directories are ranked in the order in which their first file was queued, and files at the top
+     * level are each ranked as a directory of their own.
+     */
+    public static class DirectoryFirst implements IPriorityPolicy {
+        /**
+         * The maximum number of directories remembered.  The least recently seen directories are forgotten first.
+         */
+        private static final Integer capacity = 100000;
+
+        /**
+         * The rank of each directory seen, in the order in which the directories were last seen.
+         */
+        private Map<String, Long> directories;
+
+        /**
+         * The rank of the next directory seen.
+         */
+        private long next;
+
+        /**
+         * Initializes a new instance of the DirectoryFirst class.
+         */
+        public DirectoryFirst() {
+            directories = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                /**
+                 * The version of the serialized form.
+                 */
+                private static final long serialVersionUID = 1L;
+
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /**
+         * Returns the rank of the top level directory of the specified file.
+         * @param file The path of the file, relative to the directory being synchronized.
+         * @param size The size of the file in bytes, or null if unknown.
+         * @param timestamp The modification time of the file, or null if unknown.
+         * @return The rank of the top level directory of the file.
+         */
+        public synchronized long getPriority(String file, Long size, Long timestamp) {
+            String name = file.startsWith("/") ? file.substring(1) : file;
+            Integer separator = name.indexOf('/');
+            String key = separator >= 0 ? name.substring(0, separator) : name;
+
+            Long retVal = directories.get(key);
+
+            if (retVal == null) {
+                retVal = next++;
+                directories.put(key, retVal);
+            }
+
+            return retVal;
+        }
+    }
+}
@@ -23,15 +23,37 @@
  *
  ****************************************************************************/
 
-import java.util.Collections;
-import java.util.Queue;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Coordinates the processing of files.
  */
 public abstract class Processor {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The longest time for which a failed file is held back, in milliseconds, however many times it has failed.
+     */
+    private static final Long maximumRetryDelay = 3600000L;
+
     /**
      * The IServer instance enabling file transfers.
      */
@@ -50,12 +72,48 @@ public abstract class Processor {
     /**
      * The file queue.
      */
-    protected Queue<String> queue;
+    protected volatile IndexedQueue<String> queue;
+
+    /**
+     * The queued files claimed by a worker and being transferred.
+     */
+    private Set<String> claimed = new HashSet<String>();
+
+    /**
+     * The failed files which are held back from the queue, and the number of times each has failed.
+     */
+    private Map<String, Failure> failures = new HashMap<String, Failure>();
+
+    /**
+     * The number of scans which have begun, by which the failed files found by the current scan are recognized.
+     */
+    private Long scans = 0L;
+
+    /**
+     * The number of transfers in progress.
+     */
+    private AtomicInteger activeTransfers = new AtomicInteger();
+
+    /**
+     * The number of files transferred at once.
+     */
+    protected volatile Integer workerCount = 1;
 
     /**
-     * A value indicating whether a transfer is currently in progress.
+     * The time for which a file is held back after its first failure, in milliseconds.  The delay doubles with each
+     * further failure.
      */
-    protected Boolean transferInProgress;
+    protected volatile Long retryDelay = 60000L;
+
+    /**
+     * The policy which orders the queue, or null if files are transferred in the order in which they were found.
+     */
+    protected volatile IPriorityPolicy priorityPolicy;
+
+    /**
+     * The maximum number of files held in the queue.
+     */
+    protected volatile Integer queueCapacity = Integer.MAX_VALUE;
 
     /**
      * Initializes a new instance of the Processor class.
@@ -67,18 +125,117 @@ public abstract class Processor {
         this.server = server;
         this.localDirectory = localDirectory;
         this.remoteDirectory = remoteDirectory;
-        this.queue = new LinkedList<String>();
+        this.queue = new IndexedQueue<String>();
+    }
+
+    /**
+     * Gets the maximum number of files held in the queue.
+     * @return The maximum number of files held in the queue.
+     */
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of files held in the queue.  Files found while the queue is full are left for a later
+     * scan.
+     * @param queueCapacity The maximum number of files held in the queue.
+     */
+    public void setQueueCapacity(Integer queueCapacity) {
+        this.queueCapacity = Math.max(queueCapacity, 1);
+    }
+
+    /**
+     * Gets the number of files transferred at once.
+     * @return The number of files transferred at once.
+     */
+    public Integer getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Sets the number of files transferred at once.  The change applies from the next time the queue is drained.
+     * @param workerCount The number of files transferred at once.
+     */
+    public void setWorkerCount(Integer workerCount) {
+        this.workerCount = Math.max(workerCount, 1);
+    }
+
+    /**
+     * Gets the time for which a file is held back after its first failure.
+     * @return The time for which a file is held back after its first failure, in milliseconds.
+     */
+    public Long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Sets the time for which a file is held back after its first failure.  A failed file is removed from the queue so
+     * that the remaining files are transferred, and is not queued again by a scan until the delay has passed.  The
+     * delay doubles with each further failure of the same file, up to an hour.
+     * @param retryDelay The time for which a file is held back after its first failure, in milliseconds.
+     */
+    public void setRetryDelay(Long retryDelay) {
+        this.retryDelay = Math.max(retryDelay, 0L);
+    }
+
+    /**
+     * Gets the policy which orders the queue.
+     * @return The policy which orders the queue, or null if files are transferred in the order found.
+     */
+    public IPriorityPolicy getPriorityPolicy() {
+        return priorityPolicy;
+    }
+
+    /**
+     * Sets the policy which orders the queue.  Files already queued are ranked by name alone, as their sizes and
+     * timestamps are not retained; the policy should therefore be set before the first scan.
+     * @param priorityPolicy The policy which orders the queue, or null to transfer files in the order in which they
+     * were found.
+     */
+    public void setPriorityPolicy(IPriorityPolicy priorityPolicy) {
+        synchronized (queue) {
+            IndexedQueue<String> reordered = new IndexedQueue<String>(priorityPolicy != null);
+
+            for (String file : queue) {
+                reordered.offer(file, priorityPolicy != null ? priorityPolicy.getPriority(getPath(file), null, null) :
+                        0L);
+            }
 
-        transferInProgress = false;
+            this.priorityPolicy = priorityPolicy;
+            queue = reordered;
+        }
+    }
+
+    /**
+     * Adds the specified file to the queue, if it is not already queued and the queue is not full.
+     * @param file The file to add.
+     * @return A value indicating whether the file was added.
+     */
+    public Boolean enqueue(String file) {
+        return enqueue(file, null, null);
     }
 
     /**
-     * Adds the specified file to the queue.
+     * Adds the specified file to the queue, if it is not already queued, is not being held back after a failure and
+     * the queue is not full.  The file is placed in the queue according to the priority policy, if one is set.
      * @param file The file to add.
+     * @param size The size of the file in bytes, or null if unknown.
+     * @param timestamp The modification time of the file in milliseconds since the epoch, or null if unknown.
+     * @return A value indicating whether the file was added.
      */
-    public void enqueue(String file) {
-        if (!queue.contains(file)) {
-            queue.add(file);
+    public Boolean enqueue(String file, Long size, Long timestamp) {
+        IndexedQueue<String> queue = this.queue;
+        IPriorityPolicy policy = priorityPolicy;
+
+        synchronized (queue) {
+            see(file);
+
+            if (queue.size() >= queueCapacity || queue.contains(file) || isHeldBack(file)) {
+                return false;
+            }
+
+            return queue.offer(file, policy != null ? policy.getPriority(getPath(file), size, timestamp) : 0L);
         }
     }
 
@@ -87,22 +244,294 @@ public abstract class Processor {
      * @param file The file to remove.
      */
     public void dequeue(String file) {
-        if (queue.contains(file)) {
-            queue.remove(file);
-        }
+        queue.remove(file);
     }
 
     /**
-     * Gets the list of queued files to be uploaded.
-     * @return The list of queued files to be uploaded.
+     * Gets the file at the head of the queue, which remains queued until it is dequeued.
+     * @return The file at the head of the queue, or null if the queue is empty.
+     */
+    protected String peek() {
+        return queue.peek();
+    }
+
+    /**
+     * Gets the list of queued files to be transferred, as of the call.
+     * @return The list of queued files to be transferred.
      */
     public List<String> getQueue() {
-        return Collections.unmodifiableList((List)queue);
+        return queue.snapshot();
+    }
+
+    /**
+     * Gets a copy of the list of queued files, which may be read while the queue is being modified.  The copy is
+     * shared until the queue next changes.
+     * @return A copy of the list of queued files.
+     */
+    public List<String> getQueueSnapshot() {
+        return queue.snapshot();
+    }
+
+    /**
+     * Gets a value indicating whether a transfer is currently in progress.
+     * @return A value indicating whether a transfer is currently in progress.
+     */
+    public Boolean isTransferInProgress() {
+        return activeTransfers.get() > 0;
+    }
+
+    /**
+     * Gets the number of transfers in progress.
+     * @return The number of transfers in progress.
+     */
+    public Integer getActiveTransferCount() {
+        return activeTransfers.get();
+    }
+
+    /**
+     * Gets the number of failed files which are held back from the queue.
+     * @return The number of failed files which are held back from the queue.
+     */
+    public Integer getFailedCount() {
+        synchronized (failures) {
+            return failures.size();
+        }
+    }
+
+    /**
+     * Transfers the files in the queue until it is empty, using the configured number of workers.  Each worker claims
+     * the next unclaimed file, transfers it and repeats, so files stay queued while they are transferred.  A file which
+     * fails is removed from the queue and held back for the retry delay, and the workers continue with the remaining
+     * files.
+     * @throws Exception Thrown if the drain is interrupted.
+     */
+    public void transfer() throws Exception {
+        Integer queued = queue.size();
+
+        if (queued == 0) {
+            return;
+        }
+
+        Integer workers = Math.min(workerCount, queued);
+
+        logger.info("Processing queue of " + queued + " file(s) with " + workers + " worker(s)...");
+
+        if (workers == 1) {
+            drain();
+        }
+        else {
+            ExecutorService executor = Executors.newFixedThreadPool(workers);
+
+            try {
+                List<Future<Void>> drains = new ArrayList<Future<Void>>();
+
+                for (int i = 0; i < workers; i++) {
+                    drains.add(executor.submit(new Callable<Void>() {
+                        public Void call() {
+                            drain();
+                            return null;
+                        }
+                    }));
+                }
+
+                for (Future<Void> drain : drains) {
+                    try {
+                        drain.get();
+                    }
+                    catch (ExecutionException ex) {
+                        throw (Exception)ex.getCause();
+                    }
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+
+        logger.info("Queue processed.");
+    }
+
+    /**
+     * Claims and transfers files until none remain unclaimed.
+     */
+    private void drain() {
+        String file;
+
+        while ((file = claim()) != null) {
+            activeTransfers.incrementAndGet();
+
+            try {
+                transfer(file);
+
+                synchronized (failures) {
+                    failures.remove(file);
+                }
+
+                queue.remove(file);
+            }
+            catch (Exception ex) {
+                fail(file, ex);
+            }
+            finally {
+                activeTransfers.decrementAndGet();
+
+                synchronized (claimed) {
+                    claimed.remove(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims the queued file nearest the head of the queue which is not being transferred by another worker.
+     * @return The claimed file, or null if every queued file is claimed.
+     */
+    private String claim() {
+        synchronized (claimed) {
+            String retVal = queue.peekExcluding(claimed);
+
+            if (retVal != null) {
+                claimed.add(retVal);
+            }
+
+            return retVal;
+        }
+    }
+
+    /**
+     * Removes the specified failed file from the queue and holds it back until its retry delay has passed.
+     * @param file The file which failed.
+     * @param ex The exception which caused the failure.
+     */
+    private void fail(String file, Exception ex) {
+        Long delay;
+
+        synchronized (failures) {
+            Failure failure = failures.get(file);
+
+            if (failure == null) {
+                failure = new Failure();
+                failure.lastScan = scans;
+                failures.put(file, failure);
+            }
+
+            failure.attempts++;
+
+            delay = Math.min(retryDelay << Math.min(failure.attempts - 1, 16), Math.max(retryDelay, maximumRetryDelay));
+            failure.retryAt = System.currentTimeMillis() + delay;
+        }
+
+        // the failure is recorded before the file leaves the queue, so that a concurrent scan doesn't queue it again
+        queue.remove(file);
+
+        logger.error("Error transferring '" + file + "': " + ex.getMessage() + ".  The file will be retried in " +
+                (delay / 1000) + " second(s).");
+    }
+
+    /**
+     * Records that a scan has begun.  Extending classes call this before each scan, and endScan() once it completes.
+     */
+    protected void beginScan() {
+        synchronized (failures) {
+            scans++;
+        }
+    }
+
+    /**
+     * Forgets the failed files which the completed scan did not find and whose retry delay has passed, such as files
+     * which were removed or transferred by other means, so that the failures don't accumulate.  A failed file which the
+     * scan found is kept with its number of attempts, whether or not it could be queued, so that its retry delay keeps
+     * growing.  Extending classes call this only once a scan completes.
+     */
+    protected void endScan() {
+        Long now = System.currentTimeMillis();
+
+        synchronized (failures) {
+            Iterator<Map.Entry<String, Failure>> iterator = failures.entrySet().iterator();
+
+            while (iterator.hasNext()) {
+                Failure failure = iterator.next().getValue();
+
+                if (failure.lastScan < scans && now >= failure.retryAt) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that the current scan found the specified file, if it failed.
+     * @param file The file which was found.
+     */
+    private void see(String file) {
+        synchronized (failures) {
+            Failure failure = failures.get(file);
+
+            if (failure != null) {
+                failure.lastScan = scans;
+            }
+        }
     }
 
+    /**
+     * Gets a value indicating whether the specified file failed and its retry delay has not yet passed.
+     * @param file The file to check.
+     * @return A value indicating whether the file is held back.
+     */
+    private Boolean isHeldBack(String file) {
+        synchronized (failures) {
+            Failure failure = failures.get(file);
+
+            return failure != null && System.currentTimeMillis() < failure.retryAt;
+        }
+    }
+
+    /**
+     * Scans for new files and adds them to the queue.  Functionality defined by extending classes.
+     * @throws Exception Thrown when an exception is encountered during the scan.
+     */
+    public abstract void scan() throws Exception;
+
+    /**
+     * Gets the path of the specified queued file, by which the priority policy ranks it.  Extending classes which
+     * queue more than the path override this to remove the rest.
+     * @param file The queued file.
+     * @return The path of the file.
+     */
+    protected String getPath(String file) {
+        return file;
+    }
+
+    /**
+     * Transfers the specified queued file.  Functionality defined by extending classes.
+     * @param file The queued file to transfer.
+     * @throws Exception Thrown when the transfer fails.
+     */
+    protected abstract void transfer(String file) throws Exception;
+
     /**
      * Processes.  Functionality defined by extending classes.
      * @throws Exception Thrown when an exception is encountered during processing.
      */
     public abstract void process() throws Exception;
+
+    /**
+     * The failures of a file which is held back from the queue.
+     */
+    private static class Failure {
+        /**
+         * The number of times the file has failed.
+         */
+        private Integer attempts = 0;
+
+        /**
+         * The time after which the file may be queued again, in milliseconds since the epoch.
+         */
+        private Long retryAt = 0L;
+
+        /**
+         * The number of the last scan which found the file.
+         */
+        private Long lastScan = 0L;
+    }
 }
@@ -0,0 +1,105 @@
+/****************************************************************************
+ *
+ * ProcessorControl.java
+ *
+ * Exposes a Processor for management over JMX.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.List;
+
+/**
+ * Exposes a Processor for management over JMX.
+ */
+public class ProcessorControl implements ProcessorControlMBean {
+    /**
+     * The managed Processor.
+     */
+    protected Processor processor;
+
+    /**
+     * Initializes a new instance of the ProcessorControl class.
+     * @param processor The managed Processor.
+     */
+    public ProcessorControl(Processor processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Gets the files waiting to be transferred, in order.
+     * @return The files waiting to be transferred.
+     */
+    public String[] getQueue() {
+        List<String> queue = processor.getQueueSnapshot();
+        return queue.toArray(new String[queue.size()]);
+    }
+
+    /**
+     * Gets the number of files waiting to be transferred.
+     * @return The number of files waiting to be transferred.
+     */
+    public Integer getQueueLength() {
+        return processor.getQueue().size();
+    }
+
+    /**
+     * Gets a value indicating whether a transfer is in progress.
+     * @return A value indicating whether a transfer is in progress.
+     */
+    public Boolean getTransferInProgress() {
+        return processor.isTransferInProgress();
+    }
+
+    /**
+     * Gets the number of transfers in progress.
+     * @return The number of transfers in progress.
+     */
+    public Integer getActiveTransferCount() {
+        return processor.getActiveTransferCount();
+    }
+
+    /**
+     * Gets the number of failed files which are held back from the queue until their retry delay has passed.
+     * @return The number of failed files which are held back from the queue.
+     */
+    public Integer getFailedCount() {
+        return processor.getFailedCount();
+    }
+
+    /**
+     * Gets the number of files transferred at once.
+     * @return The number of files transferred at once.
+     */
+    public Integer getWorkerCount() {
+        return processor.getWorkerCount();
+    }
+
+    /**
+     * Sets the number of files transferred at once.  Takes effect the next time the queue is drained.
+     * @param workerCount The number of files transferred at once.
+     */
+    public void setWorkerCount(Integer workerCount) {
+        if (workerCount == null || workerCount <= 0) {
+            throw new IllegalArgumentException("Worker count must be greater than zero.");
+        }
+
+        processor.setWorkerCount(workerCount);
+    }
+}
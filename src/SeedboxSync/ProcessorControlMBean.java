@@ -0,0 +1,71 @@
+/****************************************************************************
+ *
+ * ProcessorControlMBean.java
+ *
+ * Defines the management interface of a Processor.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+/**
+ * Defines the management interface of a Processor.
+ */
+public interface ProcessorControlMBean {
+    /**
+     * Gets the files waiting to be transferred, in order.
+     * @return The files waiting to be transferred.
+     */
+    String[] getQueue();
+
+    /**
+     * Gets the number of files waiting to be transferred.
+     * @return The number of files waiting to be transferred.
+     */
+    Integer getQueueLength();
+
+    /**
+     * Gets a value indicating whether a transfer is in progress.
+     * @return A value indicating whether a transfer is in progress.
+     */
+    Boolean getTransferInProgress();
+
+    /**
+     * Gets the number of transfers in progress.
+     * @return The number of transfers in progress.
+     */
+    Integer getActiveTransferCount();
+
+    /**
+     * Gets the number of failed files which are held back from the queue until their retry delay has passed.
+     * @return The number of failed files which are held back from the queue.
+     */
+    Integer getFailedCount();
+
+    /**
+     * Gets the number of files transferred at once.
+     * @return The number of files transferred at once.
+     */
+    Integer getWorkerCount();
+
+    /**
+     * Sets the number of files transferred at once.  Takes effect the next time the queue is drained.
+     * @param workerCount The number of files transferred at once.
+     */
+    void setWorkerCount(Integer workerCount);
+}
@@ -0,0 +1,171 @@
+/****************************************************************************
+ *
+ * ProgressReporter.java
+ *
+ * Periodically samples and logs the progress of transfers.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically samples and logs the progress of transfers.  Sampling and formatting happen on a single background
+ * thread, so that the threads moving data only update their counters.
+ */
+public class ProgressReporter {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The interval between reports, in nanoseconds.
+     */
+    private Long interval;
+
+    /**
+     * The transfers in progress.
+     */
+    private Set<TransferProgress> transfers = Collections.newSetFromMap(new ConcurrentHashMap<TransferProgress, Boolean>());
+
+    /**
+     * The executor running the reporting thread, or null if it has not been started.
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * Initializes a new instance of the ProgressReporter class.
+     * @param interval The interval between reports, in nanoseconds.
+     */
+    public ProgressReporter(Long interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Gets the interval between reports, in nanoseconds.
+     * @return The interval between reports.
+     */
+    public Long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Gets the transfers in progress.
+     * @return The transfers in progress.
+     */
+    public List<TransferProgress> getTransfers() {
+        return new ArrayList<TransferProgress>(transfers);
+    }
+
+    /**
+     * Begins tracking a new transfer, starting the reporting thread if it is not already running.
+     * @param action The verb describing the transfer, such as "Downloading".
+     * @param name The name of the file being transferred.
+     * @param size The size of the file being transferred, in bytes, or null if unknown.
+     * @param committed The number of bytes of the file transferred by previous attempts.
+     * @return The progress of the new transfer.
+     */
+    public TransferProgress start(String action, String name, Long size, Long committed) {
+        TransferProgress retVal = new TransferProgress(action, name, size, committed);
+        transfers.add(retVal);
+
+        synchronized (this) {
+            if (executor == null) {
+                executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "progress-reporter");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+                executor.scheduleAtFixedRate(new Runnable() {
+                    public void run() {
+                        report();
+                    }
+                }, interval, interval, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Stops tracking the specified transfer and logs a summary of it.
+     * @param progress The progress of the transfer.
+     * @param complete A value indicating whether the transfer completed successfully.
+     */
+    public void finish(TransferProgress progress, Boolean complete) {
+        transfers.remove(progress);
+
+        if (complete) {
+            double seconds = (System.nanoTime() - progress.getStartTime()) / 1000000000.0;
+
+            logger.info(progress.getAction() + " '" + progress.getName() + "' complete; " +
+                    String.format("%.2f", progress.getTotal() / 1024 / 1024.0) + " MB, " +
+                    String.format("%.2f", progress.getTransferred() / 1024 / 1024.0 / Math.max(seconds, 0.001)) +
+                    " MB/sec average");
+        }
+    }
+
+    /**
+     * Samples and logs the progress of each transfer in progress.
+     */
+    void report() {
+        long now = System.nanoTime();
+
+        for (TransferProgress progress : transfers) {
+            logger.info(describe(progress, progress.sample(now)));
+        }
+    }
+
+    /**
+     * Describes the progress of the specified transfer.
+     * @param progress The progress of the transfer.
+     * @param rate The rate at which data is being moved, in bytes per second.
+     * @return The description of the transfer's progress.
+     */
+    static String describe(TransferProgress progress, double rate) {
+        long total = progress.getTotal();
+        String retVal = progress.getAction() + " '" + progress.getName() + "'; " +
+                String.format("%.2f", total / 1024 / 1024.0);
+
+        if (progress.getSize() > 0) {
+            retVal += " of " + String.format("%.2f", progress.getSize() / 1024 / 1024.0) + " MB (" +
+                    String.format("%.2f", total * 100.0 / progress.getSize()) + "%)";
+        }
+        else {
+            retVal += " MB";
+        }
+
+        return retVal + ", " + String.format("%.2f", rate / 1024 / 1024.0) + " MB/sec";
+    }
+}
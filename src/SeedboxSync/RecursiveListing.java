@@ -0,0 +1,112 @@
+/****************************************************************************
+ *
+ * RecursiveListing.java
+ *
+ * Parses the output of a recursive directory listing.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+
+/**
+ * Parses the output of a recursive directory listing (LIST -R), in which the entries of each subdirectory follow a
+ * header line consisting of the subdirectory's path and a colon.
+ */
+public class RecursiveListing {
+    /**
+     * Parses the specified lines of a recursive listing of the specified directory.
+     * @param directory The directory which was listed.
+     * @param lines The lines of the listing.
+     * @param parser The parser for the server's listing format.
+     * @return The files and directories beneath the directory, named by their path relative to it, or null if the
+     * listing contains directories but no subdirectory headers, indicating that the server ignored the recursive flag.
+     */
+    public static List<FTPFile> parse(String directory, List<String> lines, FTPFileEntryParser parser) {
+        List<FTPFile> retVal = new ArrayList<FTPFile>();
+
+        String prefix = "";
+        Boolean headerFound = false;
+        Boolean directoryFound = false;
+
+        for (String line : lines) {
+            if (line.trim().equals("")) {
+                continue;
+            }
+
+            FTPFile file = parser.parseFTPEntry(line);
+
+            if (file == null) {
+                if (line.endsWith(":")) {
+                    headerFound = true;
+                    prefix = getRelativePath(directory, line.substring(0, line.length() - 1));
+                }
+
+                continue;
+            }
+
+            if (file.getName().equals(".") || file.getName().equals("..")) {
+                continue;
+            }
+
+            directoryFound = directoryFound || file.isDirectory();
+
+            file.setName(prefix + file.getName());
+            retVal.add(file);
+        }
+
+        if (directoryFound && !headerFound) {
+            return null;
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Returns the prefix to apply to entries beneath the specified subdirectory header so that they are named relative
+     * to the listed directory.  Servers variously print headers relative to the working directory (with or without a
+     * leading './') or as absolute paths.
+     * @param directory The directory which was listed.
+     * @param header The path contained within the header.
+     * @return The relative path of the subdirectory followed by a separator, or an empty string for the directory itself.
+     */
+    private static String getRelativePath(String directory, String header) {
+        String base = directory.endsWith("/") ? directory.substring(0, directory.length() - 1) : directory;
+        String retVal = header;
+
+        if (retVal.equals(base) || retVal.equals(directory)) {
+            retVal = "";
+        }
+        else if (retVal.startsWith(base + "/")) {
+            retVal = retVal.substring(base.length() + 1);
+        }
+        else if (retVal.equals(".")) {
+            retVal = "";
+        }
+        else if (retVal.startsWith("./")) {
+            retVal = retVal.substring(2);
+        }
+
+        return retVal.equals("") ? "" : retVal + "/";
+    }
+}
@@ -0,0 +1,69 @@
+/****************************************************************************
+ *
+ * ScanEvent.java
+ *
+ * A flight recorder event describing the scan of a remote directory.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event describing the scan of a remote directory.  A directory listed on its own produces one
+ * event; a tree fetched with a single recursive listing produces one event for the whole tree.
+ */
+@Name("SeedboxSync.Scan")
+@Label("Directory Scan")
+@Category({ "SeedboxSync", "Scan" })
+@Description("The listing of a remote directory and the check of each file in it against the database.")
+public class ScanEvent extends jdk.jfr.Event {
+    /**
+     * The remote directory which was scanned.
+     */
+    @Label("Directory")
+    String directory;
+
+    /**
+     * A value indicating whether the directory was fetched with a recursive listing.
+     */
+    @Label("Recursive")
+    boolean recursive;
+
+    /**
+     * The number of files found in the directory.
+     */
+    @Label("Files")
+    int files;
+
+    /**
+     * The number of subdirectories found in the directory.
+     */
+    @Label("Directories")
+    int directories;
+
+    /**
+     * The number of files added to the download queue.
+     */
+    @Label("Enqueued")
+    int enqueued;
+}
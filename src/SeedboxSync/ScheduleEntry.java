@@ -0,0 +1,176 @@
+/****************************************************************************
+ *
+ * ScheduleEntry.java
+ *
+ * Overrides the bandwidth limits and synchronization interval for a range of hours.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+/**
+ * Overrides the bandwidth limits and synchronization interval for a range of hours.  Settings which are null are not
+ * overridden.
+ */
+public class ScheduleEntry {
+    /**
+     * The hour of the day, from 0 to 23, at which the entry takes effect.
+     */
+    private Integer start;
+
+    /**
+     * The hour of the day, from 0 to 24, at which the entry ceases to take effect.  May be less than the start hour,
+     * in which case the entry spans midnight.
+     */
+    private Integer end;
+
+    /**
+     * The interval on which synchronization should take place, in seconds.
+     */
+    private Integer interval;
+
+    /**
+     * The combined download rate limit for all transfers, in bytes per second, or 0 for no limit.
+     */
+    private Long downloadLimit;
+
+    /**
+     * The download rate limit for each transfer, in bytes per second, or 0 for no limit.
+     */
+    private Long downloadTransferLimit;
+
+    /**
+     * The combined upload rate limit for all transfers, in bytes per second, or 0 for no limit.
+     */
+    private Long uploadLimit;
+
+    /**
+     * The upload rate limit for each transfer, in bytes per second, or 0 for no limit.
+     */
+    private Long uploadTransferLimit;
+
+    /**
+     * Initializes a new instance of the ScheduleEntry class.
+     * @param start The hour of the day, from 0 to 23, at which the entry takes effect.
+     * @param end The hour of the day, from 0 to 24, at which the entry ceases to take effect.
+     */
+    public ScheduleEntry(Integer start, Integer end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Gets the hour of the day at which the entry takes effect.
+     * @return The hour of the day at which the entry takes effect.
+     */
+    public Integer getStart() { return start; }
+
+    /**
+     * Gets the hour of the day at which the entry ceases to take effect.
+     * @return The hour of the day at which the entry ceases to take effect.
+     */
+    public Integer getEnd() { return end; }
+
+    /**
+     * Gets the interval on which synchronization should take place, in seconds.
+     * @return The interval on which synchronization should take place, or null if not overridden.
+     */
+    public Integer getInterval() { return interval; }
+
+    /**
+     * Sets the interval on which synchronization should take place, in seconds.
+     * @param interval The interval on which synchronization should take place, or null to leave it unchanged.
+     */
+    public void setInterval(Integer interval) { this.interval = interval; }
+
+    /**
+     * Gets the combined download rate limit for all transfers, in bytes per second.
+     * @return The combined download rate limit, or null if not overridden.
+     */
+    public Long getDownloadLimit() { return downloadLimit; }
+
+    /**
+     * Sets the combined download rate limit for all transfers, in bytes per second.
+     * @param downloadLimit The combined download rate limit, or null to leave it unchanged.
+     */
+    public void setDownloadLimit(Long downloadLimit) { this.downloadLimit = downloadLimit; }
+
+    /**
+     * Gets the download rate limit for each transfer, in bytes per second.
+     * @return The download rate limit for each transfer, or null if not overridden.
+     */
+    public Long getDownloadTransferLimit() { return downloadTransferLimit; }
+
+    /**
+     * Sets the download rate limit for each transfer, in bytes per second.
+     * @param downloadTransferLimit The download rate limit for each transfer, or null to leave it unchanged.
+     */
+    public void setDownloadTransferLimit(Long downloadTransferLimit) { this.downloadTransferLimit = downloadTransferLimit; }
+
+    /**
+     * Gets the combined upload rate limit for all transfers, in bytes per second.
+     * @return The combined upload rate limit, or null if not overridden.
+     */
+    public Long getUploadLimit() { return uploadLimit; }
+
+    /**
+     * Sets the combined upload rate limit for all transfers, in bytes per second.
+     * @param uploadLimit The combined upload rate limit, or null to leave it unchanged.
+     */
+    public void setUploadLimit(Long uploadLimit) { this.uploadLimit = uploadLimit; }
+
+    /**
+     * Gets the upload rate limit for each transfer, in bytes per second.
+     * @return The upload rate limit for each transfer, or null if not overridden.
+     */
+    public Long getUploadTransferLimit() { return uploadTransferLimit; }
+
+    /**
+     * Sets the upload rate limit for each transfer, in bytes per second.
+     * @param uploadTransferLimit The upload rate limit for each transfer, or null to leave it unchanged.
+     */
+    public void setUploadTransferLimit(Long uploadTransferLimit) { this.uploadTransferLimit = uploadTransferLimit; }
+
+    /**
+     * Returns a value indicating whether the entry is in effect at the specified hour.
+     * @param hour The hour of the day, from 0 to 23.
+     * @return A value indicating whether the entry is in effect at the specified hour.
+     */
+    public Boolean contains(Integer hour) {
+        if (start <= end) {
+            return hour >= start && hour < end;
+        }
+
+        return hour >= start || hour < end;
+    }
+
+    /**
+     * Returns a value indicating whether the entry's hours and settings are within range.  An entry which starts and
+     * ends at the same hour would contain no hours, so it is not valid; an entry for the whole day runs from 0 to 24.
+     * @return A value indicating whether the entry is valid.
+     */
+    public Boolean isValid() {
+        return start != null && end != null && start >= 0 && start <= 23 && end >= 0 && end <= 24 &&
+                !start.equals(end) &&
+                (interval == null || interval > 0) &&
+                (downloadLimit == null || downloadLimit >= 0) &&
+                (downloadTransferLimit == null || downloadTransferLimit >= 0) &&
+                (uploadLimit == null || uploadLimit >= 0) &&
+                (uploadTransferLimit == null || uploadTransferLimit >= 0);
+    }
+}
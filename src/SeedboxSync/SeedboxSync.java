@@ -24,6 +24,10 @@
  ****************************************************************************/
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,8 +36,11 @@ import org.apache.log4j.DailyRollingFileAppender;
 import org.apache.log4j.Level;
 import org.apache.log4j.PatternLayout;
 
+import java.util.Calendar;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -60,6 +67,61 @@ public class SeedboxSync {
      */
     private static ScheduledExecutorService service;
 
+    /**
+     * The MetricsServer instance which serves the application metrics, or null if metrics are not served.
+     */
+    private static MetricsServer metricsServer;
+
+    /**
+     * The next scheduled synchronization.
+     */
+    private static ScheduledFuture<?> next;
+
+    /**
+     * A value indicating whether a synchronization is in progress.
+     */
+    private static Boolean synchronizing = false;
+
+    /**
+     * The task which performs a synchronization and schedules the next.
+     */
+    private static Runnable synchronization = new Runnable() {
+        public void run() {
+            synchronized (SeedboxSync.class) {
+                // a synchronization requested while one was starting is skipped
+                if (synchronizing) {
+                    return;
+                }
+
+                synchronizing = true;
+            }
+
+            boolean err;
+            logger.info("Starting Synchronization...");
+
+            try {
+                err = false;
+                synchronizer.synchronize();
+            }
+            catch (Exception ex) {
+                // report the error but keep the application running.
+                logger.error("Exception thrown during synchronization: " + ex.getMessage());
+                err = true;
+            }
+
+            // the interval may vary by hour, so the next synchronization is scheduled once this one completes
+            Integer interval = config.getScheduleEntry(Calendar.getInstance().get(Calendar.HOUR_OF_DAY)).getInterval();
+
+            logger.info("Synchronization " + (err ? "failed." : "complete."));
+            logger.info("Synchronization will repeat in " + interval / 60 + " minute(s).");
+
+            synchronized (SeedboxSync.class) {
+                synchronizing = false;
+                next = service.schedule(this, interval, TimeUnit.SECONDS);
+            }
+        }
+    };
+
     /**
      * The main entry point for the application.
      * @param args The command-line arguments passed to the application when starting.
@@ -100,45 +162,129 @@ public class SeedboxSync {
 
         try {
             Server server = ServerFactory.createServer(config);
-            Database database = DatabaseLoader.load(new java.io.File("database.db"));
-            synchronizer = new Synchronizer(config, server, database);
+            IDatabase database = DatabaseLoader.load(new java.io.File("database.db"), config);
+
+            Runtime.getRuntime().addShutdownHook(createShutdownHook(database));
+
+            Synchronizer instance = new Synchronizer(config, server, database);
+            synchronizer = instance;
 
             logger.info("Synchronizer created successfully.");
+
+            registerManagement(instance, server);
         }
         catch (Exception ex) {
             logger.error("Error creating Synchronizer: " + ex.getMessage());
             throw ex;
         }
 
+        // serve metrics if enabled.  the application runs without them if the listener can't be started.
+        if (config.getMetricsPort() > 0) {
+            try {
+                metricsServer = new MetricsServer(Metrics.getRegistry(), config.getMetricsPort());
+                metricsServer.start();
+            }
+            catch (Exception ex) {
+                logger.error("Error starting metrics listener on port " + config.getMetricsPort() + ": " + ex.getMessage());
+            }
+        }
+
         // start the application.
         start();
     }
 
     /**
-     * Starts a repeating task to invoke the synchronizer.
+     * Creates the thread which closes the specified database when the application exits.  Closing the database writes
+     * the completed downloads still waiting to be written in a batch, and records the generation of the database in a
+     * persisted file index so that the index is reused when the application is next started.
+     * @param database The application's database.
+     * @return The thread which closes the database.
      */
-    private static void start() {
-        // create an executor to handle the synchronization
-        service = Executors.newSingleThreadScheduledExecutor();
-        service.scheduleWithFixedDelay(new Runnable() {
+    static Thread createShutdownHook(final IDatabase database) {
+        return new Thread(new Runnable() {
             public void run() {
-                boolean err;
-                logger.info("Starting Synchronization...");
-
                 try {
-                    err = false;
-                    synchronizer.synchronize();
+                    database.close();
                 }
                 catch (Exception ex) {
-                    // report the error but keep the application running.
-                    logger.error("Exception thrown during synchronization: " + ex.getMessage());
-                    err = true;
+                    logger.error("Error closing the database: " + ex.getMessage());
                 }
+            }
+        }, "database-shutdown");
+    }
 
-                logger.info("Synchronization " + (err ? "failed." : "complete."));
-                logger.info("Synchronization will repeat in " + config.getInterval() / 60 + " minute(s).");
+    /**
+     * Starts the synchronizer's transfer workers, a repeating task to invoke the synchronizer, and a task which applies
+     * the scheduled bandwidth limits as the hour changes.
+     */
+    private static void start() {
+        // create an executor to handle the synchronization.  a second thread applies the schedule so that limits
+        // change on the hour even while a long synchronization is in progress.
+        service = Executors.newScheduledThreadPool(2);
+
+        service.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                try {
+                    synchronizer.applySchedule();
+                }
+                catch (Exception ex) {
+                    logger.error("Exception thrown while applying the schedule: " + ex.getMessage());
+                }
             }
-        }, 0, config.getInterval(), TimeUnit.SECONDS);
+        }, 60, 60, TimeUnit.SECONDS);
+
+        // transfers run on the synchronizer's workers, so each synchronization only scans for new files
+        synchronizer.start();
+
+        synchronizeNow();
+    }
+
+    /**
+     * Starts a synchronization immediately, replacing the scheduled synchronization.
+     * @return A value indicating whether a synchronization was started; false if one is already in progress.
+     */
+    private static synchronized Boolean synchronizeNow() {
+        if (synchronizing) {
+            return false;
+        }
+
+        if (next != null) {
+            next.cancel(false);
+        }
+
+        next = service.schedule(synchronization, 0, TimeUnit.SECONDS);
+
+        return true;
+    }
+
+    /**
+     * Registers the management beans for the synchronizer, its processors and the server with the platform MBean
+     * server, so that queues, transfers and limits can be inspected and changed over JMX.  The application runs
+     * without them if registration fails.
+     * @param synchronizer The application's Synchronizer.
+     * @param server The application's Server.
+     */
+    private static void registerManagement(Synchronizer synchronizer, Server server) {
+        try {
+            MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+
+            mbeans.registerMBean(new SynchronizerControl(synchronizer, new Callable<Boolean>() {
+                public Boolean call() {
+                    return synchronizeNow();
+                }
+            }), new ObjectName("SeedboxSync:type=Synchronizer"));
+
+            mbeans.registerMBean(new ProcessorControl(synchronizer.getUploader()),
+                    new ObjectName("SeedboxSync:type=Processor,name=Uploader"));
+            mbeans.registerMBean(new DownloaderControl(synchronizer.getDownloader()),
+                    new ObjectName("SeedboxSync:type=Processor,name=Downloader"));
+            mbeans.registerMBean(new ServerControl(server), new ObjectName("SeedboxSync:type=Server"));
+
+            logger.debug("Management beans registered.");
+        }
+        catch (Exception ex) {
+            logger.error("Error registering management beans: " + ex.getMessage());
+        }
     }
 
     /**
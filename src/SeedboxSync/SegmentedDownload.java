@@ -0,0 +1,317 @@
+/****************************************************************************
+ *
+ * SegmentedDownload.java
+ *
+ * Downloads a file as a number of byte ranges over parallel sessions.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.commons.net.ftp.FTPCmd;
+
+/**
+ * Downloads a file as a number of byte ranges over parallel sessions.  Each segment is requested with a REST offset
+ * and written at its position in a single preallocated destination file.  Progress is checkpointed to a TransferState
+ * so that an interrupted download resumes each segment from the last committed offset.
+ */
+public class SegmentedDownload {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The minimum interval between checkpoints, in nanoseconds.
+     */
+    private static final Long checkpointInterval = 1000000000L;
+
+    /**
+     * The length of time a segment waits for data before it fails, in milliseconds.
+     */
+    private static final Integer dataTimeout = 60000;
+
+    /**
+     * The pool from which sessions are leased.
+     */
+    private ConnectionPool pool;
+
+    /**
+     * The filename of the file to download.
+     */
+    private String sourceFile;
+
+    /**
+     * The file to which the downloaded file should be saved.
+     */
+    private String destinationFile;
+
+    /**
+     * The segments of the file and the progress of each.
+     */
+    private TransferState state;
+
+    /**
+     * The progress of the transfer.
+     */
+    private TransferProgress progress;
+
+    /**
+     * The limiter for the transfer, shared by all segments.
+     */
+    private BandwidthLimiter limiter;
+
+    /**
+     * The engine which moves data from each segment's data connection to the file.
+     */
+    private TransferEngine engine;
+
+    /**
+     * The time of the last checkpoint.
+     */
+    private AtomicLong lastCheckpoint;
+
+    /**
+     * A value indicating whether a segment has failed and the remaining segments should stop.
+     */
+    private AtomicBoolean cancelled;
+
+    /**
+     * Initializes a new instance of the SegmentedDownload class.
+     * @param pool The pool from which sessions are leased.
+     * @param sourceFile The filename of the file to download.
+     * @param destinationFile The file to which the downloaded file should be saved.
+     * @param state The segments of the file and the progress of each.
+     * @param progress The progress of the transfer.
+     * @param limiter The limiter for the transfer, shared by all segments, or null for no limit.
+     * @param engine The engine which moves data from each segment's data connection to the file.
+     */
+    public SegmentedDownload(ConnectionPool pool, String sourceFile, String destinationFile, TransferState state,
+                             TransferProgress progress, BandwidthLimiter limiter, TransferEngine engine) {
+        this.pool = pool;
+        this.sourceFile = sourceFile;
+        this.destinationFile = destinationFile;
+        this.state = state;
+        this.progress = progress;
+        this.limiter = limiter;
+        this.engine = engine;
+
+        lastCheckpoint = new AtomicLong(System.nanoTime());
+        cancelled = new AtomicBoolean(false);
+    }
+
+    /**
+     * Gets the number of segments into which the file is split.
+     * @return The number of segments into which the file is split.
+     */
+    public Integer getSegmentCount() {
+        return state.getSegmentCount();
+    }
+
+    /**
+     * Downloads the file, blocking until all segments are complete.  The state is saved when the download fails so
+     * that it can be resumed, and deleted when it succeeds.
+     * @throws Exception Thrown if any of the segments fails to download.
+     */
+    public void download() throws Exception {
+        logger.debug("Downloading '" + sourceFile + "' in " + getSegmentCount() + " segment(s); " +
+                state.getBytesCommitted() + " bytes previously committed.");
+
+        RandomAccessFile file = new RandomAccessFile(destinationFile, "rw");
+        ExecutorService executor = Executors.newFixedThreadPool(getSegmentCount());
+
+        try {
+            if (file.length() != state.getSize()) {
+                file.setLength(state.getSize());
+            }
+
+            final FileChannel channel = file.getChannel();
+
+            // record the layout before any data is written so that a crash mid-transfer can be resumed
+            state.save();
+
+            List<Future<Void>> segments = new ArrayList<Future<Void>>();
+
+            for (int i = 0; i < getSegmentCount(); i++) {
+                final int segment = i;
+
+                if (state.getPosition(segment) < state.getEnd(segment)) {
+                    segments.add(executor.submit(new Callable<Void>() {
+                        public Void call() throws Exception {
+                            downloadSegment(channel, segment);
+                            return null;
+                        }
+                    }));
+                }
+            }
+
+            try {
+                for (Future<Void> segment : segments) {
+                    try {
+                        segment.get();
+                    }
+                    catch (ExecutionException ex) {
+                        throw (Exception)ex.getCause();
+                    }
+                }
+            }
+            catch (Exception ex) {
+                // stop the remaining segments at their next read.  the threads are not interrupted, as interrupting
+                // a thread blocked in a channel write closes the channel for every segment.
+                cancelled.set(true);
+                executor.shutdown();
+                executor.awaitTermination(dataTimeout, TimeUnit.MILLISECONDS);
+                checkpoint(channel);
+
+                logger.info("Download of '" + sourceFile + "' interrupted with " + state.getBytesCommitted() + " of " +
+                        state.getSize() + " bytes committed.");
+
+                throw ex;
+            }
+
+            channel.force(false);
+            state.delete();
+        }
+        finally {
+            executor.shutdown();
+            file.close();
+        }
+    }
+
+    /**
+     * Downloads the remainder of the specified segment and writes it at the same position in the destination.
+     * @param channel The channel to which the segment is written.
+     * @param segment The index of the segment.
+     * @throws Exception Thrown if an exception is encountered during the download.
+     */
+    private void downloadSegment(final FileChannel channel, final int segment) throws Exception {
+        Long position = state.getPosition(segment);
+        Long end = state.getEnd(segment);
+
+        if (cancelled.get()) {
+            return;
+        }
+
+        FTPSession client = pool.leaseBulk();
+
+        try {
+            client.setDataTimeout(dataTimeout);
+            client.enterLocalActiveMode();
+            client.setRestartOffset(position);
+
+            Socket socket = client.openDataConnection(FTPCmd.RETR, sourceFile);
+
+            if (socket == null) {
+                throw new Server.ReplyException("Server replied '" + client.getReplyString().trim() + "' to the " +
+                        "retrieve request for offset " + position + ".");
+            }
+
+            try {
+                position += engine.receive(socket, channel, position, end - position, new TransferEngine.Callback() {
+                    /**
+                     * The offset up to which data has been written.
+                     */
+                    private long committed = state.getPosition(segment);
+
+                    public Boolean transferred(long bytes) throws IOException {
+                        committed += bytes;
+                        state.setPosition(segment, committed);
+
+                        progress.add(bytes);
+                        Metrics.downloadedBytes.add(bytes);
+
+                        if (System.nanoTime() - lastCheckpoint.get() >= checkpointInterval) {
+                            checkpoint(channel);
+                        }
+
+                        if (limiter != null) {
+                            try {
+                                limiter.acquire(bytes);
+                            }
+                            catch (InterruptedException ex) {
+                                throw new InterruptedIOException("Interrupted while waiting for bandwidth.");
+                            }
+                        }
+
+                        return !cancelled.get();
+                    }
+                });
+            }
+            finally {
+                // closing the connection before the end of the file aborts the remainder of the transfer
+                socket.close();
+            }
+
+            // the server replies with either success or 'transfer aborted'; both leave the session usable
+            client.completePendingCommand();
+
+            if (position < end && !cancelled.get()) {
+                throw new Exception("Segment at offset " + state.getStart(segment) + " ended " + (end - position) +
+                        " bytes short.");
+            }
+
+            pool.release(client);
+        }
+        catch (Exception ex) {
+            if (ex instanceof Server.ReplyException) {
+                pool.release(client);
+            }
+            else {
+                pool.invalidate(client);
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Flushes written data to disk and saves the state, so that the saved state never claims more data than has been
+     * written.
+     * @param channel The channel to which segments are written.
+     * @throws IOException Thrown if an exception is encountered while flushing the data or saving the state.
+     */
+    private synchronized void checkpoint(FileChannel channel) throws IOException {
+        lastCheckpoint.set(System.nanoTime());
+
+        if (channel.isOpen()) {
+            channel.force(false);
+        }
+
+        state.save();
+    }
+}
@@ -25,18 +25,28 @@
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.OutputStream;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
 import org.apache.commons.net.ftp.FTPFile;
-import org.apache.commons.net.io.CopyStreamAdapter;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
 
 /**
  * Represents an FTP server.
@@ -53,59 +63,122 @@ public class Server implements IServer {
     private static final Integer defaultPort = 21;
 
     /**
-     * The FTPClient driving the server
+     * The suffix appended to the name of a file while it is being downloaded.
      */
-    private static FTPClient server;
+    private static final String partialSuffix = ".part";
 
     /**
-     * The Server address.
+     * The suffix appended to the name of a partial file to form the name of its segment state file.
      */
-    private String address;
+    private static final String stateSuffix = ".state";
 
     /**
-     * The Server port.
+     * The suffix appended to the name of a partial file to form the name of the marker which records that the partial
+     * data was written by a single stream, from the start of the file, and may be resumed from its end.
      */
-    private Integer port;
+    private static final String streamSuffix = ".stream";
 
     /**
-     * The username to use when connecting to the Server.
+     * The default number of sessions to establish when connecting.
      */
-    private String username;
+    private static final Integer defaultMinimumConnections = 1;
 
     /**
-     * The password to use when connecting to the Server.
+     * The default maximum number of concurrent sessions.
      */
-    private String password;
+    private static final Integer defaultMaximumConnections = 4;
+
+    /**
+     * The pool of sessions used to communicate with the server.
+     */
+    private ConnectionPool pool;
+
+    /**
+     * The reporter which logs the progress of transfers.
+     */
+    private ProgressReporter progressReporter = new ProgressReporter(10000000000L);
+
+    /**
+     * The number of segments into which large files are split when downloading.
+     */
+    private Integer segmentCount = 1;
+
+    /**
+     * The minimum size of a file, in bytes, for it to be downloaded in segments.
+     */
+    private Long segmentThreshold = 104857600L;
+
+    /**
+     * The engine which moves data between data connections and files.
+     */
+    private TransferEngine engine = new TransferEngine(1048576);
+
+    /**
+     * The limiter shared by all downloads.
+     */
+    private BandwidthLimiter downloadLimiter = new BandwidthLimiter(0L);
+
+    /**
+     * The limiter shared by all uploads.
+     */
+    private BandwidthLimiter uploadLimiter = new BandwidthLimiter(0L);
+
+    /**
+     * The download rate limit for each transfer, in bytes per second, or 0 for no limit.
+     */
+    private Long downloadTransferLimit = 0L;
 
     /**
-     * The currently downloading file.
+     * The upload rate limit for each transfer, in bytes per second, or 0 for no limit.
      */
-    private String currentDownload;
+    private Long uploadTransferLimit = 0L;
 
     /**
-     * The size of the currently downloading file, in bytes.
+     * The limiters of the downloads in progress.
      */
-    private Long currentDownloadSize;
+    private Set<BandwidthLimiter> downloadTransfers = Collections.newSetFromMap(new ConcurrentHashMap<BandwidthLimiter, Boolean>());
 
     /**
-     * The percentage of completion of the currently downloading file.
+     * The limiters of the uploads in progress.
      */
-    private Double currentDownloadPercent;
+    private Set<BandwidthLimiter> uploadTransfers = Collections.newSetFromMap(new ConcurrentHashMap<BandwidthLimiter, Boolean>());
 
     /**
-     * The time of the last received progress update
+     * A value indicating whether the server supports restarting transfers at an offset, or null if the server's
+     * features have not yet been negotiated.
      */
-    private Long lastProgressUpdate;
+    private Boolean restartSupported;
 
     /**
-     * The total progress of the current download at the last check.
+     * A value indicating whether the server supports machine-readable listings (MLSD), or null if the server's
+     * features have not yet been negotiated.
      */
-    private Long lastProgressTotal;
+    private Boolean machineListingSupported;
 
     /**
-     * The interval between progress checks, in nanoseconds.
+     * A value indicating whether the server supports recursive listings, or null if not yet known.
      */
-    private Long timeBetweenUpdates = 10000000000L;
+    private Boolean recursiveListingSupported;
+
+    /**
+     * The Server address.
+     */
+    private String address;
+
+    /**
+     * The Server port.
+     */
+    private Integer port;
+
+    /**
+     * The username to use when connecting to the Server.
+     */
+    private String username;
+
+    /**
+     * The password to use when connecting to the Server.
+     */
+    private String password;
 
     /**
      * Initializes a new instance of the Server class with the specified IP address, username and password.
@@ -124,8 +197,37 @@ public class Server implements IServer {
      * @param password The password to use when connecting to the Server.
      * @param port The Server port.
      */
-    public Server(String address, String username, String password, Integer port)
+    public Server(String address, String username, String password, Integer port) {
+        this(address, username, password, port, defaultMinimumConnections, defaultMaximumConnections);
+    }
+
+    /**
+     * Initializes a new instance of the Server class with the specified IP address, username, password, port and
+     * connection limits.
+     * @param address The Server address.
+     * @param username The username to use when connecting to the Server.
+     * @param password The password to use when connecting to the Server.
+     * @param port The Server port.
+     * @param minimumConnections The number of sessions to establish when connecting.
+     * @param maximumConnections The maximum number of concurrent sessions.
+     */
+    public Server(String address, String username, String password, Integer port, Integer minimumConnections,
+                  Integer maximumConnections)
     {
+        this(address, username, password, port,
+                new ConnectionPool(address, port, username, password, minimumConnections, maximumConnections));
+    }
+
+    /**
+     * Initializes a new instance of the Server class with the specified IP address, username, password, port and pool
+     * of sessions.
+     * @param address The Server address.
+     * @param username The username to use when connecting to the Server.
+     * @param password The password to use when connecting to the Server.
+     * @param port The Server port.
+     * @param pool The pool of sessions used to communicate with the server.
+     */
+    Server(String address, String username, String password, Integer port, ConnectionPool pool) {
         logger.info("Configuring FTP client...");
 
         this.address = address;
@@ -133,10 +235,7 @@ public class Server implements IServer {
         this.password = password;
         this.port = port;
 
-        this.server = new FTPClient();
-
-        logger.debug("Binding transfer stream listener...");
-        configureStreamListener();
+        this.pool = pool;
 
         logger.info("FTP client is ready.");
     }
@@ -174,23 +273,181 @@ public class Server implements IServer {
     }
 
     /**
-     * Opens the Server connection using the specified IP address and the default port.
-     * @throws Exception Thrown if an exception is encountered during the connect or login operations.
+     * Gets the pool of sessions used to communicate with the Server.
+     * @return The pool of sessions used to communicate with the Server.
      */
-    public void connect() throws Exception {
-        logger.info("Connecting to '" + address + "'...");
-        server.connect(address, port);
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Gets the progress of the transfers in progress.
+     * @return The progress of the transfers in progress.
+     */
+    public List<TransferProgress> getTransfers() {
+        return progressReporter.getTransfers();
+    }
+
+    /**
+     * Gets the number of segments into which large files are split when downloading.
+     * @return The number of segments into which large files are split when downloading.
+     */
+    public Integer getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Sets the number of segments into which large files are split when downloading.  Segments are downloaded over
+     * separate pooled sessions, so the effective number is also limited by the maximum size of the pool.
+     * @param segmentCount The number of segments, or 1 to download all files over a single session.
+     */
+    public void setSegmentCount(Integer segmentCount) {
+        this.segmentCount = segmentCount;
+    }
+
+    /**
+     * Gets the minimum size of a file, in bytes, for it to be downloaded in segments.
+     * @return The minimum size of a file for it to be downloaded in segments.
+     */
+    public Long getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    /**
+     * Sets the minimum size of a file, in bytes, for it to be downloaded in segments.
+     * @param segmentThreshold The minimum size of a file for it to be downloaded in segments.
+     */
+    public void setSegmentThreshold(Long segmentThreshold) {
+        this.segmentThreshold = segmentThreshold;
+    }
+
+    /**
+     * Gets the size of the buffers used to move data during transfers, in bytes.
+     * @return The size of the buffers used to move data during transfers.
+     */
+    public Integer getTransferBufferSize() {
+        return engine.getBufferSize();
+    }
+
+    /**
+     * Sets the size of the buffers used to move data during transfers, in bytes.
+     * @param transferBufferSize The size of the buffers used to move data during transfers.
+     */
+    public void setTransferBufferSize(Integer transferBufferSize) {
+        engine = new TransferEngine(transferBufferSize);
+    }
+
+    /**
+     * Gets the combined download rate limit for all transfers, in bytes per second.
+     * @return The combined download rate limit, or 0 if there is no limit.
+     */
+    public Long getDownloadLimit() {
+        return downloadLimiter.getRate();
+    }
+
+    /**
+     * Sets the combined download rate limit for all transfers, in bytes per second.  The limit applies immediately,
+     * including to downloads in progress.
+     * @param downloadLimit The combined download rate limit, or 0 for no limit.
+     */
+    public void setDownloadLimit(Long downloadLimit) {
+        downloadLimiter.setRate(downloadLimit);
+    }
+
+    /**
+     * Gets the download rate limit for each transfer, in bytes per second.
+     * @return The download rate limit for each transfer, or 0 if there is no limit.
+     */
+    public Long getDownloadTransferLimit() {
+        return downloadTransferLimit;
+    }
+
+    /**
+     * Sets the download rate limit for each transfer, in bytes per second.  The limit applies immediately, including
+     * to downloads in progress.
+     * @param downloadTransferLimit The download rate limit for each transfer, or 0 for no limit.
+     */
+    public void setDownloadTransferLimit(Long downloadTransferLimit) {
+        this.downloadTransferLimit = downloadTransferLimit;
+
+        for (BandwidthLimiter limiter : downloadTransfers) {
+            limiter.setRate(downloadTransferLimit);
+        }
+    }
+
+    /**
+     * Gets the combined upload rate limit for all transfers, in bytes per second.
+     * @return The combined upload rate limit, or 0 if there is no limit.
+     */
+    public Long getUploadLimit() {
+        return uploadLimiter.getRate();
+    }
+
+    /**
+     * Sets the combined upload rate limit for all transfers, in bytes per second.  The limit applies immediately,
+     * including to uploads in progress.
+     * @param uploadLimit The combined upload rate limit, or 0 for no limit.
+     */
+    public void setUploadLimit(Long uploadLimit) {
+        uploadLimiter.setRate(uploadLimit);
+    }
+
+    /**
+     * Gets the upload rate limit for each transfer, in bytes per second.
+     * @return The upload rate limit for each transfer, or 0 if there is no limit.
+     */
+    public Long getUploadTransferLimit() {
+        return uploadTransferLimit;
+    }
+
+    /**
+     * Sets the upload rate limit for each transfer, in bytes per second.  The limit applies immediately, including to
+     * uploads in progress.
+     * @param uploadTransferLimit The upload rate limit for each transfer, or 0 for no limit.
+     */
+    public void setUploadTransferLimit(Long uploadTransferLimit) {
+        this.uploadTransferLimit = uploadTransferLimit;
+
+        for (BandwidthLimiter limiter : uploadTransfers) {
+            limiter.setRate(uploadTransferLimit);
+        }
+    }
+
+    /**
+     * Gets a value indicating whether transfers are paused.
+     * @return A value indicating whether transfers are paused.
+     */
+    public Boolean isPaused() {
+        return downloadLimiter.isPaused() || uploadLimiter.isPaused();
+    }
+
+    /**
+     * Pauses all transfers, including those in progress.  Transfers in progress hold their sessions and data
+     * connections open while paused, so long pauses may cause the server to close them.
+     */
+    public void pauseTransfers() {
+        logger.info("Pausing transfers.");
 
-        logger.info("Logging in with credentials '" + username + "', '<hidden>'");
-        server.login(username, password);
+        downloadLimiter.setPaused(true);
+        uploadLimiter.setPaused(true);
+    }
 
-        logger.info("Configuring connection...");
-        server.setFileType(FTP.BINARY_FILE_TYPE, FTP.BINARY_FILE_TYPE);
-        server.setBufferSize(1024 * 1024);
-        server.setAutodetectUTF8(true);
-        server.setControlKeepAliveTimeout(300);
+    /**
+     * Resumes paused transfers.
+     */
+    public void resumeTransfers() {
+        logger.info("Resuming transfers.");
 
-        logger.info("Connection established.");
+        downloadLimiter.setPaused(false);
+        uploadLimiter.setPaused(false);
+    }
+
+    /**
+     * Opens the Server connection, establishing the minimum number of pooled sessions.
+     * @throws Exception Thrown if an exception is encountered during the connect or login operations.
+     */
+    public void connect() throws Exception {
+        pool.open();
     }
 
     /**
@@ -206,12 +463,12 @@ public class Server implements IServer {
     }
 
     /**
-     * Closes the Server connection.
+     * Closes the Server connection.  Sessions leased by in-progress operations are closed when the operation completes.
      * @throws Exception Thrown if an exception is encountered during the disconnect operation.
      */
     public void disconnect() throws Exception {
         logger.info("Disconnecting from '" + address + "'...");
-        server.disconnect();
+        pool.close();
     }
 
     /**
@@ -219,29 +476,132 @@ public class Server implements IServer {
      * @return A value indicating whether the Server is connected.
      */
     public Boolean isConnected() {
-        return server.isConnected();
+        return pool.getSize() > 0;
     }
 
     /**
-     * Returns a list of files contained within the specified directory.
+     * Gets the number of logins performed since the Server was created.
+     * @return The number of logins performed since the Server was created.
+     */
+    public Long getLoginCount() {
+        return pool.getLoginCount();
+    }
+
+    /**
+     * Returns a list of files contained within the specified directory.  MLSD is used if the server supports it, as its
+     * size, modification time and type facts are standardized; otherwise the directory is listed with LIST and the
+     * server's output format is inferred by the client.
      * @param directory The directory for which to return the file list.
      * @return A list of files contained within the directory.
      * @throws Exception Thrown if an exception is encountered during the listFiles operation.
      */
-    public List<FTPFile> list(String directory) throws Exception {
-        // reconnect to the server to reset active/passive mode settings
-        reconnect();
+    public List<FTPFile> list(final String directory) throws Exception {
+        ListEvent event = new ListEvent();
+        event.begin();
+
+        long start = System.nanoTime();
+
+        List<FTPFile> retVal = execute(new SessionOperation<List<FTPFile>>() {
+            public List<FTPFile> execute(FTPSession client) throws Exception {
+                List<FTPFile> retVal = new ArrayList<FTPFile>();
+
+                client.enterLocalPassiveMode();
 
-        List<FTPFile> retVal = new ArrayList<FTPFile>();
+                logger.debug("Fetching file list from '" + directory + "'...");
 
-        server.enterLocalPassiveMode();
+                FTPFile[] files;
 
-        logger.debug("Fetching file list from '" + directory + "'...");
-        FTPFile[] files = server.listFiles(directory);
-        logger.debug("Fetched " + files.length + " files.");
+                if (isMachineListingSupported(client)) {
+                    files = client.mlistDir(directory);
+                }
+                else {
+                    files = client.listFiles(directory);
+                }
 
-        for (FTPFile f : files) {
-            retVal.add(f);
+                logger.debug("Fetched " + files.length + " files.");
+
+                for (FTPFile f : files) {
+                    // MLSD includes entries for the directory itself and its parent
+                    if (f != null && !f.getName().equals(".") && !f.getName().equals("..")) {
+                        retVal.add(f);
+                    }
+                }
+
+                return retVal;
+            }
+        });
+
+        Metrics.listLatency.observeSince(start);
+
+        event.directory = directory;
+        event.entries = retVal.size();
+        event.commit();
+
+        return retVal;
+    }
+
+    /**
+     * Returns every file and directory beneath the specified directory, fetched with a single recursive listing
+     * (LIST -R) rather than one listing per directory.  Entries are named by their path relative to the directory.
+     * @param directory The directory for which to return the file tree.
+     * @return The files and directories beneath the directory, or null if the server does not support recursive
+     * listings.
+     * @throws Exception Thrown if an exception is encountered while retrieving the listing.
+     */
+    public List<FTPFile> listRecursive(final String directory) throws Exception {
+        if (Boolean.FALSE.equals(recursiveListingSupported)) {
+            return null;
+        }
+
+        ListEvent event = new ListEvent();
+        event.begin();
+
+        long start = System.nanoTime();
+
+        List<FTPFile> retVal = execute(new SessionOperation<List<FTPFile>>() {
+            public List<FTPFile> execute(FTPSession client) throws Exception {
+                client.enterLocalPassiveMode();
+
+                logger.debug("Fetching recursive file list from '" + directory + "'...");
+
+                // list from within the directory so that the subdirectory headers are relative to it
+                String workingDirectory = client.printWorkingDirectory();
+
+                if (!client.changeWorkingDirectory(directory)) {
+                    throw new ReplyException("Server replied '" + client.getReplyString().trim() + "' to the " +
+                            "request to change to directory '" + directory + "'.");
+                }
+
+                try {
+                    List<String> lines = client.listLines("-R");
+
+                    if (lines == null) {
+                        return null;
+                    }
+
+                    return RecursiveListing.parse(directory, lines,
+                            new DefaultFTPFileEntryParserFactory().createFileEntryParser(client.getSystemType()));
+                }
+                finally {
+                    client.changeWorkingDirectory(workingDirectory);
+                }
+            }
+        });
+
+        Metrics.recursiveListLatency.observeSince(start);
+
+        if (retVal == null) {
+            logger.debug("Server does not support recursive listings; directories will be listed individually.");
+            recursiveListingSupported = false;
+        }
+        else {
+            logger.debug("Fetched " + retVal.size() + " files.");
+            recursiveListingSupported = true;
+
+            event.directory = directory;
+            event.recursive = true;
+            event.entries = retVal.size();
+            event.commit();
         }
 
         return retVal;
@@ -255,30 +615,239 @@ public class Server implements IServer {
      * @throws Exception Thrown if an exception is encountered during the download.
      */
     public void download(String sourceFile, String destinationFile, Long size) throws Exception {
-        // reconnect to the server to reset active/passive mode settings
-        reconnect();
+        logger.info("Retrieving file " + sourceFile);
 
-        File file = new File(sourceFile);
-        currentDownload = file.getName();
-        currentDownloadSize = size;
-        currentDownloadPercent = 0.0;
+        // data is written to a partial file which is renamed once complete, so that an interrupted download can be
+        // resumed from the data already on disk
+        File partialFile = new File(destinationFile + partialSuffix);
+        File stateFile = new File(destinationFile + partialSuffix + stateSuffix);
+        File streamFile = new File(destinationFile + partialSuffix + streamSuffix);
 
-        lastProgressUpdate = System.nanoTime();
-        lastProgressTotal = 0L;
+        Boolean stateExists = stateFile.exists();
+        TransferState state = TransferState.load(stateFile, size);
 
-        logger.info("Retrieving file " + sourceFile);
+        if (state == null && stateExists) {
+            // the partial file was laid out for a segmented download whose progress is now unknown, so any part of it
+            // may be unwritten
+            logger.info("Discarding partial data for '" + sourceFile + "'; its segment state could not be used.");
 
-        server.enterLocalActiveMode();
+            partialFile.delete();
+            stateFile.delete();
+        }
+
+        if (state == null && isSegmented(size)) {
+            // downloads may not lease the pool's reserved session, so that listings and uploads continue meanwhile
+            state = TransferState.create(stateFile, size, Math.min(segmentCount, pool.getMaximumBulkSize()));
+        }
+
+        // the transfer is limited to its own rate and to the rate shared by all downloads
+        BandwidthLimiter limiter = new BandwidthLimiter(downloadTransferLimit, downloadLimiter);
+        downloadTransfers.add(limiter);
+
+        TransferProgress progress = progressReporter.start("Downloading", new File(sourceFile).getName(), size,
+                state != null ? state.getBytesCommitted() : 0L);
+        Boolean complete = false;
 
-        FileOutputStream out = new FileOutputStream(destinationFile);
-        server.retrieveFile(sourceFile, out);
+        TransferEvent event = new TransferEvent();
+        event.begin();
 
-        // force a final progress update
-        lastProgressUpdate = 0L;
-        progressUpdate(size, size.intValue(), 0L, true);
+        try {
+            if (state != null) {
+                SegmentedDownload download = new SegmentedDownload(pool, sourceFile, partialFile.getAbsolutePath(),
+                        state, progress, limiter, engine);
+
+                logger.info("Downloading in " + download.getSegmentCount() + " segments...");
+
+                streamFile.delete();
+                download.download();
+            }
+            else {
+                stateFile.delete();
+                downloadStream(sourceFile, partialFile, streamFile, size, limiter, progress);
+            }
+
+            Files.move(partialFile.toPath(), new File(destinationFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            streamFile.delete();
+            complete = true;
+
+            Metrics.downloadThroughput.observe(getThroughput(progress));
+        }
+        finally {
+            downloadTransfers.remove(limiter);
+            progressReporter.finish(progress, complete);
+
+            event.direction = "Download";
+            event.file = sourceFile;
+            event.size = size != null ? size : 0L;
+            event.bytes = progress.getTransferred();
+            event.mode = state != null ? "Segmented" : "Stream";
+            event.segments = state != null ? state.getSegmentCount() : 1;
+            event.complete = complete;
+            event.commit();
+        }
 
         logger.info("Transfer complete.");
-        out.close();
+    }
+
+    /**
+     * Downloads the specified file over a single session, resuming from the end of the partial file if the server
+     * supports restarted transfers.  Partial data is resumed only if the marker shows that it was written by a single
+     * stream; a partial file laid out for a segmented download may have unwritten regions anywhere within it.
+     * @param sourceFile The filename of the file to download.
+     * @param partialFile The partial file to which the downloaded data is appended.
+     * @param streamFile The marker recording that the partial data was written by a single stream.
+     * @param size The size of the file in bytes.
+     * @param limiter The limiter for the transfer.
+     * @param progress The progress of the transfer.
+     * @throws Exception Thrown if an exception is encountered during the download.
+     */
+    private void downloadStream(final String sourceFile, final File partialFile, final File streamFile,
+                                final Long size, final BandwidthLimiter limiter, final TransferProgress progress)
+            throws Exception {
+        execute(new SessionOperation<Void>() {
+            public Void execute(FTPSession client) throws Exception {
+                Long offset = partialFile.length();
+
+                if (offset > 0 && !streamFile.exists()) {
+                    logger.info("Discarding " + offset + " bytes of partial data for '" + sourceFile + "' which was " +
+                            "not written by a single stream.");
+                    offset = 0L;
+                }
+                else if (offset > 0 && (size == null || offset > size || !isRestartSupported(client))) {
+                    logger.info("Discarding " + offset + " bytes of partial data for '" + sourceFile + "'.");
+                    offset = 0L;
+                }
+                else if (offset > 0 && offset.equals(size)) {
+                    logger.info("Partial data for '" + sourceFile + "' is already complete.");
+                    return null;
+                }
+                else if (offset > 0) {
+                    logger.info("Resuming '" + sourceFile + "' from byte " + offset + ".");
+                }
+
+                progress.resume(offset);
+
+                RandomAccessFile file = new RandomAccessFile(partialFile, "rw");
+
+                try {
+                    // discard any partial data which can't be resumed, and record that what follows is contiguous
+                    file.setLength(offset);
+                    streamFile.createNewFile();
+
+                    client.enterLocalActiveMode();
+                    client.setRestartOffset(offset);
+
+                    Socket socket = client.openDataConnection(FTPCmd.RETR, sourceFile);
+
+                    if (socket == null) {
+                        throw new ReplyException("Server replied '" + client.getReplyString().trim() + "' to the retrieve request.");
+                    }
+
+                    try {
+                        engine.receive(socket, file.getChannel(), offset, Long.MAX_VALUE,
+                                new TransferCallback(limiter, progress, Metrics.downloadedBytes));
+                    }
+                    finally {
+                        socket.close();
+                    }
+
+                    if (!client.completePendingCommand()) {
+                        throw new ReplyException("Server replied '" + client.getReplyString().trim() + "' on completion of the download.");
+                    }
+                }
+                finally {
+                    client.setRestartOffset(0);
+                    file.close();
+                }
+
+                return null;
+            }
+        }, true);
+    }
+
+    /**
+     * Returns a value indicating whether a file of the specified size should be downloaded in segments.
+     * @param size The size of the file in bytes.
+     * @return A value indicating whether a file of the specified size should be downloaded in segments.
+     * @throws Exception Thrown if an exception is encountered while querying the server's features.
+     */
+    private Boolean isSegmented(Long size) throws Exception {
+        if (segmentCount <= 1 || pool.getMaximumSize() <= 2 || size == null || size < segmentThreshold) {
+            return false;
+        }
+
+        return isRestartSupported();
+    }
+
+    /**
+     * Returns a value indicating whether the server supports restarting transfers at an offset.  The server's features
+     * are negotiated on the first call and the result is reused thereafter.
+     * @return A value indicating whether the server supports restarting transfers at an offset.
+     * @throws Exception Thrown if an exception is encountered while querying the server's features.
+     */
+    private Boolean isRestartSupported() throws Exception {
+        if (restartSupported == null) {
+            execute(new SessionOperation<Void>() {
+                public Void execute(FTPSession client) throws Exception {
+                    negotiateFeatures(client);
+                    return null;
+                }
+            });
+        }
+
+        return restartSupported;
+    }
+
+    /**
+     * Returns a value indicating whether the server supports restarting transfers at an offset, negotiating the
+     * server's features over the specified session if they have not yet been negotiated.
+     * @param client The session over which the server's features are negotiated.
+     * @return A value indicating whether the server supports restarting transfers at an offset.
+     * @throws Exception Thrown if an exception is encountered while querying the server's features.
+     */
+    private Boolean isRestartSupported(FTPClient client) throws Exception {
+        negotiateFeatures(client);
+        return restartSupported;
+    }
+
+    /**
+     * Returns a value indicating whether the server supports machine-readable listings, negotiating the server's
+     * features over the specified session if they have not yet been negotiated.
+     * @param client The session over which the server's features are negotiated.
+     * @return A value indicating whether the server supports machine-readable listings.
+     * @throws Exception Thrown if an exception is encountered while querying the server's features.
+     */
+    private Boolean isMachineListingSupported(FTPClient client) throws Exception {
+        negotiateFeatures(client);
+        return machineListingSupported;
+    }
+
+    /**
+     * Queries the server's features with FEAT, if they have not already been queried, and records those which alter
+     * the way transfers and listings are performed.  The features are negotiated once for the Server and shared by
+     * every session.
+     * @param client The session over which the server's features are queried.
+     * @throws Exception Thrown if an exception is encountered while querying the server's features.
+     */
+    private synchronized void negotiateFeatures(FTPClient client) throws Exception {
+        if (restartSupported != null) {
+            return;
+        }
+
+        logger.debug("Negotiating server features...");
+
+        // hasFeature() issues FEAT once per session and caches the reply, so both checks cost a single round trip
+        machineListingSupported = client.hasFeature("MLST");
+        restartSupported = client.hasFeature("REST");
+
+        logger.debug("Server " + (restartSupported ? "supports" : "does not support") + " restarted transfers.");
+
+        if (machineListingSupported) {
+            logger.debug("Server supports machine-readable listings with facts '" + client.featureValue("MLST") + "'.");
+        }
+        else {
+            logger.debug("Server does not support machine-readable listings; falling back to LIST.");
+        }
     }
 
     /**
@@ -298,31 +867,116 @@ public class Server implements IServer {
      * @param destinationFile The destination filename.
      * @throws Exception Thrown if an exception is encountered during the upload.
      */
-    public void upload(String sourceFile, String destinationFile) throws Exception {
-        // reconnect to the server to reset active/passive mode settings
-        reconnect();
-
+    public void upload(final String sourceFile, final String destinationFile) throws Exception {
         logger.info("Uploading file '" + sourceFile + "' to '" + destinationFile + "'...");
 
-        FileInputStream inputStream = new FileInputStream(sourceFile);
+        // the transfer is limited to its own rate and to the rate shared by all uploads
+        final BandwidthLimiter limiter = new BandwidthLimiter(uploadTransferLimit, uploadLimiter);
+        uploadTransfers.add(limiter);
 
-        OutputStream outputStream = server.storeFileStream(destinationFile);
+        TransferProgress progress = progressReporter.start("Uploading", new File(sourceFile).getName(),
+                new File(sourceFile).length(), 0L);
+        Boolean complete = false;
 
-        byte[] bytesIn = new byte[4096];
-        int read = 0;
+        TransferEvent event = new TransferEvent();
+        event.begin();
 
-        while ((read = inputStream.read(bytesIn)) != -1) {
-            outputStream.write(bytesIn, 0, read);
-        }
+        try {
+            uploadStream(sourceFile, destinationFile, limiter, progress);
+            complete = true;
 
-        inputStream.close();
-        outputStream.close();
-
-        server.completePendingCommand();
+            Metrics.uploadThroughput.observe(getThroughput(progress));
+        }
+        finally {
+            uploadTransfers.remove(limiter);
+            progressReporter.finish(progress, complete);
+
+            event.direction = "Upload";
+            event.file = destinationFile;
+            event.size = progress.getSize();
+            event.bytes = progress.getTransferred();
+            event.mode = "Stream";
+            event.segments = 1;
+            event.complete = complete;
+            event.commit();
+        }
 
         logger.info("Upload complete.");
     }
 
+    /**
+     * Uploads the specified file over a single session, resuming from the end of the remote file if it is incomplete.
+     * @param sourceFile The filename of the file to upload.
+     * @param destinationFile The destination filename.
+     * @param limiter The limiter for the transfer.
+     * @param progress The progress of the transfer.
+     * @throws Exception Thrown if an exception is encountered during the upload.
+     */
+    private void uploadStream(final String sourceFile, final String destinationFile, final BandwidthLimiter limiter,
+                              final TransferProgress progress) throws Exception {
+        execute(new SessionOperation<Void>() {
+            public Void execute(FTPSession client) throws Exception {
+                Long length = new java.io.File(sourceFile).length();
+                Long offset = getSize(client, destinationFile);
+
+                if (offset == null || offset > length) {
+                    offset = 0L;
+                }
+                else if (offset.equals(length)) {
+                    logger.info("Remote file '" + destinationFile + "' is already complete.");
+                    return null;
+                }
+                else if (offset > 0) {
+                    logger.info("Resuming upload of '" + destinationFile + "' from byte " + offset + ".");
+                }
+
+                progress.resume(offset);
+
+                FileInputStream inputStream = new FileInputStream(sourceFile);
+
+                try {
+                    client.enterLocalActiveMode();
+
+                    Socket socket;
+
+                    // prefer REST+STOR, which states the offset explicitly; APPE is used for servers without REST
+                    if (offset > 0 && isRestartSupported(client)) {
+                        client.setRestartOffset(offset);
+                        socket = client.openDataConnection(FTPCmd.STOR, destinationFile);
+                    }
+                    else if (offset > 0) {
+                        socket = client.openDataConnection(FTPCmd.APPE, destinationFile);
+                    }
+                    else {
+                        socket = client.openDataConnection(FTPCmd.STOR, destinationFile);
+                    }
+
+                    if (socket == null) {
+                        throw new ReplyException("Server replied '" + client.getReplyString().trim() + "' to the store request.");
+                    }
+
+                    try {
+                        engine.send(inputStream.getChannel(), offset, socket,
+                                new TransferCallback(limiter, progress, Metrics.uploadedBytes));
+                    }
+                    finally {
+                        socket.close();
+                    }
+
+                    if (!client.completePendingCommand()) {
+                        throw new ReplyException("Server replied '" + client.getReplyString().trim() + "' on completion of the upload.");
+                    }
+                }
+                finally {
+                    client.setRestartOffset(0);
+                    inputStream.close();
+                }
+
+                return null;
+            }
+        });
+    }
+
     /**
      * Uploads the specified file.
      * @param sourceFile The file to upload.
@@ -335,61 +989,192 @@ public class Server implements IServer {
     }
 
     /**
-     * Configures and attaches a listener to the server's copy stream, so that downloads can be monitored
-     * for progress.
+     * Gets the size of the specified remote file.
+     * @param file The remote file for which to return the size.
+     * @return The size of the file in bytes, or null if the file does not exist or the server does not report sizes.
+     * @throws Exception Thrown if an exception is encountered while querying the size.
      */
-    private void configureStreamListener() {
-        CopyStreamAdapter streamListener = new CopyStreamAdapter() {
-            @Override
-            public void bytesTransferred(long totalBytesTransferred, int bytesTransferred, long streamSize) {
-                progressUpdate(totalBytesTransferred, bytesTransferred, streamSize);
+    public Long getSize(final String file) throws Exception {
+        return execute(new SessionOperation<Long>() {
+            public Long execute(FTPSession client) throws Exception {
+                return getSize(client, file);
             }
-        };
+        });
+    }
 
-        server.setCopyStreamListener(streamListener);
+    /**
+     * Gets the size of the specified remote file using the specified session.
+     * @param client The session over which the size is queried.
+     * @param file The remote file for which to return the size.
+     * @return The size of the file in bytes, or null if the file does not exist or the server does not report sizes.
+     * @throws Exception Thrown if an exception is encountered while querying the size.
+     */
+    private Long getSize(FTPClient client, String file) throws Exception {
+        if (client.sendCommand("SIZE", file) != FTPReply.FILE_STATUS) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(client.getReplyString().substring(4).trim());
+        }
+        catch (Exception ex) {
+            logger.debug("Unable to parse SIZE reply '" + client.getReplyString().trim() + "'.");
+            return null;
+        }
     }
 
     /**
-     * Report download progress.
-     * @param totalBytesTransferred The total number of bytes transferred during the download.
-     * @param bytesTransferred Bytes transferred during the immediate period.
-     * @param streamSize The size of the stream.
+     * Executes the specified operation on a pooled session.
+     * @param operation The operation to execute.
+     * @param <T> The type of the operation's result.
+     * @return The result of the operation.
+     * @throws Exception Thrown if the operation fails.
      */
-    private void progressUpdate(long totalBytesTransferred, int bytesTransferred, long streamSize) {
-        progressUpdate(totalBytesTransferred, bytesTransferred, streamSize, false);
+    private <T> T execute(SessionOperation<T> operation) throws Exception {
+        return execute(operation, false);
     }
 
     /**
-     * Report download progress.
-     * @param totalBytesTransferred The total number of bytes transferred during the download.
-     * @param bytesTransferred Bytes transferred during the immediate period.
-     * @param streamSize The size of the stream.
-     * @param transferComplete Indicates whether the transfer is complete.
+     * Executes the specified operation on a pooled session.  Sessions are reused until they fail; a session on which
+     * the server refused the request is returned to the pool, and any other failure discards it.  If the operation
+     * fails because the session was lost the operation is retried once on a new session.
+     * @param operation The operation to execute.
+     * @param bulk A value indicating whether the operation is a bulk transfer, which may not use the session reserved
+     * for short operations.
+     * @param <T> The type of the operation's result.
+     * @return The result of the operation.
+     * @throws Exception Thrown if the operation fails.
      */
-    private void progressUpdate(long totalBytesTransferred, int bytesTransferred, long streamSize, boolean transferComplete) {
-        Double currentDownloadPercent = totalBytesTransferred / currentDownloadSize.doubleValue();
+    private <T> T execute(SessionOperation<T> operation, Boolean bulk) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            FTPSession client = bulk ? pool.leaseBulk() : pool.lease();
 
-        if (System.nanoTime() - lastProgressUpdate >= timeBetweenUpdates) {
-            // calculate the number of seconds since the last update
-            Long timeSinceLastUpdate = (System.nanoTime() - lastProgressUpdate) / 1000000000;
-            // calculate the number of bytes transferred since the last update
-            Long bytesSinceLastUpdate = totalBytesTransferred - lastProgressTotal;
-            Double bytesPerSecond = bytesSinceLastUpdate / timeSinceLastUpdate.doubleValue();
+            try {
+                T retVal = operation.execute(client);
+                pool.release(client);
 
-            lastProgressUpdate = System.nanoTime();
-            lastProgressTotal = totalBytesTransferred;
+                return retVal;
+            }
+            catch (Exception ex) {
+                // a refused request leaves the session in step with the server; any other failure may have left a
+                // reply unread or the connection broken, so the session can't be trusted
+                if (ex instanceof ReplyException) {
+                    pool.release(client);
+                }
+                else {
+                    pool.invalidate(client);
+                }
+
+                if (attempt > 1 || !isConnectionFailure(ex)) {
+                    throw ex;
+                }
+
+                logger.debug("Session lost (" + ex.getMessage() + "); retrying on a new session...");
+            }
+        }
+    }
 
-            String reportString = "Downloading '" + currentDownload + "'; " +
-                    String.format("%.2f", totalBytesTransferred / 1024 / 1024.0) + " of " +
-                    String.format("%.2f", currentDownloadSize / 1024 / 1024.0) +
-                    " MB (" + String.format("%.2f", currentDownloadPercent * 100) + "%)";
+    /**
+     * Gets the average rate at which the specified transfer moved data.
+     * @param progress The progress of the transfer.
+     * @return The average rate at which the transfer moved data, in bytes per second.
+     */
+    private Double getThroughput(TransferProgress progress) {
+        return progress.getTransferred() * 1e9 / Math.max(System.nanoTime() - progress.getStartTime(), 1);
+    }
 
-            // report the transfer speed if it isn't complete
-            if (!transferComplete) {
-                reportString += ", " + String.format("%.2f", (bytesPerSecond / 1024 / 1024.0)) + " MB/sec";
+    /**
+     * Returns a value indicating whether the specified exception indicates that the session was lost, as opposed to
+     * the server rejecting the request.
+     * @param ex The exception to check.
+     * @return A value indicating whether the specified exception indicates that the session was lost.
+     */
+    private Boolean isConnectionFailure(Exception ex) {
+        return ex instanceof FTPConnectionClosedException || ex instanceof SocketException;
+    }
+
+    /**
+     * Applies a transfer's bandwidth limit and reports its progress as data is moved.
+     */
+    private static class TransferCallback implements TransferEngine.Callback {
+        /**
+         * The limiter for the transfer.
+         */
+        private BandwidthLimiter limiter;
+
+        /**
+         * The progress of the transfer.
+         */
+        private TransferProgress progress;
+
+        /**
+         * The counter of bytes moved in the transfer's direction.
+         */
+        private MetricsRegistry.Counter counter;
+
+        /**
+         * Initializes a new instance of the TransferCallback class.
+         * @param limiter The limiter for the transfer.
+         * @param progress The progress of the transfer.
+         * @param counter The counter of bytes moved in the transfer's direction.
+         */
+        public TransferCallback(BandwidthLimiter limiter, TransferProgress progress, MetricsRegistry.Counter counter) {
+            this.limiter = limiter;
+            this.progress = progress;
+            this.counter = counter;
+        }
+
+        /**
+         * Records the moved data and waits for the limiter to admit it.
+         * @param bytes The number of bytes moved since the previous call.
+         * @return True; the transfer always continues.
+         * @throws IOException Thrown if the thread is interrupted while waiting for the limiter.
+         */
+        public Boolean transferred(long bytes) throws IOException {
+            progress.add(bytes);
+            counter.add(bytes);
+
+            try {
+                limiter.acquire(bytes);
+            }
+            catch (InterruptedException ex) {
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth.");
             }
 
-            logger.info(reportString);
+            return true;
+        }
+    }
+
+    /**
+     * An operation which is executed on a pooled session.
+     * @param <T> The type of the operation's result.
+     */
+    private interface SessionOperation<T> {
+        /**
+         * Executes the operation.
+         * @param client The session on which to execute the operation.
+         * @return The result of the operation.
+         * @throws Exception Thrown if the operation fails.
+         */
+        T execute(FTPSession client) throws Exception;
+    }
+
+    /**
+     * Thrown when the server refuses a request with a negative reply, after which the session is still in step with
+     * the server and may be reused.
+     */
+    static class ReplyException extends Exception {
+        /**
+         * The version of the serialized form.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Initializes a new instance of the ReplyException class.
+         * @param message The message describing the refusal.
+         */
+        public ReplyException(String message) {
+            super(message);
         }
     }
 }
@@ -0,0 +1,233 @@
+/****************************************************************************
+ *
+ * ServerControl.java
+ *
+ * Exposes the Server and its connections for management over JMX.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.List;
+
+/**
+ * Exposes the Server and its connections for management over JMX.  Limits changed here apply immediately, including
+ * to transfers in progress, and remain in effect until changed again or replaced by the schedule.
+ */
+public class ServerControl implements ServerControlMBean {
+    /**
+     * The managed Server.
+     */
+    private Server server;
+
+    /**
+     * Initializes a new instance of the ServerControl class.
+     * @param server The managed Server.
+     */
+    public ServerControl(Server server) {
+        this.server = server;
+    }
+
+    /**
+     * Gets the number of sessions currently open, both idle and leased.
+     * @return The number of sessions currently open.
+     */
+    public Integer getConnections() {
+        return server.getPool().getSize();
+    }
+
+    /**
+     * Gets the number of open sessions which are not currently leased.
+     * @return The number of idle sessions.
+     */
+    public Integer getIdleConnections() {
+        return server.getPool().getIdleCount();
+    }
+
+    /**
+     * Gets the maximum number of concurrent sessions.
+     * @return The maximum number of concurrent sessions.
+     */
+    public Integer getMaximumConnections() {
+        return server.getPool().getMaximumSize();
+    }
+
+    /**
+     * Sets the maximum number of concurrent sessions.
+     * @param maximumConnections The maximum number of concurrent sessions.
+     */
+    public void setMaximumConnections(Integer maximumConnections) {
+        if (maximumConnections == null || maximumConnections <= 0) {
+            throw new IllegalArgumentException("Maximum connections must be greater than zero.");
+        }
+
+        server.getPool().setMaximumSize(maximumConnections);
+    }
+
+    /**
+     * Gets the number of logins performed.
+     * @return The number of logins performed.
+     */
+    public Long getLoginCount() {
+        return server.getLoginCount();
+    }
+
+    /**
+     * Gets the number of sessions discarded after failing a liveness check or an operation.
+     * @return The number of discarded sessions.
+     */
+    public Long getDiscardCount() {
+        return server.getPool().getDiscardCount();
+    }
+
+    /**
+     * Gets the number of segments into which large files are split when downloading.
+     * @return The number of segments.
+     */
+    public Integer getSegmentCount() {
+        return server.getSegmentCount();
+    }
+
+    /**
+     * Sets the number of segments into which large files are split when downloading.  Takes effect at the next
+     * download.
+     * @param segmentCount The number of segments.
+     */
+    public void setSegmentCount(Integer segmentCount) {
+        if (segmentCount == null || segmentCount <= 0) {
+            throw new IllegalArgumentException("Segment count must be greater than zero.");
+        }
+
+        server.setSegmentCount(segmentCount);
+    }
+
+    /**
+     * Gets the combined download rate limit for all transfers, in bytes per second.
+     * @return The combined download rate limit, or 0 if there is no limit.
+     */
+    public Long getDownloadLimit() {
+        return server.getDownloadLimit();
+    }
+
+    /**
+     * Sets the combined download rate limit for all transfers, in bytes per second.
+     * @param downloadLimit The combined download rate limit, or 0 for no limit.
+     */
+    public void setDownloadLimit(Long downloadLimit) {
+        server.setDownloadLimit(validateLimit(downloadLimit));
+    }
+
+    /**
+     * Gets the download rate limit for each transfer, in bytes per second.
+     * @return The download rate limit for each transfer, or 0 if there is no limit.
+     */
+    public Long getDownloadTransferLimit() {
+        return server.getDownloadTransferLimit();
+    }
+
+    /**
+     * Sets the download rate limit for each transfer, in bytes per second.
+     * @param downloadTransferLimit The download rate limit for each transfer, or 0 for no limit.
+     */
+    public void setDownloadTransferLimit(Long downloadTransferLimit) {
+        server.setDownloadTransferLimit(validateLimit(downloadTransferLimit));
+    }
+
+    /**
+     * Gets the combined upload rate limit for all transfers, in bytes per second.
+     * @return The combined upload rate limit, or 0 if there is no limit.
+     */
+    public Long getUploadLimit() {
+        return server.getUploadLimit();
+    }
+
+    /**
+     * Sets the combined upload rate limit for all transfers, in bytes per second.
+     * @param uploadLimit The combined upload rate limit, or 0 for no limit.
+     */
+    public void setUploadLimit(Long uploadLimit) {
+        server.setUploadLimit(validateLimit(uploadLimit));
+    }
+
+    /**
+     * Gets the upload rate limit for each transfer, in bytes per second.
+     * @return The upload rate limit for each transfer, or 0 if there is no limit.
+     */
+    public Long getUploadTransferLimit() {
+        return server.getUploadTransferLimit();
+    }
+
+    /**
+     * Sets the upload rate limit for each transfer, in bytes per second.
+     * @param uploadTransferLimit The upload rate limit for each transfer, or 0 for no limit.
+     */
+    public void setUploadTransferLimit(Long uploadTransferLimit) {
+        server.setUploadTransferLimit(validateLimit(uploadTransferLimit));
+    }
+
+    /**
+     * Gets a description of each transfer in progress, including its most recently sampled rate.
+     * @return A description of each transfer in progress.
+     */
+    public String[] getTransfers() {
+        List<TransferProgress> transfers = server.getTransfers();
+        String[] retVal = new String[transfers.size()];
+
+        for (int i = 0; i < retVal.length; i++) {
+            retVal[i] = ProgressReporter.describe(transfers.get(i), transfers.get(i).getRate());
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Gets a value indicating whether transfers are paused.
+     * @return A value indicating whether transfers are paused.
+     */
+    public Boolean getPaused() {
+        return server.isPaused();
+    }
+
+    /**
+     * Pauses all transfers, including those in progress.
+     */
+    public void pauseTransfers() {
+        server.pauseTransfers();
+    }
+
+    /**
+     * Resumes paused transfers.
+     */
+    public void resumeTransfers() {
+        server.resumeTransfers();
+    }
+
+    /**
+     * Validates the specified rate limit.
+     * @param limit The rate limit to validate.
+     * @return The rate limit.
+     * @throws IllegalArgumentException Thrown if the limit is missing or negative.
+     */
+    private Long validateLimit(Long limit) throws IllegalArgumentException {
+        if (limit == null || limit < 0) {
+            throw new IllegalArgumentException("Limits must be zero or greater.");
+        }
+
+        return limit;
+    }
+}
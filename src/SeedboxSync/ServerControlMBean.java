@@ -0,0 +1,148 @@
+/****************************************************************************
+ *
+ * ServerControlMBean.java
+ *
+ * Defines the management interface of the Server and its connections.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+/**
+ * Defines the management interface of the Server and its connections.
+ */
+public interface ServerControlMBean {
+    /**
+     * Gets the number of sessions currently open, both idle and leased.
+     * @return The number of sessions currently open.
+     */
+    Integer getConnections();
+
+    /**
+     * Gets the number of open sessions which are not currently leased.
+     * @return The number of idle sessions.
+     */
+    Integer getIdleConnections();
+
+    /**
+     * Gets the maximum number of concurrent sessions.
+     * @return The maximum number of concurrent sessions.
+     */
+    Integer getMaximumConnections();
+
+    /**
+     * Sets the maximum number of concurrent sessions.
+     * @param maximumConnections The maximum number of concurrent sessions.
+     */
+    void setMaximumConnections(Integer maximumConnections);
+
+    /**
+     * Gets the number of logins performed.
+     * @return The number of logins performed.
+     */
+    Long getLoginCount();
+
+    /**
+     * Gets the number of sessions discarded after failing a liveness check or an operation.
+     * @return The number of discarded sessions.
+     */
+    Long getDiscardCount();
+
+    /**
+     * Gets the number of segments into which large files are split when downloading.
+     * @return The number of segments.
+     */
+    Integer getSegmentCount();
+
+    /**
+     * Sets the number of segments into which large files are split when downloading.  Takes effect at the next
+     * download.
+     * @param segmentCount The number of segments.
+     */
+    void setSegmentCount(Integer segmentCount);
+
+    /**
+     * Gets the combined download rate limit for all transfers, in bytes per second.
+     * @return The combined download rate limit, or 0 if there is no limit.
+     */
+    Long getDownloadLimit();
+
+    /**
+     * Sets the combined download rate limit for all transfers, in bytes per second.
+     * @param downloadLimit The combined download rate limit, or 0 for no limit.
+     */
+    void setDownloadLimit(Long downloadLimit);
+
+    /**
+     * Gets the download rate limit for each transfer, in bytes per second.
+     * @return The download rate limit for each transfer, or 0 if there is no limit.
+     */
+    Long getDownloadTransferLimit();
+
+    /**
+     * Sets the download rate limit for each transfer, in bytes per second.
+     * @param downloadTransferLimit The download rate limit for each transfer, or 0 for no limit.
+     */
+    void setDownloadTransferLimit(Long downloadTransferLimit);
+
+    /**
+     * Gets the combined upload rate limit for all transfers, in bytes per second.
+     * @return The combined upload rate limit, or 0 if there is no limit.
+     */
+    Long getUploadLimit();
+
+    /**
+     * Sets the combined upload rate limit for all transfers, in bytes per second.
+     * @param uploadLimit The combined upload rate limit, or 0 for no limit.
+     */
+    void setUploadLimit(Long uploadLimit);
+
+    /**
+     * Gets the upload rate limit for each transfer, in bytes per second.
+     * @return The upload rate limit for each transfer, or 0 if there is no limit.
+     */
+    Long getUploadTransferLimit();
+
+    /**
+     * Sets the upload rate limit for each transfer, in bytes per second.
+     * @param uploadTransferLimit The upload rate limit for each transfer, or 0 for no limit.
+     */
+    void setUploadTransferLimit(Long uploadTransferLimit);
+
+    /**
+     * Gets a description of each transfer in progress, including its most recently sampled rate.
+     * @return A description of each transfer in progress.
+     */
+    String[] getTransfers();
+
+    /**
+     * Gets a value indicating whether transfers are paused.
+     * @return A value indicating whether transfers are paused.
+     */
+    Boolean getPaused();
+
+    /**
+     * Pauses all transfers, including those in progress.
+     */
+    void pauseTransfers();
+
+    /**
+     * Resumes paused transfers.
+     */
+    void resumeTransfers();
+}
@@ -49,7 +49,16 @@ public class ServerFactory {
 
         if (config.isValid()) {
             logger.debug("s: " + config.getServer() + ", u: " + config.getUsername() + ", p: " + config.getPassword());
-            Server retVal = new Server(config.getServer(), config.getUsername(), config.getPassword(), config.getPort());
+            Server retVal = new Server(config.getServer(), config.getUsername(), config.getPassword(), config.getPort(),
+                    config.getMinimumConnections(), config.getMaximumConnections());
+
+            retVal.setSegmentCount(config.getSegmentCount());
+            retVal.setSegmentThreshold(config.getSegmentThreshold());
+            retVal.setDownloadLimit(config.getDownloadLimit());
+            retVal.setDownloadTransferLimit(config.getDownloadTransferLimit());
+            retVal.setUploadLimit(config.getUploadLimit());
+            retVal.setUploadTransferLimit(config.getUploadTransferLimit());
+            retVal.setTransferBufferSize(config.getTransferBufferSize());
 
             logger.debug("Server created successfully.");
 
@@ -23,6 +23,9 @@
  *
  ****************************************************************************/
 
+import java.util.Calendar;
+import java.util.Date;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +63,51 @@ public class Synchronizer implements ISynchronizer {
      */
     private Downloader downloader;
 
+    /**
+     * The worker which uploads the files queued by the Uploader.
+     */
+    private TransferWorker uploadWorker;
+
+    /**
+     * The worker which downloads the files queued by the Downloader.
+     */
+    private TransferWorker downloadWorker;
+
+    /**
+     * The watcher which enqueues new files in the local upload directory as they are written.
+     */
+    private UploadWatcher uploadWatcher;
+
+    /**
+     * A description of the bandwidth limits most recently applied, used to log changes.
+     */
+    private String appliedLimits;
+
+    /**
+     * The number of synchronizations started.
+     */
+    private volatile Long cycleCount = 0L;
+
+    /**
+     * The time at which the most recent synchronization started, or null if none has started.
+     */
+    private volatile Date lastCycleStart;
+
+    /**
+     * The duration of the most recently completed synchronization, in milliseconds, or null if none has completed.
+     */
+    private volatile Long lastCycleDuration;
+
+    /**
+     * A value indicating whether the most recently completed synchronization succeeded, or null if none has completed.
+     */
+    private volatile Boolean lastCycleSucceeded;
+
+    /**
+     * A value indicating whether a synchronization is in progress.
+     */
+    private volatile Boolean synchronizing = false;
+
     /** Initializes a new instance of the Synchronizer class with the specified Configuration.
      * @param configuration The Configuration instance with which the Synchronizer should be configured.
      * @param server The IServer instance for the Synchronizer.
@@ -72,14 +120,179 @@ public class Synchronizer implements ISynchronizer {
 
         uploader = new Uploader(server, configuration.getLocalUploadDirectory(), configuration.getRemoteUploadDirectory());
         downloader = new Downloader(server, configuration.getLocalDownloadDirectory(), configuration.getRemoteDownloadDirectory(), database);
+        downloader.setScanConcurrency(configuration.getScanConcurrency());
+
+        uploader.setQueueCapacity(configuration.getQueueCapacity());
+        uploader.setSettleTime(configuration.getUploadSettleTime());
+        uploader.setWorkerCount(configuration.getTransferWorkers());
+        uploader.setRetryDelay(configuration.getRetryDelay());
+        downloader.setQueueCapacity(configuration.getQueueCapacity());
+        downloader.setWorkerCount(configuration.getTransferWorkers());
+        downloader.setRetryDelay(configuration.getRetryDelay());
+        downloader.setPriorityPolicy(PriorityPolicies.create(configuration.getDownloadPriority(),
+                configuration.getPriorityPatterns()));
+
+        uploadWorker = new TransferWorker(uploader, "upload-worker");
+        downloadWorker = new TransferWorker(downloader, "download-worker");
+        uploadWatcher = new UploadWatcher(uploader, uploadWorker, configuration.getLocalUploadDirectory());
     }
 
     /**
-     * Synchronizes the local and remote directories.
+     * Starts the transfer workers and the upload directory watcher.  Once started, each synchronization scans for new
+     * files and hands them to the workers, rather than transferring them before it returns, and new uploads are
+     * enqueued as soon as they are written.  If the upload directory can't be watched, new uploads are found by the
+     * synchronization scan alone.
+     */
+    public void start() {
+        uploadWorker.start();
+        downloadWorker.start();
+
+        try {
+            uploadWatcher.start();
+        }
+        catch (Exception ex) {
+            logger.warn("Unable to watch upload directory '" + configuration.getLocalUploadDirectory() + "' (" +
+                    ex.getMessage() + "); new uploads will be found by the next synchronization.");
+        }
+    }
+
+    /**
+     * Stops the upload directory watcher, and the transfer workers once their transfers in progress complete.
+     */
+    public void stop() {
+        uploadWatcher.stop();
+        uploadWorker.stop();
+        downloadWorker.stop();
+    }
+
+    /**
+     * Synchronizes the local and remote directories.  If the transfer workers have been started the directories are
+     * scanned and the workers are woken to transfer the files found; otherwise the files are transferred before the
+     * synchronization returns.
      * @throws Exception Thrown if an exception is encountered during the synchronization.
      */
     public void synchronize() throws Exception {
-        uploader.process();
-        downloader.process();
+        applySchedule();
+
+        Long logins = server.getLoginCount();
+        Boolean succeeded = false;
+        long start = System.nanoTime();
+
+        synchronizing = true;
+        cycleCount++;
+        lastCycleStart = new Date();
+
+        try {
+            if (uploadWorker.isRunning()) {
+                // the uploads are woken before the download scan so that a slow scan doesn't hold them back
+                uploader.scan();
+                uploadWorker.wake();
+
+                downloader.scan();
+                downloadWorker.wake();
+            }
+            else {
+                uploader.process();
+                downloader.process();
+            }
+
+            succeeded = true;
+        }
+        finally {
+            lastCycleDuration = (System.nanoTime() - start) / 1000000;
+            lastCycleSucceeded = succeeded;
+            synchronizing = false;
+
+            logger.info("Synchronization performed " + (server.getLoginCount() - logins) + " login(s).");
+        }
+    }
+
+    /**
+     * Gets the Uploader for the Synchronizer.
+     * @return The Uploader for the Synchronizer.
+     */
+    public Uploader getUploader() {
+        return uploader;
+    }
+
+    /**
+     * Gets the Downloader for the Synchronizer.
+     * @return The Downloader for the Synchronizer.
+     */
+    public Downloader getDownloader() {
+        return downloader;
+    }
+
+    /**
+     * Gets the number of synchronizations started.
+     * @return The number of synchronizations started.
+     */
+    public Long getCycleCount() {
+        return cycleCount;
+    }
+
+    /**
+     * Gets the time at which the most recent synchronization started.
+     * @return The time at which the most recent synchronization started, or null if none has started.
+     */
+    public Date getLastCycleStart() {
+        return lastCycleStart;
+    }
+
+    /**
+     * Gets the duration of the most recently completed synchronization, in milliseconds.
+     * @return The duration of the most recently completed synchronization, or null if none has completed.
+     */
+    public Long getLastCycleDuration() {
+        return lastCycleDuration;
+    }
+
+    /**
+     * Gets a value indicating whether the most recently completed synchronization succeeded.
+     * @return A value indicating whether the most recently completed synchronization succeeded, or null if none has
+     * completed.
+     */
+    public Boolean getLastCycleSucceeded() {
+        return lastCycleSucceeded;
+    }
+
+    /**
+     * Gets a value indicating whether a synchronization is in progress.
+     * @return A value indicating whether a synchronization is in progress.
+     */
+    public Boolean isSynchronizing() {
+        return synchronizing;
+    }
+
+    /**
+     * Applies the bandwidth limits scheduled for the current hour.
+     */
+    public void applySchedule() {
+        applySchedule(Calendar.getInstance().get(Calendar.HOUR_OF_DAY));
+    }
+
+    /**
+     * Applies the bandwidth limits scheduled for the specified hour.  Limits are only applied when the scheduled limits
+     * change, so that limits changed at runtime remain in effect until the next scheduled change.
+     * @param hour The hour of the day, from 0 to 23.
+     */
+    public synchronized void applySchedule(Integer hour) {
+        ScheduleEntry entry = configuration.getScheduleEntry(hour);
+
+        String limits = "download " + entry.getDownloadLimit() + " B/s (" + entry.getDownloadTransferLimit() +
+                " B/s per transfer), upload " + entry.getUploadLimit() + " B/s (" + entry.getUploadTransferLimit() +
+                " B/s per transfer)";
+
+        if (limits.equals(appliedLimits)) {
+            return;
+        }
+
+        logger.info("Applying bandwidth limits for hour " + hour + ": " + limits + ".");
+        appliedLimits = limits;
+
+        server.setDownloadLimit(entry.getDownloadLimit());
+        server.setDownloadTransferLimit(entry.getDownloadTransferLimit());
+        server.setUploadLimit(entry.getUploadLimit());
+        server.setUploadTransferLimit(entry.getUploadTransferLimit());
     }
 }
@@ -0,0 +1,105 @@
+/****************************************************************************
+ *
+ * SynchronizerControl.java
+ *
+ * Exposes the Synchronizer for management over JMX.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Callable;
+
+/**
+ * Exposes the Synchronizer for management over JMX.
+ */
+public class SynchronizerControl implements SynchronizerControlMBean {
+    /**
+     * The managed Synchronizer.
+     */
+    private Synchronizer synchronizer;
+
+    /**
+     * The operation which starts a synchronization immediately, returning false if one is already in progress.
+     */
+    private Callable<Boolean> trigger;
+
+    /**
+     * Initializes a new instance of the SynchronizerControl class.
+     * @param synchronizer The managed Synchronizer.
+     * @param trigger The operation which starts a synchronization immediately, returning false if one is already in
+     * progress.
+     */
+    public SynchronizerControl(Synchronizer synchronizer, Callable<Boolean> trigger) {
+        this.synchronizer = synchronizer;
+        this.trigger = trigger;
+    }
+
+    /**
+     * Gets the number of synchronizations started.
+     * @return The number of synchronizations started.
+     */
+    public Long getCycleCount() {
+        return synchronizer.getCycleCount();
+    }
+
+    /**
+     * Gets the time at which the most recent synchronization started.
+     * @return The time at which the most recent synchronization started, or null if none has started.
+     */
+    public String getLastCycleStart() {
+        Date start = synchronizer.getLastCycleStart();
+        return start != null ? new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(start) : null;
+    }
+
+    /**
+     * Gets the duration of the most recently completed synchronization, in milliseconds.
+     * @return The duration of the most recently completed synchronization, or null if none has completed.
+     */
+    public Long getLastCycleDuration() {
+        return synchronizer.getLastCycleDuration();
+    }
+
+    /**
+     * Gets a value indicating whether the most recently completed synchronization succeeded.
+     * @return A value indicating whether the most recently completed synchronization succeeded, or null if none has
+     * completed.
+     */
+    public Boolean getLastCycleSucceeded() {
+        return synchronizer.getLastCycleSucceeded();
+    }
+
+    /**
+     * Gets a value indicating whether a synchronization is in progress.
+     * @return A value indicating whether a synchronization is in progress.
+     */
+    public Boolean getSynchronizing() {
+        return synchronizer.isSynchronizing();
+    }
+
+    /**
+     * Starts a synchronization immediately rather than waiting for the interval to elapse.
+     * @return A value indicating whether a synchronization was started; false if one is already in progress.
+     * @throws Exception Thrown if the synchronization can't be scheduled.
+     */
+    public Boolean synchronizeNow() throws Exception {
+        return trigger.call();
+    }
+}
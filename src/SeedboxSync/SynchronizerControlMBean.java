@@ -0,0 +1,67 @@
+/****************************************************************************
+ *
+ * SynchronizerControlMBean.java
+ *
+ * Defines the management interface of the Synchronizer.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+/**
+ * Defines the management interface of the Synchronizer.
+ */
+public interface SynchronizerControlMBean {
+    /**
+     * Gets the number of synchronizations started.
+     * @return The number of synchronizations started.
+     */
+    Long getCycleCount();
+
+    /**
+     * Gets the time at which the most recent synchronization started.
+     * @return The time at which the most recent synchronization started, or null if none has started.
+     */
+    String getLastCycleStart();
+
+    /**
+     * Gets the duration of the most recently completed synchronization, in milliseconds.
+     * @return The duration of the most recently completed synchronization, or null if none has completed.
+     */
+    Long getLastCycleDuration();
+
+    /**
+     * Gets a value indicating whether the most recently completed synchronization succeeded.
+     * @return A value indicating whether the most recently completed synchronization succeeded, or null if none has
+     * completed.
+     */
+    Boolean getLastCycleSucceeded();
+
+    /**
+     * Gets a value indicating whether a synchronization is in progress.
+     * @return A value indicating whether a synchronization is in progress.
+     */
+    Boolean getSynchronizing();
+
+    /**
+     * Starts a synchronization immediately rather than waiting for the interval to elapse.
+     * @return A value indicating whether a synchronization was started; false if one is already in progress.
+     * @throws Exception Thrown if the synchronization can't be scheduled.
+     */
+    Boolean synchronizeNow() throws Exception;
+}
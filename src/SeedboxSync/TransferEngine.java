@@ -0,0 +1,288 @@
+/****************************************************************************
+ *
+ * TransferEngine.java
+ *
+ * Moves data between data connections and files using channels.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves data between data connections and files using channels.  Uploads are sent with FileChannel.transferTo, which
+ * the operating system can perform without copying the data through the JVM.  Downloads are received into pooled direct
+ * buffers and written with positional channel writes, avoiding copies through the heap; FileChannel.transferFrom is
+ * not used for downloads, as it copies through small temporary buffers when the source is a socket.  Data connections
+ * which are not backed by a channel are copied through a heap buffer of the same size.
+ */
+public class TransferEngine {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The size of the buffers used to move data, and the largest amount of data moved in a single operation.
+     */
+    private Integer bufferSize;
+
+    /**
+     * The direct buffers which are not currently in use.
+     */
+    private BlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * Initializes a new instance of the TransferEngine class.
+     * @param bufferSize The size of the buffers used to move data, in bytes.
+     */
+    public TransferEngine(Integer bufferSize) {
+        this.bufferSize = Math.max(bufferSize, 4096);
+        this.buffers = new LinkedBlockingQueue<ByteBuffer>();
+    }
+
+    /**
+     * Gets the size of the buffers used to move data, in bytes.
+     * @return The size of the buffers used to move data.
+     */
+    public Integer getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Receives data from the specified data connection and writes it to the specified file, starting at the specified
+     * position, until the connection is closed, the specified number of bytes have been received, or the callback
+     * requests that the transfer stop.
+     * @param socket The data connection from which data is received.
+     * @param file The file to which data is written.
+     * @param position The position in the file at which to write the first byte.
+     * @param count The maximum number of bytes to receive.
+     * @param callback The callback to notify as data is written.
+     * @return The number of bytes written.
+     * @throws IOException Thrown if an exception is encountered while receiving or writing data, or if no data is
+     * received within the connection's timeout.
+     */
+    public Long receive(Socket socket, FileChannel file, Long position, Long count, Callback callback) throws IOException {
+        SocketChannel channel = socket.getChannel();
+
+        if (channel == null) {
+            return receiveStream(socket.getInputStream(), file, position, count, callback);
+        }
+
+        ByteBuffer buffer = lease();
+
+        // the channel is read without blocking so that the connection's timeout can be enforced with a selector;
+        // blocking channel reads ignore it
+        Selector selector = Selector.open();
+        Integer timeout = socket.getSoTimeout();
+        long received = 0;
+
+        try {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+
+            while (received < count) {
+                buffer.clear();
+                buffer.limit((int)Math.min(buffer.capacity(), count - received));
+
+                int read = channel.read(buffer);
+
+                if (read == -1) {
+                    break;
+                }
+                else if (read == 0) {
+                    if (selector.select(timeout) == 0) {
+                        throw new SocketTimeoutException("No data received within " + timeout + " ms.");
+                    }
+
+                    selector.selectedKeys().clear();
+                    continue;
+                }
+
+                buffer.flip();
+
+                while (buffer.hasRemaining()) {
+                    file.write(buffer, position + received + (read - buffer.remaining()));
+                }
+
+                received += read;
+
+                if (!callback.transferred(read)) {
+                    break;
+                }
+            }
+        }
+        finally {
+            selector.close();
+            release(buffer);
+        }
+
+        return received;
+    }
+
+    /**
+     * Sends the specified file, starting at the specified position, over the specified data connection until the end
+     * of the file is reached or the callback requests that the transfer stop.
+     * @param file The file from which data is read.
+     * @param position The position in the file of the first byte to send.
+     * @param socket The data connection to which data is sent.
+     * @param callback The callback to notify as data is sent.
+     * @return The number of bytes sent.
+     * @throws IOException Thrown if an exception is encountered while reading or sending data.
+     */
+    public Long send(FileChannel file, Long position, Socket socket, Callback callback) throws IOException {
+        SocketChannel channel = socket.getChannel();
+
+        if (channel == null) {
+            return sendStream(file, position, socket.getOutputStream(), callback);
+        }
+
+        long sent = 0;
+        long size = file.size();
+
+        while (position + sent < size) {
+            long written = file.transferTo(position + sent, Math.min(bufferSize, size - position - sent), channel);
+
+            if (written <= 0) {
+                break;
+            }
+
+            sent += written;
+
+            if (!callback.transferred(written)) {
+                break;
+            }
+        }
+
+        return sent;
+    }
+
+    /**
+     * Receives data from the specified stream through a heap buffer, for data connections without a channel.
+     * @param in The stream from which data is received.
+     * @param file The file to which data is written.
+     * @param position The position in the file at which to write the first byte.
+     * @param count The maximum number of bytes to receive.
+     * @param callback The callback to notify as data is written.
+     * @return The number of bytes written.
+     * @throws IOException Thrown if an exception is encountered while receiving or writing data.
+     */
+    private Long receiveStream(InputStream in, FileChannel file, Long position, Long count, Callback callback)
+            throws IOException {
+        logger.debug("Data connection has no channel; receiving through a heap buffer.");
+
+        byte[] buffer = new byte[bufferSize];
+        long received = 0;
+        int read;
+
+        while (received < count && (read = in.read(buffer, 0, (int)Math.min(buffer.length, count - received))) != -1) {
+            ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+
+            while (data.hasRemaining()) {
+                file.write(data, position + received + data.position());
+            }
+
+            received += read;
+
+            if (!callback.transferred(read)) {
+                break;
+            }
+        }
+
+        return received;
+    }
+
+    /**
+     * Sends the specified file through a heap buffer, for data connections without a channel.
+     * @param file The file from which data is read.
+     * @param position The position in the file of the first byte to send.
+     * @param out The stream to which data is sent.
+     * @param callback The callback to notify as data is sent.
+     * @return The number of bytes sent.
+     * @throws IOException Thrown if an exception is encountered while reading or sending data.
+     */
+    private Long sendStream(FileChannel file, Long position, OutputStream out, Callback callback) throws IOException {
+        logger.debug("Data connection has no channel; sending through a heap buffer.");
+
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        long sent = 0;
+        int read;
+
+        while ((read = file.read(buffer, position + sent)) > 0) {
+            out.write(buffer.array(), 0, read);
+            buffer.clear();
+
+            sent += read;
+
+            if (!callback.transferred(read)) {
+                break;
+            }
+        }
+
+        out.flush();
+
+        return sent;
+    }
+
+    /**
+     * Takes a direct buffer from the pool, allocating a new one if the pool is empty.
+     * @return A direct buffer.
+     */
+    private ByteBuffer lease() {
+        ByteBuffer retVal = buffers.poll();
+        return retVal != null ? retVal : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Returns the specified direct buffer to the pool.
+     * @param buffer The buffer to return.
+     */
+    private void release(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    /**
+     * Receives notification of data moved by a transfer.
+     */
+    public interface Callback {
+        /**
+         * Called after data has been moved.
+         * @param bytes The number of bytes moved since the previous call.
+         * @return A value indicating whether the transfer should continue.
+         * @throws IOException Thrown to abort the transfer.
+         */
+        Boolean transferred(long bytes) throws IOException;
+    }
+}
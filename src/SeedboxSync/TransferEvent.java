@@ -0,0 +1,84 @@
+/****************************************************************************
+ *
+ * TransferEvent.java
+ *
+ * A flight recorder event describing a file transfer.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event describing a file transfer from the first byte requested until the file is in place or the
+ * transfer fails.
+ */
+@Name("SeedboxSync.Transfer")
+@Label("File Transfer")
+@Category({ "SeedboxSync", "Server" })
+@Description("The download or upload of a single file.")
+public class TransferEvent extends jdk.jfr.Event {
+    /**
+     * The direction of the transfer; either 'Download' or 'Upload'.
+     */
+    @Label("Direction")
+    String direction;
+
+    /**
+     * The remote file which was transferred.
+     */
+    @Label("File")
+    String file;
+
+    /**
+     * The size of the file.
+     */
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    /**
+     * The number of bytes moved by this transfer, excluding data committed by earlier attempts.
+     */
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * The mode of the transfer; either 'Stream' or 'Segmented'.
+     */
+    @Label("Mode")
+    String mode;
+
+    /**
+     * The number of segments transferred in parallel.
+     */
+    @Label("Segments")
+    int segments;
+
+    /**
+     * A value indicating whether the transfer completed.
+     */
+    @Label("Complete")
+    boolean complete;
+}
@@ -0,0 +1,185 @@
+/****************************************************************************
+ *
+ * TransferProgress.java
+ *
+ * Tracks the progress of a single transfer.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of a single transfer.  The threads moving data only add to a primitive counter, which neither
+ * allocates nor reads the clock; rates are calculated when the progress is sampled by a ProgressReporter.
+ */
+public class TransferProgress {
+    /**
+     * The verb describing the transfer, such as "Downloading".
+     */
+    private final String action;
+
+    /**
+     * The name of the file being transferred.
+     */
+    private final String name;
+
+    /**
+     * The size of the file being transferred, in bytes, or a negative value if unknown.
+     */
+    private final long size;
+
+    /**
+     * The time at which the transfer started, in nanoseconds.
+     */
+    private final long startTime;
+
+    /**
+     * The number of bytes moved by this transfer.
+     */
+    private final AtomicLong transferred = new AtomicLong();
+
+    /**
+     * The number of bytes of the file transferred by previous attempts.
+     */
+    private volatile long committed;
+
+    /**
+     * The number of bytes moved when the progress was last sampled.
+     */
+    private long sampledBytes;
+
+    /**
+     * The time at which the progress was last sampled, in nanoseconds.
+     */
+    private long sampledTime;
+
+    /**
+     * The rate measured by the most recent sample, in bytes per second.
+     */
+    private volatile double rate;
+
+    /**
+     * Initializes a new instance of the TransferProgress class.
+     * @param action The verb describing the transfer, such as "Downloading".
+     * @param name The name of the file being transferred.
+     * @param size The size of the file being transferred, in bytes, or null if unknown.
+     * @param committed The number of bytes of the file transferred by previous attempts.
+     */
+    public TransferProgress(String action, String name, Long size, Long committed) {
+        this.action = action;
+        this.name = name;
+        this.size = size != null ? size : -1;
+        this.committed = committed;
+
+        startTime = System.nanoTime();
+        sampledTime = startTime;
+    }
+
+    /**
+     * Gets the verb describing the transfer.
+     * @return The verb describing the transfer.
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the name of the file being transferred.
+     * @return The name of the file being transferred.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the size of the file being transferred, in bytes.
+     * @return The size of the file being transferred, or a negative value if unknown.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of bytes moved by this transfer, excluding data transferred by previous attempts.
+     * @return The number of bytes moved by this transfer.
+     */
+    public long getTransferred() {
+        return transferred.get();
+    }
+
+    /**
+     * Gets the number of bytes of the file which have been transferred, including data transferred by previous
+     * attempts.
+     * @return The number of bytes of the file which have been transferred.
+     */
+    public long getTotal() {
+        return committed + transferred.get();
+    }
+
+    /**
+     * Gets the time at which the transfer started.
+     * @return The time at which the transfer started, in nanoseconds.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the rate measured when the progress was last sampled.
+     * @return The rate measured by the most recent sample, in bytes per second, or 0 if it has not been sampled.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Records data moved by the transfer.  Called for every chunk, from any number of threads.
+     * @param bytes The number of bytes moved.
+     */
+    public void add(long bytes) {
+        transferred.addAndGet(bytes);
+    }
+
+    /**
+     * Sets the number of bytes of the file which have been transferred, such as when a transfer is restarted from an
+     * offset.  Data moved by this transfer is unaffected, so rates do not include the resumed data.
+     * @param total The number of bytes of the file which have been transferred.
+     */
+    public void resume(long total) {
+        committed = total - transferred.get();
+    }
+
+    /**
+     * Samples the progress, returning the rate at which data has been moved since the previous sample.  Sampling is
+     * performed by a single reporting thread.
+     * @param now The current time, in nanoseconds.
+     * @return The rate since the previous sample, in bytes per second.
+     */
+    synchronized double sample(long now) {
+        long bytes = transferred.get();
+        double retVal = now > sampledTime ? (bytes - sampledBytes) * 1000000000.0 / (now - sampledTime) : 0;
+
+        sampledBytes = bytes;
+        sampledTime = now;
+        rate = retVal;
+
+        return retVal;
+    }
+}
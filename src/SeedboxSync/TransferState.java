@@ -0,0 +1,269 @@
+/****************************************************************************
+ *
+ * TransferState.java
+ *
+ * Records the progress of a segmented download so that it can be resumed.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the progress of a segmented download so that it can be resumed.  The state is kept alongside the partial
+ * file as one line containing the file size followed by one line per segment containing its start offset, the offset
+ * up to which data has been committed, and its end offset.
+ */
+public class TransferState {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The file in which the state is stored.
+     */
+    private java.io.File file;
+
+    /**
+     * The size of the file being transferred, in bytes.
+     */
+    private Long size;
+
+    /**
+     * The start offset of each segment.
+     */
+    private long[] starts;
+
+    /**
+     * The offset up to which data has been committed for each segment.
+     */
+    private AtomicLongArray positions;
+
+    /**
+     * The offset immediately following the last byte of each segment.
+     */
+    private long[] ends;
+
+    /**
+     * Initializes a new instance of the TransferState class.
+     * @param file The file in which the state is stored.
+     * @param size The size of the file being transferred, in bytes.
+     * @param starts The start offset of each segment.
+     * @param positions The offset up to which data has been committed for each segment.
+     * @param ends The offset immediately following the last byte of each segment.
+     */
+    private TransferState(java.io.File file, Long size, long[] starts, long[] positions, long[] ends) {
+        this.file = file;
+        this.size = size;
+        this.starts = starts;
+        this.positions = new AtomicLongArray(positions);
+        this.ends = ends;
+    }
+
+    /**
+     * Initializes a new TransferState which splits a file of the specified size into the specified number of segments,
+     * none of which have been started.
+     * @param file The file in which the state is to be stored.
+     * @param size The size of the file being transferred, in bytes.
+     * @param segmentCount The desired number of segments.  Fewer are created if the file is too small.
+     * @return The new TransferState.
+     */
+    public static TransferState create(java.io.File file, Long size, Integer segmentCount) {
+        int count = (int)Math.max(1, Math.min(segmentCount, size));
+        long segmentSize = (size + count - 1) / count;
+
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            starts[i] = Math.min(size, i * segmentSize);
+            ends[i] = Math.min(size, starts[i] + segmentSize);
+        }
+
+        return new TransferState(file, size, starts, starts.clone(), ends);
+    }
+
+    /**
+     * Loads the TransferState stored in the specified file.
+     * @param file The file from which the state is to be loaded.
+     * @param size The expected size of the file being transferred, in bytes.
+     * @return The loaded TransferState, or null if the file does not exist, can't be read, or describes a file of a
+     * different size.
+     */
+    public static TransferState load(java.io.File file, Long size) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+
+            try {
+                if (!size.equals(Long.parseLong(reader.readLine().trim()))) {
+                    logger.debug("Discarding transfer state '" + file.getName() + "'; the file size has changed.");
+                    return null;
+                }
+
+                List<long[]> segments = new ArrayList<long[]>();
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().equals("")) {
+                        String[] parts = line.trim().split(" ");
+                        segments.add(new long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]) });
+                    }
+                }
+
+                long[] starts = new long[segments.size()];
+                long[] positions = new long[segments.size()];
+                long[] ends = new long[segments.size()];
+
+                for (int i = 0; i < segments.size(); i++) {
+                    starts[i] = segments.get(i)[0];
+                    positions[i] = segments.get(i)[1];
+                    ends[i] = segments.get(i)[2];
+
+                    if (starts[i] > positions[i] || positions[i] > ends[i] || ends[i] > size) {
+                        throw new IOException("Segment " + i + " is out of range.");
+                    }
+                }
+
+                return segments.isEmpty() ? null : new TransferState(file, size, starts, positions, ends);
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (Exception ex) {
+            logger.warn("Discarding unreadable transfer state '" + file.getName() + "': " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the size of the file being transferred, in bytes.
+     * @return The size of the file being transferred.
+     */
+    public Long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of segments.
+     * @return The number of segments.
+     */
+    public Integer getSegmentCount() {
+        return starts.length;
+    }
+
+    /**
+     * Gets the start offset of the specified segment.
+     * @param segment The index of the segment.
+     * @return The start offset of the segment.
+     */
+    public Long getStart(int segment) {
+        return starts[segment];
+    }
+
+    /**
+     * Gets the offset up to which data has been committed for the specified segment.
+     * @param segment The index of the segment.
+     * @return The offset up to which data has been committed.
+     */
+    public Long getPosition(int segment) {
+        return positions.get(segment);
+    }
+
+    /**
+     * Sets the offset up to which data has been committed for the specified segment.
+     * @param segment The index of the segment.
+     * @param position The offset up to which data has been committed.
+     */
+    public void setPosition(int segment, long position) {
+        positions.set(segment, position);
+    }
+
+    /**
+     * Gets the offset immediately following the last byte of the specified segment.
+     * @param segment The index of the segment.
+     * @return The offset immediately following the last byte of the segment.
+     */
+    public Long getEnd(int segment) {
+        return ends[segment];
+    }
+
+    /**
+     * Gets the total number of bytes committed across all segments.
+     * @return The total number of bytes committed.
+     */
+    public Long getBytesCommitted() {
+        long retVal = 0;
+
+        for (int i = 0; i < starts.length; i++) {
+            retVal += positions.get(i) - starts[i];
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Saves the state, replacing the previously saved state in a single step.
+     * @throws IOException Thrown if an exception is encountered while writing the file.
+     */
+    public synchronized void save() throws IOException {
+        java.io.File temp = new java.io.File(file.getPath() + ".tmp");
+        PrintWriter writer = new PrintWriter(new FileWriter(temp));
+
+        try {
+            writer.println(size);
+
+            for (int i = 0; i < starts.length; i++) {
+                writer.println(starts[i] + " " + positions.get(i) + " " + ends[i]);
+            }
+        }
+        finally {
+            writer.close();
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the saved state.
+     */
+    public void delete() {
+        if (file.exists() && !file.delete()) {
+            logger.warn("Unable to delete transfer state '" + file.getName() + "'.");
+        }
+    }
+}
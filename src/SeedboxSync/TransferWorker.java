@@ -0,0 +1,149 @@
+/****************************************************************************
+ *
+ * TransferWorker.java
+ *
+ * Transfers the files queued by a Processor on a dedicated thread.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transfers the files queued by a Processor on a dedicated thread, so that scanning for new files continues while
+ * transfers are in progress.  The worker drains the queue each time it is woken and then waits for the next scan.
+ */
+public class TransferWorker implements Runnable {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The Processor whose queue is transferred.
+     */
+    private Processor processor;
+
+    /**
+     * The name of the worker thread.
+     */
+    private String name;
+
+    /**
+     * The worker thread, or null if the worker has not been started.
+     */
+    private Thread thread;
+
+    /**
+     * A value indicating whether the worker has been woken since it last started to drain the queue.
+     */
+    private Boolean pending = false;
+
+    /**
+     * A value indicating whether the worker has been stopped.
+     */
+    private volatile Boolean stopped = false;
+
+    /**
+     * Initializes a new instance of the TransferWorker class.
+     * @param processor The Processor whose queue is transferred.
+     * @param name The name of the worker thread.
+     */
+    public TransferWorker(Processor processor, String name) {
+        this.processor = processor;
+        this.name = name;
+    }
+
+    /**
+     * Gets a value indicating whether the worker has been started and not stopped.
+     * @return A value indicating whether the worker has been started and not stopped.
+     */
+    public synchronized Boolean isRunning() {
+        return thread != null && !stopped;
+    }
+
+    /**
+     * Starts the worker thread.
+     */
+    public synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the worker once the transfer in progress, if any, completes.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        notifyAll();
+    }
+
+    /**
+     * Wakes the worker so that it drains the queue.  If the worker is draining the queue when it is woken, it drains
+     * the queue again once it is finished, so that files enqueued late in a drain are not left until the next wake.
+     */
+    public synchronized void wake() {
+        pending = true;
+        notifyAll();
+    }
+
+    /**
+     * Drains the queue each time the worker is woken, until the worker is stopped.
+     */
+    public void run() {
+        logger.debug("Transfer worker '" + name + "' started.");
+
+        try {
+            while (await()) {
+                try {
+                    processor.transfer();
+                }
+                catch (Exception ex) {
+                    // failed files are held back by the processor, so this is an unexpected error; report it but keep
+                    // the worker running.
+                    logger.error("Exception thrown while transferring files: " + ex.getMessage());
+                }
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        logger.debug("Transfer worker '" + name + "' stopped.");
+    }
+
+    /**
+     * Waits until the worker is woken or stopped.
+     * @return A value indicating whether the worker was woken; false if it was stopped.
+     * @throws InterruptedException Thrown if the thread is interrupted while waiting.
+     */
+    private synchronized Boolean await() throws InterruptedException {
+        while (!pending && !stopped) {
+            wait();
+        }
+
+        pending = false;
+
+        return !stopped;
+    }
+}
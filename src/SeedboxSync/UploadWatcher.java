@@ -0,0 +1,247 @@
+/****************************************************************************
+ *
+ * UploadWatcher.java
+ *
+ * Enqueues files for upload as they are written to the local upload directory.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Enqueues files for upload as they are written to the local upload directory, rather than waiting for the next scan.
+ * A file is enqueued once it has gone unmodified for the Uploader's settle time, so that files which are still being
+ * written are not uploaded partway through.  The periodic scan remains as a safety net for missed events.
+ */
+public class UploadWatcher implements Runnable {
+    /**
+     * The logger for this class.
+     */
+    private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
+
+    /**
+     * The length of time to wait for events when no files are settling, in milliseconds.
+     */
+    private static final Long idleInterval = 1000L;
+
+    /**
+     * The Uploader to which files are added.
+     */
+    private Uploader uploader;
+
+    /**
+     * The worker which uploads the files added to the Uploader.
+     */
+    private TransferWorker worker;
+
+    /**
+     * The directory which is watched.
+     */
+    private Path directory;
+
+    /**
+     * The watch service, or null if the watcher has not been started.
+     */
+    private WatchService service;
+
+    /**
+     * The watcher thread, or null if the watcher has not been started.
+     */
+    private Thread thread;
+
+    /**
+     * The files which have changed and not yet settled, and the time of the most recent change to each, in
+     * nanoseconds.
+     */
+    private Map<Path, Long> settling;
+
+    /**
+     * A value indicating whether the watcher has been stopped.
+     */
+    private volatile Boolean stopped = false;
+
+    /**
+     * Initializes a new instance of the UploadWatcher class.
+     * @param uploader The Uploader to which files are added.
+     * @param worker The worker which uploads the files added to the Uploader.
+     * @param directory The directory to watch.
+     */
+    public UploadWatcher(Uploader uploader, TransferWorker worker, String directory) {
+        this.uploader = uploader;
+        this.worker = worker;
+        this.directory = Paths.get(directory).toAbsolutePath();
+
+        settling = new HashMap<Path, Long>();
+    }
+
+    /**
+     * Gets a value indicating whether the watcher has been started and not stopped.
+     * @return A value indicating whether the watcher has been started and not stopped.
+     */
+    public synchronized Boolean isRunning() {
+        return thread != null && thread.isAlive() && !stopped;
+    }
+
+    /**
+     * Registers the directory with a watch service and starts the watcher thread.
+     * @throws IOException Thrown if the directory can't be watched.
+     */
+    public synchronized void start() throws IOException {
+        if (thread == null) {
+            service = FileSystems.getDefault().newWatchService();
+
+            try {
+                directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            catch (IOException ex) {
+                service.close();
+                throw ex;
+            }
+
+            thread = new Thread(this, "upload-watcher");
+            thread.setDaemon(true);
+            thread.start();
+
+            logger.info("Watching upload directory '" + directory + "' for new files.");
+        }
+    }
+
+    /**
+     * Stops the watcher.
+     */
+    public synchronized void stop() {
+        stopped = true;
+
+        if (service != null) {
+            try {
+                // closing the service wakes the watcher thread
+                service.close();
+            }
+            catch (IOException ex) {
+                logger.debug("Exception thrown while closing the watch service: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Collects change events and enqueues the changed files as they settle, until the watcher is stopped.
+     */
+    public void run() {
+        try {
+            while (!stopped) {
+                WatchKey key = service.poll(settling.isEmpty() ? idleInterval : uploader.getSettleTime() / 2 + 1,
+                        TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    collect(key);
+
+                    if (!key.reset()) {
+                        logger.warn("Upload directory '" + directory + "' can no longer be watched; new files will " +
+                                "be found by the next scan.");
+                        break;
+                    }
+                }
+
+                enqueueSettled();
+            }
+        }
+        catch (ClosedWatchServiceException ex) {
+            // the watcher was stopped
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        logger.debug("Upload watcher stopped.");
+    }
+
+    /**
+     * Records the files changed by the events of the specified key.  If events were lost, the directory is scanned so
+     * that no file is missed.
+     * @param key The signalled key.
+     */
+    private void collect(WatchKey key) {
+        Long now = System.nanoTime();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                logger.debug("Upload directory events were lost; scanning the directory.");
+                uploader.scan();
+                worker.wake();
+            }
+            else {
+                settling.put(directory.resolve((Path)event.context()), now);
+            }
+        }
+    }
+
+    /**
+     * Enqueues the files which have gone unchanged for the settle time, and wakes the worker if any were enqueued.
+     */
+    private void enqueueSettled() {
+        Long now = System.nanoTime();
+        Long settleTime = TimeUnit.MILLISECONDS.toNanos(uploader.getSettleTime());
+        Boolean enqueued = false;
+
+        Iterator<Map.Entry<Path, Long>> iterator = settling.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Long> entry = iterator.next();
+            java.io.File file = entry.getKey().toFile();
+
+            if (now - entry.getValue() < settleTime) {
+                continue;
+            }
+
+            // a file may be modified without an event, e.g. through a memory mapping, so its timestamp is checked too
+            if (file.isFile() && System.currentTimeMillis() - file.lastModified() < uploader.getSettleTime()) {
+                entry.setValue(now);
+            }
+            else {
+                iterator.remove();
+
+                // the file may have been deleted or renamed since the event
+                if (uploader.scanFile(file)) {
+                    enqueued = true;
+                }
+            }
+        }
+
+        if (enqueued) {
+            worker.wake();
+        }
+    }
+}
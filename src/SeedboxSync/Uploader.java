@@ -37,6 +37,11 @@ public class Uploader extends Processor {
      */
     private static Logger logger = LoggerFactory.getLogger(new Throwable().getStackTrace()[0].getClassName());
 
+    /**
+     * The length of time for which a file must go unmodified before it is uploaded, in milliseconds.
+     */
+    private volatile Long settleTime = 0L;
+
     /**
      * Initializes a new instance of the Uploader class with the specified server and directories.
      * @param server
@@ -45,27 +50,52 @@ public class Uploader extends Processor {
      */
     public Uploader(IServer server, String localDirectory, String remoteDirectory) {
         super(server, localDirectory, remoteDirectory);
+
+        Metrics.uploadQueueDepth.setSource(new MetricsRegistry.Gauge.Source() {
+            public double getValue() {
+                return queue.size();
+            }
+        });
     }
 
     /**
-     * Scans the local upload directory and enqueues new files, then uploads the next file in the queue, if applicable.
+     * Gets the length of time for which a file must go unmodified before it is uploaded.
+     * @return The length of time for which a file must go unmodified before it is uploaded, in milliseconds.
      */
-    public void process() throws Exception {
-        logger.info("Processing uploads...");
-
-        scanDirectory();
+    public Long getSettleTime() {
+        return settleTime;
+    }
 
-        if (queue.size() > 0) {
-            logger.info("Processing upload queue of " + queue.size() + " file(s)...");
+    /**
+     * Sets the length of time for which a file must go unmodified before it is uploaded, so that files which are still
+     * being written are left for a later scan.
+     * @param settleTime The length of time for which a file must go unmodified before it is uploaded, in milliseconds.
+     */
+    public void setSettleTime(Long settleTime) {
+        this.settleTime = Math.max(settleTime, 0L);
+    }
 
-            upload();
+    /**
+     * Scans the local upload directory and enqueues new files, then uploads the files in the queue.
+     */
+    public void process() throws Exception {
+        logger.info("Processing uploads...");
 
-            logger.info("Upload queue processed.");
-        }
+        scan();
+        transfer();
 
         logger.info("Uploads processed.");
     }
 
+    /**
+     * Scans the local upload directory and enqueues new files.
+     */
+    public void scan() {
+        beginScan();
+        scanDirectory();
+        endScan();
+    }
+
     /**
      * Scans the local upload directory for new files and adds them to the queue if not already present.
      */
@@ -79,12 +109,7 @@ public class Uploader extends Processor {
         }
         else {
             for (java.io.File file : dir.listFiles()) {
-                if (file.isFile() && (!file.getName().contains("[Uploaded]"))) {
-                    if (!queue.contains(file.getAbsolutePath())) {
-                        logger.info("Adding file '" + file.getAbsolutePath() + "' to the uploader queue.");
-                        enqueue(file.getAbsolutePath());
-                    }
-                }
+                scanFile(file);
             }
         }
 
@@ -92,50 +117,61 @@ public class Uploader extends Processor {
     }
 
     /**
-     * Uploads the next file in the queue, if a transfer is not already in progress.
-     * @throws Exception Thrown if an exception is encountered during the upload.
+     * Adds the specified file to the queue if it has not been uploaded, is not already queued, and has not been
+     * modified within the settle time.
+     * @param file The file to add.
+     * @return A value indicating whether the file was added to the queue.
      */
-    private void upload() throws Exception {
-        if (!queue.isEmpty()) {
-            transferInProgress = true;
+    public Boolean scanFile(File file) {
+        if (!file.isFile() || file.getName().contains("[Uploaded]")) {
+            return false;
+        }
 
-            File file = new File(queue.peek());
+        if (System.currentTimeMillis() - file.lastModified() < settleTime) {
+            logger.debug("File '" + file.getAbsolutePath() + "' was modified recently; skipping.");
+            return false;
+        }
 
-            logger.info("Uploading file '" + file.getName() + "' to remote directory '" + remoteDirectory + "'...");
+        if (enqueue(file.getAbsolutePath(), file.length(), file.lastModified())) {
+            logger.info("Added file '" + file.getAbsolutePath() + "' to the uploader queue.");
+            return true;
+        }
 
-            try {
-                server.upload(file, remoteDirectory + "/" + file.getName());
+        return false;
+    }
 
-                logger.info("Transfer complete.");
+    /**
+     * Uploads the specified queued file, then renames it to mark it as uploaded.
+     * @param next The absolute path of the queued file.
+     * @throws Exception Thrown if an exception is encountered during the upload.
+     */
+    protected void transfer(String next) throws Exception {
+        File file = new File(next);
 
-                File newName = new File(file.getParent() + "/[Uploaded] " + file.getName());
+        logger.info("Uploading file '" + file.getName() + "' to remote directory '" + remoteDirectory + "'...");
 
-                logger.info("Renaming file to '" + newName.getAbsolutePath() + "'...");
+        String destination = remoteDirectory + "/" + file.getName();
 
-                if (file.renameTo(newName)) {
-                    logger.info("Rename successful.  Removing file from the queue...");
-                    queue.remove(file.getAbsolutePath());
-                }
-                else {
-                    logger.warn("Rename failed. The file will be removed from the queue and retried at the next cycle.");
-                    throw new Exception("Failed to rename file.");
-                }
+        server.upload(file, destination);
 
-                dequeue(file.getName());
+        logger.info("Transfer complete.  Verifying remote size...");
 
-                logger.info("Upload complete.");
+        // an interrupted upload is resumed at the next attempt, so the file is only marked as uploaded once the
+        // remote copy is known to be complete
+        Long remoteSize = server.getSize(destination);
 
-                upload();
-            }
-            catch (Exception ex) {
-                logger.error("Error uploading '" + file.getName() + "': " + ex.getMessage());
+        if (remoteSize == null || remoteSize != file.length()) {
+            throw new Exception("Remote size " + remoteSize + " does not match local size " + file.length() + ".");
+        }
 
-                // dequeue the file; it will be retried next cycle
-                dequeue(queue.peek());
-            }
-            finally {
-                transferInProgress = false;
-            }
+        File newName = new File(file.getParent() + "/[Uploaded] " + file.getName());
+
+        logger.info("Renaming file to '" + newName.getAbsolutePath() + "'...");
+
+        if (!file.renameTo(newName)) {
+            throw new Exception("Failed to rename file.");
         }
+
+        logger.info("Upload complete.");
     }
 }
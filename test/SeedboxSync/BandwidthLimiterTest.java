@@ -0,0 +1,173 @@
+/****************************************************************************
+ *
+ * BandwidthLimiterTest.java
+ *
+ * Tests the BandwidthLimiter class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the BandwidthLimiter class.
+ */
+public class BandwidthLimiterTest extends BaseTest {
+    /**
+     * Tests the constructor and rate accessors.
+     */
+    @Test
+    public void testRate() {
+        try {
+            begin();
+
+            BandwidthLimiter test = new BandwidthLimiter(100L);
+            assertEquals(test.getRate(), (Long) 100L);
+
+            test.setRate(-1L);
+            assertEquals(test.getRate(), (Long) 0L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests acquire() without a limit.
+     * @throws Exception
+     */
+    @Test
+    public void testUnlimited() throws Exception {
+        try {
+            begin();
+
+            BandwidthLimiter test = new BandwidthLimiter(0L, new BandwidthLimiter(0L));
+
+            long start = System.nanoTime();
+
+            for (int i = 0; i < 1000; i++) {
+                test.acquire(1024 * 1024);
+            }
+
+            assertTrue(System.nanoTime() - start < 500000000L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests acquire() with a limit.
+     * @throws Exception
+     */
+    @Test
+    public void testLimited() throws Exception {
+        try {
+            begin();
+
+            BandwidthLimiter test = new BandwidthLimiter(1000000L);
+
+            long start = System.nanoTime();
+
+            // the first chunk is admitted immediately; the remaining million bytes take a second at the limit
+            for (int i = 0; i < 11; i++) {
+                test.acquire(100000);
+            }
+
+            long elapsed = System.nanoTime() - start;
+
+            assertTrue(elapsed >= 900000000L);
+            assertTrue(elapsed < 3000000000L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a parent's limit applies to data admitted by its child.
+     * @throws Exception
+     */
+    @Test
+    public void testParent() throws Exception {
+        try {
+            begin();
+
+            BandwidthLimiter parent = new BandwidthLimiter(1000000L);
+            OutputStream test = new BandwidthLimiter(0L, parent).wrap(new ByteArrayOutputStream());
+
+            long start = System.nanoTime();
+
+            for (int i = 0; i < 11; i++) {
+                test.write(new byte[100000]);
+            }
+
+            test.close();
+
+            assertTrue(System.nanoTime() - start >= 900000000L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a paused parent blocks data admitted by its child until it is resumed.
+     * @throws Exception
+     */
+    @Test
+    public void testPause() throws Exception {
+        try {
+            begin();
+
+            final BandwidthLimiter parent = new BandwidthLimiter(0L);
+            final BandwidthLimiter test = new BandwidthLimiter(0L, parent);
+
+            parent.setPaused(true);
+            assertTrue(parent.isPaused());
+
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        test.acquire(1024);
+                    }
+                    catch (InterruptedException ex) {
+                        // the test fails on the join below
+                    }
+                }
+            });
+
+            thread.start();
+            thread.join(200);
+            assertTrue(thread.isAlive());
+
+            parent.setPaused(false);
+            thread.join(1000);
+            assertTrue(!thread.isAlive());
+        }
+        finally {
+            end();
+        }
+    }
+}
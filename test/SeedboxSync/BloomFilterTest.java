@@ -0,0 +1,104 @@
+/****************************************************************************
+ *
+ * BloomFilterTest.java
+ *
+ * Tests the BloomFilter class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the BloomFilter class.
+ */
+public class BloomFilterTest extends BaseTest {
+    /**
+     * Tests that added values are always found.
+     */
+    @Test
+    public void testNoFalseNegatives() {
+        try {
+            begin();
+
+            BloomFilter test = new BloomFilter(10000, 0.01);
+
+            assertEquals(test.getCapacity(), (Integer) 10000);
+
+            for (int i = 0; i < 10000; i++) {
+                test.add("/show/season/episode " + i + ".mkv");
+            }
+
+            for (int i = 0; i < 10000; i++) {
+                assertEquals(test.mightContain("/show/season/episode " + i + ".mkv"), true);
+            }
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that the false positive rate of a full filter is near the rate it was sized for.
+     */
+    @Test
+    public void testFalsePositiveRate() {
+        try {
+            begin();
+
+            BloomFilter test = new BloomFilter(10000, 0.01);
+
+            for (int i = 0; i < 10000; i++) {
+                test.add("/known/" + i);
+            }
+
+            int falsePositives = 0;
+
+            for (int i = 0; i < 100000; i++) {
+                if (test.mightContain("/unknown/" + i)) {
+                    falsePositives++;
+                }
+            }
+
+            assertTrue("False positive rate was " + falsePositives / 1000.0 + "%.", falsePositives < 2000);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the hash of similar values.
+     */
+    @Test
+    public void testHash() {
+        try {
+            begin();
+
+            assertEquals(BloomFilter.hash("a") == BloomFilter.hash("b"), false);
+            assertEquals(BloomFilter.hash("ab") == BloomFilter.hash("ba"), false);
+            assertEquals(BloomFilter.hash("same"), BloomFilter.hash("same"));
+        }
+        finally {
+            end();
+        }
+    }
+}
@@ -88,6 +88,8 @@ public class ConfigurationLoaderTest extends BaseTest {
             assertEquals(config.getLocalDownloadDirectory(), downloadDir.getAbsolutePath());
             assertEquals(config.getRemoteUploadDirectory(), "remoteUploadDirectory");
             assertEquals(config.getLocalUploadDirectory(), uploadDir.getAbsolutePath());
+            assertEquals(config.getMinimumConnections(), (Integer) 1);
+            assertEquals(config.getMaximumConnections(), (Integer) 4);
             assertEquals(config.isValid(), true);
         }
         finally {
@@ -95,6 +97,39 @@ public class ConfigurationLoaderTest extends BaseTest {
         }
     }
 
+    /**
+     * Loads a configuration file containing bandwidth limits and a schedule.
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testScheduleLoad() throws IOException, ParseException {
+        try {
+            begin();
+
+            String configFile = System.getProperty("user.dir") + "/test/SeedboxSync/resources/scheduleConfig.json";
+            Configuration config = ConfigurationLoader.load(configFile);
+
+            assertEquals(config.getDownloadLimit(), (Long) 1048576L);
+            assertEquals(config.getUploadLimit(), (Long) 0L);
+            assertEquals(config.getSchedule().size(), 2);
+
+            ScheduleEntry entry = config.getSchedule().get(0);
+
+            assertEquals(entry.getStart(), (Integer) 9);
+            assertEquals(entry.getEnd(), (Integer) 18);
+            assertEquals(entry.getInterval(), (Integer) 600);
+            assertEquals(entry.getDownloadLimit(), (Long) 262144L);
+            assertEquals(entry.getDownloadTransferLimit(), null);
+            assertEquals(entry.getUploadTransferLimit(), (Long) 65536L);
+
+            assertEquals(config.getSchedule().get(1).getDownloadLimit(), (Long) 0L);
+        }
+        finally {
+            end();
+        }
+    }
+
     /**
      * Loads a known bad configuration file.
      * @throws IOException
@@ -25,6 +25,9 @@
 
 import java.io.IOException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -426,4 +429,257 @@ public class ConfigurationTest extends BaseTest {
             end();
         }
     }
+
+    /**
+     * Tests the connection limit accessors and validation.
+     */
+    @Test
+    public void testConnectionLimits() throws IOException {
+        try {
+            begin();
+
+            java.io.File downloadDir = folder.newFolder("download");
+            java.io.File uploadDir = folder.newFolder("upload");
+
+            Configuration test = new Configuration("server", 1, "user", "password", 1, "remote",
+                    downloadDir.getAbsolutePath(), "remoteUp", uploadDir.getAbsolutePath());
+
+            // defaults
+            assertEquals(test.getMinimumConnections(), (Integer) 1);
+            assertEquals(test.getMaximumConnections(), (Integer) 4);
+            assertEquals(test.isValid(), true);
+
+            test.setMinimumConnections(2);
+            test.setMaximumConnections(8);
+
+            assertEquals(test.getMinimumConnections(), (Integer) 2);
+            assertEquals(test.getMaximumConnections(), (Integer) 8);
+            assertEquals(test.isValid(), true);
+
+            test.setMaximumConnections(1);
+            assertEquals(test.isValid(), false);
+
+            test.setMinimumConnections(0);
+            assertEquals(test.isValid(), false);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the segmented download accessors and validation.
+     */
+    @Test
+    public void testSegments() throws IOException {
+        try {
+            begin();
+
+            java.io.File downloadDir = folder.newFolder("download");
+            java.io.File uploadDir = folder.newFolder("upload");
+
+            Configuration test = new Configuration("server", 1, "user", "password", 1, "remote",
+                    downloadDir.getAbsolutePath(), "remoteUp", uploadDir.getAbsolutePath());
+
+            // defaults
+            assertEquals(test.getSegmentCount(), (Integer) 1);
+            assertEquals(test.getSegmentThreshold(), (Long) 104857600L);
+
+            test.setSegmentCount(4);
+            test.setSegmentThreshold(1024L);
+
+            assertEquals(test.getSegmentCount(), (Integer) 4);
+            assertEquals(test.getSegmentThreshold(), (Long) 1024L);
+            assertEquals(test.isValid(), true);
+
+            test.setSegmentThreshold(-1L);
+            assertEquals(test.isValid(), false);
+
+            test.setSegmentThreshold(0L);
+            test.setSegmentCount(0);
+            assertEquals(test.isValid(), false);
+
+            test.setSegmentCount(1);
+            assertEquals(test.getScanConcurrency(), (Integer) 4);
+
+            test.setScanConcurrency(0);
+            assertEquals(test.isValid(), false);
+
+            test.setScanConcurrency(4);
+            assertEquals(test.getTransferBufferSize(), (Integer) 1048576);
+
+            test.setTransferBufferSize(0);
+            assertEquals(test.isValid(), false);
+
+            test.setTransferBufferSize(1048576);
+            assertEquals(test.getMetricsPort(), (Integer) 0);
+
+            test.setMetricsPort(65536);
+            assertEquals(test.isValid(), false);
+
+            test.setMetricsPort(0);
+            assertEquals(test.getQueueCapacity(), (Integer) 100000);
+
+            test.setQueueCapacity(0);
+            assertEquals(test.isValid(), false);
+
+            test.setQueueCapacity(100000);
+            assertEquals(test.getUploadSettleTime(), (Long) 500L);
+
+            test.setUploadSettleTime(-1L);
+            assertEquals(test.isValid(), false);
+
+            test.setUploadSettleTime(500L);
+            assertEquals(test.getDownloadPriority(), "discovery");
+            assertEquals(test.getPriorityPatterns().size(), 0);
+
+            test.setDownloadPriority("largest");
+            assertEquals(test.isValid(), false);
+            assertEquals(test.getValidationMessage(), "Unknown priority policy 'largest'.");
+
+            // the pattern policy needs at least one pattern
+            test.setDownloadPriority("pattern");
+            assertEquals(test.isValid(), false);
+
+            test.setPriorityPatterns(java.util.Arrays.asList("(?i)s01e0[1-3]", "(?i)\\.nfo$"));
+            assertEquals(test.isValid(), true);
+
+            test.setPriorityPatterns(java.util.Arrays.asList("[unclosed"));
+            assertEquals(test.isValid(), false);
+
+            test.setDownloadPriority("discovery");
+            assertEquals(test.getTransferWorkers(), (Integer) 1);
+            assertEquals(test.getRetryDelay(), (Long) 60000L);
+
+            test.setTransferWorkers(0);
+            assertEquals(test.isValid(), false);
+
+            test.setTransferWorkers(4);
+            test.setRetryDelay(-1L);
+            assertEquals(test.isValid(), false);
+
+            test.setRetryDelay(0L);
+            assertEquals(test.isValid(), true);
+
+            assertEquals(test.getFileIndex(), "memory");
+            assertEquals(test.getFileIndexBloomFilter(), false);
+
+            test.setFileIndex("disk");
+            assertEquals(test.isValid(), false);
+
+            test.setFileIndex("mapped");
+            assertEquals(test.isValid(), true);
+
+            test.setFileIndex("none");
+            test.setFileIndexBloomFilter(true);
+            assertEquals(test.isValid(), true);
+
+            assertEquals(test.getDatabaseBatchSize(), (Integer) 100);
+            assertEquals(test.getDatabaseBatchInterval(), (Long) 1000L);
+
+            test.setDatabaseBatchSize(0);
+            assertEquals(test.isValid(), false);
+
+            test.setDatabaseBatchSize(1);
+            test.setDatabaseBatchInterval(0L);
+            assertEquals(test.isValid(), false);
+
+            test.setDatabaseBatchInterval(1L);
+            assertEquals(test.isValid(), true);
+
+            assertEquals(test.getDatabaseSynchronous(), "normal");
+            assertEquals(test.getDatabaseMmapSize(), (Long) 268435456L);
+            assertEquals(test.getDatabaseCacheSize(), (Long) 16384L);
+            assertEquals(test.getDatabaseReaders(), (Integer) 4);
+
+            test.setDatabaseSynchronous("sometimes");
+            assertEquals(test.isValid(), false);
+
+            test.setDatabaseSynchronous("full");
+            test.setDatabaseMmapSize(-1L);
+            assertEquals(test.isValid(), false);
+
+            test.setDatabaseMmapSize(0L);
+            test.setDatabaseCacheSize(0L);
+            assertEquals(test.isValid(), false);
+
+            test.setDatabaseCacheSize(1024L);
+            test.setDatabaseReaders(0);
+            assertEquals(test.isValid(), false);
+
+            test.setDatabaseReaders(1);
+            assertEquals(test.isValid(), true);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the bandwidth limits and schedule.
+     * @throws IOException
+     */
+    @Test
+    public void testSchedule() throws IOException {
+        try {
+            begin();
+
+            java.io.File downloadDir = folder.newFolder("download");
+            java.io.File uploadDir = folder.newFolder("upload");
+
+            Configuration test = new Configuration("server", 1, "user", "password", 3600, "remote",
+                    downloadDir.getAbsolutePath(), "remoteUp", uploadDir.getAbsolutePath());
+
+            // defaults
+            assertEquals(test.getDownloadLimit(), (Long) 0L);
+            assertEquals(test.getDownloadTransferLimit(), (Long) 0L);
+            assertEquals(test.getUploadLimit(), (Long) 0L);
+            assertEquals(test.getUploadTransferLimit(), (Long) 0L);
+            assertEquals(test.getSchedule().size(), 0);
+
+            test.setDownloadLimit(1000L);
+            test.setUploadTransferLimit(10L);
+
+            ScheduleEntry day = new ScheduleEntry(9, 17);
+            day.setDownloadLimit(100L);
+            day.setInterval(60);
+
+            ScheduleEntry night = new ScheduleEntry(22, 6);
+            night.setUploadTransferLimit(0L);
+
+            List<ScheduleEntry> schedule = new ArrayList<ScheduleEntry>();
+            schedule.add(day);
+            schedule.add(night);
+
+            test.setSchedule(schedule);
+            assertEquals(test.isValid(), true);
+
+            // within the day entry, overridden settings are replaced and the rest fall back to the configuration
+            ScheduleEntry entry = test.getScheduleEntry(12);
+            assertEquals(entry.getDownloadLimit(), (Long) 100L);
+            assertEquals(entry.getInterval(), (Integer) 60);
+            assertEquals(entry.getUploadTransferLimit(), (Long) 10L);
+
+            // the night entry spans midnight
+            entry = test.getScheduleEntry(2);
+            assertEquals(entry.getDownloadLimit(), (Long) 1000L);
+            assertEquals(entry.getInterval(), (Integer) 3600);
+            assertEquals(entry.getUploadTransferLimit(), (Long) 0L);
+
+            // outside of any entry
+            entry = test.getScheduleEntry(20);
+            assertEquals(entry.getDownloadLimit(), (Long) 1000L);
+            assertEquals(entry.getUploadTransferLimit(), (Long) 10L);
+
+            test.setDownloadLimit(-1L);
+            assertEquals(test.isValid(), false);
+
+            test.setDownloadLimit(0L);
+            day.setInterval(0);
+            assertEquals(test.isValid(), false);
+        }
+        finally {
+            end();
+        }
+    }
 }
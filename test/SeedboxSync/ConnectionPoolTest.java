@@ -0,0 +1,221 @@
+/****************************************************************************
+ *
+ * ConnectionPoolTest.java
+ *
+ * Tests the ConnectionPool class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+
+import org.apache.commons.net.ftp.FTP;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the ConnectionPool class.
+ */
+public class ConnectionPoolTest extends BaseTest {
+    /**
+     * Tests the constructor.
+     */
+    @Test
+    public void testConstructor() {
+        try {
+            begin();
+
+            ConnectionPool test = new ConnectionPool("address", 21, "user", "password", 2, 5);
+
+            assertEquals(test.getMinimumSize(), (Integer) 2);
+            assertEquals(test.getMaximumSize(), (Integer) 5);
+            assertEquals(test.getMaximumBulkSize(), (Integer) 4);
+            assertEquals(test.getSize(), (Integer) 0);
+            assertEquals(test.getIdleCount(), (Integer) 0);
+            assertEquals(test.getLoginCount(), (Long) 0L);
+            assertEquals(test.getDiscardCount(), (Long) 0L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the constructor with limits which are out of range.
+     */
+    @Test
+    public void testConstructorLimits() {
+        try {
+            begin();
+
+            ConnectionPool test = new ConnectionPool("address", 21, "user", "password", 0, 0);
+
+            // the pool must always be able to hold at least one session
+            assertEquals(test.getMinimumSize(), (Integer) 1);
+            assertEquals(test.getMaximumSize(), (Integer) 1);
+
+            // a pool of one session reserves none
+            assertEquals(test.getMaximumBulkSize(), (Integer) 1);
+
+            test = new ConnectionPool("address", 21, "user", "password", 3, 2);
+
+            // the maximum can't be lower than the minimum
+            assertEquals(test.getMaximumSize(), (Integer) 3);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests setMaximumSize().
+     * @throws Exception
+     */
+    @Test
+    public void testSetMaximumSize() throws Exception {
+        try {
+            begin();
+
+            ConnectionPool test = new ConnectionPool("address", 21, "user", "password", 2, 4);
+
+            test.setMaximumSize(8);
+            assertEquals(test.getMaximumSize(), (Integer) 8);
+            assertEquals(test.getMaximumBulkSize(), (Integer) 7);
+
+            // the maximum can't be lowered below the minimum
+            test.setMaximumSize(1);
+            assertEquals(test.getMaximumSize(), (Integer) 2);
+            assertEquals(test.getMaximumBulkSize(), (Integer) 1);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Leases a session from a known bad server.
+     * @throws Exception
+     */
+    @Test(expected=Exception.class)
+    public void testBadLease() throws Exception {
+        ConnectionPool test = new ConnectionPool("this can't be the name of a server.", 21, "", "", 1, 1);
+
+        try {
+            begin();
+
+            test.lease();
+        }
+        finally {
+            // a failed lease must not leak the session or its permit
+            assertEquals(test.getSize(), (Integer) 0);
+
+            end();
+        }
+    }
+
+    /**
+     * Leases sessions for bulk transfers from a known bad server.
+     * @throws Exception
+     */
+    @Test(timeout=30000)
+    public void testBadLeaseBulk() throws Exception {
+        ConnectionPool test = new ConnectionPool("this can't be the name of a server.", 21, "", "", 1, 2);
+
+        try {
+            begin();
+
+            // a failed lease must release its bulk permit, or the second lease would block
+            for (int i = 0; i < 2; i++) {
+                try {
+                    test.leaseBulk();
+                }
+                catch (Exception ex) {
+                    assertEquals(test.getSize(), (Integer) 0);
+                }
+            }
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Opens and closes a pool on a known bad server.
+     * @throws Exception
+     */
+    @Test(expected=Exception.class)
+    public void testBadOpen() throws Exception {
+        ConnectionPool test = new ConnectionPool("this can't be the name of a server.", 21, "", "", 1, 1);
+
+        try {
+            begin();
+
+            test.open();
+        }
+        finally {
+            test.close();
+
+            assertEquals(test.getSize(), (Integer) 0);
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that a session which fails to be configured after it connects is disconnected.
+     * @throws Exception
+     */
+    @Test
+    public void testFailedSetupDisconnects() throws Exception {
+        try {
+            begin();
+
+            final FTPSession session = mock(FTPSession.class);
+
+            when(session.getReplyCode()).thenReturn(220);
+            when(session.login("user", "password")).thenReturn(true);
+            when(session.setFileType(FTP.BINARY_FILE_TYPE, FTP.BINARY_FILE_TYPE)).thenThrow(new IOException("failed"));
+
+            ConnectionPool test = new ConnectionPool("address", 21, "user", "password", 1, 1) {
+                FTPSession createSession() {
+                    return session;
+                }
+            };
+
+            try {
+                test.lease();
+                fail("A session was leased although it could not be configured.");
+            }
+            catch (IOException ex) {
+                log("Lease failed as expected: " + ex.getMessage());
+            }
+
+            verify(session).connect("address", 21);
+            verify(session).disconnect();
+            assertEquals(test.getSize(), (Integer) 0);
+        }
+        finally {
+            end();
+        }
+    }
+}
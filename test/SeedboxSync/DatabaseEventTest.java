@@ -0,0 +1,135 @@
+/****************************************************************************
+ *
+ * DatabaseEventTest.java
+ *
+ * Tests the DatabaseEvent class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the DatabaseEvent class.
+ */
+public class DatabaseEventTest extends BaseTest {
+    /**
+     * The temporary folder for the class.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that each database call records an event.
+     * @throws Exception
+     */
+    @Test
+    public void testOperations() throws Exception {
+        Database test = null;
+
+        try {
+            begin();
+
+            test = new Database(folder.newFile("events.db"));
+
+            Recording recording = new Recording();
+            recording.enable(DatabaseEvent.class);
+            recording.start();
+
+            test.addFile(new File("one", 1L, new java.sql.Timestamp(0L)));
+            test.getFile("one");
+            test.getFile("missing");
+            test.getFiles();
+            test.setDownloadedTimestamp("one");
+
+            List<RecordedEvent> events = stop(recording);
+
+            assertEquals(5, events.size());
+
+            assertEquals("addFile", events.get(0).getString("operation"));
+            assertEquals("one", events.get(0).getString("file"));
+            assertEquals(1, events.get(0).getInt("rows"));
+
+            assertEquals("getFile", events.get(1).getString("operation"));
+            assertEquals(1, events.get(1).getInt("rows"));
+
+            assertEquals("getFile", events.get(2).getString("operation"));
+            assertEquals("missing", events.get(2).getString("file"));
+            assertEquals(0, events.get(2).getInt("rows"));
+
+            assertEquals("getFiles", events.get(3).getString("operation"));
+            assertEquals(1, events.get(3).getInt("rows"));
+
+            assertEquals("setDownloadedTimestamp", events.get(4).getString("operation"));
+            assertEquals(1, events.get(4).getInt("rows"));
+        }
+        finally {
+            if (test != null) {
+                test.close();
+            }
+
+            end();
+        }
+    }
+
+    /**
+     * Stops the specified recording and returns the database events it captured, in the order in which they ended.
+     * @param recording The recording to stop.
+     * @return The database events captured by the recording.
+     * @throws IOException Thrown if the recording can't be written or read.
+     */
+    private List<RecordedEvent> stop(Recording recording) throws IOException {
+        java.io.File file = new java.io.File(folder.getRoot(), "database.jfr");
+
+        try {
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        finally {
+            recording.close();
+        }
+
+        List<RecordedEvent> retVal = new ArrayList<RecordedEvent>();
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().equals("SeedboxSync.Database")) {
+                retVal.add(event);
+            }
+        }
+
+        retVal.sort(new java.util.Comparator<RecordedEvent>() {
+            public int compare(RecordedEvent a, RecordedEvent b) {
+                return a.getEndTime().compareTo(b.getEndTime());
+            }
+        });
+
+        return retVal;
+    }
+}
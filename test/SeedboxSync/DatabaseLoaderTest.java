@@ -106,6 +106,36 @@ public class DatabaseLoaderTest extends BaseTest {
         }
     }
 
+    /**
+     * Loads a database fronted by the index selected in the configuration.
+     * @throws Exception
+     */
+    @Test
+    public void testIndexedLoad() throws Exception {
+        IDatabase db = null;
+
+        try {
+            begin();
+
+            Configuration configuration = new Configuration("server", 1, "user", "password", 1, "remote",
+                    folder.getRoot().getAbsolutePath(), "remoteUp", folder.getRoot().getAbsolutePath());
+
+            db = DatabaseLoader.load(folder.newFile("memory.db"), configuration);
+            assertEquals(db instanceof IndexedDatabase, true);
+            db.close();
+
+            configuration.setFileIndex("none");
+
+            db = DatabaseLoader.load(folder.newFile("none.db"), configuration);
+            assertEquals(db instanceof Database, true);
+        }
+        finally {
+            if (db != null) db.close();
+
+            end();
+        }
+    }
+
     /**
      * Loads a database with a known bad filename.
      * @throws Exception
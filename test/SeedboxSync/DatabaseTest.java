@@ -26,8 +26,19 @@
 import java.io.IOException;
 import java.util.List;
 
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Timestamp;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
@@ -204,6 +215,58 @@ public class DatabaseTest extends BaseTest {
         }
     }
 
+    /**
+     * Tests that the generation changes whenever a file is added, updated or replaced, including outside the database.
+     * @throws SQLException
+     */
+    @Test
+    public void testGeneration() throws IOException, SQLException {
+        Database test = null;
+
+        try {
+            begin();
+
+            java.io.File file = folder.newFile("db/generation.db");
+
+            test = new Database(file);
+
+            Long generation = test.getGeneration();
+            assertEquals(generation, (Long) 1L);
+
+            test.addFile(new File("test", 0L, new Timestamp(0L)));
+            assertTrue(test.getGeneration() > generation);
+            generation = test.getGeneration();
+
+            test.setDownloadedTimestamp("test");
+            assertTrue(test.getGeneration() > generation);
+            generation = test.getGeneration();
+
+            // replacing a row outside the application leaves the count unchanged, but not the generation
+            Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+            Statement statement = connection.createStatement();
+            statement.executeUpdate("DELETE FROM Downloads WHERE Name = 'test'");
+            statement.executeUpdate("INSERT INTO Downloads (Name, Size, Timestamp, AddedTimestamp) " +
+                    "VALUES('other', 0, 0, 0)");
+            statement.close();
+            connection.close();
+
+            assertEquals(test.getFileCount(), (Integer) 1);
+            assertTrue(test.getGeneration() > generation);
+            generation = test.getGeneration();
+
+            // the generation is kept across restarts
+            test.close();
+            test = new Database(file);
+
+            assertEquals(test.getGeneration(), generation);
+        }
+        finally {
+            test.close();
+
+            end();
+        }
+    }
+
     /**
      * Tests retrieval of the file list
      * @throws SQLException
@@ -279,4 +342,332 @@ public class DatabaseTest extends BaseTest {
             end();
         }
     }
+
+    /**
+     * Tests that completed files are written in batches once the batch size is reached, and are visible before then.
+     * @throws SQLException
+     */
+    @Test
+    public void testBatchSize() throws IOException, SQLException {
+        Database test = null;
+
+        try {
+            begin();
+
+            java.io.File file = folder.newFile("db/batch.db");
+            test = new Database(file);
+            test.setBatchSize(3);
+            test.setBatchInterval(60000L);
+
+            test.addFile(new File("existing", 1L, new Timestamp(0L)));
+            Timestamp added = test.getFile("existing").getAddedTimestamp();
+
+            test.addDownloadedFile(new File("existing", 1L, new Timestamp(0L)));
+            test.addDownloadedFile(new File("new", 2L, new Timestamp(0L)));
+
+            // pending completions are returned by lookups but not yet written
+            assertEquals(test.getFileCount(), (Integer) 1);
+            assertEquals(test.getFile("new").isDownloaded(), true);
+            assertEquals(test.contains("new"), true);
+
+            test.addDownloadedFile(new File("third", 3L, new Timestamp(0L)));
+
+            // the third completion fills the batch, which is written in one transaction
+            assertEquals(test.getFileCount(), (Integer) 3);
+
+            List<File> list = test.getFiles();
+
+            assertEquals(list.size(), 3);
+
+            for (File written : list) {
+                assertEquals(written.isDownloaded(), true);
+            }
+
+            // the existing record is updated in place and keeps the time at which it was first added
+            assertEquals(test.getFile("existing").getAddedTimestamp(), added);
+            assertEquals(test.getFile("new").getSize(), (Long) 2L);
+        }
+        finally {
+            test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that pending completed files are written once the batch interval elapses, and when the database closes.
+     * @throws SQLException
+     * @throws InterruptedException
+     */
+    @Test
+    public void testBatchInterval() throws IOException, SQLException, InterruptedException {
+        Database test = null;
+
+        try {
+            begin();
+
+            java.io.File file = folder.newFile("db/interval.db");
+            test = new Database(file);
+            test.setBatchInterval(100L);
+
+            test.addDownloadedFile(new File("one", 1L, new Timestamp(0L)));
+
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (test.getFileCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(test.getFileCount(), (Integer) 1);
+
+            test.setBatchInterval(60000L);
+            test.addDownloadedFile(new File("two", 2L, new Timestamp(0L)));
+            test.close();
+
+            test = new Database(file);
+
+            assertEquals(test.getFileCount(), (Integer) 2);
+            assertEquals(test.getFile("two").isDownloaded(), true);
+        }
+        finally {
+            test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that reads leave no statement or result set open, so that another connection can write to the database.
+     * @throws SQLException
+     */
+    @Test
+    public void testReadsReleaseLocks() throws IOException, SQLException {
+        Database test = null;
+        Database other = null;
+
+        try {
+            begin();
+
+            java.io.File file = folder.newFile("db/locks.db");
+            test = new Database(file);
+
+            test.addFile(new File("one", 1L, new Timestamp(0L)));
+            test.addFile(new File("two", 2L, new Timestamp(0L)));
+
+            assertEquals(test.getFile("one").getSize(), (Long) 1L);
+            assertNull(test.getFile("missing"));
+            assertEquals(test.getFiles().size(), 2);
+            assertEquals(test.getFileCount(), (Integer) 2);
+
+            other = new Database(file);
+            other.addFile(new File("three", 3L, new Timestamp(0L)));
+
+            assertEquals(test.getFile("three").getSize(), (Long) 3L);
+        }
+        finally {
+            if (other != null) other.close();
+            test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Measures the cost of record lookups in a table of 100,000 records through the reused statement, against lookups
+     * which prepare a statement afresh on a separate connection to the same file, and reports both.
+     * @throws SQLException
+     */
+    @Test
+    public void testLookupBenchmark() throws IOException, SQLException {
+        Database test = null;
+        Connection connection = null;
+
+        try {
+            begin();
+
+            Integer rows = 100000;
+            Integer lookups = 10000;
+
+            java.io.File file = folder.newFile("db/benchmark.db");
+            test = new Database(file);
+            test.setBatchSize(rows);
+
+            for (int i = 0; i < rows; i++) {
+                test.addDownloadedFile(new File("/file" + i, (long)i, new Timestamp(0L)));
+            }
+
+            assertEquals(test.getFileCount(), rows);
+
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+
+            // both paths look up the same records, and each is warmed up before it is measured
+            long uncached = 0;
+            long cached = 0;
+
+            for (int pass = 0; pass < 2; pass++) {
+                java.util.Random random = new java.util.Random(pass);
+                long start = System.nanoTime();
+
+                for (int i = 0; i < lookups; i++) {
+                    Integer row = random.nextInt(rows);
+
+                    PreparedStatement statement = connection.prepareStatement("SELECT Name, Size, Timestamp, " +
+                            "AddedTimestamp, DownloadedTimestamp FROM Downloads WHERE Name = ?");
+
+                    try {
+                        statement.setString(1, "/file" + row);
+
+                        ResultSet result = statement.executeQuery();
+
+                        assertTrue(result.next());
+                        assertEquals(result.getLong("Size"), (long)row);
+
+                        result.close();
+                    }
+                    finally {
+                        statement.close();
+                    }
+                }
+
+                uncached = System.nanoTime() - start;
+
+                random = new java.util.Random(pass);
+                start = System.nanoTime();
+
+                for (int i = 0; i < lookups; i++) {
+                    Integer row = random.nextInt(rows);
+
+                    assertEquals(test.getFile("/file" + row).getSize(), (Long)(long)row);
+                }
+
+                cached = System.nanoTime() - start;
+            }
+
+            log(lookups + " lookups in a table of " + rows + " records; prepared afresh: " + uncached / 1000 /
+                    lookups + " us per lookup, reused statement: " + cached / 1000 / lookups + " us per lookup");
+        }
+        finally {
+            if (connection != null) connection.close();
+
+            test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that a configured database is opened in write-ahead log mode, and that lookups return the last committed
+     * state while another connection holds an exclusive write transaction.
+     * @throws Exception
+     */
+    @Test
+    public void testWriteAheadLog() throws Exception {
+        Database test = null;
+        Connection other = null;
+
+        try {
+            begin();
+
+            java.io.File file = folder.newFile("db/wal.db");
+            test = new Database(file, new Configuration("server", 1, "user", "password", 3600, "remote", "local",
+                    "remoteUp", "localUp"));
+
+            test.addFile(new File("one", 1L, new Timestamp(0L)));
+
+            other = DriverManager.getConnection("jdbc:sqlite:" + file);
+
+            Statement statement = other.createStatement();
+            ResultSet result = statement.executeQuery("PRAGMA journal_mode");
+
+            result.next();
+
+            assertEquals(result.getString(1), "wal");
+
+            result.close();
+
+            // an exclusive transaction in rollback journal mode would lock out every reader until it finished
+            statement.execute("BEGIN EXCLUSIVE");
+            statement.execute("INSERT INTO Downloads (Name, Size, Timestamp, AddedTimestamp) VALUES('two', 2, 0, 0)");
+
+            assertEquals(test.getFile("one").getSize(), (Long) 1L);
+            assertNull(test.getFile("two"));
+            assertEquals(test.getFileCount(), (Integer) 1);
+
+            statement.execute("COMMIT");
+            statement.close();
+
+            assertEquals(test.getFile("two").getSize(), (Long) 2L);
+        }
+        finally {
+            if (other != null) other.close();
+            test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests lookups made from several threads through the read-only connections while completed files are written.
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        Database test = null;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            begin();
+
+            Configuration configuration = new Configuration("server", 1, "user", "password", 3600, "remote", "local",
+                    "remoteUp", "localUp");
+            configuration.setDatabaseReaders(2);
+            configuration.setDatabaseBatchSize(50);
+
+            java.io.File file = folder.newFile("db/concurrent.db");
+            final Database database = new Database(file, configuration);
+            test = database;
+
+            for (int i = 0; i < 1000; i++) {
+                database.addDownloadedFile(new File("/existing" + i, (long)i, new Timestamp(0L)));
+            }
+
+            database.flush();
+
+            List<Future<Integer>> lookups = new ArrayList<Future<Integer>>();
+
+            for (int i = 0; i < 4; i++) {
+                lookups.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        Integer found = 0;
+
+                        for (int j = 0; j < 1000; j++) {
+                            if (database.getFile("/existing" + j).getSize() == j) {
+                                found++;
+                            }
+                        }
+
+                        return found;
+                    }
+                }));
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                database.addDownloadedFile(new File("/new" + i, (long)i, new Timestamp(0L)));
+            }
+
+            for (Future<Integer> lookup : lookups) {
+                assertEquals(lookup.get(), (Integer) 1000);
+            }
+
+            database.flush();
+
+            assertEquals(database.getFileCount(), (Integer) 2000);
+        }
+        finally {
+            executor.shutdownNow();
+            test.close();
+
+            end();
+        }
+    }
 }
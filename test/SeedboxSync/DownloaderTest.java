@@ -24,6 +24,9 @@
  ****************************************************************************/
 
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.net.ftp.FTPFile;
 
@@ -31,9 +34,17 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Tests the Downloader class.
@@ -96,6 +107,90 @@ public class DownloaderTest extends BaseTest {
         }
     }
 
+    /**
+     * Tests the queue capacity.
+     */
+    @Test
+    public void testQueueCapacity() {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            Downloader test = new Downloader(server, "local", "remote", database);
+            test.setQueueCapacity(2);
+
+            assertEquals(test.getQueueCapacity(), (Integer) 2);
+
+            assertEquals(test.enqueue("one"), true);
+            assertEquals(test.enqueue("two"), true);
+
+            // the queue is full, so the file is left for a later scan
+            assertEquals(test.enqueue("three"), false);
+            assertEquals(test.getQueue().size(), 2);
+
+            test.dequeue("one");
+
+            assertEquals(test.enqueue("three"), true);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that the priority policy orders the queue, including files queued before the policy was set.
+     * @throws Exception
+     */
+    @Test
+    public void testPriorityPolicy() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            ArrayList<FTPFile> files = new ArrayList<FTPFile>();
+
+            FTPFile large = new FTPFile();
+            large.setName("large");
+            large.setSize(300L);
+
+            FTPFile small = new FTPFile();
+            small.setName("small");
+            small.setSize(100L);
+
+            files.add(large);
+            files.add(small);
+
+            Mockito.when(server.list("remote")).thenReturn(files);
+
+            Downloader test = new Downloader(server, "local", "remote", database);
+            test.enqueue("/queued:200");
+
+            assertEquals(test.getPriorityPolicy(), null);
+
+            test.setPriorityPolicy(new PriorityPolicies.SmallestFirst());
+            test.scan();
+
+            // the size of the file queued before the policy was set is unknown, so it is ranked last
+            assertEquals(test.getQueue(), java.util.Arrays.asList("/small:100", "/large:300", "/queued:200"));
+
+            test.setPriorityPolicy(null);
+
+            assertEquals(test.getQueue(), java.util.Arrays.asList("/small:100", "/large:300", "/queued:200"));
+
+            // policies rank files by path, without the size which is queued with them
+            test.setPriorityPolicy(new PriorityPolicies.PatternFirst(java.util.Arrays.asList("^/queued$", "e$")));
+
+            assertEquals(test.getQueue(), java.util.Arrays.asList("/queued:200", "/large:300", "/small:100"));
+        }
+        finally {
+            end();
+        }
+    }
+
     /**
      * Test the process() method with one file
      * @throws Exception
@@ -153,6 +248,189 @@ public class DownloaderTest extends BaseTest {
         }
     }
 
+    /**
+     * Test the process() method with a server which supports recursive listings
+     * @throws Exception
+     */
+    @Test
+    public void testProcessRecursiveListing() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            ArrayList<FTPFile> files = new ArrayList<FTPFile>();
+
+            FTPFile directory = new FTPFile();
+            directory.setName("a");
+            directory.setType(FTPFile.DIRECTORY_TYPE);
+
+            FTPFile one = new FTPFile();
+            one.setName("a/one");
+            one.setSize(1L);
+
+            files.add(directory);
+            files.add(one);
+
+            Mockito.when(server.listRecursive("remote")).thenReturn(files);
+
+            Downloader test = new Downloader(server, "local", "remote", database);
+
+            test.process();
+
+            // the tree is scanned without listing individual directories
+            Mockito.verify(server, Mockito.never()).list(Mockito.anyString());
+            Mockito.verify(server).download("remote/a/one", "local/a/one", 1L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Test the process() method with a tree of directories walked in parallel
+     * @throws Exception
+     */
+    @Test
+    public void testProcessParallelWalk() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            Mockito.when(server.list("remote")).thenReturn(listing(directory("a"), directory("b")));
+            Mockito.when(server.list("remote/a")).thenReturn(listing(file("one", 1L)));
+            Mockito.when(server.list("remote/b")).thenReturn(listing(directory("c"), file("two", 2L)));
+            Mockito.when(server.list("remote/b/c")).thenReturn(listing(file("three", 3L)));
+
+            Mockito.doThrow(new Exception()).when(server).download(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong());
+
+            Downloader test = new Downloader(server, "local", "remote", database);
+            test.setScanConcurrency(2);
+
+            assertEquals(test.getScanConcurrency(), (Integer) 2);
+
+            test.process();
+
+            // every file found by the walk is attempted, and each failure is held back without stopping the others
+            Mockito.verify(server).download("remote/a/one", "local/a/one", 1L);
+            Mockito.verify(server).download("remote/b/two", "local/b/two", 2L);
+            Mockito.verify(server).download("remote/b/c/three", "local/b/c/three", 3L);
+
+            assertEquals(test.getQueue().size(), 0);
+            assertEquals(test.getFailedCount(), (Integer) 3);
+
+            Mockito.verify(server).list("remote/b/c");
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that no more directories are listed at once than the scan concurrency, however long each listing blocks.
+     * @throws Exception
+     */
+    @Test
+    public void testParallelWalkConcurrency() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            final AtomicInteger listing = new AtomicInteger();
+            final AtomicInteger mostListing = new AtomicInteger();
+
+            ArrayList<FTPFile> directories = new ArrayList<FTPFile>();
+
+            for (int i = 0; i < 12; i++) {
+                directories.add(directory("d" + i));
+            }
+
+            Mockito.when(server.list("remote")).thenReturn(directories);
+
+            // each subdirectory listing blocks, as a listing over a slow connection does
+            doAnswer(new Answer<ArrayList<FTPFile>>() {
+                public ArrayList<FTPFile> answer(InvocationOnMock invocation) throws Throwable {
+                    int current = listing.incrementAndGet();
+
+                    synchronized (mostListing) {
+                        mostListing.set(Math.max(mostListing.get(), current));
+                    }
+
+                    Thread.sleep(20);
+                    listing.decrementAndGet();
+
+                    return listing(file("file", 1L));
+                }
+            }).when(server).list(Mockito.startsWith("remote/d"));
+
+            Downloader test = new Downloader(server, "local", "remote", database);
+            test.setScanConcurrency(3);
+
+            test.scan();
+
+            assertTrue(mostListing.get() <= 3);
+            assertEquals(test.getQueue().size(), 12);
+            verify(server, times(13)).list(anyString());
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that an unchecked exception thrown while scanning a subdirectory is rethrown as it was thrown.
+     * @throws Exception
+     */
+    @Test(expected=IllegalStateException.class)
+    public void testParallelWalkUncheckedException() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            Mockito.when(server.list("remote")).thenReturn(listing(directory("a")));
+            Mockito.when(server.list("remote/a")).thenReturn(listing(file("one", 1L)));
+            Mockito.when(database.contains("/a/one")).thenThrow(new IllegalStateException("failed"));
+
+            Downloader test = new Downloader(server, "local", "remote", database);
+
+            test.scan();
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Test the process() method with a known server exception in a subdirectory
+     * @throws Exception
+     */
+    @Test(expected=Exception.class)
+    public void testProcessParallelWalkException() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            Mockito.when(server.list("remote")).thenReturn(listing(directory("a"), directory("b")));
+            Mockito.when(server.list("remote/b")).thenThrow(new Exception("failed"));
+
+            Downloader test = new Downloader(server, "local", "remote", database);
+
+            test.process();
+        }
+        finally {
+            end();
+        }
+    }
+
     /**
      * Test the process() method with one file and an assured database hit
      * @throws Exception
@@ -175,7 +453,7 @@ public class DownloaderTest extends BaseTest {
 
             Mockito.when(server.list("remote")).thenReturn(files);
 
-            Mockito.when(database.getFile("/one")).thenReturn(new File("one"));
+            Mockito.when(database.contains("/one")).thenReturn(true);
 
             Downloader test = new Downloader(server, "local", "remote", database);
 
@@ -322,4 +600,231 @@ public class DownloaderTest extends BaseTest {
             end();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a failed download is held back while the remaining files are downloaded.
+     * @throws Exception
+     */
+    @Test
+    public void testFailureIsolation() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            String local = folder.getRoot().getAbsolutePath();
+
+            Mockito.doThrow(new Exception("failed")).when(server).download("remote/two", local + "/two", 2L);
+
+            Downloader test = new Downloader(server, local, "remote", database);
+
+            test.enqueue("/one:1");
+            test.enqueue("/two:2");
+            test.enqueue("/three:3");
+
+            test.transfer();
+
+            verify(server).download("remote/one", local + "/one", 1L);
+            verify(server).download("remote/three", local + "/three", 3L);
+            verify(database, times(2)).addDownloadedFile(Mockito.any(File.class));
+
+            // the failed file leaves the queue and is not queued again until its retry delay has passed
+            assertEquals(test.getQueue().size(), 0);
+            assertEquals(test.getFailedCount(), (Integer) 1);
+            assertEquals(test.enqueue("/two:2"), false);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a failed download is queued again once its retry delay has passed, and is forgotten once it succeeds.
+     * @throws Exception
+     */
+    @Test
+    public void testRetry() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            String local = folder.getRoot().getAbsolutePath();
+
+            Mockito.doThrow(new Exception("failed")).doNothing().when(server).download("remote/one", local + "/one", 1L);
+
+            Downloader test = new Downloader(server, local, "remote", database);
+            test.setRetryDelay(0L);
+
+            test.enqueue("/one:1");
+            test.transfer();
+
+            assertEquals(test.getFailedCount(), (Integer) 1);
+            assertEquals(test.enqueue("/one:1"), true);
+
+            test.transfer();
+
+            verify(server, times(2)).download("remote/one", local + "/one", 1L);
+            assertEquals(test.getFailedCount(), (Integer) 0);
+            assertEquals(test.getQueue().size(), 0);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a failed download is forgotten once a completed scan no longer finds it and its retry delay has
+     * passed, but not by transfers in between.
+     * @throws Exception
+     */
+    @Test
+    public void testFailurePruned() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            String local = folder.getRoot().getAbsolutePath();
+
+            Mockito.doThrow(new Exception("failed")).when(server).download("remote/one", local + "/one", 1L);
+            Mockito.when(server.list("remote")).thenReturn(listing());
+
+            Downloader test = new Downloader(server, local, "remote", database);
+            test.setRetryDelay(0L);
+
+            test.enqueue("/one:1");
+            test.transfer();
+
+            assertEquals(test.getFailedCount(), (Integer) 1);
+
+            // a transfer without a scan doesn't know whether the file is still to be transferred
+            test.transfer();
+
+            assertEquals(test.getFailedCount(), (Integer) 1);
+
+            // the file is no longer found by the scan, so it is forgotten
+            test.scan();
+
+            assertEquals(test.getFailedCount(), (Integer) 0);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that the configured number of workers transfer files at once.
+     * @throws Exception
+     */
+    @Test(timeout=10000)
+    public void testWorkers() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            final CountDownLatch started = new CountDownLatch(3);
+
+            // each download waits for the others to start, so the drain only completes if all three run at once
+            doAnswer(new Answer<Void>() {
+                public Void answer(InvocationOnMock invocation) throws Throwable {
+                    started.countDown();
+
+                    if (!started.await(5, TimeUnit.SECONDS)) {
+                        throw new Exception("Downloads did not run concurrently.");
+                    }
+
+                    return null;
+                }
+            }).when(server).download(anyString(), anyString(), anyLong());
+
+            Downloader test = new Downloader(server, folder.getRoot().getAbsolutePath(), "remote", database);
+            test.setWorkerCount(3);
+
+            test.enqueue("/one:1");
+            test.enqueue("/two:2");
+            test.enqueue("/three:3");
+
+            test.transfer();
+
+            assertEquals(test.getFailedCount(), (Integer) 0);
+            assertEquals(test.getQueue().size(), 0);
+            assertEquals(test.isTransferInProgress(), false);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a deep queue is drained without exhausting the stack.
+     * @throws Exception
+     */
+    @Test
+    public void testDeepQueue() throws Exception {
+        try {
+            begin();
+
+            Downloader test = new Downloader(mock(IServer.class), folder.getRoot().getAbsolutePath(), "remote",
+                    mock(IDatabase.class));
+
+            for (int i = 0; i < 50000; i++) {
+                test.enqueue("/" + i + ":1");
+            }
+
+            test.transfer();
+
+            assertEquals(test.getQueue().size(), 0);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Creates a listing containing the specified files.
+     * @param files The files to include in the listing.
+     * @return The listing.
+     */
+    private ArrayList<FTPFile> listing(FTPFile... files) {
+        ArrayList<FTPFile> retVal = new ArrayList<FTPFile>();
+
+        for (FTPFile file : files) {
+            retVal.add(file);
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Creates a directory entry with the specified name.
+     * @param name The name of the directory.
+     * @return The directory entry.
+     */
+    private FTPFile directory(String name) {
+        FTPFile retVal = new FTPFile();
+        retVal.setName(name);
+        retVal.setType(FTPFile.DIRECTORY_TYPE);
+
+        return retVal;
+    }
+
+    /**
+     * Creates a file entry with the specified name and size.
+     * @param name The name of the file.
+     * @param size The size of the file.
+     * @return The file entry.
+     */
+    private FTPFile file(String name, Long size) {
+        FTPFile retVal = new FTPFile();
+        retVal.setName(name);
+        retVal.setSize(size);
+
+        return retVal;
+    }
+}
@@ -0,0 +1,272 @@
+/****************************************************************************
+ *
+ * IndexedDatabaseTest.java
+ *
+ * Tests the IndexedDatabase class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the IndexedDatabase class.
+ */
+public class IndexedDatabaseTest extends BaseTest {
+    /**
+     * The temporary folder for the class.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that existing records are loaded into the index and that changes are reflected in both.
+     * @throws IOException
+     * @throws SQLException
+     */
+    @Test
+    public void testIndex() throws IOException, SQLException {
+        Database database = null;
+
+        try {
+            begin();
+
+            database = new Database(folder.newFile("indexed.db"));
+            database.addFile(new File("/existing", 1L, new Timestamp(0L)));
+            database.setDownloadedTimestamp("/existing");
+
+            MemoryFileIndex index = new MemoryFileIndex(true);
+            IndexedDatabase test = new IndexedDatabase(database, index);
+
+            assertEquals(index.size(), (Integer) 1);
+            assertEquals(test.getFile("/existing").getSize(), (Long) 1L);
+            assertEquals(test.getFile("/existing").isDownloaded(), true);
+            assertNull(test.getFile("/new"));
+
+            test.addFile(new File("/new", 2L, new Timestamp(0L)));
+
+            assertEquals(test.getFile("/new").getSize(), (Long) 2L);
+            assertEquals(test.getFile("/new").isDownloaded(), false);
+            assertEquals(database.getFile("/new").getSize(), (Long) 2L);
+
+            test.setDownloadedTimestamp(new File("/new"));
+
+            assertEquals(test.getFile(new File("/new")).isDownloaded(), true);
+            assertEquals(database.getFile("/new").isDownloaded(), true);
+            assertEquals(test.getFiles().size(), 2);
+
+            test.addDownloadedFile(new File("/completed", 3L, new Timestamp(0L)));
+
+            assertEquals(test.contains("/completed"), true);
+            assertEquals(test.getFile("/completed").isDownloaded(), true);
+
+            test.flush();
+
+            assertEquals(database.getFileCount(), (Integer) 3);
+            assertEquals(index.size(), (Integer) 3);
+        }
+        finally {
+            if (database != null) database.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that a mapped index is reused across restarts, and rebuilt when it is out of step with the database.
+     * @throws IOException
+     * @throws SQLException
+     */
+    @Test
+    public void testMappedIndex() throws IOException, SQLException {
+        Database database = null;
+
+        try {
+            begin();
+
+            java.io.File file = folder.newFile("mapped.db");
+            java.io.File indexFile = new java.io.File(file.getPath() + ".index");
+
+            database = new Database(file);
+            database.addFile(new File("/one", 1L, new Timestamp(0L)));
+
+            IndexedDatabase test = new IndexedDatabase(database, new MappedFileIndex(indexFile));
+            test.addFile(new File("/two", 2L, new Timestamp(0L)));
+            test.setDownloadedTimestamp("/two");
+            test.close();
+
+            database = new Database(file);
+            Database spy = org.mockito.Mockito.spy(database);
+
+            test = new IndexedDatabase(spy, new MappedFileIndex(indexFile));
+
+            verify(spy, never()).visitFiles(any(IDatabase.Visitor.class));
+
+            assertEquals(test.contains("/one"), true);
+            assertEquals(test.getFile("/two").getSize(), (Long) 2L);
+            assertEquals(test.getFile("/two").isDownloaded(), true);
+
+            // a file added to the database while the index was closed puts the index out of step
+            test.close();
+
+            database = new Database(file);
+            database.addFile(new File("/three", 3L, new Timestamp(0L)));
+
+            test = new IndexedDatabase(database, new MappedFileIndex(indexFile));
+
+            assertEquals(test.contains("/three"), true);
+            assertEquals(test.contains("/one"), true);
+
+            // a file updated while the index was closed leaves the count unchanged, but the index out of step
+            test.close();
+
+            database = new Database(file);
+            database.setDownloadedTimestamp("/one");
+
+            spy = org.mockito.Mockito.spy(database);
+            test = new IndexedDatabase(spy, new MappedFileIndex(indexFile));
+
+            verify(spy).visitFiles(any(IDatabase.Visitor.class));
+
+            assertEquals(test.getFile("/one").isDownloaded(), true);
+
+            // an index which was not closed cleanly may be ahead of the database, so it is rebuilt
+            test.close();
+
+            database = new Database(file);
+            MappedFileIndex index = new MappedFileIndex(indexFile);
+
+            new IndexedDatabase(database, index).addDownloadedFile(new File("/four", 4L, new Timestamp(0L)));
+
+            assertEquals(index.getGeneration(), (Long) 0L);
+
+            index.close();
+            database.close();
+
+            database = new Database(file);
+            spy = org.mockito.Mockito.spy(database);
+            test = new IndexedDatabase(spy, new MappedFileIndex(indexFile));
+
+            verify(spy).visitFiles(any(IDatabase.Visitor.class));
+
+            test.close();
+            database = null;
+        }
+        finally {
+            if (database != null) database.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that lookups are answered from the index without querying the database.
+     * @throws SQLException
+     */
+    @Test
+    public void testLookupWithoutQuery() throws SQLException {
+        try {
+            begin();
+
+            IDatabase database = mock(IDatabase.class);
+            when(database.getFileCount()).thenReturn(1);
+            when(database.getGeneration()).thenReturn(5L);
+
+            IFileIndex index = new MemoryFileIndex(false);
+            index.put(new File("/known", 1L, new Timestamp(0L)));
+            index.setGeneration(5L);
+
+            IndexedDatabase test = new IndexedDatabase(database, index);
+
+            // the index holds as many files as the database and is in step with it, so it is not reloaded
+            verify(database, never()).visitFiles(any(IDatabase.Visitor.class));
+
+            assertEquals(test.getFile("/known").getName(), "/known");
+            assertEquals(test.contains("/known"), true);
+            assertNull(test.getFile("/unknown"));
+            assertEquals(test.contains("/unknown"), false);
+
+            verify(database, never()).getFile("/known");
+            verify(database, never()).getFile("/unknown");
+
+            test.close();
+            verify(database).close();
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a file index which can't be updated is bypassed rather than failing the update of the database.
+     * @throws SQLException
+     */
+    @Test
+    public void testFullIndex() throws SQLException {
+        try {
+            begin();
+
+            IDatabase database = mock(IDatabase.class);
+            IFileIndex index = mock(IFileIndex.class);
+
+            File file = new File("/one", 1L, new Timestamp(0L));
+
+            when(database.getFile("/one")).thenReturn(file);
+            when(database.contains("/one")).thenReturn(true);
+            when(database.getGeneration()).thenReturn(5L);
+            doThrow(new IllegalStateException("full")).when(index).replace(any(File.class));
+
+            IndexedDatabase test = new IndexedDatabase(database, index);
+
+            test.addDownloadedFile(file);
+
+            verify(database).addDownloadedFile(file);
+
+            // lookups go to the database from then on
+            assertEquals(test.getFile("/one"), file);
+            assertEquals(test.contains("/one"), true);
+            verify(database).getFile("/one");
+            verify(index, never()).contains("/one");
+
+            // the index is not recorded as in step, so it is rebuilt when next opened
+            test.close();
+            verify(index, never()).setGeneration(5L);
+            verify(index).close();
+        }
+        finally {
+            end();
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/****************************************************************************
+ *
+ * IndexedQueueTest.java
+ *
+ * Tests the IndexedQueue class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the IndexedQueue class.
+ */
+public class IndexedQueueTest extends BaseTest {
+    /**
+     * Tests ordering, uniqueness and removal.
+     */
+    @Test
+    public void testQueue() {
+        try {
+            begin();
+
+            IndexedQueue<String> test = new IndexedQueue<String>();
+
+            assertNull(test.peek());
+            assertNull(test.poll());
+
+            assertEquals(test.offer("one"), true);
+            assertEquals(test.offer("two"), true);
+            assertEquals(test.offer("three"), true);
+
+            // duplicates are discarded and don't change the order
+            assertEquals(test.offer("one"), false);
+            assertEquals(test.size(), 3);
+            assertEquals(test.peek(), "one");
+
+            assertEquals(test.contains("two"), true);
+            assertEquals(test.remove("two"), true);
+            assertEquals(test.remove("two"), false);
+            assertEquals(test.contains("two"), false);
+
+            assertEquals(test.poll(), "one");
+            assertEquals(test.poll(), "three");
+            assertNull(test.poll());
+
+            // a removed element may be queued again, at the tail
+            test.offer("a");
+            test.offer("b");
+            test.poll();
+            test.offer("a");
+
+            assertEquals(test.snapshot(), java.util.Arrays.asList("b", "a"));
+
+            test.clear();
+            assertEquals(test.size(), 0);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that snapshots are shared until the queue changes, and are unaffected by later changes.
+     */
+    @Test
+    public void testSnapshot() {
+        try {
+            begin();
+
+            IndexedQueue<String> test = new IndexedQueue<String>();
+            test.offer("one");
+
+            List<String> snapshot = test.snapshot();
+
+            assertSame(snapshot, test.snapshot());
+
+            // a duplicate doesn't change the queue, so the snapshot is still current
+            test.offer("one");
+            assertSame(snapshot, test.snapshot());
+
+            test.offer("two");
+
+            assertEquals(snapshot.size(), 1);
+            assertEquals(test.snapshot().size(), 2);
+
+            try {
+                test.snapshot().add("three");
+                assertTrue(false);
+            }
+            catch (UnsupportedOperationException ex) {
+                // snapshots are read-only
+            }
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that the queue may be modified while it is iterated, and removal through the iterator.
+     */
+    @Test
+    public void testIterator() {
+        try {
+            begin();
+
+            IndexedQueue<String> test = new IndexedQueue<String>();
+            test.offer("one");
+            test.offer("two");
+            test.offer("three");
+
+            Iterator<String> iterator = test.iterator();
+
+            assertEquals(iterator.next(), "one");
+
+            test.offer("four");
+            test.remove("three");
+
+            assertEquals(iterator.next(), "two");
+            iterator.remove();
+
+            assertEquals(iterator.next(), "three");
+            assertEquals(iterator.hasNext(), false);
+
+            assertEquals(test.snapshot(), java.util.Arrays.asList("one", "four"));
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a ranked queue orders elements by priority, and elements of equal priority by arrival.
+     */
+    @Test
+    public void testRanked() {
+        try {
+            begin();
+
+            IndexedQueue<String> test = new IndexedQueue<String>(true);
+
+            assertEquals(test.isRanked(), true);
+            assertEquals(new IndexedQueue<String>().isRanked(), false);
+
+            assertEquals(test.offer("large", 300L), true);
+            assertEquals(test.offer("small", 100L), true);
+            assertEquals(test.offer("medium", 200L), true);
+            assertEquals(test.offer("also small", 100L), true);
+
+            // a duplicate keeps its original rank
+            assertEquals(test.offer("large", 0L), false);
+
+            assertEquals(test.peek(), "small");
+            assertEquals(test.snapshot(), java.util.Arrays.asList("small", "also small", "medium", "large"));
+
+            assertEquals(test.remove("medium"), true);
+            assertEquals(test.contains("medium"), false);
+
+            assertEquals(test.poll(), "small");
+            assertEquals(test.poll(), "also small");
+
+            // elements offered without a priority are ranked last
+            test.offer("unranked");
+            test.offer("tiny", 1L);
+
+            assertEquals(test.poll(), "tiny");
+            assertEquals(test.poll(), "large");
+            assertEquals(test.poll(), "unranked");
+            assertNull(test.poll());
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests null elements.
+     */
+    @Test(expected=NullPointerException.class)
+    public void testNull() {
+        try {
+            begin();
+
+            new IndexedQueue<String>().offer(null);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that the operations performed by a first scan of a large seedbox don't grow with the length of the queue:
+     * enqueueing new files with duplicate checks, rescanning the same files, inspecting the queue and removing files
+     * out of order.  Each lookup compares the element with the queued element it matches and no other, which is counted
+     * rather than timed; a list-backed queue compares half of the queue for each.
+     */
+    @Test
+    public void testOperationsIndependentOfLength() {
+        try {
+            begin();
+
+            for (Boolean ranked : new Boolean[] { false, true }) {
+                int count = 200000;
+
+                IndexedQueue<Key> test = new IndexedQueue<Key>(ranked);
+
+                for (int i = 0; i < count; i++) {
+                    test.offer(new Key(i), i % 10);
+                }
+
+                // a second scan finds every file already queued, through equal elements distinct from those queued
+                Key.comparisons = 0;
+
+                for (int i = 0; i < count; i++) {
+                    assertEquals(test.offer(new Key(i), i % 10), false);
+                    assertEquals(test.contains(new Key(i)), true);
+                }
+
+                assertEquals(Key.comparisons, 2L * count);
+
+                // an unchanged queue is inspected without being copied again
+                assertSame(test.snapshot(), test.snapshot());
+
+                List<Integer> order = new ArrayList<Integer>(count);
+
+                for (int i = 0; i < count; i++) {
+                    order.add(i);
+                }
+
+                Collections.shuffle(order, new Random(1));
+
+                Key.comparisons = 0;
+
+                for (Integer i : order) {
+                    assertEquals(test.remove(new Key(i)), true);
+                }
+
+                assertEquals(Key.comparisons, (long)count);
+                assertEquals(test.size(), 0);
+
+                log("Rescanned and dequeued " + count + " elements of a" + (ranked ? " ranked" : "n unranked") +
+                        " queue with one comparison per lookup.");
+            }
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * A queued element which counts the comparisons made with it, and whose hash codes are distinct.
+     */
+    private static class Key {
+        /**
+         * The number of comparisons made with any Key.
+         */
+        private static long comparisons;
+
+        /**
+         * The identifier of the element.
+         */
+        private final int id;
+
+        /**
+         * Initializes a new instance of the Key class.
+         * @param id The identifier of the element.
+         */
+        public Key(int id) {
+            this.id = id;
+        }
+
+        /**
+         * Returns a value indicating whether the specified object is a Key with the same identifier, counting the
+         * comparison.
+         * @param other The object to compare.
+         * @return A value indicating whether the object is a Key with the same identifier.
+         */
+        @Override
+        public boolean equals(Object other) {
+            comparisons++;
+
+            return other instanceof Key && ((Key)other).id == id;
+        }
+
+        /**
+         * Gets the hash code of the element, which is its identifier.
+         * @return The hash code of the element.
+         */
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+}
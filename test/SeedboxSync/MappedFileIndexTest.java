@@ -0,0 +1,369 @@
+/****************************************************************************
+ *
+ * MappedFileIndexTest.java
+ *
+ * Tests the MappedFileIndex class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+
+import java.sql.Timestamp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the MappedFileIndex class.
+ */
+public class MappedFileIndexTest extends BaseTest {
+    /**
+     * The temporary folder for the class.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests lookups, additions and replacements.
+     * @throws IOException
+     */
+    @Test
+    public void testIndex() throws IOException {
+        MappedFileIndex test = null;
+
+        try {
+            begin();
+
+            test = new MappedFileIndex(new java.io.File(folder.getRoot(), "test.index"));
+
+            assertEquals(test.size(), (Integer) 0);
+            assertNull(test.get("/one"));
+            assertEquals(test.contains("/one"), false);
+
+            test.put(new File("/one", 1L, new Timestamp(0L)));
+
+            assertEquals(test.contains("/one"), true);
+            assertEquals(test.get("/one").getName(), "/one");
+            assertEquals(test.get("/one").getSize(), (Long) 1L);
+            assertEquals(test.get("/one").isDownloaded(), false);
+
+            // a second put of the same name leaves the indexed entry in place
+            test.put(new File("/one", 2L, new Timestamp(0L)));
+            assertEquals(test.get("/one").getSize(), (Long) 1L);
+
+            test.replace(new File("/one", 2L, null, null, new Timestamp(1000L)));
+
+            assertEquals(test.get("/one").getSize(), (Long) 2L);
+            assertEquals(test.get("/one").getDownloadedTimestamp(), new Timestamp(1000L));
+            assertEquals(test.size(), (Integer) 1);
+
+            test.clear();
+
+            assertEquals(test.size(), (Integer) 0);
+            assertEquals(test.contains("/one"), false);
+        }
+        finally {
+            if (test != null) test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that the index grows as it fills and is reopened intact.
+     * @throws IOException
+     */
+    @Test
+    public void testGrowthAndReopen() throws IOException {
+        MappedFileIndex test = null;
+
+        try {
+            begin();
+
+            java.io.File file = new java.io.File(folder.getRoot(), "test.index");
+
+            test = new MappedFileIndex(file);
+            test.setGeneration(7L);
+
+            for (int i = 0; i < 200000; i++) {
+                test.put(new File("/show/" + i + ".mkv", (long)i, null));
+            }
+
+            test.close();
+
+            test = new MappedFileIndex(file);
+
+            assertEquals(test.size(), (Integer) 200000);
+            assertEquals(test.getGeneration(), (Long) 7L);
+
+            for (int i = 0; i < 200000; i++) {
+                assertEquals(test.get("/show/" + i + ".mkv").getSize(), (Long) (long) i);
+            }
+
+            assertEquals(test.contains("/show/200000.mkv"), false);
+            assertEquals(new java.io.File(file.getPath() + ".tmp").exists(), false);
+        }
+        finally {
+            if (test != null) test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that an index which can't be grown keeps its entries and continues with its current slots.
+     * @throws IOException
+     */
+    @Test
+    public void testFailedGrowth() throws IOException {
+        MappedFileIndex test = null;
+
+        try {
+            begin();
+
+            java.io.File file = new java.io.File(folder.getRoot(), "test.index");
+
+            // a directory in place of the new table prevents the table from being written
+            java.io.File grown = new java.io.File(file.getPath() + ".tmp");
+            grown.mkdir();
+            new java.io.File(grown, "occupied").createNewFile();
+
+            test = new MappedFileIndex(file);
+            long length = file.length();
+
+            for (int i = 0; i < 40000; i++) {
+                test.put(new File("/show/" + i + ".mkv", (long)i, null));
+            }
+
+            assertEquals(test.size(), (Integer) 40000);
+            assertEquals(file.length(), length);
+
+            for (int i = 0; i < 40000; i++) {
+                assertEquals(test.get("/show/" + i + ".mkv").getSize(), (Long) (long) i);
+            }
+
+            // the current table stays in use when it can't be replaced
+            try {
+                test.clear();
+                fail("The index was cleared without a new table.");
+            }
+            catch (IllegalStateException ex) {
+                log("Clear failed as expected: " + ex.getMessage());
+            }
+
+            assertEquals(test.size(), (Integer) 40000);
+            test.close();
+
+            test = new MappedFileIndex(file);
+            assertEquals(test.size(), (Integer) 40000);
+        }
+        finally {
+            if (test != null) test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that a file which is not a valid index is replaced by an empty index.
+     * @throws IOException
+     */
+    @Test
+    public void testInvalidFile() throws IOException {
+        MappedFileIndex test = null;
+
+        try {
+            begin();
+
+            java.io.File file = folder.newFile("invalid.index");
+
+            RandomAccessFile output = new RandomAccessFile(file, "rw");
+            output.write(new byte[1000]);
+            output.close();
+
+            test = new MappedFileIndex(file);
+
+            assertEquals(test.size(), (Integer) 0);
+
+            test.put(new File("/one", 1L, null));
+            assertEquals(test.contains("/one"), true);
+        }
+        finally {
+            if (test != null) test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that an index at the largest capacity can be mapped, and that it is not grown further once over half full.
+     * @throws IOException
+     */
+    @Test
+    public void testMaximumCapacity() throws IOException {
+        MappedFileIndex test = null;
+
+        try {
+            begin();
+
+            java.io.File file = folder.newFile("maximum.index");
+
+            new MappedFileIndex(file).close();
+
+            // enlarge the empty index to the largest capacity, claiming that half of its slots are occupied
+            RandomAccessFile output = new RandomAccessFile(file, "rw");
+            output.setLength(64 + (long)MappedFileIndex.maximumCapacity * 32);
+            output.seek(8);
+            output.writeLong(MappedFileIndex.maximumCapacity);
+            output.writeLong(MappedFileIndex.maximumCapacity / 2);
+            output.close();
+
+            test = new MappedFileIndex(file);
+
+            assertEquals(test.size(), (Integer)(MappedFileIndex.maximumCapacity / 2));
+
+            test.put(new File("/one", 1L, null));
+            test.put(new File("/two", 2L, null));
+
+            assertEquals(test.size(), (Integer)(MappedFileIndex.maximumCapacity / 2 + 2));
+            assertEquals(test.get("/two").getSize(), (Long) 2L);
+            assertEquals(new java.io.File(file.getPath() + ".tmp").exists(), false);
+            assertEquals(file.length(), 64 + (long)MappedFileIndex.maximumCapacity * 32);
+        }
+        finally {
+            if (test != null) test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that an index at the largest capacity refuses new names once three quarters full, but still updates the
+     * names it holds.
+     * @throws IOException
+     */
+    @Test
+    public void testFull() throws IOException {
+        MappedFileIndex test = null;
+
+        try {
+            begin();
+
+            java.io.File file = folder.newFile("full.index");
+
+            new MappedFileIndex(file).close();
+
+            // enlarge the empty index to the largest capacity, claiming that it is one entry short of full
+            RandomAccessFile output = new RandomAccessFile(file, "rw");
+            output.setLength(64 + (long)MappedFileIndex.maximumCapacity * 32);
+            output.seek(8);
+            output.writeLong(MappedFileIndex.maximumCapacity);
+            output.writeLong(MappedFileIndex.maximumCapacity / 4 * 3 - 1);
+            output.close();
+
+            test = new MappedFileIndex(file);
+
+            test.put(new File("/one", 1L, null));
+
+            try {
+                test.put(new File("/two", 2L, null));
+                fail("A name was indexed in a full index.");
+            }
+            catch (IllegalStateException ex) {
+                log("Put failed as expected: " + ex.getMessage());
+            }
+
+            test.replace(new File("/one", 3L, null));
+
+            assertEquals(test.get("/one").getSize(), (Long) 3L);
+            assertEquals(test.contains("/two"), false);
+            assertEquals(test.size(), (Integer)(MappedFileIndex.maximumCapacity / 4 * 3));
+        }
+        finally {
+            if (test != null) test.close();
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that lookups do not allocate.
+     * @throws IOException
+     */
+    @Test
+    public void testLookupAllocation() throws IOException {
+        MappedFileIndex test = null;
+
+        try {
+            begin();
+
+            test = new MappedFileIndex(new java.io.File(folder.getRoot(), "test.index"));
+
+            String[] names = new String[10000];
+
+            for (int i = 0; i < names.length; i++) {
+                names[i] = "/show/" + i + ".mkv";
+
+                if (i % 2 == 0) {
+                    test.put(new File(names[i], 1L, null));
+                }
+            }
+
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+            long thread = Thread.currentThread().getId();
+
+            // warm up, so that the lookup path is compiled
+            for (int pass = 0; pass < 10; pass++) {
+                for (String name : names) {
+                    test.contains(name);
+                }
+            }
+
+            long before = threads.getThreadAllocatedBytes(thread);
+            int found = 0;
+
+            for (String name : names) {
+                if (test.contains(name)) {
+                    found++;
+                }
+            }
+
+            long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+            assertEquals(found, 5000);
+
+            // allow for the measurement itself, which is far less than a single allocation per lookup
+            assertTrue("Lookups allocated " + allocated + " bytes.", allocated < 10000);
+        }
+        finally {
+            if (test != null) test.close();
+
+            end();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/****************************************************************************
+ *
+ * MemoryFileIndexTest.java
+ *
+ * Tests the MemoryFileIndex class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.sql.Timestamp;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the MemoryFileIndex class.
+ */
+public class MemoryFileIndexTest extends BaseTest {
+    /**
+     * Tests lookups with and without the Bloom filter.
+     */
+    @Test
+    public void testIndex() {
+        try {
+            begin();
+
+            for (Boolean bloomFilter : new Boolean[] { false, true }) {
+                MemoryFileIndex test = new MemoryFileIndex(bloomFilter);
+
+                assertEquals(test.size(), (Integer) 0);
+                assertNull(test.get("/one"));
+
+                File one = new File("/one", 1L, new Timestamp(0L));
+                test.put(one);
+
+                assertEquals(test.get("/one"), one);
+                assertEquals(test.size(), (Integer) 1);
+
+                // a second put of the same name leaves the indexed File in place
+                test.put(new File("/one", 2L, new Timestamp(0L)));
+                assertEquals(test.get("/one"), one);
+
+                File replacement = new File("/one", 2L, new Timestamp(0L));
+                test.replace(replacement);
+
+                assertEquals(test.get("/one"), replacement);
+                assertEquals(test.size(), (Integer) 1);
+            }
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that the Bloom filter grows with the index, so that every indexed name is found.
+     */
+    @Test
+    public void testBloomFilterGrowth() {
+        try {
+            begin();
+
+            MemoryFileIndex test = new MemoryFileIndex(true);
+
+            for (int i = 0; i < 200000; i++) {
+                test.put(new File("/" + i, 1L, new Timestamp(0L)));
+            }
+
+            assertEquals(test.size(), (Integer) 200000);
+
+            for (int i = 0; i < 200000; i++) {
+                assertEquals(test.get("/" + i).getName(), "/" + i);
+            }
+
+            assertNull(test.get("/200000"));
+        }
+        finally {
+            end();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/****************************************************************************
+ *
+ * MetricsRegistryTest.java
+ *
+ * Tests the MetricsRegistry class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the MetricsRegistry class.
+ */
+public class MetricsRegistryTest extends BaseTest {
+    /**
+     * Tests counters.
+     */
+    @Test
+    public void testCounter() {
+        try {
+            begin();
+
+            MetricsRegistry test = new MetricsRegistry();
+            MetricsRegistry.Counter down = test.counter("bytes_total", "Bytes.", "direction=\"download\"");
+            MetricsRegistry.Counter up = test.counter("bytes_total", "Bytes.", "direction=\"upload\"");
+
+            down.add(10);
+            down.add(5);
+            up.add(1);
+
+            assertEquals(down.get(), 15L);
+            assertEquals(test.render(), "# HELP bytes_total Bytes.\n" +
+                    "# TYPE bytes_total counter\n" +
+                    "bytes_total{direction=\"download\"} 15\n" +
+                    "bytes_total{direction=\"upload\"} 1\n");
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests gauges.
+     */
+    @Test
+    public void testGauge() {
+        try {
+            begin();
+
+            MetricsRegistry test = new MetricsRegistry();
+            MetricsRegistry.Gauge gauge = test.gauge("depth", "Depth.", null);
+
+            assertEquals(gauge.get(), 0, 0);
+
+            gauge.setSource(new MetricsRegistry.Gauge.Source() {
+                public double getValue() {
+                    return 3;
+                }
+            });
+
+            assertEquals(test.render(), "# HELP depth Depth.\n# TYPE depth gauge\ndepth 3\n");
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests histograms.
+     */
+    @Test
+    public void testHistogram() {
+        try {
+            begin();
+
+            MetricsRegistry test = new MetricsRegistry();
+            MetricsRegistry.Histogram histogram = test.histogram("latency_seconds", "Latency.", "query=\"a\"", 0.1, 1);
+
+            histogram.observe(0.05);
+            histogram.observe(0.1);
+            histogram.observe(0.5);
+            histogram.observe(2);
+
+            assertEquals(histogram.getCount(), 4L);
+            assertEquals(histogram.getSum(), 2.65, 0.0001);
+
+            String rendered = test.render();
+
+            // buckets are cumulative, and a value equal to a bound falls into that bound's bucket
+            assertTrue(rendered.contains("latency_seconds_bucket{query=\"a\",le=\"0.1\"} 2\n"));
+            assertTrue(rendered.contains("latency_seconds_bucket{query=\"a\",le=\"1\"} 3\n"));
+            assertTrue(rendered.contains("latency_seconds_bucket{query=\"a\",le=\"+Inf\"} 4\n"));
+            assertTrue(rendered.contains("latency_seconds_count{query=\"a\"} 4\n"));
+            assertTrue(rendered.contains("latency_seconds_sum{query=\"a\"} 2.65"));
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Registers a name under two different types.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testTypeConflict() {
+        try {
+            begin();
+
+            MetricsRegistry test = new MetricsRegistry();
+            test.counter("name", "Help.", null);
+            test.gauge("name", "Help.", null);
+        }
+        finally {
+            end();
+        }
+    }
+}
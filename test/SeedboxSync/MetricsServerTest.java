@@ -0,0 +1,89 @@
+/****************************************************************************
+ *
+ * MetricsServerTest.java
+ *
+ * Tests the MetricsServer class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the MetricsServer class.
+ */
+public class MetricsServerTest extends BaseTest {
+    /**
+     * Scrapes the metrics endpoint.
+     * @throws Exception
+     */
+    @Test
+    public void testScrape() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_total", "A test counter.", null).add(42);
+
+        MetricsServer test = new MetricsServer(registry, 0);
+
+        try {
+            begin();
+
+            test.start();
+            assertTrue(test.getPort() > 0);
+
+            HttpURLConnection connection = (HttpURLConnection)new URL("http://127.0.0.1:" + test.getPort() +
+                    "/metrics").openConnection();
+
+            assertEquals(connection.getResponseCode(), 200);
+            assertTrue(connection.getContentType().startsWith("text/plain"));
+
+            InputStream in = connection.getInputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+            try {
+                byte[] buffer = new byte[4096];
+                int read;
+
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            }
+            finally {
+                in.close();
+            }
+
+            assertTrue(body.toString("UTF-8").contains("test_total 42\n"));
+
+            connection = (HttpURLConnection)new URL("http://127.0.0.1:" + test.getPort() + "/metrics").openConnection();
+            connection.setRequestMethod("POST");
+
+            assertEquals(connection.getResponseCode(), 405);
+        }
+        finally {
+            test.stop();
+            end();
+        }
+    }
+}
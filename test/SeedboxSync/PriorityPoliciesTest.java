@@ -0,0 +1,169 @@
+/****************************************************************************
+ *
+ * PriorityPoliciesTest.java
+ *
+ * Tests the PriorityPolicies class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the PriorityPolicies class.
+ */
+public class PriorityPoliciesTest extends BaseTest {
+    /**
+     * Tests the creation of each policy by name.
+     */
+    @Test
+    public void testCreate() {
+        try {
+            begin();
+
+            assertNull(PriorityPolicies.create(null, null));
+            assertNull(PriorityPolicies.create("discovery", null));
+
+            assertTrue(PriorityPolicies.create("smallest", null) instanceof PriorityPolicies.SmallestFirst);
+            assertTrue(PriorityPolicies.create("oldest", null) instanceof PriorityPolicies.OldestFirst);
+            assertTrue(PriorityPolicies.create("newest", null) instanceof PriorityPolicies.NewestFirst);
+            assertTrue(PriorityPolicies.create("directory", null) instanceof PriorityPolicies.DirectoryFirst);
+            assertTrue(PriorityPolicies.create("pattern", Arrays.asList("x")) instanceof PriorityPolicies.PatternFirst);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests an unknown policy name.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testCreateUnknown() {
+        try {
+            begin();
+
+            PriorityPolicies.create("largest", null);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the pattern policy without patterns.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testCreatePatternWithoutPatterns() {
+        try {
+            begin();
+
+            PriorityPolicies.create("pattern", null);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the size and timestamp policies.
+     */
+    @Test
+    public void testSizeAndTimestamp() {
+        try {
+            begin();
+
+            IPriorityPolicy smallest = new PriorityPolicies.SmallestFirst();
+
+            assertTrue(smallest.getPriority("a", 1L, null) < smallest.getPriority("b", 2L, null));
+            assertEquals(smallest.getPriority("c", null, null), Long.MAX_VALUE);
+
+            IPriorityPolicy oldest = new PriorityPolicies.OldestFirst();
+
+            assertTrue(oldest.getPriority("a", null, 1000L) < oldest.getPriority("b", null, 2000L));
+            assertEquals(oldest.getPriority("c", null, null), Long.MAX_VALUE);
+
+            IPriorityPolicy newest = new PriorityPolicies.NewestFirst();
+
+            assertTrue(newest.getPriority("a", null, 2000L) < newest.getPriority("b", null, 1000L));
+            assertEquals(newest.getPriority("c", null, null), Long.MAX_VALUE);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the pattern policy.
+     */
+    @Test
+    public void testPattern() {
+        try {
+            begin();
+
+            IPriorityPolicy test = new PriorityPolicies.PatternFirst(Arrays.asList("(?i)s01e01", "\\.nfo$"));
+
+            assertEquals(test.getPriority("/Show/Show.S01E01.mkv", null, null), 0L);
+            assertEquals(test.getPriority("/Show/Show.nfo", null, null), 1L);
+            assertEquals(test.getPriority("/Show/Show.S01E02.mkv", null, null), 2L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that the directory policy keeps the files of each top level directory together.
+     */
+    @Test
+    public void testDirectory() {
+        try {
+            begin();
+
+            IPriorityPolicy test = new PriorityPolicies.DirectoryFirst();
+
+            long first = test.getPriority("/one/a.mkv", null, null);
+            long second = test.getPriority("/two/a.mkv", null, null);
+            long loose = test.getPriority("/loose.mkv", null, null);
+
+            assertTrue(first < second);
+            assertTrue(second < loose);
+
+            assertEquals(test.getPriority("/one/sub/b.mkv", null, null), first);
+            assertEquals(test.getPriority("/two/b.mkv", null, null), second);
+
+            // the directory policy ranks a queue so that whole directories are transferred in turn
+            IndexedQueue<String> queue = new IndexedQueue<String>(true);
+
+            for (String file : Arrays.asList("/one/a:1", "/two/a:1", "/one/b:1", "/two/b:1")) {
+                queue.offer(file, test.getPriority(file, null, null));
+            }
+
+            assertEquals(queue.snapshot(), Arrays.asList("/one/a:1", "/one/b:1", "/two/a:1", "/two/b:1"));
+        }
+        finally {
+            end();
+        }
+    }
+}
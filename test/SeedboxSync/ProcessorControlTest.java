@@ -0,0 +1,136 @@
+/****************************************************************************
+ *
+ * ProcessorControlTest.java
+ *
+ * Tests the ProcessorControl class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests the ProcessorControl class.
+ */
+public class ProcessorControlTest extends BaseTest {
+    /**
+     * Tests the queue attributes.
+     */
+    @Test
+    public void testQueue() {
+        try {
+            begin();
+
+            Uploader uploader = new Uploader(mock(IServer.class), "local", "remote");
+            ProcessorControl test = new ProcessorControl(uploader);
+
+            assertEquals(test.getQueueLength(), (Integer) 0);
+            assertEquals(test.getTransferInProgress(), false);
+
+            uploader.enqueue("one");
+            uploader.enqueue("two");
+
+            assertEquals(test.getQueueLength(), (Integer) 2);
+            assertArrayEquals(test.getQueue(), new String[] { "one", "two" });
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the worker attributes.
+     */
+    @Test
+    public void testWorkers() {
+        try {
+            begin();
+
+            Uploader uploader = new Uploader(mock(IServer.class), "local", "remote");
+            ProcessorControl test = new ProcessorControl(uploader);
+
+            assertEquals(test.getWorkerCount(), (Integer) 1);
+            assertEquals(test.getActiveTransferCount(), (Integer) 0);
+            assertEquals(test.getFailedCount(), (Integer) 0);
+
+            test.setWorkerCount(4);
+
+            assertEquals(uploader.getWorkerCount(), (Integer) 4);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Sets an invalid worker count.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testBadWorkerCount() {
+        try {
+            begin();
+
+            new ProcessorControl(new Uploader(mock(IServer.class), "local", "remote")).setWorkerCount(0);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the Downloader's scan concurrency attribute.
+     */
+    @Test
+    public void testScanConcurrency() {
+        try {
+            begin();
+
+            Downloader downloader = new Downloader(mock(IServer.class), "local", "remote", mock(IDatabase.class));
+            DownloaderControl test = new DownloaderControl(downloader);
+
+            test.setScanConcurrency(8);
+
+            assertEquals(test.getScanConcurrency(), (Integer) 8);
+            assertEquals(downloader.getScanConcurrency(), (Integer) 8);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Sets an invalid scan concurrency.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testBadScanConcurrency() {
+        try {
+            begin();
+
+            new DownloaderControl(new Downloader(mock(IServer.class), "local", "remote", mock(IDatabase.class)))
+                    .setScanConcurrency(0);
+        }
+        finally {
+            end();
+        }
+    }
+}
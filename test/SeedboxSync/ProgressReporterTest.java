@@ -0,0 +1,107 @@
+/****************************************************************************
+ *
+ * ProgressReporterTest.java
+ *
+ * Tests the ProgressReporter class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the ProgressReporter class.
+ */
+public class ProgressReporterTest extends BaseTest {
+    /**
+     * Tests start() and finish().
+     */
+    @Test
+    public void testStartFinish() {
+        try {
+            begin();
+
+            ProgressReporter test = new ProgressReporter(1000000000L);
+            assertEquals(test.getInterval(), (Long) 1000000000L);
+
+            TransferProgress one = test.start("Downloading", "one", 1024L, 0L);
+            TransferProgress two = test.start("Uploading", "two", 2048L, 0L);
+
+            assertEquals(test.getTransfers().size(), 2);
+            assertTrue(test.getTransfers().contains(one));
+
+            test.finish(one, true);
+            test.finish(two, false);
+
+            assertEquals(test.getTransfers().size(), 0);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests report() while transfers are in progress.
+     * @throws Exception
+     */
+    @Test
+    public void testReport() throws Exception {
+        try {
+            begin();
+
+            ProgressReporter test = new ProgressReporter(10000000L);
+
+            TransferProgress progress = test.start("Downloading", "file", 1024L * 1024L, 0L);
+            progress.add(512 * 1024);
+
+            test.report();
+
+            // the reporting thread samples the transfer on its own
+            Thread.sleep(100);
+            test.finish(progress, true);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests describe().
+     */
+    @Test
+    public void testDescribe() {
+        try {
+            begin();
+
+            TransferProgress progress = new TransferProgress("Downloading", "file", 4L * 1024L * 1024L, 1024L * 1024L);
+
+            assertEquals(ProgressReporter.describe(progress, 1024 * 1024),
+                    "Downloading 'file'; 1.00 of 4.00 MB (25.00%), 1.00 MB/sec");
+
+            progress = new TransferProgress("Uploading", "file", null, 2L * 1024L * 1024L);
+
+            assertEquals(ProgressReporter.describe(progress, 0), "Uploading 'file'; 2.00 MB, 0.00 MB/sec");
+        }
+        finally {
+            end();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/****************************************************************************
+ *
+ * RecursiveListingTest.java
+ *
+ * Tests the RecursiveListing class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.parser.UnixFTPEntryParser;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the RecursiveListing class.
+ */
+public class RecursiveListingTest extends BaseTest {
+    /**
+     * Tests the parse() method with headers relative to the listed directory.
+     */
+    @Test
+    public void testParseRelative() {
+        try {
+            begin();
+
+            List<String> lines = Arrays.asList(
+                    ".:",
+                    "total 8",
+                    "drwxr-xr-x   3 user group         4096 Oct 18 04:29 a",
+                    "-rw-r--r--   1 user group            8 Oct 18 04:29 x.torrent",
+                    "",
+                    "./a:",
+                    "total 4",
+                    "drwxr-xr-x   2 user group         4096 Oct 18 04:29 b",
+                    "-rw-r--r--   1 user group      3000000 Oct 18 04:29 big file.bin",
+                    "",
+                    "./a/b:",
+                    "-rw-r--r--   1 user group           12 Oct 18 04:29 small.txt");
+
+            List<FTPFile> files = RecursiveListing.parse("/dl", lines, new UnixFTPEntryParser());
+
+            assertEquals(files.size(), 5);
+            assertEquals(files.get(0).getName(), "a");
+            assertTrue(files.get(0).isDirectory());
+            assertEquals(files.get(1).getName(), "x.torrent");
+            assertEquals(files.get(3).getName(), "a/big file.bin");
+            assertEquals(files.get(3).getSize(), 3000000L);
+            assertEquals(files.get(4).getName(), "a/b/small.txt");
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the parse() method with absolute headers.
+     */
+    @Test
+    public void testParseAbsolute() {
+        try {
+            begin();
+
+            List<String> lines = Arrays.asList(
+                    "/dl:",
+                    "drwxr-xr-x   3 user group         4096 Oct 18 04:29 a",
+                    "",
+                    "/dl/a:",
+                    "-rw-r--r--   1 user group           12 Oct 18 04:29 small.txt");
+
+            List<FTPFile> files = RecursiveListing.parse("/dl/", lines, new UnixFTPEntryParser());
+
+            assertEquals(files.size(), 2);
+            assertEquals(files.get(1).getName(), "a/small.txt");
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the parse() method with a listing from a server which ignored the recursive flag.
+     */
+    @Test
+    public void testParseUnsupported() {
+        try {
+            begin();
+
+            List<String> lines = Arrays.asList(
+                    "drwxr-xr-x   3 user group         4096 Oct 18 04:29 a",
+                    "-rw-r--r--   1 user group            8 Oct 18 04:29 x.torrent");
+
+            assertNull(RecursiveListing.parse("/dl", lines, new UnixFTPEntryParser()));
+
+            // a listing without directories is complete whether or not the flag was honored
+            lines = Arrays.asList("-rw-r--r--   1 user group            8 Oct 18 04:29 x.torrent");
+
+            assertEquals(RecursiveListing.parse("/dl", lines, new UnixFTPEntryParser()).size(), 1);
+        }
+        finally {
+            end();
+        }
+    }
+}
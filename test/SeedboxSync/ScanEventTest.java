@@ -0,0 +1,212 @@
+/****************************************************************************
+ *
+ * ScanEventTest.java
+ *
+ * Tests the ScanEvent class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+
+import org.mockito.Mockito;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests the ScanEvent class.
+ */
+public class ScanEventTest extends BaseTest {
+    /**
+     * The temporary folder for the class.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that walking the tree records an event for each directory.
+     * @throws Exception
+     */
+    @Test
+    public void testWalk() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            Mockito.when(server.list("remote")).thenReturn(listing(directory("a"), file("one", 1L)));
+            Mockito.when(server.list("remote/a")).thenReturn(listing(file("two", 2L), file("three", 3L)));
+            Mockito.when(database.contains("/a/three")).thenReturn(true);
+            Mockito.doThrow(new Exception()).when(server).download(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong());
+
+            Downloader test = new Downloader(server, "local", "remote", database);
+
+            Recording recording = new Recording();
+            recording.enable(ScanEvent.class);
+            recording.start();
+
+            test.process();
+
+            List<RecordedEvent> events = stop(recording);
+
+            assertEquals(2, events.size());
+
+            for (RecordedEvent event : events) {
+                assertEquals(false, event.getBoolean("recursive"));
+
+                if (event.getString("directory").equals("remote")) {
+                    assertEquals(1, event.getInt("files"));
+                    assertEquals(1, event.getInt("directories"));
+                    assertEquals(1, event.getInt("enqueued"));
+                }
+                else {
+                    assertEquals("remote/a", event.getString("directory"));
+                    assertEquals(2, event.getInt("files"));
+                    assertEquals(0, event.getInt("directories"));
+                    assertEquals(1, event.getInt("enqueued"));
+                }
+            }
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a recursive listing records a single event for the tree.
+     * @throws Exception
+     */
+    @Test
+    public void testRecursive() throws Exception {
+        try {
+            begin();
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            Mockito.when(server.listRecursive("remote")).thenReturn(listing(directory("a"), file("one", 1L),
+                    file("a/two", 2L)));
+            Mockito.doThrow(new Exception()).when(server).download(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong());
+
+            Downloader test = new Downloader(server, "local", "remote", database);
+
+            Recording recording = new Recording();
+            recording.enable(ScanEvent.class);
+            recording.start();
+
+            test.process();
+
+            List<RecordedEvent> events = stop(recording);
+
+            assertEquals(1, events.size());
+            assertEquals("remote", events.get(0).getString("directory"));
+            assertEquals(true, events.get(0).getBoolean("recursive"));
+            assertEquals(2, events.get(0).getInt("files"));
+            assertEquals(1, events.get(0).getInt("directories"));
+            assertEquals(2, events.get(0).getInt("enqueued"));
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Stops the specified recording and returns the scan events it captured.
+     * @param recording The recording to stop.
+     * @return The scan events captured by the recording.
+     * @throws IOException Thrown if the recording can't be written or read.
+     */
+    private List<RecordedEvent> stop(Recording recording) throws IOException {
+        java.io.File file = new java.io.File(folder.getRoot(), "scan.jfr");
+
+        try {
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        finally {
+            recording.close();
+        }
+
+        List<RecordedEvent> retVal = new ArrayList<RecordedEvent>();
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().equals("SeedboxSync.Scan")) {
+                retVal.add(event);
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Creates a listing containing the specified entries.
+     * @param entries The entries of the listing.
+     * @return The listing.
+     */
+    private List<FTPFile> listing(FTPFile... entries) {
+        List<FTPFile> retVal = new ArrayList<FTPFile>();
+
+        for (FTPFile entry : entries) {
+            retVal.add(entry);
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Creates a directory entry with the specified name.
+     * @param name The name of the directory.
+     * @return The directory entry.
+     */
+    private FTPFile directory(String name) {
+        FTPFile retVal = new FTPFile();
+        retVal.setName(name);
+        retVal.setType(FTPFile.DIRECTORY_TYPE);
+
+        return retVal;
+    }
+
+    /**
+     * Creates a file entry with the specified name and size.
+     * @param name The name of the file.
+     * @param size The size of the file.
+     * @return The file entry.
+     */
+    private FTPFile file(String name, Long size) {
+        FTPFile retVal = new FTPFile();
+        retVal.setName(name);
+        retVal.setType(FTPFile.FILE_TYPE);
+        retVal.setSize(size);
+
+        return retVal;
+    }
+}
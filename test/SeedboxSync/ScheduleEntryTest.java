@@ -0,0 +1,98 @@
+/****************************************************************************
+ *
+ * ScheduleEntryTest.java
+ *
+ * Tests the ScheduleEntry class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the ScheduleEntry class.
+ */
+public class ScheduleEntryTest extends BaseTest {
+    /**
+     * Tests the contains() method.
+     */
+    @Test
+    public void testContains() {
+        try {
+            begin();
+
+            ScheduleEntry test = new ScheduleEntry(9, 17);
+
+            assertEquals(test.contains(8), false);
+            assertEquals(test.contains(9), true);
+            assertEquals(test.contains(16), true);
+            assertEquals(test.contains(17), false);
+
+            // an entry ending before it starts spans midnight
+            test = new ScheduleEntry(22, 6);
+
+            assertEquals(test.contains(23), true);
+            assertEquals(test.contains(0), true);
+            assertEquals(test.contains(5), true);
+            assertEquals(test.contains(6), false);
+            assertEquals(test.contains(21), false);
+
+            test = new ScheduleEntry(0, 24);
+
+            assertEquals(test.contains(0), true);
+            assertEquals(test.contains(23), true);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the isValid() method.
+     */
+    @Test
+    public void testIsValid() {
+        try {
+            begin();
+
+            ScheduleEntry test = new ScheduleEntry(9, 17);
+            assertEquals(test.isValid(), true);
+
+            test.setDownloadLimit(-1L);
+            assertEquals(test.isValid(), false);
+
+            test.setDownloadLimit(100L);
+            test.setInterval(0);
+            assertEquals(test.isValid(), false);
+
+            assertEquals(new ScheduleEntry(24, 1).isValid(), false);
+            assertEquals(new ScheduleEntry(1, 25).isValid(), false);
+
+            // an entry which starts and ends at the same hour would never be in effect
+            assertEquals(new ScheduleEntry(9, 9).isValid(), false);
+            assertEquals(new ScheduleEntry(0, 0).isValid(), false);
+            assertEquals(new ScheduleEntry(0, 24).isValid(), true);
+            assertEquals(new ScheduleEntry(0, 24).contains(23), true);
+        }
+        finally {
+            end();
+        }
+    }
+}
@@ -23,9 +23,16 @@
  *
  ****************************************************************************/
 
+import java.sql.Timestamp;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * Tests the SeedboxSync class.
@@ -136,4 +143,40 @@ public class SeedboxSyncTest extends BaseTest {
             end();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a persisted file index is reused after the application exits through its shutdown hook.
+     * @throws Exception
+     */
+    @Test
+    public void testShutdownHookKeepsIndex() throws Exception {
+        try {
+            begin();
+
+            Configuration configuration = new Configuration("server", 1, "user", "password", 1, "remote",
+                    folder.getRoot().getAbsolutePath(), "remoteUp", folder.getRoot().getAbsolutePath());
+            configuration.setFileIndex("mapped");
+
+            java.io.File file = folder.newFile("shutdown.db");
+
+            IDatabase database = DatabaseLoader.load(file, configuration);
+            database.addDownloadedFile(new File("/one", 1L, new Timestamp(0L)));
+
+            Thread hook = SeedboxSync.createShutdownHook(database);
+            hook.start();
+            hook.join();
+
+            Database spy = Mockito.spy(new Database(file, configuration));
+            IndexedDatabase test = new IndexedDatabase(spy, new MappedFileIndex(new java.io.File(file.getPath() +
+                    ".index")));
+
+            verify(spy, never()).visitFiles(any(IDatabase.Visitor.class));
+            assertEquals(test.getFile("/one").isDownloaded(), true);
+
+            test.close();
+        }
+        finally {
+            end();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/****************************************************************************
+ *
+ * SegmentedDownloadTest.java
+ *
+ * Tests the SegmentedDownload class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the SegmentedDownload class.
+ */
+public class SegmentedDownloadTest extends BaseTest {
+    /**
+     * The temporary folder for the class.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests the constructor.
+     */
+    @Test
+    public void testConstructor() {
+        try {
+            begin();
+
+            ConnectionPool pool = new ConnectionPool("address", 21, "user", "password", 1, 4);
+            File stateFile = new File(folder.getRoot(), "state");
+
+            SegmentedDownload test = new SegmentedDownload(pool, "source", "destination",
+                    TransferState.create(stateFile, 1024L, 4), null, null, new TransferEngine(4096));
+            assertEquals(test.getSegmentCount(), (Integer) 4);
+
+            // a file can't be split into more segments than it has bytes
+            test = new SegmentedDownload(pool, "source", "destination", TransferState.create(stateFile, 2L, 4), null,
+                    null, new TransferEngine(4096));
+            assertEquals(test.getSegmentCount(), (Integer) 2);
+
+            test = new SegmentedDownload(pool, "source", "destination", TransferState.create(stateFile, 0L, 4), null,
+                    null, new TransferEngine(4096));
+            assertEquals(test.getSegmentCount(), (Integer) 1);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Downloads from a known bad server.
+     * @throws Exception
+     */
+    @Test(expected=Exception.class)
+    public void testBadDownload() throws Exception {
+        ConnectionPool pool = new ConnectionPool("this can't be the name of a server.", 21, "", "", 1, 2);
+
+        try {
+            begin();
+
+            File destination = folder.newFile("segmented.bin");
+
+            TransferState state = TransferState.create(new File(folder.getRoot(), "segmented.bin.state"), 1024L, 2);
+
+            SegmentedDownload test = new SegmentedDownload(pool, "source", destination.getAbsolutePath(), state, null, null,
+                    new TransferEngine(4096));
+            test.download();
+        }
+        finally {
+            // failed segments must return their permits to the pool
+            assertEquals(pool.getSize(), (Integer) 0);
+
+            end();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/****************************************************************************
+ *
+ * ServerControlTest.java
+ *
+ * Tests the ServerControl class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the ServerControl class.
+ */
+public class ServerControlTest extends BaseTest {
+    /**
+     * Tests the connection and limit attributes.
+     */
+    @Test
+    public void testAttributes() {
+        try {
+            begin();
+
+            Server server = new Server("address", "user", "password", 21, 1, 4);
+            ServerControl test = new ServerControl(server);
+
+            assertEquals(test.getConnections(), (Integer) 0);
+            assertEquals(test.getMaximumConnections(), (Integer) 4);
+
+            test.setMaximumConnections(6);
+            test.setSegmentCount(3);
+            test.setDownloadLimit(1000L);
+            test.setDownloadTransferLimit(100L);
+            test.setUploadLimit(2000L);
+            test.setUploadTransferLimit(200L);
+
+            assertEquals(server.getPool().getMaximumSize(), (Integer) 6);
+            assertEquals(server.getSegmentCount(), (Integer) 3);
+            assertEquals(server.getDownloadLimit(), (Long) 1000L);
+            assertEquals(server.getDownloadTransferLimit(), (Long) 100L);
+            assertEquals(server.getUploadLimit(), (Long) 2000L);
+            assertEquals(server.getUploadTransferLimit(), (Long) 200L);
+            assertEquals(test.getTransfers().length, 0);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests pauseTransfers() and resumeTransfers().
+     */
+    @Test
+    public void testPause() {
+        try {
+            begin();
+
+            ServerControl test = new ServerControl(new Server("address", "user", "password", 21, 1, 4));
+
+            assertEquals(test.getPaused(), false);
+
+            test.pauseTransfers();
+            assertEquals(test.getPaused(), true);
+
+            test.resumeTransfers();
+            assertEquals(test.getPaused(), false);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Sets a negative limit.
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testBadLimit() {
+        try {
+            begin();
+
+            new ServerControl(new Server("address", "user", "password", 21, 1, 4)).setDownloadLimit(-1L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Registers the bean with the platform MBean server and changes a limit through it.
+     * @throws Exception
+     */
+    @Test
+    public void testRegistration() throws Exception {
+        MBeanServer mbeans = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("SeedboxSync:type=Server,name=ServerControlTest");
+
+        try {
+            begin();
+
+            Server server = new Server("address", "user", "password", 21, 1, 4);
+            mbeans.registerMBean(new ServerControl(server), name);
+
+            mbeans.setAttribute(name, new Attribute("UploadLimit", 5000L));
+            mbeans.invoke(name, "pauseTransfers", null, null);
+
+            assertEquals(server.getUploadLimit(), (Long) 5000L);
+            assertEquals(mbeans.getAttribute(name, "Paused"), true);
+        }
+        finally {
+            if (mbeans.isRegistered(name)) {
+                mbeans.unregisterMBean(name);
+            }
+
+            end();
+        }
+    }
+}
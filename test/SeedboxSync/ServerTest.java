@@ -23,16 +23,24 @@
  *
  ****************************************************************************/
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.concurrent.Future;
 
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
 import org.apache.commons.net.ftp.FTPFile;
 
 import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 
 /**
  * Tests the Server class.
@@ -296,4 +304,310 @@ public class ServerTest extends BaseTest {
             end();
         }
     }
+
+    /**
+     * Tests the segmented download accessors.
+     */
+    @Test
+    public void testSegmentSettings() {
+        try {
+            begin();
+
+            Server test = new Server("address", "user", "password", 21, 1, 4);
+
+            assertEquals(test.getSegmentCount(), (Integer) 1);
+
+            test.setSegmentCount(4);
+            test.setSegmentThreshold(1024L);
+
+            assertEquals(test.getSegmentCount(), (Integer) 4);
+            assertEquals(test.getSegmentThreshold(), (Long) 1024L);
+
+            // buffers smaller than a page are raised to one
+            test.setTransferBufferSize(1);
+            assertEquals(test.getTransferBufferSize(), (Integer) 4096);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a partial file of the full size, which was not written by a single stream download, is downloaded
+     * again rather than treated as complete.
+     * @throws Exception
+     */
+    @Test
+    public void testDownloadDiscardsUnmarkedPartial() throws Exception {
+        try {
+            begin();
+
+            File destination = new File(folder.getRoot(), "file");
+            Files.write(new File(destination.getPath() + ".part").toPath(), new byte[5]);
+
+            FTPSession session = mockSession("hello");
+            Server test = new Server("address", "user", "password", 21, mockPool(session));
+
+            test.download("remote/file", destination.getAbsolutePath(), 5L);
+
+            assertEquals(new String(Files.readAllBytes(destination.toPath())), "hello");
+            assertEquals(new File(destination.getPath() + ".part.stream").exists(), false);
+            verify(session, never()).setRestartOffset(5L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a partial file laid out for a segmented download is discarded when its state file can't be used.
+     * @throws Exception
+     */
+    @Test
+    public void testDownloadDiscardsPartialWithUnusableState() throws Exception {
+        try {
+            begin();
+
+            File destination = new File(folder.getRoot(), "file");
+            Files.write(new File(destination.getPath() + ".part").toPath(), new byte[5]);
+            Files.write(new File(destination.getPath() + ".part.stream").toPath(), new byte[0]);
+            Files.write(new File(destination.getPath() + ".part.state").toPath(), "garbage".getBytes());
+
+            FTPSession session = mockSession("hello");
+            Server test = new Server("address", "user", "password", 21, mockPool(session));
+
+            test.download("remote/file", destination.getAbsolutePath(), 5L);
+
+            assertEquals(new String(Files.readAllBytes(destination.toPath())), "hello");
+            assertEquals(new File(destination.getPath() + ".part.state").exists(), false);
+            verify(session, never()).setRestartOffset(5L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that partial data written by a single stream download is resumed from its end.
+     * @throws Exception
+     */
+    @Test
+    public void testDownloadResumesStream() throws Exception {
+        try {
+            begin();
+
+            File destination = new File(folder.getRoot(), "file");
+            Files.write(new File(destination.getPath() + ".part").toPath(), "hel".getBytes());
+            Files.write(new File(destination.getPath() + ".part.stream").toPath(), new byte[0]);
+
+            FTPSession session = mockSession("lo");
+            Server test = new Server("address", "user", "password", 21, mockPool(session));
+
+            test.download("remote/file", destination.getAbsolutePath(), 5L);
+
+            assertEquals(new String(Files.readAllBytes(destination.toPath())), "hello");
+            verify(session).setRestartOffset(3L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a session on which the server refused a request is returned to the pool rather than discarded.
+     * @throws Exception
+     */
+    @Test
+    public void testRefusedRequestReleasesSession() throws Exception {
+        try {
+            begin();
+
+            FTPSession session = mockSession("");
+            when(session.openDataConnection(eq(FTPCmd.RETR), anyString())).thenReturn(null);
+            when(session.getReplyString()).thenReturn("550 No such file.");
+
+            ConnectionPool pool = mockPool(session);
+            Server test = new Server("address", "user", "password", 21, pool);
+
+            try {
+                test.download("remote/file", new File(folder.getRoot(), "file").getAbsolutePath(), 5L);
+                fail("The refused download did not throw.");
+            }
+            catch (Server.ReplyException ex) {
+                assertTrue(ex.getMessage().contains("550"));
+            }
+
+            verify(pool).release(session);
+            verify(pool, never()).invalidate(session);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that a session which was lost is discarded and the operation retried once, and that a session which failed
+     * during a data transfer is discarded without a retry.
+     * @throws Exception
+     */
+    @Test
+    public void testFailedSessionIsInvalidated() throws Exception {
+        try {
+            begin();
+
+            FTPSession session = mockSession("");
+            when(session.openDataConnection(eq(FTPCmd.RETR), anyString()))
+                    .thenThrow(new FTPConnectionClosedException("Connection closed without indication."));
+
+            ConnectionPool pool = mockPool(session);
+            Server test = new Server("address", "user", "password", 21, pool);
+
+            try {
+                test.download("remote/file", new File(folder.getRoot(), "file").getAbsolutePath(), 5L);
+                fail("The download over a lost session did not throw.");
+            }
+            catch (FTPConnectionClosedException ex) {
+            }
+
+            verify(pool, times(2)).invalidate(session);
+            verify(pool, never()).release(session);
+
+            // an I/O error part way through a transfer leaves the control connection in an unknown state
+            final InputStream failing = new InputStream() {
+                public int read() throws IOException {
+                    throw new IOException("Read failed.");
+                }
+            };
+
+            session = mockSession("");
+            when(session.openDataConnection(eq(FTPCmd.RETR), anyString())).thenReturn(new Socket() {
+                public InputStream getInputStream() {
+                    return failing;
+                }
+            });
+
+            pool = mockPool(session);
+            test = new Server("address", "user", "password", 21, pool);
+
+            try {
+                test.download("remote/file", new File(folder.getRoot(), "file").getAbsolutePath(), 5L);
+                fail("The failed transfer did not throw.");
+            }
+            catch (IOException ex) {
+            }
+
+            verify(pool, times(1)).invalidate(session);
+            verify(pool, never()).release(session);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that directories are listed with MLSD when the server advertises it, omitting the entries for the directory
+     * itself and its parent.
+     * @throws Exception
+     */
+    @Test
+    public void testListMachineReadable() throws Exception {
+        try {
+            begin();
+
+            FTPSession session = mockSession("");
+            when(session.hasFeature("MLST")).thenReturn(true);
+            when(session.mlistDir("remote")).thenReturn(new FTPFile[] { ftpFile("."), ftpFile(".."), ftpFile("a") });
+
+            Server test = new Server("address", "user", "password", 21, mockPool(session));
+
+            List<FTPFile> files = test.list("remote");
+
+            assertEquals(files.size(), 1);
+            assertEquals(files.get(0).getName(), "a");
+            verify(session, never()).listFiles(anyString());
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that directories are listed with LIST when the server does not advertise MLSD, omitting unparsed entries.
+     * @throws Exception
+     */
+    @Test
+    public void testListFallback() throws Exception {
+        try {
+            begin();
+
+            FTPSession session = mockSession("");
+            when(session.listFiles("remote")).thenReturn(new FTPFile[] { ftpFile("b"), null, ftpFile("c") });
+
+            Server test = new Server("address", "user", "password", 21, mockPool(session));
+
+            List<FTPFile> files = test.list("remote");
+
+            assertEquals(files.size(), 2);
+            assertEquals(files.get(0).getName(), "b");
+            assertEquals(files.get(1).getName(), "c");
+            verify(session, never()).mlistDir(anyString());
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Creates a file entry with the specified name.
+     * @param name The name of the entry.
+     * @return The file entry.
+     */
+    private FTPFile ftpFile(String name) {
+        FTPFile retVal = new FTPFile();
+        retVal.setName(name);
+
+        return retVal;
+    }
+
+    /**
+     * Creates a mock pool which leases the specified session.
+     * @param session The session to lease.
+     * @return The mock pool.
+     * @throws Exception
+     */
+    private ConnectionPool mockPool(FTPSession session) throws Exception {
+        ConnectionPool retVal = mock(ConnectionPool.class);
+
+        when(retVal.lease()).thenReturn(session);
+        when(retVal.leaseBulk()).thenReturn(session);
+        when(retVal.getMaximumSize()).thenReturn(4);
+        when(retVal.getMaximumBulkSize()).thenReturn(3);
+
+        return retVal;
+    }
+
+    /**
+     * Creates a mock session for a server which supports restarted transfers and serves the specified data.
+     * @param data The data served by a retrieve request.
+     * @return The mock session.
+     * @throws Exception
+     */
+    private FTPSession mockSession(String data) throws Exception {
+        FTPSession retVal = mock(FTPSession.class);
+
+        final InputStream stream = new ByteArrayInputStream(data.getBytes());
+
+        Socket socket = new Socket() {
+            public InputStream getInputStream() {
+                return stream;
+            }
+        };
+
+        when(retVal.isConnected()).thenReturn(true);
+        when(retVal.hasFeature("REST")).thenReturn(true);
+        when(retVal.openDataConnection(eq(FTPCmd.RETR), anyString())).thenReturn(socket);
+        when(retVal.completePendingCommand()).thenReturn(true);
+
+        return retVal;
+    }
 }
@@ -0,0 +1,96 @@
+/****************************************************************************
+ *
+ * SynchronizerControlTest.java
+ *
+ * Tests the SynchronizerControl class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests the SynchronizerControl class.
+ */
+public class SynchronizerControlTest extends BaseTest {
+    /**
+     * Tests the cycle attributes before and after a synchronization.
+     * @throws Exception
+     */
+    @Test
+    public void testCycle() throws Exception {
+        try {
+            begin();
+
+            Configuration configuration = new Configuration("server", 1, "user", "pass", 1, "remoteDownload", "localDownload", "remoteUpload", "localUpload");
+            Synchronizer synchronizer = new Synchronizer(configuration, mock(IServer.class), mock(IDatabase.class));
+
+            SynchronizerControl test = new SynchronizerControl(synchronizer, null);
+
+            assertEquals(test.getCycleCount(), (Long) 0L);
+            assertNull(test.getLastCycleStart());
+            assertNull(test.getLastCycleDuration());
+            assertNull(test.getLastCycleSucceeded());
+
+            synchronizer.synchronize();
+
+            assertEquals(test.getCycleCount(), (Long) 1L);
+            assertNotNull(test.getLastCycleStart());
+            assertNotNull(test.getLastCycleDuration());
+            assertEquals(test.getLastCycleSucceeded(), true);
+            assertEquals(test.getSynchronizing(), false);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests synchronizeNow().
+     * @throws Exception
+     */
+    @Test
+    public void testSynchronizeNow() throws Exception {
+        try {
+            begin();
+
+            final int[] calls = { 0 };
+
+            SynchronizerControl test = new SynchronizerControl(null, new Callable<Boolean>() {
+                public Boolean call() {
+                    return ++calls[0] == 1;
+                }
+            });
+
+            assertEquals(test.synchronizeNow(), true);
+            assertEquals(test.synchronizeNow(), false);
+            assertEquals(calls[0], 2);
+        }
+        finally {
+            end();
+        }
+    }
+}
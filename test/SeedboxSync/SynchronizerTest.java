@@ -23,14 +23,41 @@
  *
  ****************************************************************************/
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests the Synchronizer class.
  */
 public class SynchronizerTest extends BaseTest {
+    /**
+     * The temporary folder for the class.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Tests the constructor.
      */
@@ -45,10 +72,122 @@ public class SynchronizerTest extends BaseTest {
 
             Synchronizer test = new Synchronizer(configuration, server, database);
 
+            assertEquals(test.getCycleCount(), (Long) 0L);
+            assertNull(test.getLastCycleStart());
+
             test.synchronize();
+
+            assertEquals(test.getCycleCount(), (Long) 1L);
+            assertNotNull(test.getLastCycleStart());
+            assertNotNull(test.getLastCycleDuration());
+            assertEquals(test.getLastCycleSucceeded(), true);
+            assertEquals(test.isSynchronizing(), false);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests synchronization once the transfer workers are started.
+     */
+    @Test
+    public void testStart() throws Exception {
+        try {
+            begin();
+
+            Configuration configuration = new Configuration("server", 1, "user", "pass", 1, "remoteDownload",
+                    folder.newFolder("download").getAbsolutePath(), "remoteUpload", folder.newFolder("upload").getAbsolutePath());
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            FTPFile file = new FTPFile();
+            file.setName("one");
+            file.setType(FTPFile.FILE_TYPE);
+            file.setSize(1L);
+
+            List<FTPFile> files = new ArrayList<FTPFile>();
+            files.add(file);
+
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+
+            when(server.list("remoteDownload")).thenReturn(files);
+            doAnswer(new Answer<Void>() {
+                public Void answer(InvocationOnMock invocation) throws Throwable {
+                    started.countDown();
+                    release.await();
+                    return null;
+                }
+            }).when(server).download(anyString(), anyString(), anyLong());
+
+            Synchronizer test = new Synchronizer(configuration, server, database);
+            test.start();
+
+            try {
+                test.synchronize();
+
+                // the synchronization returns once the scan completes, while the download continues on its worker
+                assertEquals(started.await(5, TimeUnit.SECONDS), true);
+                assertEquals(test.isSynchronizing(), false);
+                assertEquals(test.getDownloader().isTransferInProgress(), true);
+
+                // a second scan runs while the download is in progress, and doesn't queue the file again
+                test.synchronize();
+
+                assertEquals(test.getCycleCount(), (Long) 2L);
+                assertEquals(test.getDownloader().getQueue().size(), 1);
+
+                release.countDown();
+
+                verify(database, timeout(5000)).addDownloadedFile(any(File.class));
+            }
+            finally {
+                release.countDown();
+                test.stop();
+            }
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the applySchedule() method.
+     */
+    @Test
+    public void testApplySchedule() {
+        try {
+            begin();
+
+            Configuration configuration = new Configuration("server", 1, "user", "pass", 1, "remoteDownload", "localDownload", "remoteUpload", "localUpload");
+            configuration.setDownloadLimit(1000L);
+
+            ScheduleEntry entry = new ScheduleEntry(9, 17);
+            entry.setUploadLimit(10L);
+            configuration.getSchedule().add(entry);
+
+            IServer server = mock(IServer.class);
+            IDatabase database = mock(IDatabase.class);
+
+            Synchronizer test = new Synchronizer(configuration, server, database);
+
+            test.applySchedule(12);
+
+            verify(server).setDownloadLimit(1000L);
+            verify(server).setUploadLimit(10L);
+
+            test.applySchedule(18);
+
+            verify(server).setUploadLimit(0L);
+
+            // limits are only applied when the schedule changes them, so that limits set at runtime are kept
+            test.applySchedule(19);
+
+            verify(server).setUploadLimit(0L);
         }
         finally {
             end();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,252 @@
+/****************************************************************************
+ *
+ * TransferEngineTest.java
+ *
+ * Tests the TransferEngine class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the TransferEngine class.
+ */
+public class TransferEngineTest extends BaseTest {
+    /**
+     * The temporary folder for test files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A callback which continues every transfer.
+     */
+    private static final TransferEngine.Callback proceed = new TransferEngine.Callback() {
+        public Boolean transferred(long bytes) {
+            return true;
+        }
+    };
+
+    /**
+     * Tests the constructor.
+     */
+    @Test
+    public void testConstructor() {
+        try {
+            begin();
+
+            assertEquals(new TransferEngine(65536).getBufferSize(), (Integer) 65536);
+            assertEquals(new TransferEngine(0).getBufferSize(), (Integer) 4096);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Sends a file from an offset over a loopback connection and receives it into another file at the same offset.
+     * @throws Exception
+     */
+    @Test
+    public void testSendReceive() throws Exception {
+        try {
+            begin();
+
+            final byte[] data = new byte[100000];
+            new Random(0).nextBytes(data);
+
+            final File source = folder.newFile("source.bin");
+            Files.write(source.toPath(), data);
+
+            File destination = folder.newFile("destination.bin");
+
+            final TransferEngine test = new TransferEngine(4096);
+
+            final ServerSocketChannel listener = ServerSocketChannel.open();
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+
+            try {
+                listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+                Future<Long> sent = executor.submit(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        SocketChannel channel = SocketChannel.open(listener.getLocalAddress());
+                        RandomAccessFile file = new RandomAccessFile(source, "r");
+
+                        try {
+                            return test.send(file.getChannel(), 1000L, channel.socket(), proceed);
+                        }
+                        finally {
+                            file.close();
+                            channel.close();
+                        }
+                    }
+                });
+
+                SocketChannel channel = listener.accept();
+                RandomAccessFile file = new RandomAccessFile(destination, "rw");
+
+                try {
+                    channel.socket().setSoTimeout(10000);
+                    assertEquals(test.receive(channel.socket(), file.getChannel(), 1000L, Long.MAX_VALUE, proceed),
+                            (Long) 99000L);
+                }
+                finally {
+                    file.close();
+                    channel.close();
+                }
+
+                assertEquals(sent.get(), (Long) 99000L);
+
+                byte[] received = Files.readAllBytes(destination.toPath());
+                assertEquals(received.length, 100000);
+                assertArrayEquals(Arrays.copyOfRange(received, 1000, 100000), Arrays.copyOfRange(data, 1000, 100000));
+            }
+            finally {
+                executor.shutdownNow();
+                listener.close();
+            }
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Receives from a connection which sends nothing and verifies that the connection's timeout is enforced.
+     * @throws Exception
+     */
+    @Test(expected=SocketTimeoutException.class)
+    public void testReceiveTimeout() throws Exception {
+        ServerSocketChannel listener = ServerSocketChannel.open();
+        SocketChannel client = null;
+        SocketChannel channel = null;
+        RandomAccessFile file = null;
+
+        try {
+            begin();
+
+            listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            client = SocketChannel.open(listener.getLocalAddress());
+            channel = listener.accept();
+            channel.socket().setSoTimeout(200);
+
+            file = new RandomAccessFile(folder.newFile("timeout.bin"), "rw");
+
+            new TransferEngine(4096).receive(channel.socket(), file.getChannel(), 0L, Long.MAX_VALUE, proceed);
+        }
+        finally {
+            if (file != null) {
+                file.close();
+            }
+
+            if (channel != null) {
+                channel.close();
+            }
+
+            if (client != null) {
+                client.close();
+            }
+
+            listener.close();
+            end();
+        }
+    }
+
+    /**
+     * Receives from a connection without a channel, which is copied through a heap buffer, and stops part way through
+     * at the callback's request.
+     * @throws Exception
+     */
+    @Test
+    public void testReceiveStream() throws Exception {
+        try {
+            begin();
+
+            final ServerSocketChannel listener = ServerSocketChannel.open();
+            Socket socket = null;
+            RandomAccessFile file = new RandomAccessFile(folder.newFile("stream.bin"), "rw");
+
+            try {
+                listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+                socket = new Socket(InetAddress.getLoopbackAddress(), listener.socket().getLocalPort());
+                SocketChannel channel = listener.accept();
+
+                try {
+                    channel.write(ByteBuffer.wrap(new byte[50000]));
+                }
+                finally {
+                    channel.close();
+                }
+
+                Long received = new TransferEngine(4096).receive(socket, file.getChannel(), 0L, 10000L,
+                        new TransferEngine.Callback() {
+                            private long total = 0;
+
+                            public Boolean transferred(long bytes) throws IOException {
+                                total += bytes;
+                                return total < 8192;
+                            }
+                        });
+
+                // reads are bounded by the remaining count, so the transfer never passes it
+                assertEquals(received <= 10000L, true);
+                assertEquals(received >= 8192L, true);
+                assertEquals(file.length(), (long) received);
+            }
+            finally {
+                file.close();
+
+                if (socket != null) {
+                    socket.close();
+                }
+
+                listener.close();
+            }
+        }
+        finally {
+            end();
+        }
+    }
+}
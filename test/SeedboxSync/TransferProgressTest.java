@@ -0,0 +1,149 @@
+/****************************************************************************
+ *
+ * TransferProgressTest.java
+ *
+ * Tests the TransferProgress class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the TransferProgress class.
+ */
+public class TransferProgressTest extends BaseTest {
+    /**
+     * Tests the constructor and accessors.
+     */
+    @Test
+    public void testConstructor() {
+        try {
+            begin();
+
+            TransferProgress test = new TransferProgress("Downloading", "file", 1024L, 256L);
+
+            assertEquals(test.getAction(), "Downloading");
+            assertEquals(test.getName(), "file");
+            assertEquals(test.getSize(), 1024L);
+            assertEquals(test.getTransferred(), 0L);
+            assertEquals(test.getTotal(), 256L);
+
+            assertEquals(new TransferProgress("Uploading", "file", null, 0L).getSize(), -1L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests add() and resume().
+     */
+    @Test
+    public void testAddResume() {
+        try {
+            begin();
+
+            TransferProgress test = new TransferProgress("Downloading", "file", 1024L, 0L);
+
+            test.add(100);
+            test.add(28);
+            assertEquals(test.getTransferred(), 128L);
+            assertEquals(test.getTotal(), 128L);
+
+            // a restart from an offset moves the total without counting the resumed data as transferred
+            test.resume(512);
+            assertEquals(test.getTransferred(), 128L);
+            assertEquals(test.getTotal(), 512L);
+
+            test.add(12);
+            assertEquals(test.getTotal(), 524L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests add() from many threads at once.
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        try {
+            begin();
+
+            final TransferProgress test = new TransferProgress("Downloading", "file", null, 0L);
+            List<Thread> threads = new ArrayList<Thread>();
+
+            for (int i = 0; i < 8; i++) {
+                threads.add(new Thread(new Runnable() {
+                    public void run() {
+                        for (int j = 0; j < 100000; j++) {
+                            test.add(1);
+                        }
+                    }
+                }));
+            }
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(test.getTransferred(), 800000L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests sample().
+     */
+    @Test
+    public void testSample() {
+        try {
+            begin();
+
+            TransferProgress test = new TransferProgress("Downloading", "file", 1024L, 0L);
+            long start = test.getStartTime();
+
+            test.add(1000);
+            assertEquals(test.sample(start + 1000000000L), 1000.0, 0.001);
+
+            // each sample measures only the data moved since the previous one
+            test.add(500);
+            assertEquals(test.sample(start + 1500000000L), 1000.0, 0.001);
+
+            assertTrue(test.sample(start + 1500000000L) == 0);
+        }
+        finally {
+            end();
+        }
+    }
+}
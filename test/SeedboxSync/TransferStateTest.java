@@ -0,0 +1,138 @@
+/****************************************************************************
+ *
+ * TransferStateTest.java
+ *
+ * Tests the TransferState class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the TransferState class.
+ */
+public class TransferStateTest extends BaseTest {
+    /**
+     * The temporary folder for the class.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests the create() method.
+     */
+    @Test
+    public void testCreate() {
+        try {
+            begin();
+
+            TransferState test = TransferState.create(new File(folder.getRoot(), "state"), 10L, 3);
+
+            assertEquals(test.getSize(), (Long) 10L);
+            assertEquals(test.getSegmentCount(), (Integer) 3);
+            assertEquals(test.getStart(0), (Long) 0L);
+            assertEquals(test.getEnd(0), (Long) 4L);
+            assertEquals(test.getStart(2), (Long) 8L);
+            assertEquals(test.getEnd(2), (Long) 10L);
+            assertEquals(test.getPosition(1), test.getStart(1));
+            assertEquals(test.getBytesCommitted(), (Long) 0L);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the save() and load() methods.
+     * @throws Exception
+     */
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        try {
+            begin();
+
+            File file = new File(folder.getRoot(), "state");
+
+            TransferState test = TransferState.create(file, 10L, 2);
+            test.setPosition(0, 3L);
+            test.setPosition(1, 10L);
+            test.save();
+
+            assertEquals(test.getBytesCommitted(), (Long) 8L);
+
+            TransferState loaded = TransferState.load(file, 10L);
+
+            assertEquals(loaded.getSegmentCount(), (Integer) 2);
+            assertEquals(loaded.getPosition(0), (Long) 3L);
+            assertEquals(loaded.getPosition(1), (Long) 10L);
+            assertEquals(loaded.getBytesCommitted(), (Long) 8L);
+
+            loaded.delete();
+            assertFalse(file.exists());
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests the load() method with missing, mismatched and corrupt state.
+     * @throws Exception
+     */
+    @Test
+    public void testLoadInvalid() throws Exception {
+        try {
+            begin();
+
+            File file = new File(folder.getRoot(), "state");
+
+            assertNull(TransferState.load(file, 10L));
+
+            TransferState.create(file, 10L, 2).save();
+            assertTrue(file.exists());
+
+            // the remote file has changed size since the state was saved
+            assertNull(TransferState.load(file, 11L));
+
+            FileWriter writer = new FileWriter(file);
+
+            try {
+                writer.write("10\n0 7 5\n");
+            }
+            finally {
+                writer.close();
+            }
+
+            assertNull(TransferState.load(file, 10L));
+        }
+        finally {
+            end();
+        }
+    }
+}
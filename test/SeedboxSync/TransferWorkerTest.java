@@ -0,0 +1,144 @@
+/****************************************************************************
+ *
+ * TransferWorkerTest.java
+ *
+ * Tests the TransferWorker class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests the TransferWorker class.
+ */
+public class TransferWorkerTest extends BaseTest {
+    /**
+     * Tests that the worker transfers once per wake, and again if woken during a transfer.
+     * @throws Exception
+     */
+    @Test
+    public void testWake() throws Exception {
+        try {
+            begin();
+
+            final Semaphore transfers = new Semaphore(0);
+            final CountDownLatch release = new CountDownLatch(1);
+            final AtomicInteger count = new AtomicInteger(0);
+
+            Processor processor = new Processor(mock(IServer.class), "local", "remote") {
+                public void scan() { }
+
+                public void transfer() throws Exception {
+                    count.incrementAndGet();
+                    transfers.release();
+                    release.await();
+                }
+
+                protected void transfer(String file) { }
+
+                public void process() { }
+            };
+
+            TransferWorker test = new TransferWorker(processor, "test-worker");
+
+            assertEquals(test.isRunning(), false);
+
+            test.start();
+
+            try {
+                assertEquals(test.isRunning(), true);
+
+                // nothing is transferred until the worker is woken
+                assertEquals(transfers.tryAcquire(100, TimeUnit.MILLISECONDS), false);
+
+                test.wake();
+                assertEquals(transfers.tryAcquire(5, TimeUnit.SECONDS), true);
+
+                // wakes during a transfer are collapsed into a single further transfer
+                test.wake();
+                test.wake();
+                release.countDown();
+
+                assertEquals(transfers.tryAcquire(5, TimeUnit.SECONDS), true);
+                assertEquals(transfers.tryAcquire(100, TimeUnit.MILLISECONDS), false);
+                assertEquals(count.get(), 2);
+            }
+            finally {
+                test.stop();
+            }
+
+            assertEquals(test.isRunning(), false);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests that the worker keeps running when a transfer fails.
+     * @throws Exception
+     */
+    @Test
+    public void testTransferException() throws Exception {
+        try {
+            begin();
+
+            final Semaphore transfers = new Semaphore(0);
+
+            Processor processor = new Processor(mock(IServer.class), "local", "remote") {
+                public void scan() { }
+
+                public void transfer() throws Exception {
+                    transfers.release();
+                    throw new Exception("failed");
+                }
+
+                protected void transfer(String file) { }
+
+                public void process() { }
+            };
+
+            TransferWorker test = new TransferWorker(processor, "test-worker");
+            test.start();
+
+            try {
+                test.wake();
+                assertEquals(transfers.tryAcquire(5, TimeUnit.SECONDS), true);
+
+                test.wake();
+                assertEquals(transfers.tryAcquire(5, TimeUnit.SECONDS), true);
+            }
+            finally {
+                test.stop();
+            }
+        }
+        finally {
+            end();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/****************************************************************************
+ *
+ * UploadWatcherTest.java
+ *
+ * Tests the UploadWatcher class.
+ *
+ ***************************************************************************
+ *
+ * Copyright (C) 2016 JP Dillingham (jp@dillingham.ws)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ****************************************************************************/
+
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the UploadWatcher class.
+ */
+public class UploadWatcherTest extends BaseTest {
+    /**
+     * The temporary folder for the class.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that a new file is enqueued once it settles, and that the worker is woken.
+     * @throws Exception
+     */
+    @Test
+    public void testWatch() throws Exception {
+        UploadWatcher test = null;
+
+        try {
+            begin();
+
+            java.io.File uploadFolder = folder.newFolder("upload");
+
+            Uploader uploader = new Uploader(mock(IServer.class), uploadFolder.getAbsolutePath(), "");
+            uploader.setSettleTime(200L);
+
+            TransferWorker worker = mock(TransferWorker.class);
+
+            test = new UploadWatcher(uploader, worker, uploadFolder.getAbsolutePath());
+
+            assertEquals(test.isRunning(), false);
+
+            test.start();
+
+            assertEquals(test.isRunning(), true);
+
+            java.io.File file = new java.io.File(uploadFolder, "new.torrent");
+            Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+
+            verify(worker, timeout(10000)).wake();
+
+            assertEquals(uploader.getQueue().size(), 1);
+            assertEquals(uploader.getQueue().contains(file.getAbsolutePath()), true);
+
+            // uploaded files are ignored
+            Files.write(new java.io.File(uploadFolder, "[Uploaded] old.torrent").toPath(), new byte[] { 1 });
+            Thread.sleep(1000);
+
+            assertEquals(uploader.getQueue().size(), 1);
+        }
+        finally {
+            if (test != null) {
+                test.stop();
+            }
+
+            end();
+        }
+    }
+
+    /**
+     * Tests that a file which is still being written is not enqueued until it settles.
+     * @throws Exception
+     */
+    @Test
+    public void testSettle() throws Exception {
+        UploadWatcher test = null;
+
+        try {
+            begin();
+
+            java.io.File uploadFolder = folder.newFolder("upload");
+
+            Uploader uploader = new Uploader(mock(IServer.class), uploadFolder.getAbsolutePath(), "");
+            uploader.setSettleTime(1000L);
+
+            TransferWorker worker = mock(TransferWorker.class);
+
+            test = new UploadWatcher(uploader, worker, uploadFolder.getAbsolutePath());
+            test.start();
+
+            java.io.File file = new java.io.File(uploadFolder, "slow.torrent");
+
+            // write the file in pieces, each well within the settle time of the last
+            for (int i = 0; i < 6; i++) {
+                Files.write(file.toPath(), new byte[] { (byte)i }, java.nio.file.StandardOpenOption.CREATE,
+                        java.nio.file.StandardOpenOption.APPEND);
+                Thread.sleep(250);
+
+                assertEquals(uploader.getQueue().size(), 0);
+            }
+
+            verify(worker, timeout(10000)).wake();
+
+            assertEquals(uploader.getQueue().contains(file.getAbsolutePath()), true);
+        }
+        finally {
+            if (test != null) {
+                test.stop();
+            }
+
+            end();
+        }
+    }
+
+    /**
+     * Tests starting the watcher on a directory which does not exist.
+     * @throws Exception
+     */
+    @Test(expected=Exception.class)
+    public void testMissingDirectory() throws Exception {
+        try {
+            begin();
+
+            Uploader uploader = new Uploader(mock(IServer.class), "missing", "");
+
+            UploadWatcher test = new UploadWatcher(uploader, mock(TransferWorker.class),
+                    new java.io.File(folder.getRoot(), "missing").getAbsolutePath());
+
+            test.start();
+        }
+        finally {
+            end();
+        }
+    }
+}
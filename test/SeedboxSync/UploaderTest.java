@@ -106,6 +106,8 @@ public class UploaderTest extends BaseTest {
             File uploadFile = folder.newFile("upload/file.txt");
 
             IServer server = mock(IServer.class);
+            when(server.getSize("/file.txt")).thenReturn(0L);
+
             Uploader uploader = new Uploader(server, uploadFolder.getAbsolutePath(), "");
 
             uploader.enqueue(uploadFile.getAbsolutePath());
@@ -126,6 +128,74 @@ public class UploaderTest extends BaseTest {
         }
     }
 
+    /**
+     * Tests that the scan skips files modified within the settle time.
+     * @throws Exception
+     */
+    @Test
+    public void testSettleTime() throws Exception {
+        try {
+            begin();
+
+            File uploadFolder = folder.newFolder("upload");
+            File settled = folder.newFile("upload/settled.torrent");
+            File recent = folder.newFile("upload/recent.torrent");
+
+            settled.setLastModified(System.currentTimeMillis() - 60000);
+
+            Uploader uploader = new Uploader(mock(IServer.class), uploadFolder.getAbsolutePath(), "");
+            uploader.setSettleTime(10000L);
+
+            assertEquals(uploader.getSettleTime(), (Long) 10000L);
+
+            uploader.scan();
+
+            assertEquals(uploader.getQueue().size(), 1);
+            assertEquals(uploader.getQueue().contains(settled.getAbsolutePath()), true);
+
+            // the recent file is enqueued once it has settled
+            recent.setLastModified(System.currentTimeMillis() - 60000);
+
+            assertEquals(uploader.scanFile(recent), true);
+            assertEquals(uploader.scanFile(recent), false);
+            assertEquals(uploader.getQueue().size(), 2);
+        }
+        finally {
+            end();
+        }
+    }
+
+    /**
+     * Tests process() when the remote file is incomplete after the upload.
+     * @throws Exception
+     */
+    @Test
+    public void testProcessIncompleteUpload() throws Exception {
+        try {
+            begin();
+
+            File uploadFolder = folder.newFolder("upload");
+            File uploadFile = folder.newFile("upload/file.txt");
+
+            IServer server = mock(IServer.class);
+            when(server.getSize("/file.txt")).thenReturn(null);
+
+            Uploader uploader = new Uploader(server, uploadFolder.getAbsolutePath(), "");
+
+            uploader.process();
+
+            // the file is removed from the queue to be retried next cycle, but it must not be marked as uploaded
+            assertEquals(uploader.getQueue().size(), 0);
+            assertEquals(uploadFile.exists(), true);
+            assertEquals(new File(uploadFile.getParent() + "/[Uploaded] file.txt").exists(), false);
+
+            verify(server).upload(uploadFile, "/file.txt");
+        }
+        finally {
+            end();
+        }
+    }
+
     /**
      * Tests process() with a known bad upload folder.
      * @throws IOException
@@ -217,4 +287,53 @@ public class UploaderTest extends BaseTest {
             end();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a failed upload keeps its growing retry delay when a transfer woken by the upload watcher runs after
+     * the delay has passed and before the next scan.
+     * @throws Exception
+     */
+    @Test
+    public void testBackoffKeptAcrossTransfers() throws Exception {
+        try {
+            begin();
+
+            File uploadFolder = folder.newFolder("upload");
+            File uploadFile = folder.newFile("upload/file.txt");
+
+            IServer server = mock(IServer.class);
+            doThrow(new Exception("failed")).when(server).upload(any(File.class), anyString());
+
+            Uploader test = new Uploader(server, uploadFolder.getAbsolutePath(), "");
+            test.setRetryDelay(500L);
+
+            test.scan();
+            test.transfer();
+
+            assertEquals(test.getFailedCount(), (Integer) 1);
+
+            // the first retry delay passes, and a transfer is woken without a scan
+            Thread.sleep(700);
+            test.transfer();
+
+            assertEquals(test.getFailedCount(), (Integer) 1);
+
+            // the scan queues the file again, and the second failure doubles the retry delay to a second
+            test.scan();
+            assertEquals(test.getQueue().size(), 1);
+
+            test.transfer();
+
+            // had the first failure been forgotten, the file would be queued again once 500 ms had passed
+            Thread.sleep(700);
+            test.scan();
+
+            assertEquals(test.getQueue().size(), 0);
+            assertEquals(test.getFailedCount(), (Integer) 1);
+            verify(server, times(2)).upload(any(File.class), anyString());
+        }
+        finally {
+            end();
+        }
+    }
+}